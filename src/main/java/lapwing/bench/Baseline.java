@@ -0,0 +1,106 @@
+package lapwing.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Benchmark results as a small CSV meant to be committed: {@code #} lines record the fixture configuration and
+ * JVM, then one row per stage with three significant figures, so a re-run that changes nothing produces a diff
+ * of noise-level digits and a regression stands out.
+ *
+ * <p>{@link #compare} flags a stage whose throughput fell, or whose allocation per operation grew, by more than a
+ * tolerance plus the combined run-to-run error of both measurements.
+ */
+public final class Baseline {
+
+    static final String HEADER = "stage,unit,items_per_op,ops_per_s,error_pct,items_per_s,alloc_bytes_per_op,gc_count,"
+            + "gc_ms";
+
+    private Baseline() {
+    }
+
+    public static void write(Path file, Map<String, String> config, List<Benchmark.Result> results)
+            throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> e : config.entrySet()) {
+                w.write("# " + e.getKey() + "=" + e.getValue() + "\n");
+            }
+            w.write(HEADER + "\n");
+            for (Benchmark.Result r : results) {
+                w.write(String.format(Locale.ROOT, "%s,%s,%d,%s,%.1f,%s,%s,%d,%d%n", r.stage, r.unit, r.itemsPerOp,
+                        sig(r.opsPerSecond), r.errorPercent, sig(r.itemsPerSecond()), sig(r.allocBytesPerOp),
+                        r.gcCount, r.gcMillis));
+            }
+        }
+    }
+
+    public static Map<String, Benchmark.Result> read(Path file) throws IOException {
+        Map<String, Benchmark.Result> out = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#") || line.startsWith("stage,")) {
+                continue;
+            }
+            String[] f = line.split(",");
+            if (f.length != 9) {
+                throw new IOException(file + ": expected 9 fields in '" + line + "'");
+            }
+            out.put(f[0], new Benchmark.Result(f[0], f[1], Long.parseLong(f[2]), Double.parseDouble(f[3]),
+                    Double.parseDouble(f[4]), Double.parseDouble(f[6]), Long.parseLong(f[7]), Long.parseLong(f[8])));
+        }
+        return out;
+    }
+
+    /** Three significant figures, plain notation. */
+    static String sig(double v) {
+        if (v == 0 || !Double.isFinite(v)) {
+            return v == 0 ? "0" : Double.toString(v);
+        }
+        int digits = (int) Math.floor(Math.log10(Math.abs(v)));
+        double scale = Math.pow(10, digits - 2);
+        double rounded = Math.round(v / scale) * scale;
+        return digits >= 2 ? String.format(Locale.ROOT, "%.0f", rounded)
+                : String.format(Locale.ROOT, "%." + (2 - digits) + "f", rounded);
+    }
+
+    //==========================================================================================================
+    // Regressions against a baseline; one line per stage, prefixed REGRESSION where one is found
+    //==========================================================================================================
+    public static List<String> compare(Map<String, Benchmark.Result> baseline, List<Benchmark.Result> current,
+                                       double tolerance) {
+        List<String> lines = new ArrayList<>();
+        for (Benchmark.Result now : current) {
+            Benchmark.Result was = baseline.get(now.stage);
+            if (was == null) {
+                lines.add(String.format(Locale.ROOT, "  new      %-16s %s %s/s", now.stage, sig(now.itemsPerSecond()),
+                        now.unit));
+                continue;
+            }
+            if (was.itemsPerOp != now.itemsPerOp) {
+                lines.add(String.format(Locale.ROOT, "  changed  %-16s fixture size differs (%d vs %d %s per op)",
+                        now.stage, now.itemsPerOp, was.itemsPerOp, now.unit));
+                continue;
+            }
+            double speed = now.opsPerSecond / was.opsPerSecond;
+            double noise = Math.hypot(now.errorPercent, was.errorPercent) / 100;
+            double alloc = was.allocBytesPerOp > 0 ? now.allocBytesPerOp / was.allocBytesPerOp : 1;
+            boolean slower = speed < 1 - tolerance - noise;
+            boolean heavier = alloc > 1 + tolerance && now.allocBytesPerOp - was.allocBytesPerOp > 1024;
+            lines.add(String.format(Locale.ROOT, "%s %-16s throughput %+.1f%% (noise %.1f%%), alloc/op %+.1f%%",
+                    slower || heavier ? "REGRESSION" : "  ok      ", now.stage, 100 * (speed - 1), 100 * noise,
+                    100 * (alloc - 1)));
+        }
+        return lines;
+    }
+}
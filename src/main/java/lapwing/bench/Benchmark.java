@@ -0,0 +1,163 @@
+package lapwing.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Minimal measurement harness for the pipeline stages: warm-up iterations, then timed iterations that each
+ * repeat the operation for at least a minimum time, reporting throughput with its spread across iterations and,
+ * like JMH's {@code gc} profiler, bytes allocated per operation and the collections that ran.
+ *
+ * <p>Allocation is read from the per-thread counters of {@code com.sun.management.ThreadMXBean}, summed over all
+ * live threads so that work done in a {@code ForkJoinPool} is included; threads that end during an iteration are
+ * missed, which the stages avoid by keeping their pools alive. Every result is fed to a sink so the JIT cannot
+ * drop the work.
+ */
+public final class Benchmark {
+
+    private final int warmup;
+    private final int iterations;
+    private final long minNanos;
+    private volatile int sink;
+
+    public Benchmark(int warmup, int iterations, double minSeconds) {
+        if (warmup < 0 || iterations < 1 || !(minSeconds >= 0)) {
+            throw new IllegalArgumentException("Need warmup >= 0, iterations >= 1 and minSeconds >= 0");
+        }
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.minNanos = (long) (minSeconds * 1e9);
+    }
+
+    /** One benchmarked operation: {@code items} units of work ({@code unit}, e.g. pixels) per call. */
+    public static final class Stage {
+        final String name;
+        final String unit;
+        final long items;
+        final Callable<Object> op;
+
+        public Stage(String name, String unit, long items, Callable<Object> op) {
+            this.name = name;
+            this.unit = unit;
+            this.items = items;
+            this.op = op;
+        }
+
+        public String name() {
+            return name;
+        }
+    }
+
+    /** Mean and relative standard deviation of throughput, allocation per operation, and GC activity. */
+    public static final class Result {
+        public final String stage;
+        public final String unit;
+        public final long itemsPerOp;
+        public final double opsPerSecond;
+        public final double errorPercent;
+        public final double allocBytesPerOp;
+        public final long gcCount;
+        public final long gcMillis;
+
+        public Result(String stage, String unit, long itemsPerOp, double opsPerSecond, double errorPercent,
+                      double allocBytesPerOp, long gcCount, long gcMillis) {
+            this.stage = stage;
+            this.unit = unit;
+            this.itemsPerOp = itemsPerOp;
+            this.opsPerSecond = opsPerSecond;
+            this.errorPercent = errorPercent;
+            this.allocBytesPerOp = allocBytesPerOp;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        public double itemsPerSecond() {
+            return opsPerSecond * itemsPerOp;
+        }
+    }
+
+    //==========================================================================================================
+    // Run one stage
+    //==========================================================================================================
+    public Result run(Stage stage) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            iteration(stage);
+        }
+        double[] rate = new double[iterations];
+        long ops = 0;
+        long bytes = 0;
+        long gcCount = -gcCount();
+        long gcMillis = -gcMillis();
+        for (int i = 0; i < iterations; i++) {
+            long allocated = -allocatedBytes();
+            long[] it = iteration(stage);
+            allocated += allocatedBytes();
+            rate[i] = it[0] / (it[1] / 1e9);
+            ops += it[0];
+            bytes += allocated;
+        }
+        gcCount += gcCount();
+        gcMillis += gcMillis();
+        double mean = 0;
+        for (double r : rate) {
+            mean += r;
+        }
+        mean /= rate.length;
+        double var = 0;
+        for (double r : rate) {
+            var += (r - mean) * (r - mean);
+        }
+        double sd = rate.length > 1 ? Math.sqrt(var / (rate.length - 1)) : 0;
+        return new Result(stage.name, stage.unit, stage.items, mean, 100 * sd / mean, (double) bytes / ops, gcCount,
+                gcMillis);
+    }
+
+    /** {operations, nanoseconds} of one iteration. */
+    private long[] iteration(Stage stage) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += System.identityHashCode(stage.op.call());
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < minNanos);
+        return new long[]{ops, elapsed};
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // JVM counters
+    //----------------------------------------------------------------------------------------------------------
+    private static long allocatedBytes() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long b : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, b);
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : collectors()) {
+            n += Math.max(0, gc.getCollectionCount());
+        }
+        return n;
+    }
+
+    private static long gcMillis() {
+        long t = 0;
+        for (GarbageCollectorMXBean gc : collectors()) {
+            t += Math.max(0, gc.getCollectionTime());
+        }
+        return t;
+    }
+
+    private static List<GarbageCollectorMXBean> collectors() {
+        return ManagementFactory.getGarbageCollectorMXBeans();
+    }
+}
@@ -0,0 +1,240 @@
+package lapwing.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import lapwing.data.ModelFrame;
+import lapwing.eval.RocEvaluator;
+import lapwing.forest.CompiledForest;
+import lapwing.forest.ForestParams;
+import lapwing.forest.RandomForestTrainer;
+import lapwing.raster.GridSpec;
+import lapwing.raster.Indices;
+import lapwing.raster.Medians;
+import lapwing.raster.PixelMask;
+import lapwing.raster.PixelType;
+import lapwing.raster.QaMask;
+import lapwing.raster.RasterFile;
+import lapwing.raster.Scene;
+import lapwing.raster.Sensor;
+import lapwing.raster.SurfaceBuilder;
+import lapwing.raster.SyntheticScenes;
+import lapwing.raster.Tile;
+import lapwing.regions.Region;
+import lapwing.regions.ZonalStatistics;
+import lapwing.regions.ZoneIndex;
+
+/**
+ * Fixtures and operations for every stage of the habitat-suitability pipeline, each the local equivalent of a
+ * step of the scripts:
+ *
+ * <pre>
+ * qa_mask           LandsatCollection.apply_masks   QA_PIXEL decoded to a clear-pixel bitset over one scene tile
+ * tc_ndvi           tc_ndvi                         Tasseled Cap and NDVI of one scene tile
+ * median_30d        calculate_metrics               per-pixel median of the four indices over a month +-30 days
+ * remove_na         RemoveNA                        mask a pixel in all bands when masked in any
+ * composite_month   monthly_list (one month)        SurfaceBuilder.build, scenes on disk to surface
+ * composite_series  monthly_list                    SurfaceBuilder.buildMonthly over the scene timeline
+ * forest_train      classifier_df.train             RandomForestTrainer.fit on model_df
+ * forest_score      image.classify                  CompiledForest.score of a tile of pixel vectors
+ * roc_metrics       getROCMetrics / computeAUC      RocEvaluator.evaluate on model_df probabilities
+ * zonal_medians     regional_changes_stats          ZonalStatistics median per region and month
+ * </pre>
+ *
+ * Scenes come from {@link SyntheticScenes} on a {@code size x size} grid, one every 5 days from January 2020;
+ * training rows and pixel vectors come from model_df. Everything is built once, before any stage runs.
+ */
+public final class PipelineStages {
+
+    private static final int EVERY_DAYS = 5;
+    private static final LocalDate FIRST = LocalDate.of(2020, 1, 1);
+    private static final int REGIONS = 15;
+
+    private final List<Benchmark.Stage> stages = new ArrayList<>();
+
+    private PipelineStages() {
+    }
+
+    public List<Benchmark.Stage> stages() {
+        return stages;
+    }
+
+    public static PipelineStages create(Path modelDf, Path workDir, int size, int sceneCount, int trees, long seed,
+                                        ForkJoinPool pool) throws IOException {
+        PipelineStages p = new PipelineStages();
+        GridSpec grid = SyntheticScenes.grid(size, size);
+        List<Scene> scenes = new ArrayList<>();
+        for (Path f : SyntheticScenes.write(workDir.resolve("scenes"), grid, FIRST, sceneCount, EVERY_DAYS, seed)) {
+            scenes.add(Scene.open(f));
+        }
+        int n = size * size;
+        Tile whole = new Tile(0, 0, 0, size, size);
+
+        //------------------------------------------------------------------------------------------------------
+        // Per-scene transforms on the first scene
+        //------------------------------------------------------------------------------------------------------
+        int[][] band = readBands(scenes.get(0), grid, whole);
+        int[] qa = band[Sensor.QA];
+        long[] mask = new long[PixelMask.words(n)];
+        p.stages.add(new Benchmark.Stage("qa_mask", "pixels", n, () -> QaMask.decode(qa, n, QaMask.DEFAULT, mask)));
+        float[][] index = new float[Indices.COUNT][n];
+        p.stages.add(new Benchmark.Stage("tc_ndvi", "pixels", n, () -> {
+            Indices.compute(band, n, index);
+            return index;
+        }));
+
+        //------------------------------------------------------------------------------------------------------
+        // Median of January's window; the stacks are restored before each run because the median sorts them
+        //------------------------------------------------------------------------------------------------------
+        int[] window = SurfaceBuilder.monthWindow(YearMonth.from(FIRST));
+        List<Scene> inWindow = SurfaceBuilder.inWindow(scenes, window[0], window[1]);
+        int depth = inWindow.size();
+        float[][] pristine = new float[Indices.COUNT][n * depth];
+        int[] count = new int[n];
+        for (Scene s : inWindow) {
+            int[][] b = readBands(s, grid, whole);
+            Indices.compute(b, n, index);
+            for (int i = 0; i < n; i++) {
+                if (QaMask.clear(b[Sensor.QA][i], QaMask.DEFAULT)) {
+                    int at = i * depth + count[i]++;
+                    for (int k = 0; k < Indices.COUNT; k++) {
+                        pristine[k][at] = index[k][i];
+                    }
+                }
+            }
+        }
+        float[][] stack = new float[Indices.COUNT][n * depth];
+        float[][] medians = new float[Indices.COUNT + 1][n];
+        p.stages.add(new Benchmark.Stage("median_30d", "pixels", n, () -> {
+            for (int k = 0; k < Indices.COUNT; k++) {
+                System.arraycopy(pristine[k], 0, stack[k], 0, stack[k].length);
+                for (int i = 0; i < n; i++) {
+                    medians[k][i] = Medians.ofRange(stack[k], i * depth, count[i]);
+                }
+            }
+            return medians;
+        }));
+
+        // RemoveNA over the medians plus a Roughness band masked in one corner; repeated runs reach a fixed point
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int i = 0; i < n; i++) {
+            boolean corner = i % size < size / 10 && i / size < size / 10;
+            medians[Indices.COUNT][i] = corner ? Float.NaN : (float) (2 + 3 * rnd.nextDouble());
+        }
+        p.stages.add(new Benchmark.Stage("remove_na", "pixels", n, () -> {
+            SurfaceBuilder.removeNa(medians, n);
+            return medians;
+        }));
+
+        //------------------------------------------------------------------------------------------------------
+        // Surfaces from the scenes on disk
+        //------------------------------------------------------------------------------------------------------
+        SurfaceBuilder builder = new SurfaceBuilder(grid, pool);
+        Path surface = workDir.resolve("surface" + RasterFile.EXTENSION);
+        p.stages.add(new Benchmark.Stage("composite_month", "pixels", n,
+                () -> builder.build(scenes, window[0], window[1], surface, Map.of())));
+        List<YearMonth> months = new ArrayList<>();
+        LocalDate last = FIRST.plusDays((long) (sceneCount - 1) * EVERY_DAYS);
+        for (YearMonth m = YearMonth.from(FIRST); !m.isAfter(YearMonth.from(last)); m = m.plusMonths(1)) {
+            months.add(m);
+        }
+        Path series = Files.createDirectories(workDir.resolve("series"));
+        p.stages.add(new Benchmark.Stage("composite_series", "pixel-months", (long) n * months.size(),
+                () -> builder.buildMonthly(scenes, months,
+                        m -> series.resolve("surface_" + m + RasterFile.EXTENSION))));
+
+        //------------------------------------------------------------------------------------------------------
+        // Forest training, inference and ROC on model_df
+        //------------------------------------------------------------------------------------------------------
+        ModelFrame frame = ModelFrame.load(modelDf, ModelFrame.PREDICTORS);
+        int[] rows = frame.completeRows();
+        RandomForestTrainer trainer = new RandomForestTrainer(ForestParams.defaults().numberOfTrees(trees)
+                .minLeafPopulation(10).seed(seed), pool);
+        p.stages.add(new Benchmark.Stage("forest_train", "rows", rows.length, () -> trainer.fit(frame, rows)));
+
+        CompiledForest compiled = CompiledForest.compile(trainer.fit(frame, rows));
+        String[] names = compiled.predictorNames();
+        float[][] pixels = new float[names.length][n];
+        for (int i = 0; i < n; i++) {
+            int r = rows[rnd.nextInt(rows.length)];
+            for (int j = 0; j < names.length; j++) {
+                pixels[j][i] = (float) (frame.column(names[j])[r] * (1 + 0.05 * (rnd.nextDouble() - 0.5)));
+            }
+        }
+        float[] scores = new float[n];
+        p.stages.add(new Benchmark.Stage("forest_score", "pixels", n, () -> {
+            compiled.score(pixels, 0, n, scores);
+            return scores;
+        }));
+
+        float[][] columns = new float[names.length][];
+        for (int j = 0; j < names.length; j++) {
+            columns[j] = new float[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                columns[j][i] = frame.column(names[j])[rows[i]];
+            }
+        }
+        float[] probability = new float[rows.length];
+        compiled.score(columns, 0, rows.length, probability);
+        byte[] status = new byte[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            status[i] = frame.status()[rows[i]];
+        }
+        p.stages.add(new Benchmark.Stage("roc_metrics", "rows", rows.length,
+                () -> new RocEvaluator(probability, status).evaluate()));
+
+        //------------------------------------------------------------------------------------------------------
+        // Zonal medians: three monthly HSI rasters and regional_changes-like polygons of varied size
+        //------------------------------------------------------------------------------------------------------
+        List<RasterFile> hsi = new ArrayList<>();
+        for (int m = 0; m < 3; m++) {
+            RasterFile r = RasterFile.create(workDir.resolve("hsi_" + m + RasterFile.EXTENSION), grid,
+                    PixelType.FLOAT32, List.of("probability"), Map.of());
+            float[] v = new float[n];
+            for (int i = 0; i < n; i++) {
+                v[i] = (float) (0.2 + 0.2 * Math.sin((i % size + 7 * m) / 17.0) * Math.cos(i / size / 23.0));
+            }
+            r.writeFloats(0, 0, 0, size, size, v);
+            hsi.add(r);
+        }
+        List<Region> regions = new ArrayList<>();
+        for (int z = 0; z < REGIONS; z++) {
+            double cx = grid.x0() + grid.pixelSize() * size * rnd.nextDouble();
+            double cy = grid.y0() - grid.pixelSize() * size * rnd.nextDouble();
+            double radius = grid.pixelSize() * size * (0.02 + 0.15 * rnd.nextDouble());
+            double[] ring = new double[2 * 12];
+            for (int k = 0; k < 12; k++) {
+                double a = 2 * Math.PI * k / 12;
+                ring[2 * k] = cx + radius * Math.cos(a);
+                ring[2 * k + 1] = cy + radius * Math.sin(a);
+            }
+            regions.add(new Region(z, Map.of("region", "r" + z), List.of(ring)));
+        }
+        ZoneIndex zones = ZoneIndex.rasterize(grid, regions);
+        long zonePixels = 0;
+        for (int z = 0; z < zones.zoneCount(); z++) {
+            zonePixels += zones.pixels(z);
+        }
+        ZonalStatistics zonal = new ZonalStatistics(pool).quantiles(0.5);
+        p.stages.add(new Benchmark.Stage("zonal_medians", "zone-pixels", zonePixels * hsi.size(),
+                () -> zonal.compute(zones, hsi)));
+        return p;
+    }
+
+    private static int[][] readBands(Scene scene, GridSpec grid, Tile tile) {
+        int[] offset = scene.offsetIn(grid);
+        int[][] band = new int[Sensor.BANDS.size()][tile.pixels()];
+        for (int b = 0; b < band.length; b++) {
+            scene.read(b, offset, tile, band[b]);
+        }
+        return band;
+    }
+}
@@ -0,0 +1,153 @@
+package lapwing.calibration;
+
+/**
+ * The up-to-{@code k} scenes closest in time to one observation (one group of the R
+ * {@code group_by(unique_id, obs_date, lat, lon)}), kept in a fixed-size max-heap on (date difference, arrival
+ * order).
+ *
+ * <p>Arrival order breaks ties so that, as with {@code slice_min(date_diff, n = 5, with_ties = F)}, the earlier
+ * row wins. All storage is preallocated; windows are reset and reused between groups.
+ */
+final class SceneWindow {
+
+    static final int BANDS = 4; // NDVI, TCB, TCG, TCW
+
+    int obsDay;
+    float lat;
+    float lon;
+
+    private final int k;
+    private final int[] diff;
+    private final long[] seq;
+    private final int[] satDay;
+    private final int[][] value;
+    private int size;
+    private final int[] scratch;
+
+    SceneWindow(int k) {
+        this.k = k;
+        this.diff = new int[k];
+        this.seq = new long[k];
+        this.satDay = new int[k];
+        this.value = new int[BANDS][k];
+        this.scratch = new int[k];
+    }
+
+    void reset(int obsDay, float lat, float lon) {
+        this.obsDay = obsDay;
+        this.lat = lat;
+        this.lon = lon;
+        this.size = 0;
+    }
+
+    boolean sameGroup(int obs, float la, float lo) {
+        return obsDay == obs && Float.compare(lat, la) == 0 && Float.compare(lon, lo) == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Offer one scene; keeps the k smallest (diff, seq)
+    //----------------------------------------------------------------------------------------------------------
+    void offer(int d, long s, int sat, int ndvi, int tcb, int tcg, int tcw) {
+        if (size < k) {
+            int i = size++;
+            set(i, d, s, sat, ndvi, tcb, tcg, tcw);
+            siftUp(i);
+        } else if (less(d, s, diff[0], seq[0])) {
+            set(0, d, s, sat, ndvi, tcb, tcg, tcw);
+            siftDown(0);
+        }
+    }
+
+    private void set(int i, int d, long s, int sat, int ndvi, int tcb, int tcg, int tcw) {
+        diff[i] = d;
+        seq[i] = s;
+        satDay[i] = sat;
+        value[0][i] = ndvi;
+        value[1][i] = tcb;
+        value[2][i] = tcg;
+        value[3][i] = tcw;
+    }
+
+    private static boolean less(int d1, long s1, int d2, long s2) {
+        return d1 < d2 || (d1 == d2 && s1 < s2);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (!less(diff[parent], seq[parent], diff[i], seq[i])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int l = 2 * i + 1;
+            int largest = i;
+            if (l < size && less(diff[largest], seq[largest], diff[l], seq[l])) {
+                largest = l;
+            }
+            if (l + 1 < size && less(diff[largest], seq[largest], diff[l + 1], seq[l + 1])) {
+                largest = l + 1;
+            }
+            if (largest == i) {
+                return;
+            }
+            swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int d = diff[a];
+        diff[a] = diff[b];
+        diff[b] = d;
+        long s = seq[a];
+        seq[a] = seq[b];
+        seq[b] = s;
+        int t = satDay[a];
+        satDay[a] = satDay[b];
+        satDay[b] = t;
+        for (int[] v : value) {
+            t = v[a];
+            v[a] = v[b];
+            v[b] = t;
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Exact median of one band as R's median(): middle value, or mean of the two middle values
+    //----------------------------------------------------------------------------------------------------------
+    double median(int band) {
+        int[] v = value[band];
+        for (int i = 0; i < size; i++) {
+            int x = v[i];
+            int j = i - 1;
+            while (j >= 0 && scratch[j] > x) {
+                scratch[j + 1] = scratch[j];
+                j--;
+            }
+            scratch[j + 1] = x;
+        }
+        int mid = size >> 1;
+        return (size & 1) == 1 ? scratch[mid] : (scratch[mid - 1] + (double) scratch[mid]) / 2;
+    }
+
+    /** Scene date of the closest scene (the first row slice_min would return). */
+    int nearestSatDay() {
+        int best = 0;
+        for (int i = 1; i < size; i++) {
+            if (less(diff[i], seq[i], diff[best], seq[best])) {
+                best = i;
+            }
+        }
+        return satDay[best];
+    }
+}
@@ -0,0 +1,279 @@
+package lapwing.calibration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import lapwing.data.ColumnStore;
+import lapwing.data.Dates;
+
+/**
+ * Streaming version of TimeCalibration_SL_observation_Landsat_img.R: for every observation, the (up to) five
+ * Landsat scenes closest in time and within +/-45 days, reduced to the median NDVI, TCB, TCG and TCW.
+ *
+ * <p>Input is a scene extract in the columnar format ({@code ConvertColumnar --schema scenes|random-points}),
+ * sorted by point id, which is the order Earth Engine exports it in. One pass keeps only the groups of the
+ * current point id open, each in a bounded {@link SceneWindow}, so memory stays flat however many scenes there
+ * are. The rows are cut into chunks at id boundaries, chunks are calibrated in parallel, and their output is
+ * written back in input order.
+ *
+ * <p>Semantics follow the R pipeline: {@code group_by(id, obs_date, lat, lon)}, {@code date_diff = |sat - obs|},
+ * {@code slice_min(date_diff, n = 5, with_ties = F)}, {@code filter(date_diff <= 45)}, then {@code median()}.
+ * Dropping rows beyond 45 days before taking the five smallest gives the same result as the R order and keeps
+ * the window small. Groups with no scene in range are dropped, as {@code filter} drops them in R.
+ */
+public final class TimeCalibration {
+
+    public static final int DEFAULT_MAX_SCENES = 5;
+    public static final int DEFAULT_MAX_DAYS = 45;
+    static final int DEFAULT_CHUNK_ROWS = 1 << 18;
+
+    /** Output columns: the R script's {@code *_median} table, or the model_df_gee.csv layout. */
+    public enum Layout {
+        R_SCRIPT("obs_date,ndvi_median,tcb_median,tcg_median,tcw_median,lat,lon,status"),
+        MODEL_DF("obs_date,sat_date,NDVI,TCB,TCG,TCW,status");
+
+        final String header;
+
+        Layout(String header) {
+            this.header = header;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private int maxScenes = DEFAULT_MAX_SCENES;
+    private int maxDays = DEFAULT_MAX_DAYS;
+    private int chunkRows = DEFAULT_CHUNK_ROWS;
+    private Layout layout = Layout.MODEL_DF;
+
+    public TimeCalibration(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public TimeCalibration maxScenes(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("maxScenes must be >= 1");
+        }
+        this.maxScenes = n;
+        return this;
+    }
+
+    public TimeCalibration maxDays(int days) {
+        if (days < 0) {
+            throw new IllegalArgumentException("maxDays must be >= 0");
+        }
+        this.maxDays = days;
+        return this;
+    }
+
+    public TimeCalibration chunkRows(int rows) {
+        if (rows < 1) {
+            throw new IllegalArgumentException("chunkRows must be >= 1");
+        }
+        this.chunkRows = rows;
+        return this;
+    }
+
+    public TimeCalibration layout(Layout layout) {
+        this.layout = layout;
+        return this;
+    }
+
+    //==========================================================================================================
+    // Run: presence and random-point stores in order (bind_rows), one status per store
+    //==========================================================================================================
+    /** Writes the header and one line per calibrated observation; returns the number of observations. */
+    public long run(List<ColumnStore> stores, List<Integer> status, Writer out) throws IOException {
+        if (stores.size() != status.size()) {
+            throw new IllegalArgumentException("Expected one status per store");
+        }
+        out.write(layout.header);
+        out.write('\n');
+        long written = 0;
+        for (int s = 0; s < stores.size(); s++) {
+            written += run(stores.get(s), status.get(s), out);
+        }
+        out.flush();
+        return written;
+    }
+
+    private long run(ColumnStore store, int status, Writer out) throws IOException {
+        Scenes scenes = new Scenes(store);
+        // Keep a bounded number of chunks in flight so pending output does not grow with the input
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        long written = 0;
+        int from = 0;
+        while (from < scenes.rows || !pending.isEmpty()) {
+            while (from < scenes.rows && pending.size() < window) {
+                int to = scenes.nextBoundary(Math.min(scenes.rows, (long) from + chunkRows));
+                int lo = from;
+                pending.add(pool.submit(() -> calibrate(scenes, lo, to, status)));
+                from = to;
+            }
+            Chunk c = join(pending.poll());
+            out.write(c.text.toString());
+            written += c.groups;
+        }
+        return written;
+    }
+
+    private static Chunk join(Future<Chunk> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calibrating", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException u) {
+                throw u.getCause();
+            }
+            if (cause instanceof RuntimeException r) {
+                throw r;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    //==========================================================================================================
+    // One chunk: rows [from, to) holding whole point ids
+    //==========================================================================================================
+    private Chunk calibrate(Scenes s, int from, int to, int status) {
+        Chunk chunk = new Chunk();
+        List<SceneWindow> open = new ArrayList<>();
+        ArrayDeque<SceneWindow> free = new ArrayDeque<>();
+        int id = from < to ? s.id.get(from) : 0;
+        for (int i = from; i < to; i++) {
+            int rowId = s.id.get(i);
+            if (rowId != id) {
+                if (rowId < id) {
+                    throw new IllegalStateException("Scene rows are not sorted by id (row " + i + ")");
+                }
+                flush(open, free, status, chunk);
+                id = rowId;
+            }
+            int obs = s.obs.get(i);
+            int diff = Math.abs(s.sat.get(i) - obs);
+            if (diff > maxDays) {
+                continue;
+            }
+            float la = s.lat.get(i);
+            float lo = s.lon.get(i);
+            SceneWindow w = null;
+            for (int g = open.size() - 1; g >= 0; g--) {
+                if (open.get(g).sameGroup(obs, la, lo)) {
+                    w = open.get(g);
+                    break;
+                }
+            }
+            if (w == null) {
+                w = free.isEmpty() ? new SceneWindow(maxScenes) : free.pop();
+                w.reset(obs, la, lo);
+                open.add(w);
+            }
+            w.offer(diff, i, s.sat.get(i), s.ndvi.get(i), s.tcb.get(i), s.tcg.get(i), s.tcw.get(i));
+        }
+        flush(open, free, status, chunk);
+        return chunk;
+    }
+
+    // Groups leave summarise() sorted by the grouping keys after id
+    private static final Comparator<SceneWindow> GROUP_ORDER = Comparator.<SceneWindow>comparingInt(w -> w.obsDay)
+            .thenComparing(w -> w.lat, Float::compare)
+            .thenComparing(w -> w.lon, Float::compare);
+
+    private void flush(List<SceneWindow> open, ArrayDeque<SceneWindow> free, int status, Chunk chunk) {
+        if (open.size() > 1) {
+            open.sort(GROUP_ORDER);
+        }
+        StringBuilder sb = chunk.text;
+        for (SceneWindow w : open) {
+            if (layout == Layout.R_SCRIPT) {
+                sb.append(LocalDate.ofEpochDay(w.obsDay));
+            } else {
+                sb.append(Dates.formatShort(w.obsDay)).append(',').append(Dates.formatShort(w.nearestSatDay()));
+            }
+            for (int b = 0; b < SceneWindow.BANDS; b++) {
+                sb.append(',');
+                appendNumber(sb, w.median(b));
+            }
+            if (layout == Layout.R_SCRIPT) {
+                sb.append(',').append(w.lat).append(',').append(w.lon);
+            }
+            sb.append(',').append(status).append('\n');
+            chunk.groups++;
+            free.push(w);
+        }
+        open.clear();
+    }
+
+    /** Whole numbers without a decimal point, halves as {@code x.5}, as R's write.csv prints them. */
+    static void appendNumber(StringBuilder sb, double v) {
+        long whole = (long) v;
+        if (whole == v) {
+            sb.append(whole);
+        } else {
+            sb.append(v);
+        }
+    }
+
+    private static final class Chunk {
+        final StringBuilder text = new StringBuilder();
+        long groups;
+    }
+
+    //==========================================================================================================
+    // Typed views over the mapped scene columns
+    //==========================================================================================================
+    private static final class Scenes {
+
+        final int rows;
+        final IntBuffer id;
+        final IntBuffer obs;
+        final IntBuffer sat;
+        final ShortBuffer ndvi;
+        final ShortBuffer tcb;
+        final ShortBuffer tcg;
+        final ShortBuffer tcw;
+        final FloatBuffer lat;
+        final FloatBuffer lon;
+
+        Scenes(ColumnStore store) {
+            this.rows = store.rows();
+            this.id = store.column("id").ints();
+            this.obs = store.column("obs_date").ints();
+            this.sat = store.column("sat_date").ints();
+            this.ndvi = store.column("NDVI").shorts();
+            this.tcb = store.column("TCB").shorts();
+            this.tcg = store.column("TCG").shorts();
+            this.tcw = store.column("TCW").shorts();
+            this.lat = store.column("lat").floats();
+            this.lon = store.column("lon").floats();
+        }
+
+        /** First row at or after {@code at} that starts a new point id (or the end). */
+        int nextBoundary(long at) {
+            int i = (int) at;
+            if (i >= rows || i == 0) {
+                return i;
+            }
+            int prev = id.get(i - 1);
+            while (i < rows && id.get(i) == prev) {
+                i++;
+            }
+            return i;
+        }
+    }
+}
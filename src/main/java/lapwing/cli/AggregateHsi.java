@@ -0,0 +1,134 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import lapwing.raster.HsiStack;
+import lapwing.raster.RasterFile;
+import lapwing.raster.TemporalAggregator;
+import lapwing.raster.TemporalWindow;
+
+/**
+ * Local {@code yearlyMedianCollection} and {@code caf_*_median}: yearly, decadal and custom-window medians of the
+ * monthly habitat suitability rasters, all from one pass over {@code hsi_YYYY-MM.lwr} or over an
+ * {@link HsiStack} built by {@link StackHsi}.
+ *
+ * <pre>
+ * java lapwing.cli.AggregateHsi (hsi/ | hsi_stack.lws) medians/ [--years 1995..2024] [--no-yearly] \
+ *      [--no-decadal] [--window "Name=1995-01..2024-12[:5,6,7];..."] [--season "Name=5,6,7;..."] [--tile 128] \
+ *      [--threads N]
+ * </pre>
+ *
+ * Yearly medians are written as {@code HSI_year_YYYY.lwr} and the decadal ones as {@code HSI_median_YYYY.lwr}.
+ * {@code --window} adds one median over a span of months, optionally only some calendar months of it;
+ * {@code --season} adds one median per year over the given calendar months ({@code Name_YYYY}). Windows without
+ * any monthly raster are skipped.
+ */
+public final class AggregateHsi {
+
+    private AggregateHsi() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "AggregateHsi <hsi-dir|stack" + HsiStack.EXTENSION + "> <out-dir> [options]";
+        Path hsiDir = Path.of(args.positional(0, usage));
+        Path outDir = Path.of(args.positional(1, usage));
+        HsiStack stack = hsiDir.toString().endsWith(HsiStack.EXTENSION) ? HsiStack.open(hsiDir) : null;
+        List<RasterFile> monthly = stack == null ? monthly(hsiDir) : List.of();
+        String[] years = args.get("years", "1995..2024").split("\\.\\.");
+        int fromYear = Integer.parseInt(years[0]);
+        int toYear = Integer.parseInt(years[years.length - 1]);
+
+        List<TemporalWindow> windows = new ArrayList<>();
+        if (!args.has("no-yearly")) {
+            for (int y = fromYear; y <= toYear; y++) {
+                windows.add(TemporalWindow.year("HSI_year_", y));
+            }
+        }
+        if (!args.has("no-decadal")) {
+            windows.addAll(TemporalWindow.decadal());
+        }
+        for (String spec : specs(args.get("window", ""))) {
+            windows.add(window(spec));
+        }
+        for (String spec : specs(args.get("season", ""))) {
+            int eq = spec.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected Name=months in --season, got " + spec);
+            }
+            windows.addAll(TemporalWindow.seasonal(spec.substring(0, eq) + "_", fromYear, toYear,
+                    months(spec.substring(eq + 1))));
+        }
+        Files.createDirectories(outDir);
+
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            long start = System.nanoTime();
+            TemporalAggregator aggregator = new TemporalAggregator(pool)
+                    .tileSize(args.getInt("tile", TemporalAggregator.DEFAULT_TILE_SIZE));
+            Function<TemporalWindow, Path> out = w -> outDir.resolve(w.name() + RasterFile.EXTENSION);
+            Map<TemporalWindow, RasterFile> written = stack == null ? aggregator.aggregate(monthly, windows, out)
+                    : aggregator.aggregate(stack, windows, out);
+            System.out.printf("%d of %d windows from %d months in %.2f s%n", written.size(), windows.size(),
+                    stack == null ? monthly.size() : stack.months(), (System.nanoTime() - start) / 1e9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<RasterFile> monthly(Path hsiDir) throws IOException {
+        List<RasterFile> monthly = new ArrayList<>();
+        try (Stream<Path> files = Files.list(hsiDir)) {
+            for (Path f : files.filter(p -> p.getFileName().toString().startsWith("hsi_")
+                    && p.toString().endsWith(RasterFile.EXTENSION)).sorted().toList()) {
+                monthly.add(RasterFile.open(f));
+            }
+        }
+        if (monthly.isEmpty()) {
+            throw new IllegalArgumentException("No hsi_*" + RasterFile.EXTENSION + " files in " + hsiDir);
+        }
+        return monthly;
+    }
+
+    private static List<String> specs(String text) {
+        List<String> out = new ArrayList<>();
+        for (String s : text.split(";")) {
+            if (!s.isBlank()) {
+                out.add(s.trim());
+            }
+        }
+        return out;
+    }
+
+    /** {@code Name=FROM..TO[:m,m,...]} with FROM and TO as YYYY-MM and months as 1-12. */
+    static TemporalWindow window(String spec) {
+        int eq = spec.indexOf('=');
+        int dots = spec.indexOf("..");
+        if (eq < 0 || dots < eq) {
+            throw new IllegalArgumentException("Expected Name=YYYY-MM..YYYY-MM[:months] in --window, got " + spec);
+        }
+        int colon = spec.indexOf(':', dots);
+        String to = colon < 0 ? spec.substring(dots + 2) : spec.substring(dots + 2, colon);
+        return new TemporalWindow(spec.substring(0, eq), YearMonth.parse(spec.substring(eq + 1, dots)),
+                YearMonth.parse(to), colon < 0 ? EnumSet.allOf(Month.class) : months(spec.substring(colon + 1)));
+    }
+
+    static EnumSet<Month> months(String list) {
+        EnumSet<Month> months = EnumSet.noneOf(Month.class);
+        for (String m : list.split(",")) {
+            months.add(Month.of(Integer.parseInt(m.trim())));
+        }
+        return months;
+    }
+}
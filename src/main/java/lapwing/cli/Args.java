@@ -0,0 +1,97 @@
+package lapwing.cli;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Tiny command-line parser shared by the entry points: positional arguments plus {@code --name value} options.
+ *
+ * <p>The boolean flags in {@link #FLAGS} never take the next token as their value, so {@code --compare-exact
+ * data.csv} keeps {@code data.csv} as a positional argument; they may still be given as {@code --flag=value}. A
+ * flag forwarded to a pipeline stage ({@code --training.compare-exact}) counts as one too.
+ */
+final class Args {
+
+    static final Set<String> FLAGS = Set.of("append", "compare-exact", "dry-run", "keep-null", "no-decadal",
+            "no-join", "no-permutation", "no-yearly", "seasonal");
+
+    private final List<String> positional = new ArrayList<>();
+    private final Map<String, String> options = new HashMap<>();
+
+    private Args() {
+    }
+
+    static Args parse(String[] argv) {
+        Args a = new Args();
+        for (int i = 0; i < argv.length; i++) {
+            String s = argv[i];
+            if (s.startsWith("--")) {
+                String name = s.substring(2);
+                int eq = name.indexOf('=');
+                if (eq >= 0) {
+                    a.options.put(name.substring(0, eq), name.substring(eq + 1));
+                } else if (!isFlag(name) && i + 1 < argv.length && !argv[i + 1].startsWith("--")) {
+                    a.options.put(name, argv[++i]);
+                } else {
+                    a.options.put(name, "true");
+                }
+            } else {
+                a.positional.add(s);
+            }
+        }
+        return a;
+    }
+
+    private static boolean isFlag(String name) {
+        return FLAGS.contains(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    String positional(int i, String usage) {
+        if (i >= positional.size()) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+        return positional.get(i);
+    }
+
+    int positionalCount() {
+        return positional.size();
+    }
+
+    String get(String name, String fallback) {
+        return options.getOrDefault(name, fallback);
+    }
+
+    int getInt(String name, int fallback) {
+        String v = options.get(name);
+        return v == null ? fallback : Integer.parseInt(v);
+    }
+
+    long getLong(String name, long fallback) {
+        String v = options.get(name);
+        return v == null ? fallback : Long.parseLong(v);
+    }
+
+    double getDouble(String name, double fallback) {
+        String v = options.get(name);
+        return v == null ? fallback : Double.parseDouble(v);
+    }
+
+    boolean has(String name) {
+        return options.containsKey(name);
+    }
+
+    /** Options named {@code prefix + name}, keyed by {@code name}, sorted. */
+    Map<String, String> withPrefix(String prefix) {
+        Map<String, String> out = new TreeMap<>();
+        for (Map.Entry<String, String> e : options.entrySet()) {
+            if (e.getKey().startsWith(prefix) && e.getKey().length() > prefix.length()) {
+                out.put(e.getKey().substring(prefix.length()), e.getValue());
+            }
+        }
+        return out;
+    }
+}
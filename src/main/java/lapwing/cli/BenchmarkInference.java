@@ -0,0 +1,99 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import lapwing.data.ModelFrame;
+import lapwing.forest.CompiledForest;
+import lapwing.forest.RandomForest;
+import lapwing.forest.RandomForestTrainer;
+
+/**
+ * Pixels per second of per-pixel tree walking ({@link RandomForest#predict(float[])}) against blocked scoring of
+ * the compiled forest, on pixel vectors resampled from the training rows.
+ *
+ * <pre>
+ * java lapwing.cli.BenchmarkInference model_df_gee.csv [--pixels 1000000] [--repeats 5] [--trees 150] \
+ *      [--min-leaf 10] [--seed 0] [--threads N]
+ * </pre>
+ *
+ * Both paths run single-threaded so the figures compare the walks, not the thread count. The command fails if
+ * any compiled score differs from the per-pixel one.
+ */
+public final class BenchmarkInference {
+
+    private BenchmarkInference() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "BenchmarkInference <model_df_gee.csv> [options]";
+        Path input = Path.of(args.positional(0, usage));
+        int pixels = args.getInt("pixels", 1_000_000);
+        int repeats = args.getInt("repeats", 5);
+        ModelFrame frame = ModelFrame.load(input, ModelFrame.PREDICTORS);
+
+        RandomForest forest;
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            forest = new RandomForestTrainer(PredictSurfaces.classifierParams(args), pool)
+                    .fit(frame, frame.completeRows());
+        } finally {
+            pool.shutdown();
+        }
+        CompiledForest compiled = CompiledForest.compile(forest);
+
+        //------------------------------------------------------------------------------------------------------
+        // Pixel vectors: training rows drawn with replacement, jittered so leaves are not all revisited
+        //------------------------------------------------------------------------------------------------------
+        int[] rows = frame.completeRows();
+        int[] map = new int[compiled.predictorNames().length];
+        for (int j = 0; j < map.length; j++) {
+            map[j] = frame.indexOf(compiled.predictorNames()[j]);
+        }
+        SplittableRandom rnd = new SplittableRandom(args.getLong("seed", 0));
+        float[][] columns = new float[map.length][pixels];
+        for (int p = 0; p < pixels; p++) {
+            int r = rows[rnd.nextInt(rows.length)];
+            for (int j = 0; j < map.length; j++) {
+                float v = frame.column(map[j])[r];
+                columns[j][p] = (float) (v * (1 + 0.05 * (rnd.nextDouble() - 0.5)));
+            }
+        }
+
+        float[] naive = new float[pixels];
+        float[] fast = new float[pixels];
+        float[] x = new float[map.length];
+        double bestNaive = Double.MAX_VALUE;
+        double bestCompiled = Double.MAX_VALUE;
+        for (int rep = 0; rep < repeats; rep++) {
+            long start = System.nanoTime();
+            for (int p = 0; p < pixels; p++) {
+                for (int j = 0; j < x.length; j++) {
+                    x[j] = columns[j][p];
+                }
+                naive[p] = (float) forest.predict(x);
+            }
+            bestNaive = Math.min(bestNaive, (System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            compiled.score(columns, 0, pixels, fast);
+            bestCompiled = Math.min(bestCompiled, (System.nanoTime() - start) / 1e9);
+        }
+        int mismatches = 0;
+        for (int p = 0; p < pixels; p++) {
+            if (Float.floatToIntBits(naive[p]) != Float.floatToIntBits(fast[p])) {
+                mismatches++;
+            }
+        }
+        System.out.printf("%d trees, %d nodes, %d pixels, best of %d%n", compiled.treeCount(), compiled.nodeCount(),
+                pixels, repeats);
+        System.out.printf("per-pixel walk: %.0f pixels/s%n", pixels / bestNaive);
+        System.out.printf("compiled:       %.0f pixels/s (%.2fx)%n", pixels / bestCompiled, bestNaive / bestCompiled);
+        if (mismatches > 0) {
+            throw new IllegalStateException(mismatches + " compiled scores differ from the per-pixel walk");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import lapwing.bench.Baseline;
+import lapwing.bench.Benchmark;
+import lapwing.bench.PipelineStages;
+
+/**
+ * Throughput and allocation of every pipeline stage (see {@link PipelineStages}), with an optional committed
+ * baseline to compare against.
+ *
+ * <pre>
+ * java lapwing.cli.BenchmarkPipeline model_df_gee.csv [--size 256] [--scenes 24] [--trees 50] [--seed 0] \
+ *      [--only qa_mask,tc_ndvi,...] [--warmup 2] [--iterations 5] [--min-time 1.0] [--work dir] \
+ *      [--baseline benchmarks/baseline.csv] [--save benchmarks/baseline.csv] [--tolerance 0.10] [--threads N]
+ * </pre>
+ *
+ * Each stage gets {@code --warmup} untimed and {@code --iterations} timed iterations of at least {@code --min-time}
+ * seconds. {@code --save} writes the results as a baseline; {@code --baseline} compares against one and exits
+ * with status 1 when a stage lost more than {@code --tolerance} of its throughput beyond run-to-run noise, or
+ * allocates that much more per operation. Fixtures go to {@code --work}, by default a temporary directory that is
+ * removed afterwards.
+ */
+public final class BenchmarkPipeline {
+
+    private BenchmarkPipeline() {
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = Args.parse(argv);
+        String usage = "BenchmarkPipeline <model_df_gee.csv> [options]";
+        Path input = Path.of(args.positional(0, usage));
+        int size = args.getInt("size", 256);
+        int scenes = args.getInt("scenes", 24);
+        int trees = args.getInt("trees", 50);
+        int threads = args.getInt("threads", Runtime.getRuntime().availableProcessors());
+        Set<String> only = args.has("only") ? Set.of(args.get("only", "").split(",")) : null;
+        Benchmark bench = new Benchmark(args.getInt("warmup", 2), args.getInt("iterations", 5),
+                args.getDouble("min-time", 1.0));
+        boolean temporary = !args.has("work");
+        Path work = temporary ? Files.createTempDirectory("lapwing-bench")
+                : Files.createDirectories(Path.of(args.get("work", null)));
+
+        Map<String, String> config = new LinkedHashMap<>();
+        config.put("size", Integer.toString(size));
+        config.put("scenes", Integer.toString(scenes));
+        config.put("trees", Integer.toString(trees));
+        config.put("threads", Integer.toString(threads));
+        config.put("warmup", args.get("warmup", "2"));
+        config.put("iterations", args.get("iterations", "5"));
+        config.put("min_time", args.get("min-time", "1.0"));
+        config.put("java", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        config.put("cores", Integer.toString(Runtime.getRuntime().availableProcessors()));
+
+        List<Benchmark.Result> results = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            PipelineStages stages = PipelineStages.create(input, work, size, scenes, trees, args.getLong("seed", 0),
+                    pool);
+            System.out.printf("Fixtures: %dx%d grid, %d scenes, %d trees, in %.1f s%n", size, size, scenes, trees,
+                    (System.nanoTime() - start) / 1e9);
+            System.out.printf("%-16s %14s %-13s %7s %14s %8s%n", "stage", "throughput", "unit", "error", "alloc/op",
+                    "gc");
+            for (Benchmark.Stage stage : stages.stages()) {
+                if (only != null && !only.contains(stage.name())) {
+                    continue;
+                }
+                Benchmark.Result r = bench.run(stage);
+                results.add(r);
+                System.out.printf("%-16s %14.0f %-13s %6.1f%% %12.0f B %3d/%dms%n", r.stage, r.itemsPerSecond(),
+                        r.unit + "/s", r.errorPercent, r.allocBytesPerOp, r.gcCount, r.gcMillis);
+            }
+        } finally {
+            pool.shutdown();
+            if (temporary) {
+                delete(work);
+            }
+        }
+
+        if (args.has("save")) {
+            Path out = Path.of(args.get("save", null));
+            Baseline.write(out, config, results);
+            System.out.println("Baseline written to " + out);
+        }
+        if (args.has("baseline")) {
+            boolean regressed = false;
+            for (String line : Baseline.compare(Baseline.read(Path.of(args.get("baseline", null))), results,
+                    args.getDouble("tolerance", 0.10))) {
+                System.out.println(line);
+                regressed |= line.startsWith("REGRESSION");
+            }
+            if (regressed) {
+                throw new IllegalStateException("Throughput regressed against " + args.get("baseline", null));
+            }
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
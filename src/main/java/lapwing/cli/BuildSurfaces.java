@@ -0,0 +1,109 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import lapwing.raster.GridSpec;
+import lapwing.raster.QaMask;
+import lapwing.raster.RasterFile;
+import lapwing.raster.Scene;
+import lapwing.raster.SceneCatalog;
+import lapwing.raster.StaticLayer;
+import lapwing.raster.StaticTileCache;
+import lapwing.raster.SurfaceBuilder;
+
+/**
+ * Local {@code monthly_list}: one predictor surface per month, the median of every clear scene from 30 days
+ * before the month to 30 days after it, written as {@code surface_YYYY-MM.lwr}.
+ *
+ * <pre>
+ * java lapwing.cli.BuildSurfaces scenes/ surfaces/ [--roughness roughness.lwr] [--static Name=file,...] \
+ *      [--like grid.lwr] \
+ *      [--from 1995-01] [--to 2024-12] [--tile 128] [--masks clouds,fill,water] [--threads N] \
+ *      [--mode sliding|independent]
+ * </pre>
+ *
+ * Every {@code .lwr} file in the scene directory with {@code date}/{@code sensor} metadata is a scene. Scenes
+ * are found through the directory's {@link SceneCatalog}, which is created or refreshed as needed, and only
+ * those over the output grid and dated within the buffered windows of the series are opened. The output grid is
+ * that of {@code --like}, else of the first static layer, else of the first scene. Static layers are resampled
+ * onto it once per tile and appended after TCB, TCG, TCW and NDVI. Months without any scene in their window are
+ * skipped. The default sliding mode reads each scene once for the whole series;
+ * {@code --mode independent} composites every month on its own, as the GEE script does, with the same result.
+ */
+public final class BuildSurfaces {
+
+    private BuildSurfaces() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "BuildSurfaces <scene-dir> <out-dir> [options]";
+        Path sceneDir = Path.of(args.positional(0, usage));
+        Path outDir = Path.of(args.positional(1, usage));
+        String mode = args.get("mode", "sliding");
+        if (!mode.equals("sliding") && !mode.equals("independent")) {
+            throw new IllegalArgumentException("Expected --mode sliding|independent, got '" + mode + "'. Usage: "
+                    + usage);
+        }
+        SceneCatalog catalog = SceneCatalog.load(sceneDir);
+        if (catalog.size() == 0) {
+            throw new IllegalArgumentException("No scenes in " + sceneDir);
+        }
+        List<StaticLayer> statics = Layers.fromArgs(args);
+        GridSpec grid = Layers.grid(args, statics);
+        if (grid == null) {
+            grid = catalog.entries().get(0).grid();
+        }
+        int tileSize = args.getInt("tile", SurfaceBuilder.DEFAULT_TILE_SIZE);
+        YearMonth from = YearMonth.parse(args.get("from", "1995-01"));
+        YearMonth to = YearMonth.parse(args.get("to", "2024-12"));
+        Files.createDirectories(outDir);
+        // Only scenes over the grid and within the buffered windows of the series are opened
+        List<Scene> scenes = catalog.open(catalog.query(grid, SurfaceBuilder.monthWindow(from)[0],
+                SurfaceBuilder.monthWindow(to)[1]));
+
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            SurfaceBuilder builder = new SurfaceBuilder(grid, pool)
+                    .tileSize(tileSize)
+                    .qaBits(QaMask.bits(Arrays.asList(args.get("masks", "clouds,fill,water").split(","))))
+                    .staticLayers(statics.isEmpty() ? null : StaticTileCache.shared(grid, tileSize, statics));
+            List<YearMonth> months = new ArrayList<>();
+            for (YearMonth m = from; !m.isAfter(to); m = m.plusMonths(1)) {
+                months.add(m);
+            }
+            long start = System.nanoTime();
+            int built = 0;
+            if (mode.equals("sliding")) {
+                built = builder.buildMonthly(scenes, months, m -> outDir.resolve(fileName(m))).size();
+            } else {
+                for (YearMonth m : months) {
+                    int[] window = SurfaceBuilder.monthWindow(m);
+                    if (SurfaceBuilder.inWindow(scenes, window[0], window[1]).isEmpty()) {
+                        continue;
+                    }
+                    builder.build(scenes, window[0], window[1], outDir.resolve(fileName(m)),
+                            Map.of("month", m.toString(), "year", Integer.toString(m.getYear())));
+                    built++;
+                }
+            }
+            System.out.printf("%d monthly surfaces from %d of %d scenes on %s in %.2f s (%d scene tile reads)%n",
+                    built, scenes.size(), catalog.size(), grid, (System.nanoTime() - start) / 1e9,
+                    builder.sceneTileReads());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static String fileName(YearMonth month) {
+        return "surface_" + month + RasterFile.EXTENSION;
+    }
+}
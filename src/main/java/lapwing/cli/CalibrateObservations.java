@@ -0,0 +1,55 @@
+package lapwing.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import lapwing.calibration.TimeCalibration;
+import lapwing.data.ColumnStore;
+
+/**
+ * Local TimeCalibration_SL_observation_Landsat_img.R: median NDVI/TC of the five scenes nearest each
+ * observation within +/-45 days, presences (status 1) followed by random points (status 0).
+ *
+ * <pre>
+ * java lapwing.cli.CalibrateObservations presence.lwc random.lwc model_df.csv \
+ *      [--layout model-df|r-script] [--scenes 5] [--days 45] [--threads N]
+ * </pre>
+ *
+ * Both inputs come from {@link ConvertColumnar} ({@code --schema scenes} and {@code --schema random-points}) and
+ * must be sorted by point id.
+ */
+public final class CalibrateObservations {
+
+    private CalibrateObservations() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "CalibrateObservations <presence.lwc> <random.lwc> <out.csv> [options]";
+        ColumnStore presence = ColumnStore.open(Path.of(args.positional(0, usage)));
+        ColumnStore random = ColumnStore.open(Path.of(args.positional(1, usage)));
+        Path out = Path.of(args.positional(2, usage));
+        TimeCalibration.Layout layout = TimeCalibration.Layout.valueOf(
+                args.get("layout", "model-df").replace('-', '_').toUpperCase(Locale.ROOT));
+
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            long start = System.nanoTime();
+            long n = new TimeCalibration(pool)
+                    .maxScenes(args.getInt("scenes", TimeCalibration.DEFAULT_MAX_SCENES))
+                    .maxDays(args.getInt("days", TimeCalibration.DEFAULT_MAX_DAYS))
+                    .layout(layout)
+                    .run(List.of(presence, random), List.of(1, 0), w);
+            System.out.printf("%d observations from %d scene rows -> %s in %.2f s%n", n,
+                    (long) presence.rows() + random.rows(), out, (System.nanoTime() - start) / 1e9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
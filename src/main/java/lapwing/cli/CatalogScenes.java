@@ -0,0 +1,76 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import lapwing.raster.RasterFile;
+import lapwing.raster.SceneCatalog;
+import lapwing.raster.Sensor;
+
+/**
+ * Creates or refreshes the {@link SceneCatalog} of a scene directory and optionally queries it, the local
+ * {@code filterBounds(roi).filterDate(start, end)} over all five sensors.
+ *
+ * <pre>
+ * java lapwing.cli.CatalogScenes scenes/ [--bounds x0,y0,x1,y1 | --like grid.lwr] [--from 2020-01-01] \
+ *      [--to 2020-03-01]
+ * </pre>
+ *
+ * Prints the scene count per sensor and, when {@code --bounds}, {@code --like}, {@code --from} or {@code --to} is
+ * given, every scene overlapping the box (in the scenes' CRS) and dated in {@code [from, to)}.
+ */
+public final class CatalogScenes {
+
+    private CatalogScenes() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        Path dir = Path.of(args.positional(0, "CatalogScenes <scene-dir> [options]"));
+        long start = System.nanoTime();
+        SceneCatalog catalog = SceneCatalog.load(dir);
+        System.out.printf("%d scenes in %s (catalog loaded in %.1f ms)%n", catalog.size(), dir,
+                (System.nanoTime() - start) / 1e6);
+        if (catalog.size() == 0) {
+            return;
+        }
+        List<SceneCatalog.Entry> all = catalog.entries();
+        Map<Sensor, Integer> counts = new EnumMap<>(Sensor.class);
+        for (SceneCatalog.Entry e : all) {
+            counts.merge(e.sensor(), 1, Integer::sum);
+        }
+        for (Map.Entry<Sensor, Integer> c : counts.entrySet()) {
+            System.out.printf("  %s %6d%n", c.getKey(), c.getValue());
+        }
+        System.out.printf("  %s to %s%n", all.get(0).date(), all.get(all.size() - 1).date());
+
+        if (!(args.has("bounds") || args.has("like") || args.has("from") || args.has("to"))) {
+            return;
+        }
+        int from = args.has("from") ? (int) LocalDate.parse(args.get("from", null)).toEpochDay() : Integer.MIN_VALUE;
+        int to = args.has("to") ? (int) LocalDate.parse(args.get("to", null)).toEpochDay() : Integer.MAX_VALUE;
+        start = System.nanoTime();
+        List<SceneCatalog.Entry> found;
+        if (args.has("like")) {
+            found = catalog.query(RasterFile.open(Path.of(args.get("like", null))).grid(), from, to);
+        } else if (args.has("bounds")) {
+            String[] b = args.get("bounds", null).split(",");
+            if (b.length != 4) {
+                throw new IllegalArgumentException("--bounds needs x0,y0,x1,y1");
+            }
+            found = catalog.query(all.get(0).grid().crs(), Double.parseDouble(b[0]), Double.parseDouble(b[1]),
+                    Double.parseDouble(b[2]), Double.parseDouble(b[3]), from, to);
+        } else {
+            found = catalog.between(from, to);
+        }
+        double micros = (System.nanoTime() - start) / 1e3;
+        for (SceneCatalog.Entry e : found) {
+            System.out.println(e);
+        }
+        System.out.printf("%d scenes match (%.0f us)%n", found.size(), micros);
+    }
+}
@@ -0,0 +1,65 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import lapwing.data.ColumnSpec;
+import lapwing.data.ColumnStore;
+import lapwing.data.ColumnStoreWriter;
+
+/**
+ * Converts model_df_gee.csv or the raw per-scene Landsat extracts into the binary columnar format read by
+ * {@link ColumnStore}.
+ *
+ * <pre>
+ * java lapwing.cli.ConvertColumnar --schema model  model_df_gee.lwc model_df_gee.csv
+ * java lapwing.cli.ConvertColumnar --schema scenes presence.lwc TasseledCap_All_Landsat_1990_2024.csv
+ * java lapwing.cli.ConvertColumnar --schema random-points random.lwc Random_points/*.csv
+ * </pre>
+ *
+ * The scene schemas drop rows where NDVI, TCB, TCG or TCW is -9999, as the R script does after reading.
+ */
+public final class ConvertColumnar {
+
+    private ConvertColumnar() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "ConvertColumnar --schema model|scenes|random-points <out.lwc> <in.csv>...";
+        Path out = Path.of(args.positional(0, usage));
+        args.positional(1, usage);
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.positionalCount(); i++) {
+            inputs.add(Path.of(args.positional(i, usage)));
+        }
+
+        String schema = args.get("schema", "model");
+        ColumnStoreWriter writer;
+        switch (schema) {
+            case "model":
+                writer = new ColumnStoreWriter(ColumnSpec.modelFrame());
+                break;
+            case "scenes":
+                writer = new ColumnStoreWriter(ColumnSpec.sceneExtract(false, "unique_id"));
+                break;
+            case "random-points":
+                // Random-point extracts carry coordinates only in .geo and identify points by 'id'
+                writer = new ColumnStoreWriter(ColumnSpec.sceneExtract(true, "id"));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown schema '" + schema + "'. Usage: " + usage);
+        }
+        if (!schema.equals("model")) {
+            writer.dropRowsWhere(List.of("NDVI", "TCB", "TCG", "TCW"), -9999);
+        }
+
+        long start = System.nanoTime();
+        long rows = writer.convert(inputs, out);
+        ColumnStore store = ColumnStore.open(out);
+        System.out.printf("%d rows, columns %s -> %s in %.2f s%n", rows, store.columnNames(), out,
+                (System.nanoTime() - start) / 1e9);
+    }
+}
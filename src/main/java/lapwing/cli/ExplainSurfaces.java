@@ -0,0 +1,153 @@
+package lapwing.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import lapwing.data.ModelFrame;
+import lapwing.forest.ForestParams;
+import lapwing.forest.RandomForest;
+import lapwing.forest.RandomForestTrainer;
+import lapwing.forest.TreeShap;
+import lapwing.raster.GridSpec;
+import lapwing.raster.RasterFile;
+import lapwing.raster.ShapPredictor;
+import lapwing.raster.TemporalAggregator;
+import lapwing.regions.Region;
+import lapwing.regions.Shapefile;
+import lapwing.regions.ZonalStatistics;
+import lapwing.regions.ZoneIndex;
+
+/**
+ * Why suitability changes where it does: trains {@code classifier_df} as {@link PredictSurfaces} does and writes
+ * exact TreeSHAP contribution maps {@code shap_YYYY-MM.lwr} (one band per predictor) for every monthly surface,
+ * optionally averaged per {@code regional_changes} region and year.
+ *
+ * <pre>
+ * java lapwing.cli.ExplainSurfaces model_df_gee.csv surfaces/ shap/ \
+ *      [--step 1] [--tile 64] [--regions regional_changes/regional_changes.shp --table shap_regions.csv] \
+ *      [--scale 1000] [--ids regional_changes/regional_changes_stats_II.csv] \
+ *      [--trees 150] [--min-leaf 10] [--vars-per-split 0] [--train-fraction 0.7] [--seed 0] [--threads N]
+ * </pre>
+ *
+ * TreeSHAP costs trees x leaves x depth^2 per pixel, so {@code --step n} explains one pixel per n x n block on a
+ * grid n times coarser. The regional table has one row per region and year: the region fields, the year, the
+ * number of pixels pooled over the year's months, the forest's expected value and the mean contribution of
+ * each predictor. As in {@link RegionalStats}, the regions are EPSG:4326 and so must be the surfaces.
+ */
+public final class ExplainSurfaces {
+
+    private ExplainSurfaces() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "ExplainSurfaces <model_df_gee.csv> <surface-dir> <out-dir> [options]";
+        Path input = Path.of(args.positional(0, usage));
+        Path surfaceDir = Path.of(args.positional(1, usage));
+        Path outDir = Path.of(args.positional(2, usage));
+        ForestParams params = PredictSurfaces.classifierParams(args);
+        ModelFrame frame = ModelFrame.load(input, ModelFrame.PREDICTORS);
+        int[] training = PredictSurfaces.trainingRows(frame.completeRows(), args.getDouble("train-fraction", 0.7),
+                params.seed());
+        List<RasterFile> surfaces = PredictSurfaces.loadSurfaces(surfaceDir);
+        if (surfaces.isEmpty()) {
+            throw new IllegalArgumentException("No surface_*" + RasterFile.EXTENSION + " files in " + surfaceDir);
+        }
+        if (args.has("regions") != args.has("table")) {
+            throw new IllegalArgumentException("--regions and --table go together");
+        }
+        Files.createDirectories(outDir);
+
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            long start = System.nanoTime();
+            RandomForest forest = new RandomForestTrainer(params, pool).fit(frame, training);
+            TreeShap shap = TreeShap.of(forest);
+            System.out.printf("Trained %d trees on %d rows in %.2f s; expected value %.4f%n", forest.treeCount(),
+                    training.length, (System.nanoTime() - start) / 1e9, shap.expectedValue());
+
+            start = System.nanoTime();
+            ShapPredictor predictor = new ShapPredictor(shap, pool)
+                    .tileSize(args.getInt("tile", ShapPredictor.DEFAULT_TILE_SIZE))
+                    .step(args.getInt("step", 1));
+            Map<RasterFile, RasterFile> maps = predictor.explain(surfaces, s -> outDir.resolve(
+                    s.file().getFileName().toString().replaceFirst("^surface_", "shap_")));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long pixels = 0;
+            for (RasterFile m : maps.values()) {
+                pixels += m.grid().pixels();
+            }
+            System.out.printf("Explained %d surfaces (%d pixels) in %.2f s, %.1f pixels/s%n", surfaces.size(), pixels,
+                    seconds, pixels / seconds);
+
+            if (args.has("regions")) {
+                List<RasterFile> images = new ArrayList<>();
+                for (RasterFile m : maps.values()) {
+                    images.add(RasterFile.open(m.file()));
+                }
+                List<Region> regions = Shapefile.read(Path.of(args.get("regions", null)));
+                GridSpec grid = RegionalStats.zoneGrid(images.get(0).grid(),
+                        args.has("scale") ? args.getDouble("scale", 0) : 0);
+                String[] ids = RegionalStats.ids(regions,
+                        args.has("ids") ? Path.of(args.get("ids", null)) : null);
+                ZonalStatistics.BandSums[][] sums = new ZonalStatistics(pool)
+                        .sums(ZoneIndex.rasterize(grid, regions), images);
+                writeTable(Path.of(args.get("table", null)), shap, images, regions, ids, sums);
+                for (RasterFile image : images) {
+                    image.close();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Months pooled per year, then one row per (year, region) in shapefile record order
+    //----------------------------------------------------------------------------------------------------------
+    private static void writeTable(Path out, TreeShap shap, List<RasterFile> images, List<Region> regions,
+                                   String[] ids, ZonalStatistics.BandSums[][] sums) throws IOException {
+        Map<Integer, ZonalStatistics.BandSums[]> years = new TreeMap<>();
+        for (int i = 0; i < images.size(); i++) {
+            int year = TemporalAggregator.monthOf(images.get(i)).getYear();
+            ZonalStatistics.BandSums[] y = years.get(year);
+            if (y == null) {
+                years.put(year, sums[i].clone());
+            } else {
+                for (int z = 0; z < y.length; z++) {
+                    y[z] = y[z].merge(sums[i][z]);
+                }
+            }
+        }
+        String[] names = shap.predictorNames();
+        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            w.write("country,id,region,season,year,count," + ShapPredictor.EXPECTED_VALUE);
+            for (String name : names) {
+                w.write(",shap_" + name);
+            }
+            w.write("\n");
+            for (Map.Entry<Integer, ZonalStatistics.BandSums[]> e : years.entrySet()) {
+                for (Region r : regions) {
+                    ZonalStatistics.BandSums s = e.getValue()[r.index()];
+                    StringBuilder sb = new StringBuilder();
+                    sb.append(r.attribute("country")).append(',').append(ids[r.index()]).append(',')
+                            .append(r.attribute("region")).append(',').append(r.attribute("season")).append(',')
+                            .append(e.getKey()).append(',').append(s.count(0)).append(',').append(shap.expectedValue());
+                    for (int j = 0; j < names.length; j++) {
+                        sb.append(',').append(s.mean(j));
+                    }
+                    w.write(sb.append('\n').toString());
+                }
+            }
+        }
+        System.out.printf("%d regions x %d years written to %s%n", regions.size(), years.size(), out);
+    }
+}
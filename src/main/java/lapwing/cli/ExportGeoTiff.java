@@ -0,0 +1,75 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import lapwing.raster.GeoTiffWriter;
+import lapwing.raster.RasterFile;
+
+/**
+ * Local {@code Export.image.toDrive} for the decadal medians: writes {@code HSI_median_YYYY.lwr} as
+ * {@code HSI_YYYY.tif}, tiled and compressed with overviews, for {@code Plotting_habitat_suitability.R}.
+ *
+ * <pre>
+ * java lapwing.cli.ExportGeoTiff medians/ annual_suitability_maps/ [--prefix HSI_median_] [--band 0] \
+ *      [--tile 256] [--deflate 6] [--overviews -1] [--threads N]
+ * </pre>
+ *
+ * The first argument is a directory (every {@code .lwr} whose name starts with {@code --prefix}) or a single
+ * raster. The prefix is replaced by {@code HSI_} in the output name, matching the export descriptions.
+ */
+public final class ExportGeoTiff {
+
+    private ExportGeoTiff() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "ExportGeoTiff <medians-dir|raster.lwr> <out-dir> [options]";
+        Path input = Path.of(args.positional(0, usage));
+        Path outDir = Path.of(args.positional(1, usage));
+        String prefix = args.get("prefix", "HSI_median_");
+        List<Path> rasters = new ArrayList<>();
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.list(input)) {
+                rasters.addAll(files.filter(p -> p.getFileName().toString().startsWith(prefix)
+                        && p.toString().endsWith(RasterFile.EXTENSION)).sorted().toList());
+            }
+        } else {
+            rasters.add(input);
+        }
+        if (rasters.isEmpty()) {
+            throw new IllegalArgumentException("No " + prefix + "*" + RasterFile.EXTENSION + " files in " + input);
+        }
+        Files.createDirectories(outDir);
+
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            GeoTiffWriter writer = new GeoTiffWriter(pool)
+                    .tileSize(args.getInt("tile", GeoTiffWriter.DEFAULT_TILE_SIZE))
+                    .deflateLevel(args.getInt("deflate", 6))
+                    .overviews(args.getInt("overviews", -1));
+            for (Path p : rasters) {
+                long start = System.nanoTime();
+                RasterFile r = RasterFile.open(p);
+                String name = p.getFileName().toString();
+                name = name.substring(0, name.length() - RasterFile.EXTENSION.length());
+                if (name.startsWith(prefix)) {
+                    name = "HSI_" + name.substring(prefix.length());
+                }
+                Path out = outDir.resolve(name + ".tif");
+                long bytes = writer.write(r, args.getInt("band", 0), out);
+                System.out.printf("%s: %dx%d -> %s, %d bytes (%.1f%% of raw) in %.2f s%n", p.getFileName(),
+                        r.grid().width(), r.grid().height(), out, bytes,
+                        100.0 * bytes / (4.0 * r.grid().pixels()), (System.nanoTime() - start) / 1e9);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package lapwing.cli;
+
+import java.util.Locale;
+
+import lapwing.data.FoldAssignment;
+import lapwing.data.ModelFrame;
+
+/**
+ * Folds named on the command line: {@code --folds k}, {@code --fold-mode stratified|blocks} with
+ * {@code --block-km} for spatial blocks, and {@code --buffer-km} for buffered leave-out on top of either mode.
+ */
+final class Folds {
+
+    private Folds() {
+    }
+
+    static FoldAssignment fromArgs(Args args, ModelFrame frame, int[] rows, long seed) {
+        int k = args.getInt("folds", 5);
+        String mode = args.get("fold-mode", "stratified").toLowerCase(Locale.ROOT);
+        FoldAssignment folds;
+        switch (mode) {
+            case "stratified":
+                folds = FoldAssignment.stratified(frame, rows, k, seed);
+                break;
+            case "blocks":
+                folds = FoldAssignment.spatialBlocks(frame, rows, k, args.getDouble("block-km", 50), seed);
+                break;
+            default:
+                throw new IllegalArgumentException("Expected --fold-mode stratified|blocks, got '" + mode + "'");
+        }
+        if (args.has("buffer-km")) {
+            folds = folds.withBuffer(frame, args.getDouble("buffer-km", 0));
+        }
+        return folds;
+    }
+
+    /** Prints presences/absences per fold and the training rows each buffer removed. */
+    static void print(FoldAssignment folds, ModelFrame frame) {
+        byte[] status = frame.status();
+        for (int f = 0; f < folds.folds(); f++) {
+            int presences = 0;
+            int[] validation = folds.validationRows(f);
+            for (int r : validation) {
+                presences += status[r];
+            }
+            System.out.printf("  fold %d: %d validation (%d presence, %d absence), %d training", f,
+                    validation.length, presences, validation.length - presences, folds.trainingRows(f).length);
+            System.out.println(folds.bufferedRows(f) > 0 ? ", " + folds.bufferedRows(f) + " within buffer dropped"
+                    : "");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lapwing.data.Csv;
+import lapwing.regions.RegionalTable;
+
+/**
+ * Loads exported {@code regional_changes_stats_*.csv} tables into a {@link RegionalTable} and/or writes its
+ * geometry-free CSV view.
+ *
+ * <pre>
+ * java lapwing.cli.ImportRegionalStats table/ [regional_changes/regional_changes_stats_I.csv ...] \
+ *      [--view regional_changes_stats.csv]
+ * </pre>
+ *
+ * Regions are keyed by the feature id in {@code system:index}; the {@code .geo} polygon, where a file has one,
+ * is stored once in the dictionary. Rows whose (region, year) is already in the table are skipped, so importing
+ * the same files again adds nothing.
+ */
+public final class ImportRegionalStats {
+
+    private ImportRegionalStats() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "ImportRegionalStats <table-dir> [exported.csv ...] [--view out.csv]";
+        Path dir = Path.of(args.positional(0, usage));
+        RegionalTable table = RegionalTable.open(dir, List.of("median"));
+        long start = System.nanoTime();
+        int read = 0;
+        List<RegionalTable.Row> rows = new ArrayList<>();
+        for (int i = 1; i < args.positionalCount(); i++) {
+            Path csv = Path.of(args.positional(i, usage));
+            List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+            String[] header = Csv.split(lines.get(0));
+            int index = Csv.indexOf(header, "system:index");
+            int year = Csv.indexOf(header, "year");
+            int median = Csv.indexOf(header, "median");
+            int geo = Csv.indexOf(header, ".geo");
+            if (index < 0 || year < 0 || median < 0) {
+                throw new IllegalArgumentException(csv + " lacks system:index, year or median");
+            }
+            for (String line : lines.subList(1, lines.size())) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] cells = Csv.split(line);
+                String key = cells[index].substring(cells[index].indexOf('_') + 1);
+                Map<String, String> attributes = new LinkedHashMap<>();
+                for (String field : RegionalTable.FIELDS) {
+                    int c = Csv.indexOf(header, field);
+                    attributes.put(field, c < 0 ? "" : cells[c]);
+                }
+                table.putRegion(key, attributes, geo < 0 ? null : cells[geo]);
+                rows.add(new RegionalTable.Row(key, (int) Double.parseDouble(cells[year]),
+                        new double[]{Csv.parseFloat(cells[median])}));
+                read++;
+            }
+        }
+        int written = table.append(rows);
+        System.out.printf("%d rows read, %d appended (%d already stored) to %s in %.2f s%n", read, written,
+                read - written, dir, (System.nanoTime() - start) / 1e9);
+        if (args.has("view")) {
+            table.writeCsv(Path.of(args.get("view", null)));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import lapwing.data.FoldAssignment;
+import lapwing.data.ModelFrame;
+import lapwing.eval.ProbabilityTable;
+import lapwing.eval.RocEvaluator;
+import lapwing.forest.ColumnEncoding;
+import lapwing.forest.ForestParams;
+import lapwing.forest.RandomForest;
+import lapwing.forest.RandomForestTrainer;
+
+/**
+ * Local version of the {@code allFoldResults} block: stratified k-fold training on model_df_gee.csv and export of
+ * the validation probabilities in the same layout as {@code KFold_RF_Validation_Probabilities*.csv}.
+ *
+ * <pre>
+ * java lapwing.cli.KFoldValidation model_df_gee.csv KFold_RF_Validation_Probabilities.csv \
+ *      [--folds 5] [--trees 200] [--min-leaf 3] [--vars-per-split 0] [--seed 0] [--threads N] \
+ *      [--split-mode exact|histogram] [--compare-exact] [--tolerance 0.01] \
+ *      [--fold-mode stratified|blocks] [--block-km 50] [--buffer-km km]
+ * </pre>
+ *
+ * Spatial blocks and the buffer need lat/lon columns (e.g. a table written by {@code SamplePoints}); the folds
+ * printed before training show how each class is spread and how many training rows the buffer removed.
+ *
+ * With {@code --compare-exact} the histogram run is repeated with exact splits on the same folds and the command
+ * fails if the two cross-validated AUCs differ by more than the tolerance.
+ */
+public final class KFoldValidation {
+
+    private KFoldValidation() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "KFoldValidation <model_df_gee.csv> <out.csv> [options]";
+        Path input = Path.of(args.positional(0, usage));
+        Path output = Path.of(args.positional(1, usage));
+
+        ForestParams params = ForestParams.defaults()
+                .numberOfTrees(args.getInt("trees", 200))
+                .minLeafPopulation(args.getInt("min-leaf", 3))
+                .variablesPerSplit(args.getInt("vars-per-split", 0))
+                .seed(args.getLong("seed", 0))
+                .splitMode(ForestParams.SplitMode.valueOf(args.get("split-mode", "exact").toUpperCase(Locale.ROOT)));
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+
+        //------------------------------------------------------------------------------------------------------
+        // Load predictors; Roughness is only present once it has been sampled onto the table
+        //------------------------------------------------------------------------------------------------------
+        ModelFrame frame = ModelFrame.load(input, ModelFrame.PREDICTORS);
+        if (frame.predictorCount() < ModelFrame.PREDICTORS.size()) {
+            System.out.println("Training on " + String.join(",", frame.predictorNames())
+                    + " (missing predictors are not columns of " + input.getFileName() + ")");
+        }
+        int[] rows = frame.completeRows();
+        FoldAssignment folds = Folds.fromArgs(args, frame, rows, params.seed());
+        Folds.print(folds, frame);
+        int k = folds.folds();
+
+        try {
+            long start = System.nanoTime();
+            Result result = crossValidate(new RandomForestTrainer(params, pool), frame, folds);
+            System.out.printf("%s: %d folds x %d trees on %d rows in %.2f s, AUC %.4f%n", params.splitMode(), k,
+                    params.numberOfTrees(), rows.length, (System.nanoTime() - start) / 1e9, result.auc());
+            result.table().write(output);
+
+            //--------------------------------------------------------------------------------------------------
+            // Accuracy-vs-exact check for the histogram mode
+            //--------------------------------------------------------------------------------------------------
+            if (args.has("compare-exact") && params.splitMode() != ForestParams.SplitMode.EXACT) {
+                ForestParams exact = params.splitMode(ForestParams.SplitMode.EXACT);
+                start = System.nanoTime();
+                Result reference = crossValidate(new RandomForestTrainer(exact, pool), frame, folds);
+                double diff = Math.abs(result.auc() - reference.auc());
+                double tolerance = args.getDouble("tolerance", 0.01);
+                System.out.printf("EXACT: %.2f s, AUC %.4f; |difference| %.4f (tolerance %.4f)%n",
+                        (System.nanoTime() - start) / 1e9, reference.auc(), diff, tolerance);
+                if (diff > tolerance) {
+                    throw new IllegalStateException("Histogram AUC outside tolerance of exact AUC");
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Train per fold and classify the held-out rows, fold by fold like the flattened GEE collection
+    //----------------------------------------------------------------------------------------------------------
+    static Result crossValidate(RandomForestTrainer trainer, ModelFrame frame, FoldAssignment folds) {
+        ColumnEncoding encoding = trainer.encode(frame);
+        int n = 0;
+        for (int f = 0; f < folds.folds(); f++) {
+            n += folds.validationRows(f).length;
+        }
+        int[] fold = new int[n];
+        int[] row = new int[n];
+        float[] prob = new float[n];
+        int at = 0;
+        for (int f = 0; f < folds.folds(); f++) {
+            RandomForest forest = trainer.fit(frame, encoding, folds.trainingRows(f));
+            int[] validation = folds.validationRows(f);
+            float[] p = forest.predict(frame, validation);
+            for (int i = 0; i < validation.length; i++, at++) {
+                fold[at] = f;
+                row[at] = validation[i];
+                prob[at] = p[i];
+            }
+        }
+        byte[] status = new byte[n];
+        String[] index = new String[n];
+        for (int i = 0; i < n; i++) {
+            status[i] = frame.status()[row[i]];
+            index[i] = fold[i] + "_" + row[i];
+        }
+        ProbabilityTable table = new ProbabilityTable(index, prob, status);
+        return new Result(table, RocEvaluator.of(table).evaluate().auc());
+    }
+
+    static final class Result {
+        final ProbabilityTable table;
+        final double auc;
+
+        Result(ProbabilityTable table, double auc) {
+            this.table = table;
+            this.auc = auc;
+        }
+
+        ProbabilityTable table() {
+            return table;
+        }
+
+        double auc() {
+            return auc;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import lapwing.raster.GridSpec;
+import lapwing.raster.RasterFile;
+import lapwing.raster.StaticLayer;
+import lapwing.raster.StaticTileCache;
+
+/**
+ * Static layers named on the command line: {@code --roughness file} and {@code --static Name=file,Name=file}, in
+ * that order.
+ */
+final class Layers {
+
+    private Layers() {
+    }
+
+    static List<StaticLayer> fromArgs(Args args) throws IOException {
+        List<StaticLayer> layers = new ArrayList<>();
+        if (args.has("roughness")) {
+            layers.add(StaticLayer.open("Roughness", Path.of(args.get("roughness", null))));
+        }
+        if (args.has("static")) {
+            for (String spec : args.get("static", null).split(",")) {
+                int eq = spec.indexOf('=');
+                if (eq <= 0) {
+                    throw new IllegalArgumentException("Expected --static Name=file, got '" + spec + "'");
+                }
+                layers.add(StaticLayer.open(spec.substring(0, eq), Path.of(spec.substring(eq + 1))));
+            }
+        }
+        return layers;
+    }
+
+    /**
+     * The grid static layers are resampled onto: that of {@code --like}, else of the first layer, else null. Both
+     * the surface builder and the point sampler use it, so they share one {@link StaticTileCache}.
+     */
+    static GridSpec grid(Args args, List<StaticLayer> layers) throws IOException {
+        if (args.has("like")) {
+            return RasterFile.open(Path.of(args.get("like", null))).grid();
+        }
+        return layers.isEmpty() ? null : layers.get(0).raster().grid();
+    }
+}
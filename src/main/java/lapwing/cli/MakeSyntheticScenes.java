@@ -0,0 +1,37 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import lapwing.raster.GridSpec;
+import lapwing.raster.RasterFile;
+import lapwing.raster.SyntheticScenes;
+
+/**
+ * Writes synthetic Landsat scenes and a Roughness layer, for running the raster tools without Earth Engine.
+ *
+ * <pre>
+ * java lapwing.cli.MakeSyntheticScenes scenes/ [--width 512] [--height 512] [--scenes 24] [--every 8] \
+ *      [--start 2020-01-01] [--seed 0]
+ * </pre>
+ *
+ * Scenes go to {@code scenes/<sensor>_<yyyymmdd>.lwr}; the Roughness layer to {@code scenes/roughness.lwr}.
+ */
+public final class MakeSyntheticScenes {
+
+    private MakeSyntheticScenes() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        Path dir = Path.of(args.positional(0, "MakeSyntheticScenes <dir> [options]"));
+        GridSpec grid = SyntheticScenes.grid(args.getInt("width", 512), args.getInt("height", 512));
+        long seed = args.getLong("seed", 0);
+        List<Path> scenes = SyntheticScenes.write(dir, grid, LocalDate.parse(args.get("start", "2020-01-01")),
+                args.getInt("scenes", 24), args.getInt("every", 8), seed);
+        SyntheticScenes.writeRoughness(dir.resolve("roughness" + RasterFile.EXTENSION), grid, seed);
+        System.out.printf("%d scenes and roughness%s on %s -> %s%n", scenes.size(), RasterFile.EXTENSION, grid, dir);
+    }
+}
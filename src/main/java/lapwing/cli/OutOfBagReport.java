@@ -0,0 +1,105 @@
+package lapwing.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import lapwing.data.ModelFrame;
+import lapwing.eval.ProbabilityTable;
+import lapwing.forest.ForestParams;
+import lapwing.forest.OutOfBag;
+import lapwing.forest.RandomForest;
+import lapwing.forest.RandomForestTrainer;
+
+/**
+ * Single-run validation and the {@code classifier_df.explain()} block: trains {@code classifier_df} once and
+ * writes the out-of-bag probability of every training row (in the {@code KFold_RF_Validation_Probabilities}
+ * layout, so {@code RocReport} reads it) plus a per-predictor importance table.
+ *
+ * <pre>
+ * java lapwing.cli.OutOfBagReport model_df_gee.csv OOB_Probabilities.csv \
+ *      [--importance importance.csv] [--no-permutation] [--train-fraction 1.0] \
+ *      [--trees 150] [--min-leaf 10] [--vars-per-split 0] [--seed 0] [--split-mode exact|histogram] [--threads N]
+ * </pre>
+ *
+ * The importance table holds the summed Gini decrease ({@code explain().importance}) and the permutation
+ * importance, the OOB AUC lost when the predictor is shuffled.
+ */
+public final class OutOfBagReport {
+
+    private OutOfBagReport() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "OutOfBagReport <model_df_gee.csv> <out.csv> [options]";
+        Path input = Path.of(args.positional(0, usage));
+        Path output = Path.of(args.positional(1, usage));
+        ForestParams params = PredictSurfaces.classifierParams(args);
+        ModelFrame frame = ModelFrame.load(input, ModelFrame.PREDICTORS);
+        int[] training = PredictSurfaces.trainingRows(frame.completeRows(), args.getDouble("train-fraction", 1.0),
+                params.seed());
+
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            long start = System.nanoTime();
+            RandomForestTrainer trainer = new RandomForestTrainer(params, pool);
+            OutOfBag oob = trainer.fitOutOfBag(frame, trainer.encode(frame), training);
+            System.out.printf("Trained %d trees on %d rows in %.2f s; OOB AUC %.4f%n", params.numberOfTrees(),
+                    training.length, (System.nanoTime() - start) / 1e9, oob.auc());
+            writeProbabilities(oob, output);
+
+            if (!args.has("no-permutation")) {
+                start = System.nanoTime();
+                double[] permutation = oob.permutationImportance();
+                System.out.printf("Permutation importance in %.2f s%n", (System.nanoTime() - start) / 1e9);
+                RandomForest forest = oob.forest();
+                String[] names = forest.predictorNames();
+                double[] gini = forest.importance();
+                for (int j = 0; j < names.length; j++) {
+                    System.out.printf("  %-10s gini %10.2f  AUC decrease %.4f%n", names[j], gini[j], permutation[j]);
+                }
+                if (args.has("importance")) {
+                    writeImportance(names, gini, permutation, Path.of(args.get("importance", null)));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Rows no tree left out have no OOB probability and are not written
+    private static void writeProbabilities(OutOfBag oob, Path out) throws IOException {
+        float[] prob = oob.probability();
+        int[] rows = oob.rows();
+        String[] index = new String[prob.length];
+        float[] p = new float[prob.length];
+        byte[] status = new byte[prob.length];
+        int n = 0;
+        for (int i = 0; i < prob.length; i++) {
+            if (!Float.isNaN(prob[i])) {
+                index[n] = "oob_" + rows[i];
+                p[n] = prob[i];
+                status[n++] = oob.status()[i];
+            }
+        }
+        if (n < prob.length) {
+            System.out.println((prob.length - n) + " rows were in every bag and have no OOB probability");
+        }
+        new ProbabilityTable(Arrays.copyOf(index, n), Arrays.copyOf(p, n), Arrays.copyOf(status, n)).write(out);
+    }
+
+    private static void writeImportance(String[] names, double[] gini, double[] permutation, Path out)
+            throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            w.write("predictor,gini,permutation_auc_decrease\n");
+            for (int j = 0; j < names.length; j++) {
+                w.write(names[j] + "," + gini[j] + "," + permutation[j] + "\n");
+            }
+        }
+    }
+}
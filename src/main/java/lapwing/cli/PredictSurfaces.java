@@ -0,0 +1,179 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import lapwing.data.ModelFrame;
+import lapwing.data.SeasonRule;
+import lapwing.forest.CompiledForest;
+import lapwing.forest.ForestParams;
+import lapwing.forest.OutOfBag;
+import lapwing.forest.RandomForest;
+import lapwing.forest.RandomForestTrainer;
+import lapwing.raster.HabitatPredictor;
+import lapwing.raster.RasterFile;
+
+/**
+ * Local {@code classifiedCollection_df}: trains {@code classifier_df} on the training split of model_df and
+ * classifies every monthly predictor surface into a habitat suitability raster {@code hsi_YYYY-MM.lwr}.
+ *
+ * <pre>
+ * java lapwing.cli.PredictSurfaces model_df_gee.csv surfaces/ hsi/ \
+ *      [--trees 150] [--min-leaf 10] [--vars-per-split 0] [--train-fraction 0.7] [--seed 0] \
+ *      [--split-mode exact|histogram] [--seasonal | --seasons Br=4,5,6,7;Wn=11,12,1,2;Mg=3,8,9,10] \
+ *      [--tile 256] [--threads N]
+ * </pre>
+ *
+ * The defaults are those of {@code classifier_df}, trained on {@code randomColumn('random') < 0.7}. Every
+ * {@code surface_*.lwr} in the surface directory is scored; all months and tiles run in parallel.
+ *
+ * <p>{@code --seasonal} also trains one seasonal classifier per season of the default {@link SeasonRule} on the
+ * training rows observed in its months; {@code --seasons RULE} does the same for a custom rule and must be given
+ * one. All models share the column encoding and are grown in one pass of the trainer, and each surface is scored
+ * in one pass into bands {@code probability}, {@code probability_Br}, and so on. The OOB AUC is only reported for
+ * the single all-season model.
+ */
+public final class PredictSurfaces {
+
+    private PredictSurfaces() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "PredictSurfaces <model_df_gee.csv> <surface-dir> <out-dir> [options]";
+        Path input = Path.of(args.positional(0, usage));
+        Path surfaceDir = Path.of(args.positional(1, usage));
+        Path outDir = Path.of(args.positional(2, usage));
+        ForestParams params = classifierParams(args);
+        ModelFrame frame = ModelFrame.load(input, ModelFrame.PREDICTORS);
+        int[] training = trainingRows(frame.completeRows(), args.getDouble("train-fraction", 0.7), params.seed());
+        List<RasterFile> surfaces = loadSurfaces(surfaceDir);
+        if (surfaces.isEmpty()) {
+            throw new IllegalArgumentException("No surface_*" + RasterFile.EXTENSION + " files in " + surfaceDir);
+        }
+        Files.createDirectories(outDir);
+
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            long start = System.nanoTime();
+            RandomForestTrainer trainer = new RandomForestTrainer(params, pool);
+            HabitatPredictor predictor;
+            String rule = seasonRule(args);
+            if (rule != null) {
+                predictor = new HabitatPredictor(fitSeasons(trainer, frame, training, rule), pool);
+                System.out.printf("Trained %d models in %.2f s%n", predictor.bands().size(),
+                        (System.nanoTime() - start) / 1e9);
+            } else {
+                OutOfBag oob = trainer.fitOutOfBag(frame, trainer.encode(frame), training);
+                CompiledForest compiled = CompiledForest.compile(oob.forest());
+                System.out.printf("Trained %d trees (%d nodes) on %d rows, predictors %s, in %.2f s; OOB AUC %.4f%n",
+                        compiled.treeCount(), compiled.nodeCount(), training.length,
+                        String.join(",", compiled.predictorNames()), (System.nanoTime() - start) / 1e9, oob.auc());
+                predictor = new HabitatPredictor(compiled, pool);
+            }
+
+            start = System.nanoTime();
+            predictor
+                    .tileSize(args.getInt("tile", HabitatPredictor.DEFAULT_TILE_SIZE))
+                    .predict(surfaces, s -> outDir.resolve(s.file().getFileName().toString()
+                            .replaceFirst("^surface_", "hsi_")));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long pixels = 0;
+            for (RasterFile s : surfaces) {
+                pixels += (long) s.grid().width() * s.grid().height();
+            }
+            System.out.printf("Classified %d surfaces (%d pixels) in %.2f s, %.0f pixels/s%n", surfaces.size(),
+                    pixels, seconds, pixels / seconds);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** The rule of {@code --seasons}, the default one for {@code --seasonal}, or null for the all-season model. */
+    static String seasonRule(Args args) {
+        if (args.has("seasons")) {
+            String rule = args.get("seasons", null);
+            if (rule.equals("true")) {
+                throw new IllegalArgumentException("--seasons needs a rule such as " + SeasonRule.DEFAULT
+                        + "; use --seasonal for the default one");
+            }
+            return rule;
+        }
+        return args.has("seasonal") ? SeasonRule.DEFAULT : null;
+    }
+
+    /** All-season and seasonal forests, keyed by output band. */
+    static Map<String, CompiledForest> fitSeasons(RandomForestTrainer trainer, ModelFrame frame, int[] training,
+                                                  String rule) {
+        SeasonRule seasons = SeasonRule.parse(rule);
+        List<String> bands = new ArrayList<>(List.of(HabitatPredictor.BAND));
+        List<int[]> rows = new ArrayList<>(List.of(training));
+        for (String season : seasons.names()) {
+            bands.add(HabitatPredictor.BAND + "_" + season);
+            rows.add(seasons.rows(frame, training, season));
+        }
+        RandomForest[] forests = trainer.fitAll(frame, trainer.encode(frame), rows.toArray(new int[0][]));
+        Map<String, CompiledForest> models = new LinkedHashMap<>();
+        byte[] status = frame.status();
+        for (int m = 0; m < forests.length; m++) {
+            CompiledForest compiled = CompiledForest.compile(forests[m]);
+            int presences = 0;
+            for (int r : rows.get(m)) {
+                presences += status[r];
+            }
+            System.out.printf("  %-16s %6d rows (%d presences), %d trees, %d nodes%n", bands.get(m),
+                    rows.get(m).length, presences, compiled.treeCount(), compiled.nodeCount());
+            models.put(bands.get(m), compiled);
+        }
+        return models;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // classifier_df and its training split
+    //----------------------------------------------------------------------------------------------------------
+    static ForestParams classifierParams(Args args) {
+        return ForestParams.defaults()
+                .numberOfTrees(args.getInt("trees", 150))
+                .minLeafPopulation(args.getInt("min-leaf", 10))
+                .variablesPerSplit(args.getInt("vars-per-split", 0))
+                .seed(args.getLong("seed", 0))
+                .splitMode(ForestParams.SplitMode.valueOf(args.get("split-mode", "exact").toUpperCase(Locale.ROOT)));
+    }
+
+    /** Rows whose uniform draw is below {@code fraction}, like {@code randomColumn('random') < 0.7}. */
+    static int[] trainingRows(int[] rows, double fraction, long seed) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("train-fraction must be in (0, 1]");
+        }
+        SplittableRandom rnd = new SplittableRandom(seed);
+        int[] out = new int[rows.length];
+        int n = 0;
+        for (int r : rows) {
+            if (rnd.nextDouble() < fraction) {
+                out[n++] = r;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    static List<RasterFile> loadSurfaces(Path dir) throws IOException {
+        List<RasterFile> surfaces = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : files.filter(p -> p.getFileName().toString().startsWith("surface_")
+                    && p.toString().endsWith(RasterFile.EXTENSION)).sorted().toList()) {
+                surfaces.add(RasterFile.open(f));
+            }
+        }
+        return surfaces;
+    }
+}
@@ -0,0 +1,288 @@
+package lapwing.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import lapwing.data.Csv;
+import lapwing.raster.GridSpec;
+import lapwing.raster.RasterFile;
+import lapwing.regions.Region;
+import lapwing.regions.RegionalTable;
+import lapwing.regions.Shapefile;
+import lapwing.regions.ZonalStatistics;
+import lapwing.regions.ZoneIndex;
+
+/**
+ * Local {@code regional_changes_stats}: per-region statistics of every yearly median image, written as one table
+ * instead of the five hand-split exports {@code regional_changes_stats_I.csv} ... {@code _V.csv}.
+ *
+ * <pre>
+ * java lapwing.cli.RegionalStats medians/ regional_changes/regional_changes.shp regional_changes_stats.csv \
+ *      [--scale 1000] [--quantiles 0.25,0.75] [--ids regional_changes/regional_changes_stats_II.csv] \
+ *      [--compare regional_changes/regional_changes_stats_I.csv,...] [--table regional_table/] [--threads N]
+ * </pre>
+ *
+ * Every {@code HSI_year_YYYY.lwr} in the directory is one year. The polygons are rasterized once at
+ * {@code --scale} metres (converted to degrees on EPSG:4326 grids) over the first image's extent; without it
+ * they are rasterized on the image grid itself. Images must be in the CRS of the polygons (EPSG:4326).
+ *
+ * <p>The first columns match the exported CSVs ({@code system:index,country,id,median,region,season,year}),
+ * followed by {@code mean}, one {@code pNN} column per quantile and {@code count}. Rows are ordered by year,
+ * then by shapefile record, like the exports. {@code system:index} is {@code <year index>_<feature id>} with
+ * the feature id in 20 hex digits; Earth Engine numbers the uploaded asset's features differently from the
+ * shapefile, so {@code --ids} takes them from an exported table (its first 15 rows are one per record, in
+ * record order). {@code --compare} matches the exported tables by (record, year) and reports the largest
+ * median difference.
+ *
+ * <p>With {@code --table}, results are appended to a {@link RegionalTable} instead: years already stored for
+ * every region are not recomputed, and the CSV output is the table's full geometry-free view.
+ */
+public final class RegionalStats {
+
+    // Metres per degree at the equator, as Earth Engine converts a scale for EPSG:4326
+    private static final double METRES_PER_DEGREE = 111319.49079327357;
+
+    private RegionalStats() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "RegionalStats <medians-dir> <regions.shp> <out.csv> [options]";
+        Path medianDir = Path.of(args.positional(0, usage));
+        Path shp = Path.of(args.positional(1, usage));
+        Path output = Path.of(args.positional(2, usage));
+
+        List<RasterFile> images = new ArrayList<>();
+        try (Stream<Path> files = Files.list(medianDir)) {
+            for (Path f : files.filter(p -> p.getFileName().toString().startsWith("HSI_year_")
+                    && p.toString().endsWith(RasterFile.EXTENSION)).sorted().toList()) {
+                RasterFile r = RasterFile.open(f);
+                if (r.metadata("year") == null) {
+                    throw new IllegalArgumentException(f + " has no year metadata");
+                }
+                images.add(r);
+            }
+        }
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("No HSI_year_*" + RasterFile.EXTENSION + " files in " + medianDir);
+        }
+        images.sort(Comparator.comparingInt(r -> Integer.parseInt(r.metadata("year"))));
+        List<Region> regions = Shapefile.read(shp);
+        GridSpec grid = zoneGrid(images.get(0).grid(), args.has("scale") ? args.getDouble("scale", 0) : 0);
+        String[] ids = ids(regions, args.has("ids") ? Path.of(args.get("ids", null)) : null);
+        double[] quantiles = parseList(args.get("quantiles", "0.25,0.75"));
+
+        RegionalTable table = null;
+        if (args.has("table")) {
+            table = RegionalTable.open(Path.of(args.get("table", null)), statistics(quantiles));
+            for (Region r : regions) {
+                table.putRegion(ids[r.index()], attributes(r), r.geoJson());
+            }
+            RegionalTable t = table;
+            images.removeIf(img -> {
+                int year = Integer.parseInt(img.metadata("year"));
+                return regions.stream().allMatch(r -> t.contains(ids[r.index()], year));
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            long start = System.nanoTime();
+            ZoneIndex zones = ZoneIndex.rasterize(grid, regions);
+            ZonalStatistics.Stats[][] stats = new ZonalStatistics(pool).quantiles(quantiles).compute(zones, images);
+            if (table == null) {
+                write(output, images, regions, ids, quantiles, stats);
+            } else {
+                int appended = table.append(rows(images, regions, ids, stats));
+                table.writeCsv(output);
+                System.out.printf("%d rows appended to the table%n", appended);
+            }
+            System.out.printf("%d regions x %d years on %s in %.2f s%n", regions.size(), images.size(), grid,
+                    (System.nanoTime() - start) / 1e9);
+            if (args.has("compare")) {
+                compare(args.get("compare", ""), images, regions.size(), stats);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Zone grid: the image grid, or the same extent at the requested scale
+    //----------------------------------------------------------------------------------------------------------
+    static GridSpec zoneGrid(GridSpec image, double scaleMetres) {
+        if (!image.crs().isEmpty() && !image.crs().equals("EPSG:4326")) {
+            throw new IllegalArgumentException("Images are in " + image.crs()
+                    + "; regions are EPSG:4326 and are not reprojected");
+        }
+        if (scaleMetres <= 0) {
+            return image;
+        }
+        double px = scaleMetres / METRES_PER_DEGREE;
+        int w = Math.max(1, (int) Math.ceil(image.width() * image.pixelSize() / px));
+        int h = Math.max(1, (int) Math.ceil(image.height() * image.pixelSize() / px));
+        return new GridSpec(w, h, image.x0(), image.y0(), px, image.crs());
+    }
+
+    /** GEE feature ids per record: from the first rows of an exported table, else the record number. */
+    static String[] ids(List<Region> regions, Path exported) throws IOException {
+        String[] ids = new String[regions.size()];
+        for (int z = 0; z < ids.length; z++) {
+            ids[z] = String.format("%020x", z);
+        }
+        if (exported != null) {
+            List<String> lines = Files.readAllLines(exported, StandardCharsets.UTF_8);
+            int col = Csv.indexOf(Csv.split(lines.get(0)), "system:index");
+            if (col < 0 || lines.size() <= ids.length) {
+                throw new IllegalArgumentException(exported + " has no system:index for " + ids.length + " rows");
+            }
+            for (int z = 0; z < ids.length; z++) {
+                String index = Csv.split(lines.get(z + 1))[col];
+                ids[z] = index.substring(index.indexOf('_') + 1);
+            }
+        }
+        return ids;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Table rows: median, mean, quantiles, count
+    //----------------------------------------------------------------------------------------------------------
+    static List<String> statistics(double[] quantiles) {
+        List<String> names = new ArrayList<>(List.of("median", "mean"));
+        for (double q : quantiles) {
+            names.add(quantileName(q));
+        }
+        names.add(RegionalTable.COUNT);
+        return names;
+    }
+
+    private static List<RegionalTable.Row> rows(List<RasterFile> images, List<Region> regions, String[] ids,
+                                                ZonalStatistics.Stats[][] stats) {
+        List<RegionalTable.Row> rows = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            int year = Integer.parseInt(images.get(i).metadata("year"));
+            for (int z = 0; z < regions.size(); z++) {
+                ZonalStatistics.Stats s = stats[i][z];
+                int q = s.quantileCount();
+                double[] v = new double[q + 3];
+                v[0] = s.median();
+                v[1] = s.mean();
+                for (int k = 0; k < q; k++) {
+                    v[k + 2] = s.quantile(k);
+                }
+                v[q + 2] = s.count();
+                rows.add(new RegionalTable.Row(ids[z], year, v));
+            }
+        }
+        return rows;
+    }
+
+    private static Map<String, String> attributes(Region r) {
+        Map<String, String> a = new HashMap<>();
+        for (String field : RegionalTable.FIELDS) {
+            a.put(field, r.attribute(field));
+        }
+        return a;
+    }
+
+    private static String quantileName(double q) {
+        return "p" + String.format(Locale.ROOT, "%02d", Math.round(q * 100));
+    }
+
+    private static void write(Path output, List<RasterFile> images, List<Region> regions, String[] ids,
+                              double[] quantiles, ZonalStatistics.Stats[][] stats) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            StringBuilder header = new StringBuilder("system:index,country,id,median,region,season,year,mean");
+            for (double q : quantiles) {
+                header.append(',').append(quantileName(q));
+            }
+            w.write(header.append(",count\n").toString());
+            for (int i = 0; i < images.size(); i++) {
+                String year = images.get(i).metadata("year");
+                for (int z = 0; z < regions.size(); z++) {
+                    Region r = regions.get(z);
+                    ZonalStatistics.Stats s = stats[i][z];
+                    StringBuilder line = new StringBuilder();
+                    line.append(i).append('_').append(ids[z]).append(',')
+                            .append(r.attribute("country")).append(',')
+                            .append(r.attribute("id")).append(',')
+                            .append(number(s.median())).append(',')
+                            .append(r.attribute("region")).append(',')
+                            .append(r.attribute("season")).append(',')
+                            .append(year).append(',')
+                            .append(number(s.mean()));
+                    for (int k = 0; k < quantiles.length; k++) {
+                        line.append(',').append(number(s.quantile(k)));
+                    }
+                    w.write(line.append(',').append(s.count()).append('\n').toString());
+                }
+            }
+        }
+    }
+
+    // Float precision, like the exported medians of float images; masked regions are empty cells
+    private static String number(double v) {
+        return Double.isNaN(v) ? "" : Float.toString((float) v);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Comparison with the exported tables, matched by (record, year)
+    //----------------------------------------------------------------------------------------------------------
+    private static void compare(String files, List<RasterFile> images, int zones, ZonalStatistics.Stats[][] stats)
+            throws IOException {
+        if (images.isEmpty()) {
+            // Every year was already in --table: nothing new to compare
+            System.out.println("No years computed, nothing to compare");
+            return;
+        }
+        Map<Integer, Integer> imageOfYear = new HashMap<>();
+        for (int i = 0; i < images.size(); i++) {
+            imageOfYear.put(Integer.parseInt(images.get(i).metadata("year")), i);
+        }
+        int matched = 0;
+        int missing = 0;
+        double maxDiff = 0;
+        for (String f : files.split(",")) {
+            List<String> lines = Files.readAllLines(Path.of(f.trim()), StandardCharsets.UTF_8);
+            String[] header = Csv.split(lines.get(0));
+            int yearCol = Csv.indexOf(header, "year");
+            int medianCol = Csv.indexOf(header, "median");
+            for (int l = 1; l < lines.size(); l++) {
+                String[] cells = Csv.split(lines.get(l));
+                int year = (int) Double.parseDouble(cells[yearCol]);
+                Integer i = imageOfYear.get(year);
+                // Rows come in blocks of one row per record for each year
+                int z = (l - 1) % zones;
+                if (i == null) {
+                    missing++;
+                    continue;
+                }
+                double expected = Csv.parseFloat(cells[medianCol]);
+                maxDiff = Math.max(maxDiff, Math.abs(expected - stats[i][z].median()));
+                matched++;
+            }
+        }
+        System.out.printf("Compared %d exported rows (%d for years not computed): max |median difference| %.6g%n",
+                matched, missing, maxDiff);
+    }
+
+    private static double[] parseList(String text) {
+        String[] parts = text.split(",");
+        double[] out = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            out[i] = Double.parseDouble(parts[i].trim());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,56 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import lapwing.eval.ProbabilityTable;
+import lapwing.eval.RocEvaluator;
+import lapwing.eval.RocResult;
+
+/**
+ * Offline {@code getROCMetrics} / {@code computeAUC}: reads one or more {@code KFold_RF_Validation_Probabilities*}
+ * exports, writes the exact ROC curve and prints AUC, PR-AUC, TSS and kappa with bootstrap intervals.
+ *
+ * <pre>
+ * java lapwing.cli.RocReport ROC_Curve.csv KFold_RF_Validation_Probabilities*.csv \
+ *      [--bootstrap 1000] [--level 0.95] [--seed 0] [--threads N]
+ * </pre>
+ */
+public final class RocReport {
+
+    private RocReport() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "RocReport <ROC_Curve.csv> <probabilities.csv>... [options]";
+        Path curve = Path.of(args.positional(0, usage));
+        args.positional(1, usage);
+        Path[] inputs = new Path[args.positionalCount() - 1];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = Path.of(args.positional(i + 1, usage));
+        }
+
+        ProbabilityTable table = ProbabilityTable.read(inputs);
+        RocEvaluator evaluator = RocEvaluator.of(table);
+        RocResult roc = evaluator.evaluate();
+        roc.writeCurve(curve);
+        System.out.println(table.size() + " predictions: " + roc);
+
+        int replicates = args.getInt("bootstrap", 1000);
+        if (replicates > 0) {
+            ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+            try {
+                RocResult.Intervals ci = evaluator.bootstrap(replicates, args.getDouble("level", 0.95),
+                        args.getLong("seed", 0), pool);
+                for (int k = 0; k < RocResult.METRICS.length; k++) {
+                    System.out.printf("%-6s %.4f  %.0f%% CI [%.4f, %.4f]%n", RocResult.METRICS[k], roc.metric(k),
+                            ci.level() * 100, ci.lower(k), ci.upper(k));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
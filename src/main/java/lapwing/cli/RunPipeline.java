@@ -0,0 +1,173 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import lapwing.pipeline.Pipeline;
+import lapwing.pipeline.Stage;
+import lapwing.pipeline.StageCache;
+
+/**
+ * The whole workflow as a memoised DAG, so that changing a hyperparameter reruns only the stages it affects:
+ *
+ * <pre>
+ * calibration     CalibrateObservations   presence + random points -> model_df.csv       (with --presence)
+ * roughness_join  SamplePoints            model_df.csv + Roughness -> model_df.csv        (with --roughness)
+ * training        KFoldValidation         folds and k-fold training -> validation probabilities
+ * composites      BuildSurfaces           scenes (+ Roughness) -> surface_YYYY-MM.lwr
+ * classification  PredictSurfaces         model_df.csv + surfaces -> hsi_YYYY-MM.lwr
+ * yearly_medians  AggregateHsi            hsi -> HSI_year_YYYY.lwr, HSI_median_YYYY.lwr
+ * zonal_stats     RegionalStats           yearly medians + regions -> regional_changes_stats.csv (with --regions)
+ * </pre>
+ *
+ * <pre>
+ * java lapwing.cli.RunPipeline work/ --scenes scenes/ (--model-df model_df_gee.csv | --presence presence.lwc \
+ *      --random random.lwc) [--roughness roughness.lwr] [--no-join] [--regions regional_changes.shp] \
+ *      [--from 1995-01] [--to 2024-12] [--cache-gb 20] [--dry-run] [--threads N] [--STAGE.OPTION value ...]
+ * </pre>
+ *
+ * {@code --STAGE.OPTION value} passes {@code --OPTION value} to that stage's command, e.g.
+ * {@code --classification.min-leaf 5} or {@code --training.trees 300} (boolean flags go bare, e.g.
+ * {@code --training.compare-exact}); these options and the content of the
+ * input files make up each stage's cache key (see {@link Pipeline}), {@code --threads} does not. Outputs live
+ * in {@code work/cache}, bounded by {@code --cache-gb} with least recently used entries evicted, and
+ * {@code work/STAGE} links to the current output of each stage. {@code --no-join} skips sampling Roughness onto
+ * the points when the table already has it (or has no lat/lon). {@code --dry-run} prints which stages would
+ * run. Folds are drawn inside the training stage from its {@code fold-mode}, {@code folds} and {@code seed}
+ * options, so they are part of its key rather than a stage of their own.
+ */
+public final class RunPipeline {
+
+    static final String TABLE = "model_df.csv";
+
+    private RunPipeline() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "RunPipeline <work-dir> --scenes dir (--model-df csv | --presence lwc --random lwc) [options]";
+        Path work = Files.createDirectories(Path.of(args.positional(0, usage)));
+        if (!args.has("scenes") || !(args.has("model-df") || args.has("presence") && args.has("random"))) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+        String threads = args.get("threads", null);
+        StageCache cache = new StageCache(work.resolve("cache"),
+                (long) (args.getDouble("cache-gb", 20) * (1L << 30)));
+        Pipeline pipeline = new Pipeline(cache);
+
+        //------------------------------------------------------------------------------------------------------
+        // The points table: calibrated here or given, then joined with Roughness
+        //------------------------------------------------------------------------------------------------------
+        String table = null;
+        if (args.has("presence") && args.has("random")) {
+            pipeline.add(new Stage("calibration", (out, in, p) -> CalibrateObservations.main(argv(p, threads,
+                    in.get("presence").toString(), in.get("random").toString(), out.resolve(TABLE).toString())))
+                    .input("presence", Path.of(args.get("presence", null)))
+                    .input("random", Path.of(args.get("random", null)))
+                    .params(args.withPrefix("calibration.")));
+            table = "calibration";
+        }
+        Path roughness = args.has("roughness") ? Path.of(args.get("roughness", null)) : null;
+        if (roughness != null && !args.has("no-join")) {
+            String from = table;
+            pipeline.add(upstreamTable(new Stage("roughness_join", (out, in, p) -> SamplePoints.main(argv(p, threads,
+                    table(in, from), out.resolve(TABLE).toString(), "--roughness=" + in.get("roughness")))), from,
+                    args)
+                    .input("roughness", roughness)
+                    .params(args.withPrefix("roughness_join.")));
+            table = "roughness_join";
+        }
+        String points = table;
+        pipeline.add(upstreamTable(new Stage("training", (out, in, p) -> KFoldValidation.main(argv(p, threads,
+                table(in, points), out.resolve("KFold_RF_Validation_Probabilities.csv").toString()))), points, args)
+                .params(args.withPrefix("training.")));
+
+        //------------------------------------------------------------------------------------------------------
+        // Rasters: composites, classification, yearly medians and zonal statistics
+        //------------------------------------------------------------------------------------------------------
+        Stage composites = new Stage("composites", (out, in, p) -> {
+            List<String> fixed = new ArrayList<>(List.of(in.get("scenes").toString(), out.toString()));
+            if (in.containsKey("roughness")) {
+                fixed.add("--roughness=" + in.get("roughness"));
+            }
+            BuildSurfaces.main(argv(p, threads, fixed.toArray(new String[0])));
+        })
+                .input("scenes", Path.of(args.get("scenes", null)), "*.lwr")
+                .param("from", args.get("from", "1995-01"))
+                .param("to", args.get("to", "2024-12"))
+                .params(args.withPrefix("composites."));
+        if (roughness != null) {
+            composites.input("roughness", roughness);
+        }
+        pipeline.add(composites);
+        pipeline.add(upstreamTable(new Stage("classification", (out, in, p) -> PredictSurfaces.main(argv(p, threads,
+                table(in, points), in.get("composites").toString(), out.toString()))), points, args)
+                .after("composites")
+                .params(args.withPrefix("classification.")));
+        pipeline.add(new Stage("yearly_medians", (out, in, p) -> AggregateHsi.main(argv(p, threads,
+                in.get("classification").toString(), out.toString())))
+                .after("classification")
+                .params(args.withPrefix("yearly_medians.")));
+        if (args.has("regions")) {
+            Path shp = Path.of(args.get("regions", null)).toAbsolutePath();
+            String base = shp.getFileName().toString().replaceFirst("\\.shp$", "");
+            pipeline.add(new Stage("zonal_stats", (out, in, p) -> RegionalStats.main(argv(p, threads,
+                    in.get("yearly_medians").toString(), shp.toString(),
+                    out.resolve("regional_changes_stats.csv").toString())))
+                    .after("yearly_medians")
+                    .input("regions", shp.getParent(), base + ".*")
+                    .params(args.withPrefix("zonal_stats.")));
+        }
+
+        //------------------------------------------------------------------------------------------------------
+        // Run (or plan) and report
+        //------------------------------------------------------------------------------------------------------
+        boolean dryRun = args.has("dry-run");
+        List<Pipeline.Outcome> outcomes = dryRun ? pipeline.plan() : pipeline.run();
+        System.out.printf("%n%-16s %-12s %-8s %9s %10s%n", "stage", "key", dryRun ? "cached" : "result", "seconds",
+                "size");
+        for (Pipeline.Outcome o : outcomes) {
+            System.out.printf("%-16s %-12s %-8s %9.2f %10s%n", o.stage, o.key.substring(0, 12),
+                    dryRun ? (o.hit ? "yes" : "no") : (o.hit ? "hit" : "miss"), o.seconds,
+                    o.bytes < 0 ? "-" : megabytes(o.bytes));
+            if (!dryRun) {
+                Path link = work.resolve(o.stage);
+                Files.deleteIfExists(link);
+                Files.createSymbolicLink(link, work.toAbsolutePath().relativize(o.output.toAbsolutePath()));
+            }
+        }
+        System.out.printf("Cache %s of %s in %s%n", megabytes(cache.size()), megabytes(cache.maxBytes()),
+                cache.directory());
+        for (Map.Entry<String, long[]> c : pipeline.counts().entrySet()) {
+            System.out.printf("  %-16s %5d hits %5d misses%n", c.getKey(), c.getValue()[0], c.getValue()[1]);
+        }
+    }
+
+    /** Makes {@code stage} read the points table from {@code from}, or from {@code --model-df} when null. */
+    private static Stage upstreamTable(Stage stage, String from, Args args) {
+        return from == null ? stage.input("model_df", Path.of(args.get("model-df", null))) : stage.after(from);
+    }
+
+    private static String table(Map<String, Path> inputs, String from) {
+        return (from == null ? inputs.get("model_df") : inputs.get(from).resolve(TABLE)).toString();
+    }
+
+    private static String[] argv(Map<String, String> params, String threads, String... positional) {
+        List<String> argv = new ArrayList<>(List.of(positional));
+        for (Map.Entry<String, String> p : params.entrySet()) {
+            argv.add("--" + p.getKey() + "=" + p.getValue());
+        }
+        if (threads != null) {
+            argv.add("--threads=" + threads);
+        }
+        return argv.toArray(new String[0]);
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / 1048576.0);
+    }
+}
@@ -0,0 +1,112 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import lapwing.data.ModelFrame;
+import lapwing.raster.GridSpec;
+import lapwing.raster.PointSampler;
+import lapwing.raster.StaticLayer;
+import lapwing.raster.StaticTileCache;
+import lapwing.raster.SurfaceBuilder;
+
+/**
+ * Local {@code addValues}: adds static covariates (Roughness from Geomorpho90m tiles, or any other layer) to
+ * the training points in bulk, then drops points with a null value as {@code ee.Filter.notNull} does.
+ *
+ * <pre>
+ * java lapwing.cli.SamplePoints model_df_gee.csv model_df_roughness.csv --roughness roughness.lwr \
+ *      [--static Name=file,...] [--like grid.lwr] [--tile 128] [--keep-null] [--threads N]
+ * </pre>
+ *
+ * The input must have lat/lon columns; layers must be in geographic coordinates (EPSG:4326), like
+ * Geomorpho90m. Layers are sampled on the grid {@code BuildSurfaces} resamples them onto (that of {@code --like},
+ * else of the first layer) through the same shared tile cache, so with the same {@code --like} and
+ * {@code --tile} a run in the same JVM reuses the tiles the surfaces were built from, and the other way round.
+ */
+public final class SamplePoints {
+
+    private SamplePoints() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "SamplePoints <model_df_gee.csv> <out.csv> --roughness file [--static Name=file,...]";
+        Path input = Path.of(args.positional(0, usage));
+        Path output = Path.of(args.positional(1, usage));
+        List<StaticLayer> layers = Layers.fromArgs(args);
+        if (layers.isEmpty()) {
+            throw new IllegalArgumentException("No layers given. Usage: " + usage);
+        }
+        ModelFrame frame = ModelFrame.load(input, ModelFrame.PREDICTORS);
+        if (!frame.hasCoordinates()) {
+            throw new IllegalArgumentException(input + " has no lat/lon columns to sample at");
+        }
+        double[] x = new double[frame.rows()];
+        double[] y = new double[frame.rows()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = frame.lon()[i];
+            y[i] = frame.lat()[i];
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            long start = System.nanoTime();
+            // The layers on the surface grid, from the same cache BuildSurfaces joins them from, so training
+            // points see exactly the values the surfaces carry
+            GridSpec grid = Layers.grid(args, layers);
+            for (StaticLayer layer : layers) {
+                String crs = layer.raster().grid().crs();
+                if (!crs.equals(grid.crs())) {
+                    throw new IllegalArgumentException(layer.name() + " is in " + crs + ", not " + grid.crs());
+                }
+            }
+            if (!grid.crs().isEmpty() && !grid.crs().equals("EPSG:4326")) {
+                throw new IllegalArgumentException("Layers are in " + grid.crs()
+                        + "; points are lon/lat, so layers must be EPSG:4326");
+            }
+            StaticTileCache cache = StaticTileCache.shared(grid, args.getInt("tile", SurfaceBuilder.DEFAULT_TILE_SIZE),
+                    layers);
+            PointSampler.Result r = new PointSampler(pool).sample(cache, x, y);
+            boolean[] keep = new boolean[frame.rows()];
+            Arrays.fill(keep, true);
+            for (int l = 0; l < layers.size(); l++) {
+                float[] values = r.values(l);
+                for (int i = 0; i < values.length; i++) {
+                    keep[i] &= !Float.isNaN(values[i]);
+                }
+                frame = frame.withColumn(layers.get(l).name(), values);
+                System.out.printf("%s: %d points, %d null%n", layers.get(l).name(), x.length, r.nulls(l));
+            }
+            System.out.printf("%d tiles of %s read%n", r.tilesRead(), grid);
+            int[] rows = args.has("keep-null") ? allRows(frame.rows()) : rowsWhere(keep);
+            frame.write(output, rows);
+            System.out.printf("%d of %d points written to %s (%d filtered as null) in %.2f s%n", rows.length,
+                    frame.rows(), output, frame.rows() - rowsWhere(keep).length, (System.nanoTime() - start) / 1e9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static int[] allRows(int n) {
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    private static int[] rowsWhere(boolean[] keep) {
+        int n = 0;
+        int[] rows = new int[keep.length];
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) {
+                rows[n++] = i;
+            }
+        }
+        return Arrays.copyOf(rows, n);
+    }
+}
@@ -0,0 +1,81 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import lapwing.raster.RasterFile;
+import lapwing.tiles.Palette;
+import lapwing.tiles.TileLayer;
+import lapwing.tiles.TileRenderer;
+import lapwing.tiles.TileServer;
+
+/**
+ * Local {@code Map.addLayer}: serves the monthly, yearly and decadal HSI rasters as XYZ PNG tiles with the
+ * script's {@code visParams} ({@code min 0, max 0.4, palette ['yellow', 'green']}).
+ *
+ * <pre>
+ * java lapwing.cli.ServeTiles hsi/ medians/ [annual_suitability_maps/] \
+ *      [--port 8080] [--host 127.0.0.1] [--min 0] [--max 0.4] [--palette yellow,green] \
+ *      [--source-cache-mb 256] [--tile-cache-mb 64] [--threads N]
+ * </pre>
+ *
+ * Every {@code .lwr} and {@code .tif} in the given directories (or the given files) becomes a layer; rasters
+ * not in EPSG:4326 or EPSG:3857 are skipped with a warning. Open {@code http://host:port/} for a minimal viewer,
+ * point QGIS or Leaflet at {@code /tiles/{id}/{z}/{x}/{y}.png}, and read cache hit rates and latency at
+ * {@code /metrics}. Runs until killed.
+ */
+public final class ServeTiles {
+
+    private ServeTiles() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "ServeTiles <dir|raster>... [options]";
+        args.positional(0, usage);
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.positionalCount(); i++) {
+            Path p = Path.of(args.positional(i, usage));
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> list = Files.list(p)) {
+                    files.addAll(list.filter(f -> f.toString().endsWith(RasterFile.EXTENSION)
+                            || f.toString().endsWith(".tif")).sorted().toList());
+                }
+            } else {
+                files.add(p);
+            }
+        }
+        List<TileLayer> layers = new ArrayList<>();
+        for (Path f : files) {
+            try {
+                layers.addAll(TileLayer.open(f));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping " + e.getMessage());
+            }
+        }
+        if (layers.isEmpty()) {
+            throw new IllegalArgumentException("No servable rasters in " + files.size() + " files");
+        }
+        Palette palette = Palette.of(args.getDouble("min", 0), args.getDouble("max", 0.4),
+                args.get("palette", "yellow,green"));
+        TileRenderer renderer = new TileRenderer(layers, palette, args.getLong("source-cache-mb", 256) << 20,
+                args.getLong("tile-cache-mb", 64) << 20);
+
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        TileServer server = new TileServer(renderer,
+                new InetSocketAddress(args.get("host", "127.0.0.1"), args.getInt("port", 8080)), pool);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            pool.shutdown();
+        }));
+        System.out.printf("Serving %d layers from %d files at http://%s:%d/ (metrics at /metrics)%n", layers.size(),
+                files.size(), server.address().getHostString(), server.address().getPort());
+    }
+}
@@ -0,0 +1,91 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import lapwing.raster.HsiStack;
+import lapwing.raster.PixelType;
+import lapwing.raster.RasterFile;
+import lapwing.raster.TemporalAggregator;
+
+/**
+ * Packs the monthly habitat suitability rasters {@code hsi_YYYY-MM.lwr} into one quantised, time-major
+ * {@link HsiStack}, or appends the months a stack does not have yet.
+ *
+ * <pre>
+ * java lapwing.cli.StackHsi hsi/ hsi_stack.lws [--type uint8|uint16] [--block 16] [--capacity 360] \
+ *      [--band NAME] [--append]
+ * </pre>
+ *
+ * A new stack starts at the earliest month found, with room for {@code --capacity} months (it grows when a later
+ * month is appended), and stores probabilities in {@code [0, 1]}. The file takes the whole capacity up front,
+ * since every series is laid out contiguously. {@code --append} adds every raster dated after
+ * the last month of an existing stack. {@code --band} picks the band by name instead of the first one.
+ */
+public final class StackHsi {
+
+    private StackHsi() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "StackHsi <hsi-dir> <stack" + HsiStack.EXTENSION + "> [options]";
+        Path hsiDir = Path.of(args.positional(0, usage));
+        Path file = Path.of(args.positional(1, usage));
+        List<RasterFile> monthly = new ArrayList<>();
+        try (Stream<Path> files = Files.list(hsiDir)) {
+            for (Path f : files.filter(p -> p.getFileName().toString().startsWith("hsi_")
+                    && p.toString().endsWith(RasterFile.EXTENSION)).sorted().toList()) {
+                monthly.add(RasterFile.open(f));
+            }
+        }
+        if (monthly.isEmpty()) {
+            throw new IllegalArgumentException("No hsi_*" + RasterFile.EXTENSION + " files in " + hsiDir);
+        }
+        monthly.sort((a, b) -> TemporalAggregator.monthOf(a).compareTo(TemporalAggregator.monthOf(b)));
+
+        long start = System.nanoTime();
+        HsiStack stack;
+        if (args.has("append")) {
+            stack = HsiStack.openForAppend(file);
+        } else {
+            PixelType type = PixelType.valueOf(args.get("type", "uint8").toUpperCase(Locale.ROOT));
+            stack = HsiStack.create(file, monthly.get(0).grid(), type, 0, 1,
+                    TemporalAggregator.monthOf(monthly.get(0)), args.getInt("capacity", 360),
+                    args.getInt("block", HsiStack.DEFAULT_BLOCK));
+        }
+        int added = 0;
+        try {
+            YearMonth last = stack.months() == 0 ? null : stack.month(stack.months() - 1);
+            for (RasterFile r : monthly) {
+                YearMonth month = TemporalAggregator.monthOf(r);
+                if (last != null && !month.isAfter(last)) {
+                    continue;
+                }
+                int band = args.has("band") ? r.bandIndex(args.get("band", null)) : 0;
+                if (band < 0) {
+                    throw new IllegalArgumentException(r.file() + " has no band " + args.get("band", null));
+                }
+                stack.append(month, r, band);
+                added++;
+            }
+        } finally {
+            stack.close();
+        }
+        long bytes = Files.size(file);
+        System.out.printf("%d months added in %.2f s: %d months (%s to %s, capacity %d) as %s, step %.3g%n",
+                added, (System.nanoTime() - start) / 1e9, stack.months(), stack.first(),
+                stack.month(stack.months() - 1), stack.capacity(), stack.type(), stack.scale());
+        // The file holds the whole capacity whether written or not, so compare per month
+        long month = stack.grid().pixels() * stack.type().bytes;
+        System.out.printf("%.1f MB file, %.2f MB per month against %.2f MB as a float32 raster (%.0fx smaller)%n",
+                bytes / 1048576.0, month / 1048576.0, stack.grid().pixels() * 4 / 1048576.0,
+                4.0 / stack.type().bytes);
+    }
+}
@@ -0,0 +1,68 @@
+package lapwing.cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import lapwing.data.FoldAssignment;
+import lapwing.data.ModelFrame;
+import lapwing.forest.ForestParams;
+import lapwing.tuning.HyperparameterSearch;
+import lapwing.tuning.SearchSpace;
+import lapwing.tuning.TrialResult;
+
+/**
+ * Local "Hyperparameter tuning" section: successive-halving search scored by k-fold AUC, checkpointed to a CSV
+ * that is also the result table. Re-running with the same checkpoint resumes the search.
+ *
+ * <pre>
+ * java lapwing.cli.TuneForest model_df_gee.csv tuning.csv \
+ *      [--trees 50:200:10] [--vars null,1,2,3] [--min-leaf 1,3,5,10] [--max-nodes null,500,2000] \
+ *      [--folds 5] [--eta 2] [--patience 3] [--trials N] [--threads N] [--split-mode histogram] [--seed 0] \
+ *      [--fold-mode stratified|blocks] [--block-km 50] [--buffer-km km]
+ * </pre>
+ */
+public final class TuneForest {
+
+    private TuneForest() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = Args.parse(argv);
+        String usage = "TuneForest <model_df_gee.csv> <checkpoint.csv> [options]";
+        Path input = Path.of(args.positional(0, usage));
+        Path checkpoint = Path.of(args.positional(1, usage));
+
+        String[] trees = args.get("trees", "50:200:10").split(":");
+        SearchSpace space = new SearchSpace(
+                SearchSpace.parseAxis(args.get("vars", "null,1,2,3"), 0),
+                SearchSpace.parseAxis(args.get("min-leaf", "1,3,5,10"), 1),
+                SearchSpace.parseAxis(args.get("max-nodes", "null"), Integer.MAX_VALUE),
+                Integer.parseInt(trees[0]), Integer.parseInt(trees[1]), Integer.parseInt(trees[2]));
+        ForestParams base = ForestParams.defaults()
+                .seed(args.getLong("seed", 0))
+                .splitMode(ForestParams.SplitMode.valueOf(args.get("split-mode", "histogram").toUpperCase(Locale.ROOT)));
+
+        ModelFrame frame = ModelFrame.load(input, ModelFrame.PREDICTORS);
+        FoldAssignment folds = Folds.fromArgs(args, frame, frame.completeRows(), base.seed());
+        ForkJoinPool pool = new ForkJoinPool(args.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        try {
+            long start = System.nanoTime();
+            List<TrialResult> results = new HyperparameterSearch(frame, folds, space, base)
+                    .concurrency(args.getInt("trials", Math.max(1, pool.getParallelism() / 2)))
+                    .eta(args.getInt("eta", 2))
+                    .earlyStopping(args.getInt("patience", 3), args.getDouble("min-delta", 1e-4))
+                    .listener((budget, configurations, best) -> System.out.printf(
+                            "Budget %d trees: %d configurations, best AUC %.4f%n", budget, configurations, best))
+                    .run(checkpoint, pool);
+            System.out.printf("Search finished in %.1f s; top configurations:%n", (System.nanoTime() - start) / 1e9);
+            for (TrialResult r : results.subList(0, Math.min(5, results.size()))) {
+                System.out.println("  " + r);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
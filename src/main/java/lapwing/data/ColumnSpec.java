@@ -0,0 +1,129 @@
+package lapwing.data;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One column of a {@link ColumnStore}: its name, binary type, the CSV column it comes from and how the text is
+ * converted.
+ */
+public final class ColumnSpec {
+
+    /** Binary column types; sizes in bytes. */
+    public enum Type {
+        INT8(1),
+        INT16(2),
+        INT32(4),
+        FLOAT32(4);
+
+        final int bytes;
+
+        Type(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /** How a CSV cell becomes a number. */
+    public enum Conversion {
+        /** Plain number. */
+        NUMBER,
+        /** dd-mm-yy or yyyy-mm-dd to epoch day. */
+        DATE,
+        /** Epoch milliseconds (the raw obs_date of the HU extracts) to epoch day. */
+        EPOCH_MILLIS,
+        /** YYYYMMDD integer (the raw Landsat scene date) to epoch day. */
+        YYYYMMDD,
+        /** Latitude from a GeoJSON point in .geo. */
+        GEO_LAT,
+        /** Longitude from a GeoJSON point in .geo. */
+        GEO_LON
+    }
+
+    private static final Pattern POINT = Pattern.compile("\\[\\s*(-?[0-9.eE+-]+)\\s*,\\s*(-?[0-9.eE+-]+)\\s*\\]");
+
+    private final String name;
+    private final Type type;
+    private final String source;
+    private final Conversion conversion;
+
+    public ColumnSpec(String name, Type type, String source, Conversion conversion) {
+        this.name = name;
+        this.type = type;
+        this.source = source;
+        this.conversion = conversion;
+    }
+
+    public static ColumnSpec of(String name, Type type) {
+        return new ColumnSpec(name, type, name, Conversion.NUMBER);
+    }
+
+    //==========================================================================================================
+    // Preset schemas
+    //==========================================================================================================
+    /** model_df_gee.csv: dates as epoch days, Tasseled Cap / NDVI as int16, optional coordinates and Roughness. */
+    public static List<ColumnSpec> modelFrame() {
+        return List.of(
+                new ColumnSpec("obs_date", Type.INT32, "obs_date", Conversion.DATE),
+                new ColumnSpec("sat_date", Type.INT32, "sat_date", Conversion.DATE),
+                of("NDVI", Type.INT16), of("TCB", Type.INT16), of("TCG", Type.INT16), of("TCW", Type.INT16),
+                of("status", Type.INT8),
+                of("lat", Type.FLOAT32), of("lon", Type.FLOAT32), of("Roughness", Type.FLOAT32));
+    }
+
+    /**
+     * Raw per-scene extracts (TasseledCap_All_Landsat_1990_2024.csv and the random-point CSVs): point id,
+     * epoch-day observation and scene dates, int16 indices, float coordinates (from lat/lon or from .geo).
+     */
+    public static List<ColumnSpec> sceneExtract(boolean coordinatesFromGeo, String idColumn) {
+        return List.of(
+                new ColumnSpec("id", Type.INT32, idColumn, Conversion.NUMBER),
+                new ColumnSpec("obs_date", Type.INT32, "obs_date", Conversion.EPOCH_MILLIS),
+                new ColumnSpec("sat_date", Type.INT32, "YYYYMMDD", Conversion.YYYYMMDD),
+                of("NDVI", Type.INT16), of("TCB", Type.INT16), of("TCG", Type.INT16), of("TCW", Type.INT16),
+                coordinatesFromGeo ? new ColumnSpec("lat", Type.FLOAT32, ".geo", Conversion.GEO_LAT) : of("lat", Type.FLOAT32),
+                coordinatesFromGeo ? new ColumnSpec("lon", Type.FLOAT32, ".geo", Conversion.GEO_LON) : of("lon", Type.FLOAT32));
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Cell conversion; NaN marks a missing value
+    //----------------------------------------------------------------------------------------------------------
+    double convert(String cell) {
+        String s = cell.trim();
+        if (s.isEmpty() || s.equals("NA") || s.equals("null")) {
+            return Double.NaN;
+        }
+        switch (conversion) {
+            case DATE:
+                return Dates.parseEpochDay(s);
+            case EPOCH_MILLIS:
+                return Math.floorDiv((long) Double.parseDouble(s), 86_400_000L);
+            case YYYYMMDD: {
+                int v = (int) Double.parseDouble(s);
+                return java.time.LocalDate.of(v / 10000, v / 100 % 100, v % 100).toEpochDay();
+            }
+            case GEO_LAT:
+            case GEO_LON: {
+                Matcher m = POINT.matcher(s);
+                if (!m.find()) {
+                    return Double.NaN;
+                }
+                return Double.parseDouble(m.group(conversion == Conversion.GEO_LON ? 1 : 2));
+            }
+            default:
+                return Double.parseDouble(s);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    public String source() {
+        return source;
+    }
+}
@@ -0,0 +1,294 @@
+package lapwing.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read side of the binary columnar format written by {@link ColumnStoreWriter}.
+ *
+ * <p>Layout (little-endian): magic {@code LAPWCOL1}, int version, int rows, int blockRows, int columns; then per
+ * column a UTF-8 name (short length + bytes), a type byte, the long offset of its data and, per block of
+ * {@code blockRows} rows, a (min, max) pair of doubles. Column data follows at 8-byte aligned offsets. Integer
+ * columns mark missing values with the type's minimum value; float columns with NaN.
+ *
+ * <p>Opening a store reads only the header. Each column is a read-only {@link MappedByteBuffer}, and the typed
+ * views returned by {@link Column} wrap that mapping directly, so nothing is copied onto the heap.
+ */
+public final class ColumnStore {
+
+    static final byte[] MAGIC = "LAPWCOL1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int DEFAULT_BLOCK_ROWS = 1 << 16;
+
+    /** File extension used for stores. */
+    public static final String EXTENSION = ".lwc";
+
+    private final Path file;
+    private final int rows;
+    private final int blockRows;
+    private final Map<String, Column> columns;
+
+    private ColumnStore(Path file, int rows, int blockRows, Map<String, Column> columns) {
+        this.file = file;
+        this.rows = rows;
+        this.blockRows = blockRows;
+        this.columns = columns;
+    }
+
+    //==========================================================================================================
+    // Open: parse the header and map each column
+    //==========================================================================================================
+    public static ColumnStore open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(ch.size(), 1 << 24)).order(ByteOrder.LITTLE_ENDIAN);
+            // A channel may return fewer bytes than asked for, so keep reading until the buffer is full or EOF
+            while (head.hasRemaining()) {
+                if (ch.read(head, head.position()) < 0) {
+                    break;
+                }
+            }
+            head.flip();
+            byte[] magic = new byte[MAGIC.length];
+            head.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException(file + " is not a columnar store");
+            }
+            int version = head.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported version " + version);
+            }
+            int rows = head.getInt();
+            int blockRows = head.getInt();
+            int count = head.getInt();
+            Map<String, Column> columns = new LinkedHashMap<>();
+            for (int j = 0; j < count; j++) {
+                byte[] name = new byte[head.getShort()];
+                head.get(name);
+                ColumnSpec.Type type = ColumnSpec.Type.values()[head.get()];
+                long offset = head.getLong();
+                int blocks = head.getInt();
+                double[] min = new double[blocks];
+                double[] max = new double[blocks];
+                for (int b = 0; b < blocks; b++) {
+                    min[b] = head.getDouble();
+                    max[b] = head.getDouble();
+                }
+                long bytes = (long) rows * type.bytes;
+                if (bytes > Integer.MAX_VALUE) {
+                    throw new IOException("Column larger than 2 GiB is not supported by a single mapping");
+                }
+                MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                String n = new String(name, StandardCharsets.UTF_8);
+                columns.put(n, new Column(n, type, map, rows, blockRows, min, max));
+            }
+            return new ColumnStore(file, rows, blockRows, columns);
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int blockRows() {
+        return blockRows;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public boolean has(String name) {
+        return columns.containsKey(name);
+    }
+
+    public List<String> columnNames() {
+        return List.copyOf(columns.keySet());
+    }
+
+    public Column column(String name) {
+        Column c = columns.get(name);
+        if (c == null) {
+            throw new IllegalArgumentException("No column '" + name + "' in " + file);
+        }
+        return c;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Training frame from a store of model_df_gee.csv (predictors that are not columns are left out)
+    //----------------------------------------------------------------------------------------------------------
+    public ModelFrame toModelFrame(List<String> predictors) {
+        List<String> kept = predictors.stream().filter(this::has).toList();
+        float[][] cols = new float[kept.size()][];
+        for (int j = 0; j < cols.length; j++) {
+            cols[j] = column(kept.get(j)).toFloatArray();
+        }
+        Column status = column(ModelFrame.RESPONSE);
+        byte[] st = new byte[rows];
+        for (int i = 0; i < rows; i++) {
+            st[i] = (byte) status.getInt(i);
+        }
+        return new ModelFrame(kept.toArray(new String[0]), cols, st,
+                has("obs_date") ? column("obs_date").toIntArray() : null,
+                has("sat_date") ? column("sat_date").toIntArray() : null,
+                has("lat") ? column("lat").toFloatArray() : null,
+                has("lon") ? column("lon").toFloatArray() : null);
+    }
+
+    //==========================================================================================================
+    // Column view over the mapping
+    //==========================================================================================================
+    public static final class Column {
+
+        private final String name;
+        private final ColumnSpec.Type type;
+        private final ByteBuffer data;
+        private final int rows;
+        private final int blockRows;
+        private final double[] min;
+        private final double[] max;
+
+        Column(String name, ColumnSpec.Type type, ByteBuffer data, int rows, int blockRows, double[] min,
+               double[] max) {
+            this.name = name;
+            this.type = type;
+            this.data = data;
+            this.rows = rows;
+            this.blockRows = blockRows;
+            this.min = min;
+            this.max = max;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public ColumnSpec.Type type() {
+            return type;
+        }
+
+        public int size() {
+            return rows;
+        }
+
+        /** Integer value of an INT8/INT16/INT32 column (the type minimum when missing). */
+        public int getInt(int row) {
+            switch (type) {
+                case INT8:
+                    return data.get(row);
+                case INT16:
+                    return data.getShort(row << 1);
+                case INT32:
+                    return data.getInt(row << 2);
+                default:
+                    return (int) data.getFloat(row << 2);
+            }
+        }
+
+        /** Value as float for any type; missing values are NaN. */
+        public float getFloat(int row) {
+            switch (type) {
+                case INT8: {
+                    byte v = data.get(row);
+                    return v == Byte.MIN_VALUE ? Float.NaN : v;
+                }
+                case INT16: {
+                    short v = data.getShort(row << 1);
+                    return v == Short.MIN_VALUE ? Float.NaN : v;
+                }
+                case INT32: {
+                    int v = data.getInt(row << 2);
+                    return v == Integer.MIN_VALUE ? Float.NaN : v;
+                }
+                default:
+                    return data.getFloat(row << 2);
+            }
+        }
+
+        public boolean isMissing(int row) {
+            return Float.isNaN(getFloat(row));
+        }
+
+        /** Zero-copy typed views; each call returns an independent position over the same mapping. */
+        public ShortBuffer shorts() {
+            requireType(ColumnSpec.Type.INT16);
+            return data.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        }
+
+        public IntBuffer ints() {
+            requireType(ColumnSpec.Type.INT32);
+            return data.duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+
+        public FloatBuffer floats() {
+            requireType(ColumnSpec.Type.FLOAT32);
+            return data.duplicate().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+
+        public ByteBuffer bytes() {
+            return data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void requireType(ColumnSpec.Type expected) {
+            if (type != expected) {
+                throw new IllegalStateException(name + " is " + type + ", not " + expected);
+            }
+        }
+
+        //------------------------------------------------------------------------------------------------------
+        // Block statistics for pruning scans (e.g. skip blocks whose date range misses a window)
+        //------------------------------------------------------------------------------------------------------
+        public int blockCount() {
+            return min.length;
+        }
+
+        public int blockRows() {
+            return blockRows;
+        }
+
+        public double blockMin(int b) {
+            return min[b];
+        }
+
+        public double blockMax(int b) {
+            return max[b];
+        }
+
+        /** True if block {@code b} may hold a value in {@code [lo, hi]}. */
+        public boolean blockMayContain(int b, double lo, double hi) {
+            return !Double.isNaN(min[b]) && max[b] >= lo && min[b] <= hi;
+        }
+
+        //------------------------------------------------------------------------------------------------------
+        // Heap copies, for small tables such as model_df_gee.csv
+        //------------------------------------------------------------------------------------------------------
+        public float[] toFloatArray() {
+            float[] out = new float[rows];
+            for (int i = 0; i < rows; i++) {
+                out[i] = getFloat(i);
+            }
+            return out;
+        }
+
+        public int[] toIntArray() {
+            int[] out = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                out[i] = getInt(i);
+            }
+            return out;
+        }
+    }
+}
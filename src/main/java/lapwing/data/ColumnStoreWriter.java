@@ -0,0 +1,307 @@
+package lapwing.data;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams one or more CSVs into a {@link ColumnStore} file.
+ *
+ * <p>Rows are converted one at a time and each column is appended to its own spill file, so memory use does not
+ * depend on the input size; the spill files are then concatenated behind the header. Several inputs with the same
+ * columns are appended in order, which replaces {@code lapply(read.csv) %>% bind_rows()} for the random-point
+ * extracts. Rows whose index columns hold the no-data value (-9999 in the HU extracts) can be dropped on the way.
+ */
+public final class ColumnStoreWriter {
+
+    private final List<ColumnSpec> specs;
+    private int blockRows = ColumnStore.DEFAULT_BLOCK_ROWS;
+    private List<String> noDataColumns = List.of();
+    private double noData = Double.NaN;
+
+    public ColumnStoreWriter(List<ColumnSpec> specs) {
+        this.specs = specs;
+    }
+
+    public ColumnStoreWriter blockRows(int rows) {
+        if (rows < 1) {
+            throw new IllegalArgumentException("blockRows must be positive");
+        }
+        this.blockRows = rows;
+        return this;
+    }
+
+    /** Drop rows where any of {@code columns} equals {@code value}, like {@code filter(NDVI != -9999, ...)}. */
+    public ColumnStoreWriter dropRowsWhere(List<String> columns, double value) {
+        this.noDataColumns = columns;
+        this.noData = value;
+        return this;
+    }
+
+    //==========================================================================================================
+    // Convert
+    //==========================================================================================================
+    /** Writes {@code out}; returns the number of rows kept. Spec columns absent from the first input are skipped. */
+    public long convert(List<Path> inputs, Path out) throws IOException {
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("No input files");
+        }
+        List<ColumnSpec> present = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(inputs.get(0), StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            String[] names = header == null ? new String[0] : Csv.split(header);
+            for (ColumnSpec s : specs) {
+                if (Csv.indexOf(names, s.source()) >= 0) {
+                    present.add(s);
+                }
+            }
+        }
+        if (present.isEmpty()) {
+            throw new IllegalArgumentException("None of the schema columns occur in " + inputs.get(0));
+        }
+
+        int c = present.size();
+        Path[] spill = new Path[c];
+        DataOutputStream[] streams = new DataOutputStream[c];
+        ColumnStats[] stats = new ColumnStats[c];
+        long rows = 0;
+        try {
+            for (int j = 0; j < c; j++) {
+                spill[j] = Files.createTempFile(out.toAbsolutePath().getParent(), ".col" + j + "-", ".spill");
+                streams[j] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spill[j]), 1 << 16));
+                stats[j] = new ColumnStats(blockRows);
+            }
+            double[] row = new double[c];
+            for (Path input : inputs) {
+                rows += appendRows(input, present, row, streams, stats);
+            }
+            for (DataOutputStream s : streams) {
+                s.close();
+            }
+            assemble(out, present, stats, spill, rows);
+        } finally {
+            for (int j = 0; j < c; j++) {
+                if (streams[j] != null) {
+                    streams[j].close();
+                }
+                if (spill[j] != null) {
+                    Files.deleteIfExists(spill[j]);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** Writes in-memory columns to {@code out}: {@code columns[j]} holds the first {@code rows} values of spec j. */
+    public void write(double[][] columns, int rows, Path out) throws IOException {
+        if (columns.length != specs.size()) {
+            throw new IllegalArgumentException("Expected " + specs.size() + " columns, got " + columns.length);
+        }
+        int c = specs.size();
+        Path[] spill = new Path[c];
+        ColumnStats[] stats = new ColumnStats[c];
+        try {
+            for (int j = 0; j < c; j++) {
+                spill[j] = Files.createTempFile(out.toAbsolutePath().getParent(), ".col" + j + "-", ".spill");
+                stats[j] = new ColumnStats(blockRows);
+                try (DataOutputStream s = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(spill[j]), 1 << 16))) {
+                    for (int i = 0; i < rows; i++) {
+                        write(s, specs.get(j), columns[j][i]);
+                        stats[j].add(columns[j][i]);
+                    }
+                }
+            }
+            assemble(out, specs, stats, spill, rows);
+        } finally {
+            for (Path p : spill) {
+                if (p != null) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    private long appendRows(Path input, List<ColumnSpec> present, double[] row, DataOutputStream[] streams,
+                            ColumnStats[] stats) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String headerLine = in.readLine();
+            if (headerLine == null) {
+                return 0;
+            }
+            String[] header = Csv.split(headerLine);
+            int[] at = new int[present.size()];
+            boolean[] checkNoData = new boolean[present.size()];
+            for (int j = 0; j < at.length; j++) {
+                at[j] = Csv.indexOf(header, present.get(j).source());
+                if (at[j] < 0) {
+                    throw new IllegalArgumentException(input + " lacks column " + present.get(j).source());
+                }
+                checkNoData[j] = noDataColumns.contains(present.get(j).name());
+            }
+            long kept = 0;
+            String line;
+            rows:
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] f = Csv.split(line);
+                for (int j = 0; j < at.length; j++) {
+                    row[j] = present.get(j).convert(f[at[j]]);
+                    if (checkNoData[j] && row[j] == noData) {
+                        continue rows;
+                    }
+                }
+                for (int j = 0; j < at.length; j++) {
+                    write(streams[j], present.get(j), row[j]);
+                    stats[j].add(row[j]);
+                }
+                kept++;
+            }
+            return kept;
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Little-endian values; integer columns store missing as the type's minimum value
+    //----------------------------------------------------------------------------------------------------------
+    private static void write(DataOutputStream out, ColumnSpec spec, double v) throws IOException {
+        boolean missing = Double.isNaN(v);
+        switch (spec.type()) {
+            case INT8:
+                out.writeByte(missing ? Byte.MIN_VALUE : checked(spec, v, Byte.MIN_VALUE + 1, Byte.MAX_VALUE));
+                break;
+            case INT16:
+                out.writeShort(Short.reverseBytes(
+                        (short) (missing ? Short.MIN_VALUE : checked(spec, v, Short.MIN_VALUE + 1, Short.MAX_VALUE))));
+                break;
+            case INT32:
+                out.writeInt(Integer.reverseBytes(
+                        missing ? Integer.MIN_VALUE : checked(spec, v, Integer.MIN_VALUE + 1, Integer.MAX_VALUE)));
+                break;
+            default:
+                out.writeInt(Integer.reverseBytes(Float.floatToRawIntBits((float) v)));
+        }
+    }
+
+    // Integer columns store exact values only; a fraction would otherwise be rounded away without notice
+    private static int checked(ColumnSpec spec, double v, int min, int max) {
+        if (v != Math.rint(v)) {
+            throw new IllegalArgumentException("Value " + v + " is not an integer for " + spec.type() + " column "
+                    + spec.name());
+        }
+        if (v < min || v > max) {
+            throw new IllegalArgumentException("Value " + v + " does not fit " + spec.type() + " column "
+                    + spec.name());
+        }
+        return (int) v;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Header (see ColumnStore for the layout), then each spill file at an 8-byte aligned offset
+    //----------------------------------------------------------------------------------------------------------
+    private void assemble(Path out, List<ColumnSpec> present, ColumnStats[] stats, Path[] spill, long rows)
+            throws IOException {
+        if (rows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("More than " + Integer.MAX_VALUE + " rows");
+        }
+        int headerSize = 8 + 4 + 4 + 4 + 4;
+        for (int j = 0; j < present.size(); j++) {
+            headerSize += 2 + present.get(j).name().getBytes(StandardCharsets.UTF_8).length + 1 + 8 + 4
+                    + stats[j].blocks() * 16;
+        }
+        long offset = align(headerSize);
+        long[] offsets = new long[present.size()];
+        for (int j = 0; j < offsets.length; j++) {
+            offsets[j] = offset;
+            offset = align(offset + rows * present.get(j).type().bytes);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate((int) align(headerSize)).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(ColumnStore.MAGIC);
+        header.putInt(ColumnStore.VERSION);
+        header.putInt((int) rows);
+        header.putInt(blockRows);
+        header.putInt(present.size());
+        for (int j = 0; j < present.size(); j++) {
+            byte[] name = present.get(j).name().getBytes(StandardCharsets.UTF_8);
+            header.putShort((short) name.length);
+            header.put(name);
+            header.put((byte) present.get(j).type().ordinal());
+            header.putLong(offsets[j]);
+            header.putInt(stats[j].blocks());
+            for (int b = 0; b < stats[j].blocks(); b++) {
+                header.putDouble(stats[j].min[b]);
+                header.putDouble(stats[j].max[b]);
+            }
+        }
+        header.position(0);
+
+        try (FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(header, 0);
+            for (int j = 0; j < spill.length; j++) {
+                try (FileChannel src = FileChannel.open(spill[j], StandardOpenOption.READ)) {
+                    long size = src.size();
+                    long done = 0;
+                    while (done < size) {
+                        done += src.transferTo(done, size - done, ch.position(offsets[j] + done));
+                    }
+                }
+            }
+            // Pad the tail so the last column also ends on an 8-byte boundary
+            if (ch.size() < offset) {
+                ch.write(ByteBuffer.allocate((int) (offset - ch.size())), ch.size());
+            }
+        }
+    }
+
+    private static long align(long v) {
+        return (v + 7) & ~7L;
+    }
+
+    /** Streaming per-block min/max (missing values ignored; an all-missing block has NaN bounds). */
+    private static final class ColumnStats {
+        private final int blockRows;
+        double[] min = new double[16];
+        double[] max = new double[16];
+        private long seen;
+
+        ColumnStats(int blockRows) {
+            this.blockRows = blockRows;
+        }
+
+        void add(double v) {
+            int b = (int) (seen / blockRows);
+            if (b == min.length) {
+                min = Arrays.copyOf(min, b * 2);
+                max = Arrays.copyOf(max, b * 2);
+            }
+            if (seen % blockRows == 0) {
+                min[b] = Double.NaN;
+                max[b] = Double.NaN;
+            }
+            if (!Double.isNaN(v)) {
+                min[b] = Double.isNaN(min[b]) ? v : Math.min(min[b], v);
+                max[b] = Double.isNaN(max[b]) ? v : Math.max(max[b], v);
+            }
+            seen++;
+        }
+
+        int blocks() {
+            return (int) ((seen + blockRows - 1) / blockRows);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package lapwing.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal CSV field splitting shared by the table readers.
+ *
+ * <p>Handles the double-quoted {@code .geo} column that Earth Engine writes into exported tables; nothing else in
+ * the workflow's CSVs needs quoting.
+ */
+public final class Csv {
+
+    private Csv() {
+    }
+
+    public static String[] split(String line) {
+        if (line.indexOf('"') < 0) {
+            return line.split(",", -1);
+        }
+        List<String> out = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        out.add(field.toString());
+        return out.toArray(new String[0]);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Column lookup by header name; -1 when absent
+    //----------------------------------------------------------------------------------------------------------
+    public static int indexOf(String[] header, String name) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].trim().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Parse a numeric cell; empty strings and R/GEE null markers become NaN
+    //----------------------------------------------------------------------------------------------------------
+    public static float parseFloat(String cell) {
+        String s = cell.trim();
+        if (s.isEmpty() || s.equals("NA") || s.equals("null") || s.equals("NaN")) {
+            return Float.NaN;
+        }
+        return Float.parseFloat(s);
+    }
+}
@@ -0,0 +1,49 @@
+package lapwing.data;
+
+import java.time.LocalDate;
+import java.time.DateTimeException;
+
+/**
+ * Date parsing for the tables produced by TimeCalibration_SL_observation_Landsat_img.R.
+ *
+ * <p>The shared model_df_gee.csv stores dates as {@code dd-mm-yy} (e.g. {@code 16-12-06}); tables written
+ * straight from R use ISO {@code yyyy-mm-dd}. Both are reduced to epoch days so date arithmetic stays in ints.
+ */
+public final class Dates {
+
+    // Observations start in 1990, so two-digit years from 90 onward belong to the 1900s
+    private static final int CENTURY_PIVOT = 90;
+
+    private Dates() {
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Parse either "dd-mm-yy" or "yyyy-mm-dd" into days since 1970-01-01
+    //----------------------------------------------------------------------------------------------------------
+    public static int parseEpochDay(String text) {
+        String s = text.trim();
+        if (s.length() >= 2 && s.charAt(0) == '"') {
+            s = s.substring(1, s.length() - 1);
+        }
+        try {
+            if (s.length() == 8 && s.charAt(2) == '-' && s.charAt(5) == '-') {
+                int day = Integer.parseInt(s, 0, 2, 10);
+                int month = Integer.parseInt(s, 3, 5, 10);
+                int yy = Integer.parseInt(s, 6, 8, 10);
+                int year = yy >= CENTURY_PIVOT ? 1900 + yy : 2000 + yy;
+                return (int) LocalDate.of(year, month, day).toEpochDay();
+            }
+            return (int) LocalDate.parse(s.length() > 10 ? s.substring(0, 10) : s).toEpochDay();
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new IllegalArgumentException("Unrecognised date '" + text + "'", e);
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Format back to the dd-mm-yy layout used in model_df_gee.csv
+    //----------------------------------------------------------------------------------------------------------
+    public static String formatShort(int epochDay) {
+        LocalDate d = LocalDate.ofEpochDay(epochDay);
+        return String.format("%02d-%02d-%02d", d.getDayOfMonth(), d.getMonthValue(), d.getYear() % 100);
+    }
+}
@@ -0,0 +1,332 @@
+package lapwing.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Local counterpart of {@code kFoldSplitStratified}: every row gets a fold number in {@code [0, k)}.
+ *
+ * <p>As in the GEE function, presence and absence rows each receive a uniform random number and fall into fold
+ * {@code floor(u * k)}, so both classes are spread over the folds in the same proportions.
+ *
+ * <p>Observations close in space share habitat and often the same Landsat pixel, so random folds leak between
+ * training and validation. Two coordinate-based modes limit that: {@link #spatialBlocks} assigns whole lat/lon
+ * blocks to folds, balancing presences and absences per fold, and {@link #withBuffer} additionally drops from
+ * each training set the rows within a distance of any row of the held-out fold (buffered leave-out).
+ *
+ * <p>The per-fold training and validation row sets are built once, in one pass over the fold array, and shared
+ * by every caller; they are index arrays into the frame's columns, which are never copied.
+ */
+public final class FoldAssignment {
+
+    /** Kilometres per degree of latitude (and of longitude at the equator). */
+    static final double KM_PER_DEGREE = 111.32;
+    static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final int k;
+    private final int[] fold;
+    private final int[][] training;
+    private final int[][] validation;
+    private final int[] buffered;
+
+    private FoldAssignment(int k, int[] fold) {
+        this.k = k;
+        this.fold = fold;
+        this.validation = new int[k][];
+        this.training = new int[k][];
+        this.buffered = new int[k];
+        int[] count = new int[k];
+        int total = 0;
+        for (int f : fold) {
+            if (f >= 0) {
+                count[f]++;
+                total++;
+            }
+        }
+        for (int f = 0; f < k; f++) {
+            validation[f] = new int[count[f]];
+            training[f] = new int[total - count[f]];
+        }
+        // Single pass in row order: a row is validation for its fold and training for every other fold
+        int[] v = new int[k];
+        int[] t = new int[k];
+        for (int r = 0; r < fold.length; r++) {
+            int g = fold[r];
+            if (g < 0) {
+                continue;
+            }
+            validation[g][v[g]++] = r;
+            for (int f = 0; f < k; f++) {
+                if (f != g) {
+                    training[f][t[f]++] = r;
+                }
+            }
+        }
+    }
+
+    private FoldAssignment(FoldAssignment base, int[][] training, int[] buffered) {
+        this.k = base.k;
+        this.fold = base.fold;
+        this.validation = base.validation;
+        this.training = training;
+        this.buffered = buffered;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Stratified random folds over the given rows; rows not listed get fold -1
+    //----------------------------------------------------------------------------------------------------------
+    public static FoldAssignment stratified(ModelFrame frame, int[] rows, int k, long seed) {
+        checkFolds(k);
+        int[] fold = new int[frame.rows()];
+        Arrays.fill(fold, -1);
+        byte[] status = frame.status();
+        // One stream per class, like randomColumn({seed: 0}) applied to presence and absence separately
+        SplittableRandom presence = new SplittableRandom(seed);
+        SplittableRandom absence = new SplittableRandom(seed ^ 0x9E3779B97F4A7C15L);
+        for (int r : rows) {
+            double u = status[r] == 1 ? presence.nextDouble() : absence.nextDouble();
+            fold[r] = Math.min(k - 1, (int) (u * k));
+        }
+        return new FoldAssignment(k, fold);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Spatial blocks: square cells of blockKm on an equirectangular projection, whole cells per fold
+    //----------------------------------------------------------------------------------------------------------
+    /**
+     * Groups the rows into {@code blockKm} square blocks and deals the blocks to folds: blocks are shuffled with
+     * {@code seed} and taken largest first (by share of all presences plus share of all absences), and each goes
+     * to the fold whose current load is lightest in the classes the block contains, so both classes stay spread.
+     */
+    public static FoldAssignment spatialBlocks(ModelFrame frame, int[] rows, int k, double blockKm, long seed) {
+        checkFolds(k);
+        if (!(blockKm > 0)) {
+            throw new IllegalArgumentException("blockKm must be positive");
+        }
+        float[] lat = coordinates(frame, rows, true);
+        float[] lon = coordinates(frame, rows, false);
+        double meanLat = 0;
+        for (int r : rows) {
+            meanLat += lat[r];
+        }
+        double lonKm = KM_PER_DEGREE * Math.cos(Math.toRadians(meanLat / Math.max(1, rows.length)));
+
+        Map<Long, Integer> ids = new HashMap<>();
+        int[] blockOf = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            long by = (long) Math.floor(lat[rows[i]] * KM_PER_DEGREE / blockKm);
+            long bx = (long) Math.floor(lon[rows[i]] * lonKm / blockKm);
+            blockOf[i] = ids.computeIfAbsent((by << 32) ^ (bx & 0xFFFFFFFFL), key -> ids.size());
+        }
+        int blocks = ids.size();
+        int[] presences = new int[blocks];
+        int[] absences = new int[blocks];
+        byte[] status = frame.status();
+        for (int i = 0; i < rows.length; i++) {
+            if (status[rows[i]] == 1) {
+                presences[blockOf[i]]++;
+            } else {
+                absences[blockOf[i]]++;
+            }
+        }
+
+        // Shuffle first so that ties in the stable sort below fall in seeded random order
+        Integer[] order = new Integer[blocks];
+        for (int b = 0; b < blocks; b++) {
+            order[b] = b;
+        }
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int i = blocks - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            Integer t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        long totalPresences = 0;
+        for (int p : presences) {
+            totalPresences += p;
+        }
+        double wp = 1.0 / Math.max(1, totalPresences);
+        double wa = 1.0 / Math.max(1, rows.length - totalPresences);
+        Arrays.sort(order, (a, b) -> Double.compare(presences[b] * wp + absences[b] * wa,
+                presences[a] * wp + absences[a] * wa));
+
+        int[] foldOfBlock = new int[blocks];
+        double[] foldPresences = new double[k];
+        double[] foldAbsences = new double[k];
+        for (int b : order) {
+            // Load seen by this block: the fold's share of each class, weighted by what the block adds to it
+            int best = 0;
+            double bestLoad = Double.POSITIVE_INFINITY;
+            for (int f = 0; f < k; f++) {
+                double load = presences[b] * foldPresences[f] + absences[b] * foldAbsences[f];
+                if (load < bestLoad || (load == bestLoad
+                        && foldPresences[f] + foldAbsences[f] < foldPresences[best] + foldAbsences[best])) {
+                    best = f;
+                    bestLoad = load;
+                }
+            }
+            foldOfBlock[b] = best;
+            foldPresences[best] += presences[b] * wp;
+            foldAbsences[best] += absences[b] * wa;
+        }
+
+        int[] fold = new int[frame.rows()];
+        Arrays.fill(fold, -1);
+        for (int i = 0; i < rows.length; i++) {
+            fold[rows[i]] = foldOfBlock[blockOf[i]];
+        }
+        return new FoldAssignment(k, fold);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Buffered leave-out: training rows of fold f keep at least bufferKm (great circle) from fold f's rows
+    //----------------------------------------------------------------------------------------------------------
+    /**
+     * Same folds, with every training set stripped of the rows lying within {@code bufferKm} of a validation row
+     * of that fold. Validation rows are hashed into cells sized from {@link #EARTH_RADIUS_KM}, as wide as the
+     * largest latitude and longitude step {@code bufferKm} allows, so each candidate only checks the 3 x 3 cells
+     * around it.
+     */
+    public FoldAssignment withBuffer(ModelFrame frame, double bufferKm) {
+        if (!(bufferKm > 0)) {
+            throw new IllegalArgumentException("bufferKm must be positive");
+        }
+        if (frame.rows() != fold.length) {
+            throw new IllegalArgumentException("Frame has " + frame.rows() + " rows, folds cover " + fold.length);
+        }
+        int[] assigned = union();
+        float[] lat = coordinates(frame, assigned, true);
+        float[] lon = coordinates(frame, assigned, false);
+        double maxAbsLat = 0;
+        for (int r : assigned) {
+            maxAbsLat = Math.max(maxAbsLat, Math.abs(lat[r]));
+        }
+        // Cell sizes bound the coordinate differences of two points within bufferKm on the haversine sphere:
+        // |dLat| <= d / R, and hav(d / R) >= cos(lat1) cos(lat2) hav(dLon) with both cosines at least that of
+        // the highest latitude. A small margin covers rounding at the cell edges.
+        double margin = 1 + 1e-6;
+        double cellLat = Math.toDegrees(bufferKm / EARTH_RADIUS_KM) * margin;
+        double minCos = Math.cos(Math.toRadians(Math.min(maxAbsLat, 89.0)));
+        double sinLon = Math.sin(bufferKm / (2 * EARTH_RADIUS_KM)) / minCos;
+        double cellLon = sinLon >= 1 ? 360 : Math.toDegrees(2 * Math.asin(sinLon)) * margin;
+
+        int[][] kept = new int[k][];
+        int[] dropped = new int[k];
+        for (int f = 0; f < k; f++) {
+            Map<Long, int[]> cells = new HashMap<>();
+            for (int r : validation[f]) {
+                long key = cell(lat[r], lon[r], cellLat, cellLon, 0, 0);
+                int[] list = cells.get(key);
+                if (list == null) {
+                    list = new int[]{0, 0, 0, 0, 0};
+                    cells.put(key, list);
+                } else if (list[0] + 1 == list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                    cells.put(key, list);
+                }
+                list[++list[0]] = r;
+            }
+            int[] out = new int[training[f].length];
+            int n = 0;
+            for (int r : training[f]) {
+                if (!near(r, lat, lon, cells, cellLat, cellLon, bufferKm)) {
+                    out[n++] = r;
+                }
+            }
+            kept[f] = n == out.length ? training[f] : Arrays.copyOf(out, n);
+            dropped[f] = training[f].length - n;
+        }
+        return new FoldAssignment(this, kept, dropped);
+    }
+
+    // Cell list layout: element 0 is the number of rows, the rows follow
+    private static boolean near(int r, float[] lat, float[] lon, Map<Long, int[]> cells, double cellLat,
+                                double cellLon, double bufferKm) {
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int[] list = cells.get(cell(lat[r], lon[r], cellLat, cellLon, dy, dx));
+                if (list == null) {
+                    continue;
+                }
+                for (int i = 1; i <= list[0]; i++) {
+                    if (distanceKm(lat[r], lon[r], lat[list[i]], lon[list[i]]) <= bufferKm) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long cell(double lat, double lon, double cellLat, double cellLon, int dy, int dx) {
+        long y = (long) Math.floor(lat / cellLat) + dy;
+        long x = (long) Math.floor(lon / cellLon) + dx;
+        return (y << 32) ^ (x & 0xFFFFFFFFL);
+    }
+
+    /** Haversine distance in kilometres. */
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double p1 = Math.toRadians(lat1);
+        double p2 = Math.toRadians(lat2);
+        double dp = p2 - p1;
+        double dl = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dp / 2) * Math.sin(dp / 2)
+                + Math.cos(p1) * Math.cos(p2) * Math.sin(dl / 2) * Math.sin(dl / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static float[] coordinates(ModelFrame frame, int[] rows, boolean latitude) {
+        if (!frame.hasCoordinates()) {
+            throw new IllegalArgumentException("Spatial folds need lat/lon columns; the table has none");
+        }
+        float[] v = latitude ? frame.lat() : frame.lon();
+        for (int r : rows) {
+            if (Float.isNaN(v[r])) {
+                throw new IllegalArgumentException("Row " + r + " has no " + (latitude ? "lat" : "lon"));
+            }
+        }
+        return v;
+    }
+
+    private static void checkFolds(int k) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Need at least 2 folds, got " + k);
+        }
+    }
+
+    private int[] union() {
+        int[] out = Arrays.copyOf(training[0], training[0].length + validation[0].length);
+        System.arraycopy(validation[0], 0, out, training[0].length, validation[0].length);
+        return out;
+    }
+
+    //==========================================================================================================
+    // Accessors
+    //==========================================================================================================
+    public int folds() {
+        return k;
+    }
+
+    /** Fold per row ({@code -1} for rows outside the assignment); callers must not modify it. */
+    public int[] foldOf() {
+        return fold;
+    }
+
+    /** Rows to train on when fold {@code f} is held out, ascending; shared, callers must not modify it. */
+    public int[] trainingRows(int f) {
+        return training[f];
+    }
+
+    /** Rows of fold {@code f}, ascending; shared, callers must not modify it. */
+    public int[] validationRows(int f) {
+        return validation[f];
+    }
+
+    /** Training rows of fold {@code f} removed by {@link #withBuffer} (0 without a buffer). */
+    public int bufferedRows(int f) {
+        return buffered[f];
+    }
+}
@@ -0,0 +1,305 @@
+package lapwing.data;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column-oriented, in-memory copy of model_df_gee.csv.
+ *
+ * <p>Every predictor is a primitive {@code float[]} indexed by row, {@code status} is a {@code byte[]} of 0/1 and
+ * dates are epoch days. No per-row objects are created, so a 29k-row table is a handful of flat arrays that the
+ * trainer, the fold assignment and the evaluators share without copying.
+ */
+public final class ModelFrame {
+
+    // Same predictor and response names as the GEE workflow
+    public static final List<String> PREDICTORS = List.of("NDVI", "TCB", "TCG", "TCW", "Roughness");
+    public static final String RESPONSE = "status";
+
+    private final String[] names;
+    private final float[][] columns;
+    private final byte[] status;
+    private final int[] obsDay;
+    private final int[] satDay;
+    private final float[] lat;
+    private final float[] lon;
+
+    public ModelFrame(String[] names, float[][] columns, byte[] status, int[] obsDay, int[] satDay,
+                      float[] lat, float[] lon) {
+        if (names.length != columns.length) {
+            throw new IllegalArgumentException("Expected one column per name");
+        }
+        for (float[] column : columns) {
+            if (column.length != status.length) {
+                throw new IllegalArgumentException("Column length does not match status length");
+            }
+        }
+        this.names = names.clone();
+        this.columns = columns.clone();
+        this.status = status;
+        this.obsDay = obsDay;
+        this.satDay = satDay;
+        this.lat = lat;
+        this.lon = lon;
+    }
+
+    //==========================================================================================================
+    // Reading
+    //==========================================================================================================
+    /**
+     * Reads the requested predictors. Fails if one of them is not a column of the file; use
+     * {@link #readAvailable} when columns such as Roughness are attached later.
+     */
+    public static ModelFrame read(Path csv, List<String> predictors) throws IOException {
+        return read(csv, predictors, true);
+    }
+
+    /** Reads whichever of the requested predictors exist in the file, keeping their order. */
+    public static ModelFrame readAvailable(Path csv, List<String> predictors) throws IOException {
+        return read(csv, predictors, false);
+    }
+
+    /**
+     * Reads the available predictors from either a columnar store ({@code .lwc}, see {@link ColumnStore}) or a
+     * CSV.
+     */
+    public static ModelFrame load(Path file, List<String> predictors) throws IOException {
+        if (file.getFileName().toString().endsWith(ColumnStore.EXTENSION)) {
+            return ColumnStore.open(file).toModelFrame(predictors);
+        }
+        return readAvailable(file, predictors);
+    }
+
+    private static ModelFrame read(Path csv, List<String> predictors, boolean strict) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String headerLine = in.readLine();
+            if (headerLine == null) {
+                throw new IOException(csv + " is empty");
+            }
+            String[] header = Csv.split(headerLine);
+            List<String> kept = new ArrayList<>();
+            List<Integer> keptAt = new ArrayList<>();
+            for (String p : predictors) {
+                int at = Csv.indexOf(header, p);
+                if (at >= 0) {
+                    kept.add(p);
+                    keptAt.add(at);
+                } else if (strict) {
+                    throw new IllegalArgumentException("Predictor '" + p + "' is not a column of " + csv);
+                }
+            }
+            int statusAt = Csv.indexOf(header, RESPONSE);
+            if (statusAt < 0) {
+                throw new IllegalArgumentException("Response column '" + RESPONSE + "' missing in " + csv);
+            }
+            int obsAt = Csv.indexOf(header, "obs_date");
+            int satAt = Csv.indexOf(header, "sat_date");
+            int latAt = Csv.indexOf(header, "lat");
+            int lonAt = Csv.indexOf(header, "lon");
+
+            int p = kept.size();
+            float[][] cols = new float[p][1 << 12];
+            byte[] st = new byte[1 << 12];
+            int[] obs = obsAt >= 0 ? new int[1 << 12] : null;
+            int[] sat = satAt >= 0 ? new int[1 << 12] : null;
+            float[] la = latAt >= 0 ? new float[1 << 12] : null;
+            float[] lo = lonAt >= 0 ? new float[1 << 12] : null;
+
+            int n = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (n == st.length) {
+                    int grow = n * 2;
+                    for (int j = 0; j < p; j++) {
+                        cols[j] = Arrays.copyOf(cols[j], grow);
+                    }
+                    st = Arrays.copyOf(st, grow);
+                    obs = obs == null ? null : Arrays.copyOf(obs, grow);
+                    sat = sat == null ? null : Arrays.copyOf(sat, grow);
+                    la = la == null ? null : Arrays.copyOf(la, grow);
+                    lo = lo == null ? null : Arrays.copyOf(lo, grow);
+                }
+                String[] f = Csv.split(line);
+                for (int j = 0; j < p; j++) {
+                    cols[j][n] = Csv.parseFloat(f[keptAt.get(j)]);
+                }
+                st[n] = (byte) Math.round(Float.parseFloat(f[statusAt].trim()));
+                if (obs != null) {
+                    obs[n] = Dates.parseEpochDay(f[obsAt]);
+                }
+                if (sat != null) {
+                    sat[n] = Dates.parseEpochDay(f[satAt]);
+                }
+                if (la != null) {
+                    la[n] = Csv.parseFloat(f[latAt]);
+                    lo[n] = Csv.parseFloat(f[lonAt]);
+                }
+                n++;
+            }
+            for (int j = 0; j < p; j++) {
+                cols[j] = Arrays.copyOf(cols[j], n);
+            }
+            return new ModelFrame(kept.toArray(new String[0]), cols, Arrays.copyOf(st, n),
+                    obs == null ? null : Arrays.copyOf(obs, n), sat == null ? null : Arrays.copyOf(sat, n),
+                    la == null ? null : Arrays.copyOf(la, n), lo == null ? null : Arrays.copyOf(lo, n));
+        }
+    }
+
+    //==========================================================================================================
+    // Writing
+    //==========================================================================================================
+    /**
+     * Writes the rows in the layout of model_df_gee.csv (dd-mm-yy dates, whole numbers without a decimal point),
+     * followed by lat/lon when the frame has coordinates.
+     */
+    public void write(Path csv, int[] rows) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            StringBuilder sb = new StringBuilder();
+            if (obsDay != null) {
+                sb.append("obs_date,");
+            }
+            if (satDay != null) {
+                sb.append("sat_date,");
+            }
+            for (String n : names) {
+                sb.append(n).append(',');
+            }
+            sb.append(RESPONSE);
+            if (hasCoordinates()) {
+                sb.append(",lat,lon");
+            }
+            out.write(sb.append('\n').toString());
+            for (int i : rows) {
+                sb.setLength(0);
+                if (obsDay != null) {
+                    sb.append(Dates.formatShort(obsDay[i])).append(',');
+                }
+                if (satDay != null) {
+                    sb.append(Dates.formatShort(satDay[i])).append(',');
+                }
+                for (float[] column : columns) {
+                    appendNumber(sb, column[i]).append(',');
+                }
+                sb.append(status[i]);
+                if (hasCoordinates()) {
+                    sb.append(',').append(lat[i]).append(',').append(lon[i]);
+                }
+                out.write(sb.append('\n').toString());
+            }
+        }
+    }
+
+    private static StringBuilder appendNumber(StringBuilder sb, float v) {
+        if (Float.isNaN(v)) {
+            return sb.append("NA");
+        }
+        return v == (long) v ? sb.append((long) v) : sb.append(v);
+    }
+
+    //==========================================================================================================
+    // Derived frames
+    //==========================================================================================================
+    /** Returns a frame with an extra (or replaced) predictor column; the other arrays are shared. */
+    public ModelFrame withColumn(String name, float[] values) {
+        int at = indexOf(name);
+        String[] n = at >= 0 ? names : Arrays.copyOf(names, names.length + 1);
+        float[][] c = at >= 0 ? columns.clone() : Arrays.copyOf(columns, columns.length + 1);
+        int slot = at >= 0 ? at : names.length;
+        n[slot] = name;
+        c[slot] = values;
+        return new ModelFrame(n, c, status, obsDay, satDay, lat, lon);
+    }
+
+    /** Equivalent of {@code ee.Filter.notNull(predictors)}: row indices whose predictors are all present. */
+    public int[] completeRows() {
+        int[] out = new int[rows()];
+        int n = 0;
+        for (int i = 0; i < rows(); i++) {
+            boolean ok = true;
+            for (float[] column : columns) {
+                if (Float.isNaN(column[i])) {
+                    ok = false;
+                    break;
+                }
+            }
+            if (ok) {
+                out[n++] = i;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    //==========================================================================================================
+    // Accessors
+    //==========================================================================================================
+    public int rows() {
+        return status.length;
+    }
+
+    public int predictorCount() {
+        return columns.length;
+    }
+
+    public String[] predictorNames() {
+        return names.clone();
+    }
+
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** The backing array of predictor {@code j}; callers must not modify it. */
+    public float[] column(int j) {
+        return columns[j];
+    }
+
+    public float[] column(String name) {
+        int at = indexOf(name);
+        if (at < 0) {
+            throw new IllegalArgumentException("No column '" + name + "'");
+        }
+        return columns[at];
+    }
+
+    /** 0/1 response per row; callers must not modify it. */
+    public byte[] status() {
+        return status;
+    }
+
+    /** Observation date as epoch day, or {@code null} if the file had no obs_date column. */
+    public int[] obsDay() {
+        return obsDay;
+    }
+
+    public int[] satDay() {
+        return satDay;
+    }
+
+    /** Latitude per row, or {@code null}; model_df_gee.csv as shared does not carry coordinates. */
+    public float[] lat() {
+        return lat;
+    }
+
+    public float[] lon() {
+        return lon;
+    }
+
+    public boolean hasCoordinates() {
+        return lat != null && lon != null;
+    }
+}
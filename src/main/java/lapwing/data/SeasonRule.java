@@ -0,0 +1,84 @@
+package lapwing.data;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assignment of observations to seasons by the calendar month of {@code obs_date}, for the seasonal models the
+ * workflow outlines ({@code classifier_Br}, {@code classifier_Wn}, {@code classifier_Mg}).
+ *
+ * <p>A rule is written {@code Name=m,m,...;Name=m,...}; a month may belong to at most one season, and months in
+ * no season only feed the all-season model. The default follows the species' annual cycle: breeding April to
+ * July, autumn migration August to October, winter November to February, spring migration in March.
+ */
+public final class SeasonRule {
+
+    public static final String DEFAULT = "Br=4,5,6,7;Wn=11,12,1,2;Mg=3,8,9,10";
+
+    private final Map<String, Set<Month>> seasons;
+
+    private SeasonRule(Map<String, Set<Month>> seasons) {
+        this.seasons = seasons;
+    }
+
+    public static SeasonRule parse(String rule) {
+        Map<String, Set<Month>> seasons = new LinkedHashMap<>();
+        Set<Month> seen = EnumSet.noneOf(Month.class);
+        for (String spec : rule.split(";")) {
+            if (spec.isBlank()) {
+                continue;
+            }
+            int eq = spec.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected Name=months in season rule, got '" + spec + "'");
+            }
+            String name = spec.substring(0, eq).trim();
+            Set<Month> months = EnumSet.noneOf(Month.class);
+            for (String m : spec.substring(eq + 1).split(",")) {
+                Month month = Month.of(Integer.parseInt(m.trim()));
+                if (!seen.add(month)) {
+                    throw new IllegalArgumentException("Month " + month.getValue() + " is in more than one season");
+                }
+                months.add(month);
+            }
+            if (seasons.put(name, months) != null) {
+                throw new IllegalArgumentException("Season " + name + " given twice");
+            }
+        }
+        if (seasons.isEmpty()) {
+            throw new IllegalArgumentException("Season rule '" + rule + "' names no season");
+        }
+        return new SeasonRule(seasons);
+    }
+
+    public List<String> names() {
+        return new ArrayList<>(seasons.keySet());
+    }
+
+    /** The subset of {@code rows} observed in the season's months, in the same order. */
+    public int[] rows(ModelFrame frame, int[] rows, String season) {
+        Set<Month> months = seasons.get(season);
+        if (months == null) {
+            throw new IllegalArgumentException("No season '" + season + "'; seasons are " + seasons.keySet());
+        }
+        int[] obs = frame.obsDay();
+        if (obs == null) {
+            throw new IllegalArgumentException("Seasonal models need an obs_date column");
+        }
+        int[] out = new int[rows.length];
+        int n = 0;
+        for (int r : rows) {
+            if (months.contains(LocalDate.ofEpochDay(obs[r]).getMonth())) {
+                out[n++] = r;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
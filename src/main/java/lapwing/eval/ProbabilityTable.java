@@ -0,0 +1,99 @@
+package lapwing.eval;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import lapwing.data.Csv;
+
+/**
+ * (probability, status) pairs as exported by the {@code KFold_RF_Validation_Probabilities*} table, either from
+ * Earth Engine or from {@link lapwing.cli.KFoldValidation}. Columns are found by name, so the GEE column order
+ * ({@code system:index,probability,status,.geo}) and any extra columns are accepted.
+ */
+public final class ProbabilityTable {
+
+    private final String[] index;
+    private final float[] probability;
+    private final byte[] status;
+
+    public ProbabilityTable(String[] index, float[] probability, byte[] status) {
+        if (probability.length != status.length || index.length != status.length) {
+            throw new IllegalArgumentException("Columns differ in length");
+        }
+        this.index = index;
+        this.probability = probability;
+        this.status = status;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Read one or more exports and concatenate them (like the flattened allFoldResults)
+    //----------------------------------------------------------------------------------------------------------
+    public static ProbabilityTable read(Path... files) throws IOException {
+        String[] idx = new String[1024];
+        float[] prob = new float[1024];
+        byte[] st = new byte[1024];
+        int n = 0;
+        for (Path file : files) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String headerLine = in.readLine();
+                if (headerLine == null) {
+                    continue;
+                }
+                String[] header = Csv.split(headerLine);
+                int probAt = Csv.indexOf(header, "probability");
+                int statusAt = Csv.indexOf(header, "status");
+                int indexAt = Csv.indexOf(header, "system:index");
+                if (probAt < 0 || statusAt < 0) {
+                    throw new IllegalArgumentException(file + " needs 'probability' and 'status' columns");
+                }
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    String[] f = Csv.split(line);
+                    float p = Csv.parseFloat(f[probAt]);
+                    if (Float.isNaN(p)) {
+                        continue;
+                    }
+                    if (n == st.length) {
+                        idx = Arrays.copyOf(idx, n * 2);
+                        prob = Arrays.copyOf(prob, n * 2);
+                        st = Arrays.copyOf(st, n * 2);
+                    }
+                    idx[n] = indexAt >= 0 ? f[indexAt] : String.valueOf(n);
+                    prob[n] = p;
+                    st[n] = (byte) Math.round(Float.parseFloat(f[statusAt].trim()));
+                    n++;
+                }
+            }
+        }
+        return new ProbabilityTable(Arrays.copyOf(idx, n), Arrays.copyOf(prob, n), Arrays.copyOf(st, n));
+    }
+
+    public void write(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("system:index,probability,status,.geo\n");
+            for (int i = 0; i < status.length; i++) {
+                out.write(index[i] + "," + probability[i] + "," + status[i] + ",\n");
+            }
+        }
+    }
+
+    public int size() {
+        return status.length;
+    }
+
+    public float[] probability() {
+        return probability;
+    }
+
+    public byte[] status() {
+        return status;
+    }
+}
@@ -0,0 +1,198 @@
+package lapwing.eval;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Replacement for {@code getROCMetrics} / {@code computeAUC}.
+ *
+ * <p>The (probability, status) pairs are sorted once by decreasing probability. One sweep over that order gives
+ * the ROC point at every distinct threshold (a row is predicted present when {@code probability >= threshold}, as
+ * in the GEE filters), the exact trapezoid AUC, PR-AUC (average precision), and TSS / Cohen's kappa at the
+ * threshold maximising TSS. Bootstrap replicates reuse the same order: a replicate is a vector of resampling
+ * counts, swept as weights, so no replicate sorts again.
+ */
+public final class RocEvaluator {
+
+    private final float[] probability;
+    private final byte[] status;
+    private final int[] order;
+    private final int[] groupEnd;
+
+    public RocEvaluator(float[] probability, byte[] status) {
+        if (probability.length != status.length) {
+            throw new IllegalArgumentException("probability and status differ in length");
+        }
+        this.probability = probability;
+        this.status = status;
+        int n = probability.length;
+
+        //------------------------------------------------------------------------------------------------------
+        // Single sort: descending probability, then mark where each run of equal probabilities ends
+        //------------------------------------------------------------------------------------------------------
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) ~Float.floatToIntBits(probability[i] + 0.0f) << 32) | i;
+        }
+        Arrays.sort(keys);
+        order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) keys[i];
+        }
+        int[] ends = new int[n];
+        int g = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == n - 1 || probability[order[i + 1]] != probability[order[i]]) {
+                ends[g++] = i + 1;
+            }
+        }
+        groupEnd = Arrays.copyOf(ends, g);
+    }
+
+    public static RocEvaluator of(ProbabilityTable table) {
+        return new RocEvaluator(table.probability(), table.status());
+    }
+
+    //==========================================================================================================
+    // Full evaluation with the ROC curve
+    //==========================================================================================================
+    public RocResult evaluate() {
+        int points = groupEnd.length + 1;
+        double[] threshold = new double[points];
+        double[] tpr = new double[points];
+        double[] fpr = new double[points];
+        double[] precision = new double[points];
+        double[] metrics = sweep(null, threshold, tpr, fpr, precision);
+        return new RocResult(threshold, tpr, fpr, precision, metrics[0], metrics[1], metrics[2], metrics[3],
+                metrics[4]);
+    }
+
+    /** AUC alone, without materialising the curve. */
+    public double auc() {
+        return sweep(null, null, null, null, null)[0];
+    }
+
+    //==========================================================================================================
+    // Percentile bootstrap intervals for AUC, PR-AUC, TSS and kappa, replicates run in parallel
+    //==========================================================================================================
+    public RocResult.Intervals bootstrap(int replicates, double level, long seed, ForkJoinPool pool) {
+        int n = probability.length;
+        double[][] samples = new double[RocResult.METRICS.length][replicates];
+        AtomicInteger failed = new AtomicInteger();
+        pool.submit(() -> IntStream.range(0, replicates).parallel().forEach(b -> {
+            SplittableRandom rnd = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + b);
+            int[] weight = new int[n];
+            for (int i = 0; i < n; i++) {
+                weight[rnd.nextInt(n)]++;
+            }
+            double[] m = sweep(weight, null, null, null, null);
+            if (Double.isNaN(m[0])) {
+                failed.incrementAndGet();
+            }
+            samples[0][b] = m[0];
+            samples[1][b] = m[1];
+            samples[2][b] = m[3];
+            samples[3][b] = m[4];
+        })).join();
+
+        double alpha = (1 - level) / 2;
+        double[] lower = new double[samples.length];
+        double[] upper = new double[samples.length];
+        for (int k = 0; k < samples.length; k++) {
+            double[] s = Arrays.stream(samples[k]).filter(v -> !Double.isNaN(v)).sorted().toArray();
+            lower[k] = quantile(s, alpha);
+            upper[k] = quantile(s, 1 - alpha);
+        }
+        return new RocResult.Intervals(level, replicates - failed.get(), lower, upper);
+    }
+
+    private static double quantile(double[] sorted, double q) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        double pos = q * (sorted.length - 1);
+        int lo = (int) Math.floor(pos);
+        int hi = Math.min(sorted.length - 1, lo + 1);
+        return sorted[lo] + (pos - lo) * (sorted[hi] - sorted[lo]);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // One pass in descending order; weight == null means every row counts once.
+    // Returns {AUC, PR-AUC, best threshold, TSS, kappa}; fills curve arrays when given.
+    //----------------------------------------------------------------------------------------------------------
+    private double[] sweep(int[] weight, double[] threshold, double[] tpr, double[] fpr, double[] precision) {
+        long pos = 0;
+        long total = 0;
+        for (int i = 0; i < status.length; i++) {
+            int w = weight == null ? 1 : weight[i];
+            total += w;
+            pos += status[i] == 1 ? w : 0;
+        }
+        long neg = total - pos;
+        if (threshold != null) {
+            threshold[0] = Double.POSITIVE_INFINITY;
+            precision[0] = 1;
+        }
+        if (pos == 0 || neg == 0) {
+            return new double[] {Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN};
+        }
+
+        long tp = 0;
+        long fp = 0;
+        double prevTpr = 0;
+        double prevFpr = 0;
+        double auc = 0;
+        double ap = 0;
+        double bestTss = Double.NEGATIVE_INFINITY;
+        double bestThreshold = Double.NaN;
+        long bestTp = 0;
+        long bestFp = 0;
+        int start = 0;
+        for (int g = 0; g < groupEnd.length; g++) {
+            for (int i = start; i < groupEnd[g]; i++) {
+                int row = order[i];
+                int w = weight == null ? 1 : weight[row];
+                if (status[row] == 1) {
+                    tp += w;
+                } else {
+                    fp += w;
+                }
+            }
+            double t = probability[order[start]];
+            start = groupEnd[g];
+            double x = (double) fp / neg;
+            double y = (double) tp / pos;
+            double prec = tp + fp == 0 ? 1 : (double) tp / (tp + fp);
+            auc += (x - prevFpr) * (y + prevTpr) * 0.5;
+            ap += (y - prevTpr) * prec;
+            double tss = y - x;
+            if (tss > bestTss) {
+                bestTss = tss;
+                bestThreshold = t;
+                bestTp = tp;
+                bestFp = fp;
+            }
+            if (threshold != null) {
+                threshold[g + 1] = t;
+                tpr[g + 1] = y;
+                fpr[g + 1] = x;
+                precision[g + 1] = prec;
+            }
+            prevTpr = y;
+            prevFpr = x;
+        }
+        return new double[] {auc, ap, bestThreshold, bestTss, kappa(bestTp, bestFp, pos, neg)};
+    }
+
+    private static double kappa(long tp, long fp, long pos, long neg) {
+        double n = pos + neg;
+        long fn = pos - tp;
+        long tn = neg - fp;
+        double observed = (tp + tn) / n;
+        double expected = ((double) (tp + fp) * pos + (double) (fn + tn) * neg) / (n * n);
+        return expected == 1 ? 0 : (observed - expected) / (1 - expected);
+    }
+}
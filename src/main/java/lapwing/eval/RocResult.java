@@ -0,0 +1,146 @@
+package lapwing.eval;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Exact ROC curve (one point per distinct probability, starting at (0, 0)) and the summary metrics derived from
+ * it.
+ */
+public final class RocResult {
+
+    /** Metrics carried by {@link Intervals}, in order. */
+    public static final String[] METRICS = {"AUC", "PR_AUC", "TSS", "Kappa"};
+
+    private final double[] threshold;
+    private final double[] tpr;
+    private final double[] fpr;
+    private final double[] precision;
+    private final double auc;
+    private final double prAuc;
+    private final double bestThreshold;
+    private final double tss;
+    private final double kappa;
+
+    RocResult(double[] threshold, double[] tpr, double[] fpr, double[] precision, double auc, double prAuc,
+              double bestThreshold, double tss, double kappa) {
+        this.threshold = threshold;
+        this.tpr = tpr;
+        this.fpr = fpr;
+        this.precision = precision;
+        this.auc = auc;
+        this.prAuc = prAuc;
+        this.bestThreshold = bestThreshold;
+        this.tss = tss;
+        this.kappa = kappa;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Same columns as the ROC_Curve export (threshold, TPR, FPR) plus precision
+    //----------------------------------------------------------------------------------------------------------
+    public void writeCurve(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("threshold,TPR,FPR,precision\n");
+            for (int i = 0; i < threshold.length; i++) {
+                String t = Double.isInfinite(threshold[i]) ? "Inf" : Double.toString(threshold[i]);
+                out.write(t + "," + tpr[i] + "," + fpr[i] + "," + precision[i] + "\n");
+            }
+        }
+    }
+
+    public int points() {
+        return threshold.length;
+    }
+
+    public double threshold(int i) {
+        return threshold[i];
+    }
+
+    public double tpr(int i) {
+        return tpr[i];
+    }
+
+    public double fpr(int i) {
+        return fpr[i];
+    }
+
+    public double auc() {
+        return auc;
+    }
+
+    public double prAuc() {
+        return prAuc;
+    }
+
+    /** Threshold maximising TSS (sensitivity + specificity - 1). */
+    public double bestThreshold() {
+        return bestThreshold;
+    }
+
+    public double tss() {
+        return tss;
+    }
+
+    public double kappa() {
+        return kappa;
+    }
+
+    public double metric(int k) {
+        switch (k) {
+            case 0:
+                return auc;
+            case 1:
+                return prAuc;
+            case 2:
+                return tss;
+            case 3:
+                return kappa;
+            default:
+                throw new IllegalArgumentException("No metric " + k);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "AUC %.4f, PR-AUC %.4f, TSS %.4f and Kappa %.4f at threshold %.4f "
+                + "(%d ROC points)", auc, prAuc, tss, kappa, bestThreshold, threshold.length);
+    }
+
+    //==========================================================================================================
+    // Bootstrap percentile intervals, indexed like METRICS
+    //==========================================================================================================
+    public static final class Intervals {
+
+        private final double level;
+        private final int replicates;
+        private final double[] lower;
+        private final double[] upper;
+
+        Intervals(double level, int replicates, double[] lower, double[] upper) {
+            this.level = level;
+            this.replicates = replicates;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        public double lower(int k) {
+            return lower[k];
+        }
+
+        public double upper(int k) {
+            return upper[k];
+        }
+
+        public double level() {
+            return level;
+        }
+
+        public int replicates() {
+            return replicates;
+        }
+    }
+}
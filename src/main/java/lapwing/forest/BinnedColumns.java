@@ -0,0 +1,125 @@
+package lapwing.forest;
+
+import java.util.Arrays;
+
+import lapwing.data.ModelFrame;
+
+/**
+ * Predictor columns quantized once into at most 256 quantile bins (LightGBM-style), stored as one unsigned byte
+ * per value.
+ *
+ * <p>A column with no more distinct values than bins gets one bin per value, so splits on it are exactly those of
+ * the exact finder. Otherwise bin edges follow the value quantiles. {@code threshold[j][b]} is the float split
+ * value between bin {@code b} and bin {@code b + 1}, halfway between the largest value of one and the smallest of
+ * the other. Missing values fall into the last bin.
+ */
+public final class BinnedColumns implements ColumnEncoding {
+
+    public static final int MAX_BINS = 256;
+
+    final byte[][] code;
+    final int[] bins;
+    final float[][] threshold;
+
+    private BinnedColumns(byte[][] code, int[] bins, float[][] threshold) {
+        this.code = code;
+        this.bins = bins;
+        this.threshold = threshold;
+    }
+
+    public static BinnedColumns of(ModelFrame frame) {
+        return of(frame, MAX_BINS);
+    }
+
+    public static BinnedColumns of(ModelFrame frame, int maxBins) {
+        if (maxBins < 2 || maxBins > MAX_BINS) {
+            throw new IllegalArgumentException("maxBins must be in 2.." + MAX_BINS);
+        }
+        int p = frame.predictorCount();
+        byte[][] code = new byte[p][];
+        int[] bins = new int[p];
+        float[][] threshold = new float[p][];
+        for (int j = 0; j < p; j++) {
+            float[] col = frame.column(j);
+            float[] sorted = new float[col.length];
+            int n = 0;
+            for (float v : col) {
+                if (!Float.isNaN(v)) {
+                    sorted[n++] = v + 0.0f;
+                }
+            }
+            Arrays.sort(sorted, 0, n);
+
+            //--------------------------------------------------------------------------------------------------
+            // Walk distinct values, closing a bin once it holds about n / maxBins values
+            //--------------------------------------------------------------------------------------------------
+            float[] upper = new float[maxBins];
+            float[] nextLower = new float[maxBins];
+            int b = 0;
+            int inBin = 0;
+            int distinctLeft = countDistinct(sorted, n);
+            double target = (double) n / maxBins;
+            for (int i = 0; i < n; ) {
+                int k = i;
+                while (k < n && sorted[k] == sorted[i]) {
+                    k++;
+                }
+                inBin += k - i;
+                distinctLeft--;
+                boolean last = k == n;
+                // Close when full, or when the remaining distinct values exactly fill the remaining bins
+                boolean close = inBin >= target || distinctLeft < maxBins - b;
+                if (!last && close && b < maxBins - 1) {
+                    upper[b] = sorted[k - 1];
+                    nextLower[b] = sorted[k];
+                    b++;
+                    inBin = 0;
+                }
+                i = k;
+            }
+            int nb = Math.max(1, b + 1);
+            float[] t = new float[nb - 1];
+            for (int q = 0; q < nb - 1; q++) {
+                t[q] = (upper[q] + nextLower[q]) * 0.5f;
+            }
+            float[] ub = Arrays.copyOf(upper, nb - 1);
+            byte[] c = new byte[col.length];
+            for (int i = 0; i < col.length; i++) {
+                if (Float.isNaN(col[i])) {
+                    c[i] = (byte) (nb - 1);
+                } else {
+                    int at = Arrays.binarySearch(ub, col[i] + 0.0f);
+                    c[i] = (byte) (at >= 0 ? at : -at - 1);
+                }
+            }
+            code[j] = c;
+            bins[j] = nb;
+            threshold[j] = t;
+        }
+        return new BinnedColumns(code, bins, threshold);
+    }
+
+    private static int countDistinct(float[] sorted, int n) {
+        int d = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                d++;
+            }
+        }
+        return d;
+    }
+
+    @Override
+    public int predictorCount() {
+        return code.length;
+    }
+
+    public int bins(int j) {
+        return bins[j];
+    }
+
+    @Override
+    public Grower newGrower(byte[] status, ForestParams params) {
+        return new HistogramTreeGrower(this, status, params);
+    }
+}
@@ -0,0 +1,13 @@
+package lapwing.forest;
+
+/**
+ * Split-search representation of a frame's predictors, built once and shared by every tree (and every fold).
+ * {@link RankedColumns} gives exact splits, {@link BinnedColumns} histogram splits.
+ */
+public interface ColumnEncoding {
+
+    int predictorCount();
+
+    /** A grower for one tree; growers are not thread-safe, the encoding is. */
+    Grower newGrower(byte[] status, ForestParams params);
+}
@@ -0,0 +1,140 @@
+package lapwing.forest;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * A {@link RandomForest} flattened for bulk scoring of raster tiles ({@code image.classify(classifier_df)}).
+ *
+ * <p>All trees share three contiguous arrays laid out in pre-order, so a node's left child is always the next
+ * node and only the right child offset is stored: {@code feature} (-1 at leaves), {@code split} (the threshold,
+ * or the leaf probability at leaves) and {@code right}. Scoring runs tree by tree over a block of pixels, which
+ * keeps one tree's nodes in cache while the whole block walks it, and picks the child without a branch on the
+ * comparison.
+ *
+ * <p>Scores equal {@link RandomForest#predict(float[])} exactly: per pixel, tree outputs are summed in double
+ * in tree order and divided by the tree count. The JDK 17 Vector API is an incubator module that this source
+ * tree does not enable, and the walk is gather-bound in any case, so the blocked scalar walk is used instead.
+ */
+public final class CompiledForest {
+
+    /** Pixels scored together; small enough that a block's features and sums stay in L1/L2. */
+    public static final int BLOCK = 256;
+
+    private final String[] predictors;
+    private final int trees;
+    private final int[] root;
+    private final short[] feature;
+    private final float[] split;
+    private final int[] right;
+
+    private CompiledForest(String[] predictors, int[] root, short[] feature, float[] split, int[] right) {
+        this.predictors = predictors;
+        this.trees = root.length;
+        this.root = root;
+        this.feature = feature;
+        this.split = split;
+        this.right = right;
+    }
+
+    //==========================================================================================================
+    // Compile: pre-order relayout of every tree into shared arrays
+    //==========================================================================================================
+    public static CompiledForest compile(RandomForest forest) {
+        int total = 0;
+        for (int t = 0; t < forest.treeCount(); t++) {
+            total += forest.tree(t).nodeCount();
+        }
+        short[] feature = new short[total];
+        float[] split = new float[total];
+        int[] right = new int[total];
+        int[] root = new int[forest.treeCount()];
+        int next = 0;
+        ArrayDeque<int[]> stack = new ArrayDeque<>();
+        for (int t = 0; t < root.length; t++) {
+            DecisionTree tree = forest.tree(t);
+            root[t] = next;
+            // Entries are {source node, index of the parent whose right offset points here or -1}
+            stack.push(new int[]{0, -1});
+            while (!stack.isEmpty()) {
+                int[] e = stack.pop();
+                int src = e[0];
+                int at = next++;
+                if (e[1] >= 0) {
+                    right[e[1]] = at;
+                }
+                if (tree.isLeaf(src)) {
+                    feature[at] = DecisionTree.LEAF;
+                    split[at] = tree.value(src);
+                } else {
+                    feature[at] = (short) tree.feature(src);
+                    split[at] = tree.threshold(src);
+                    // Right is visited after the whole left subtree, so push it first
+                    stack.push(new int[]{tree.right(src), at});
+                    stack.push(new int[]{tree.left(src), -1});
+                }
+            }
+        }
+        return new CompiledForest(forest.predictorNames(), root, feature, split, right);
+    }
+
+    public String[] predictorNames() {
+        return predictors.clone();
+    }
+
+    public int treeCount() {
+        return trees;
+    }
+
+    public int nodeCount() {
+        return feature.length;
+    }
+
+    //==========================================================================================================
+    // Scoring
+    //==========================================================================================================
+    /**
+     * Scores pixels {@code [from, from + n)}: {@code columns[j]} holds predictor {@code j} (in
+     * {@link #predictorNames()} order) for every pixel, and probabilities go to {@code out[from ...]}.
+     */
+    public void score(float[][] columns, int from, int n, float[] out) {
+        if (columns.length != predictors.length) {
+            throw new IllegalArgumentException("Expected " + predictors.length + " predictor columns");
+        }
+        double[] sum = new double[BLOCK];
+        for (int b = from; b < from + n; b += BLOCK) {
+            int len = Math.min(BLOCK, from + n - b);
+            Arrays.fill(sum, 0, len, 0);
+            for (int t = 0; t < trees; t++) {
+                int start = root[t];
+                for (int i = 0; i < len; i++) {
+                    int p = b + i;
+                    int node = start;
+                    short f;
+                    while ((f = feature[node]) >= 0) {
+                        // Left child is node + 1; NaN compares false and goes right, as in DecisionTree
+                        node = columns[f][p] <= split[node] ? node + 1 : right[node];
+                    }
+                    sum[i] += split[node];
+                }
+            }
+            for (int i = 0; i < len; i++) {
+                out[b + i] = (float) (sum[i] / trees);
+            }
+        }
+    }
+
+    /** Probability for one feature vector; same result as {@link RandomForest#predict(float[])}. */
+    public double predict(float[] x) {
+        double sum = 0;
+        for (int t = 0; t < trees; t++) {
+            int node = root[t];
+            short f;
+            while ((f = feature[node]) >= 0) {
+                node = x[f] <= split[node] ? node + 1 : right[node];
+            }
+            sum += split[node];
+        }
+        return sum / trees;
+    }
+}
@@ -0,0 +1,92 @@
+package lapwing.forest;
+
+/**
+ * One grown tree stored as parallel primitive arrays (node {@code 0} is the root).
+ *
+ * <p>Internal nodes send a sample left when {@code x[feature] <= threshold}; missing values (NaN) go right.
+ * {@code value} holds the weighted fraction of presences at every node, which is the tree's probability output at
+ * a leaf. {@code cover} is the weighted number of training samples that reached the node.
+ */
+public final class DecisionTree {
+
+    static final short LEAF = -1;
+
+    final short[] feature;
+    final float[] threshold;
+    final int[] left;
+    final int[] right;
+    final float[] value;
+    final float[] cover;
+
+    DecisionTree(short[] feature, float[] threshold, int[] left, int[] right, float[] value, float[] cover) {
+        this.feature = feature;
+        this.threshold = threshold;
+        this.left = left;
+        this.right = right;
+        this.value = value;
+        this.cover = cover;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Walk the tree for one row of a column-major table; map[j] is the column holding tree feature j
+    //----------------------------------------------------------------------------------------------------------
+    public float predict(float[][] columns, int[] map, int row) {
+        int node = 0;
+        short f;
+        while ((f = feature[node]) != LEAF) {
+            node = columns[map[f]][row] <= threshold[node] ? left[node] : right[node];
+        }
+        return value[node];
+    }
+
+    public float predict(float[] x) {
+        int node = 0;
+        short f;
+        while ((f = feature[node]) != LEAF) {
+            node = x[f] <= threshold[node] ? left[node] : right[node];
+        }
+        return value[node];
+    }
+
+    public int nodeCount() {
+        return feature.length;
+    }
+
+    public int leafCount() {
+        int n = 0;
+        for (short f : feature) {
+            if (f == LEAF) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public boolean isLeaf(int node) {
+        return feature[node] == LEAF;
+    }
+
+    public int feature(int node) {
+        return feature[node];
+    }
+
+    public float threshold(int node) {
+        return threshold[node];
+    }
+
+    public int left(int node) {
+        return left[node];
+    }
+
+    public int right(int node) {
+        return right[node];
+    }
+
+    public float value(int node) {
+        return value[node];
+    }
+
+    public float cover(int node) {
+        return cover[node];
+    }
+}
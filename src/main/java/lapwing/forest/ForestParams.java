@@ -0,0 +1,165 @@
+package lapwing.forest;
+
+/**
+ * Hyperparameters of the local random forest, named after the arguments of {@code ee.Classifier.smileRandomForest}.
+ *
+ * <p>Defaults follow the Earth Engine defaults (no variablesPerSplit means {@code floor(sqrt(p))}, bagFraction 0.5
+ * drawn without replacement, no maxNodes limit) except numberOfTrees and minLeafPopulation, which take the values
+ * used for {@code allFoldResults} in the workflow (200 and 3). Instances are immutable; every setter returns a
+ * copy.
+ */
+public final class ForestParams {
+
+    /** How split points are searched: on every distinct value, or on 256-bin histograms. */
+    public enum SplitMode {
+        EXACT,
+        HISTOGRAM
+    }
+
+    private int numberOfTrees = 200;
+    private int variablesPerSplit = 0;
+    private int minLeafPopulation = 3;
+    private int maxNodes = Integer.MAX_VALUE;
+    private double bagFraction = 0.5;
+    private boolean withReplacement = false;
+    private long seed = 0L;
+    private SplitMode splitMode = SplitMode.EXACT;
+
+    private ForestParams() {
+    }
+
+    public static ForestParams defaults() {
+        return new ForestParams();
+    }
+
+    private ForestParams copy() {
+        ForestParams c = new ForestParams();
+        c.numberOfTrees = numberOfTrees;
+        c.variablesPerSplit = variablesPerSplit;
+        c.minLeafPopulation = minLeafPopulation;
+        c.maxNodes = maxNodes;
+        c.bagFraction = bagFraction;
+        c.withReplacement = withReplacement;
+        c.seed = seed;
+        c.splitMode = splitMode;
+        return c;
+    }
+
+    //==========================================================================================================
+    // Setters (copying)
+    //==========================================================================================================
+    public ForestParams numberOfTrees(int v) {
+        if (v < 1) {
+            throw new IllegalArgumentException("numberOfTrees must be positive");
+        }
+        ForestParams c = copy();
+        c.numberOfTrees = v;
+        return c;
+    }
+
+    /** {@code 0} means {@code floor(sqrt(predictors))}, as when variablesPerSplit is null in GEE. */
+    public ForestParams variablesPerSplit(int v) {
+        if (v < 0) {
+            throw new IllegalArgumentException("variablesPerSplit must not be negative");
+        }
+        ForestParams c = copy();
+        c.variablesPerSplit = v;
+        return c;
+    }
+
+    public ForestParams minLeafPopulation(int v) {
+        if (v < 1) {
+            throw new IllegalArgumentException("minLeafPopulation must be positive");
+        }
+        ForestParams c = copy();
+        c.minLeafPopulation = v;
+        return c;
+    }
+
+    /** Maximum number of leaves per tree; {@code Integer.MAX_VALUE} for no limit. */
+    public ForestParams maxNodes(int v) {
+        if (v < 2) {
+            throw new IllegalArgumentException("maxNodes must be at least 2");
+        }
+        ForestParams c = copy();
+        c.maxNodes = v;
+        return c;
+    }
+
+    public ForestParams bagFraction(double v) {
+        if (!(v > 0 && v <= 1)) {
+            throw new IllegalArgumentException("bagFraction must be in (0, 1]");
+        }
+        ForestParams c = copy();
+        c.bagFraction = v;
+        return c;
+    }
+
+    public ForestParams withReplacement(boolean v) {
+        ForestParams c = copy();
+        c.withReplacement = v;
+        return c;
+    }
+
+    public ForestParams seed(long v) {
+        ForestParams c = copy();
+        c.seed = v;
+        return c;
+    }
+
+    public ForestParams splitMode(SplitMode v) {
+        ForestParams c = copy();
+        c.splitMode = v;
+        return c;
+    }
+
+    //==========================================================================================================
+    // Getters
+    //==========================================================================================================
+    public int numberOfTrees() {
+        return numberOfTrees;
+    }
+
+    public int variablesPerSplit() {
+        return variablesPerSplit;
+    }
+
+    public int variablesPerSplitFor(int predictors) {
+        int m = variablesPerSplit > 0 ? variablesPerSplit : (int) Math.floor(Math.sqrt(predictors));
+        return Math.max(1, Math.min(predictors, m));
+    }
+
+    public int minLeafPopulation() {
+        return minLeafPopulation;
+    }
+
+    public int maxNodes() {
+        return maxNodes;
+    }
+
+    public double bagFraction() {
+        return bagFraction;
+    }
+
+    public boolean withReplacement() {
+        return withReplacement;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public SplitMode splitMode() {
+        return splitMode;
+    }
+
+    @Override
+    public String toString() {
+        return "numberOfTrees=" + numberOfTrees
+                + ", variablesPerSplit=" + (variablesPerSplit > 0 ? variablesPerSplit : "null")
+                + ", minLeafPopulation=" + minLeafPopulation
+                + ", maxNodes=" + (maxNodes == Integer.MAX_VALUE ? "null" : maxNodes)
+                + ", bagFraction=" + bagFraction
+                + ", splitMode=" + splitMode;
+    }
+}
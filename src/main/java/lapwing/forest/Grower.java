@@ -0,0 +1,16 @@
+package lapwing.forest;
+
+import java.util.SplittableRandom;
+
+/**
+ * Grows one tree on a weighted sample; {@code weight[row]} is the bag multiplicity and {@code sample} lists the
+ * rows with a positive weight. A grower may grow any number of trees in turn (never concurrently), each from the
+ * same initial state, keeping its scratch buffers between them.
+ */
+public interface Grower {
+
+    DecisionTree grow(int[] sample, int[] weight, SplittableRandom rnd);
+
+    /** Gini impurity decrease credited to each predictor while growing the last tree; reset by the next grow. */
+    float[] importance();
+}
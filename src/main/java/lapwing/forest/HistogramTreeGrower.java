@@ -0,0 +1,255 @@
+package lapwing.forest;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.SplittableRandom;
+
+/**
+ * Tree grower over {@link BinnedColumns}: split search reads per-node histograms instead of sorting rows.
+ *
+ * <p>Each pending node owns a histogram of (weight, presence weight) per predictor and bin. Only the smaller
+ * child of a split is scanned; the larger child's histogram is the parent's minus the sibling's, computed in
+ * place in the parent's array. Split search is then O(bins) per candidate predictor. Histogram arrays are
+ * recycled through a free list, and with no {@code maxNodes} limit nodes are expanded depth-first, which keeps the
+ * number of live histograms close to the tree depth. Expansion order decides which node draws its candidate
+ * predictors next from the tree's random stream, so for the same seed the trees differ from the exact grower's
+ * breadth-first ones; only the split search at a node given its candidates is the same.
+ */
+final class HistogramTreeGrower implements Grower {
+
+    private final BinnedColumns binned;
+    private final byte[] status;
+    private final ForestParams params;
+    private final int mtry;
+    private final int p;
+    private final int[] features;
+    private final float[] importance;
+    private final ArrayDeque<int[]> free = new ArrayDeque<>();
+
+    private int[] weight;
+    private int[] idx;
+
+    private short[] feature = new short[64];
+    private float[] threshold = new float[64];
+    private int[] left = new int[64];
+    private int[] right = new int[64];
+    private float[] value = new float[64];
+    private float[] cover = new float[64];
+    private int nodes;
+
+    HistogramTreeGrower(BinnedColumns binned, byte[] status, ForestParams params) {
+        this.binned = binned;
+        this.status = status;
+        this.params = params;
+        this.p = binned.predictorCount();
+        this.mtry = params.variablesPerSplitFor(p);
+        this.importance = new float[p];
+        this.features = new int[p];
+        for (int j = 0; j < p; j++) {
+            features[j] = j;
+        }
+    }
+
+    //==========================================================================================================
+    // Grow
+    //==========================================================================================================
+    @Override
+    public DecisionTree grow(int[] sample, int[] weight, SplittableRandom rnd) {
+        this.weight = weight;
+        this.idx = sample.clone();
+        this.nodes = 0;
+        // Growers are recycled across trees, so every tree starts from the same feature order and importance
+        Arrays.fill(importance, 0);
+        for (int j = 0; j < p; j++) {
+            features[j] = j;
+        }
+
+        boolean limited = params.maxNodes() != Integer.MAX_VALUE;
+        Queue<Pending> queue = limited
+                ? new PriorityQueue<>((a, b) -> Double.compare(b.gain, a.gain))
+                : Collections.asLifoQueue(new ArrayDeque<>());
+
+        int[] rootHist = histogram(0, idx.length);
+        offer(queue, evaluate(newNode(), 0, idx.length, rootHist, rnd));
+        int leaves = 1;
+        while (!queue.isEmpty() && leaves < params.maxNodes()) {
+            Pending s = queue.poll();
+            int mid = partition(s);
+            int l = newNode();
+            int r = newNode();
+            feature[s.node] = (short) s.feature;
+            threshold[s.node] = binned.threshold[s.feature][s.splitBin];
+            left[s.node] = l;
+            right[s.node] = r;
+            importance[s.feature] += (float) s.gain;
+            leaves++;
+
+            //--------------------------------------------------------------------------------------------------
+            // Scan the smaller child, derive the larger one as parent - sibling in the parent's array
+            //--------------------------------------------------------------------------------------------------
+            boolean leftSmaller = mid - s.lo <= s.hi - mid;
+            int[] small = leftSmaller ? histogram(s.lo, mid) : histogram(mid, s.hi);
+            int[] large = s.hist;
+            for (int i = 0; i < large.length; i++) {
+                large[i] -= small[i];
+            }
+            s.hist = null;
+            offer(queue, evaluate(l, s.lo, mid, leftSmaller ? small : large, rnd));
+            offer(queue, evaluate(r, mid, s.hi, leftSmaller ? large : small, rnd));
+        }
+        for (Pending rest : queue) {
+            release(rest.hist);
+        }
+        return new DecisionTree(Arrays.copyOf(feature, nodes), Arrays.copyOf(threshold, nodes),
+                Arrays.copyOf(left, nodes), Arrays.copyOf(right, nodes), Arrays.copyOf(value, nodes),
+                Arrays.copyOf(cover, nodes));
+    }
+
+    @Override
+    public float[] importance() {
+        return importance;
+    }
+
+    private void offer(Queue<Pending> queue, Pending pending) {
+        if (pending.splittable()) {
+            queue.add(pending);
+        } else {
+            release(pending.hist);
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Histogram layout: [(j * 256 + bin) * 2] = weight, [... + 1] = presence weight
+    //----------------------------------------------------------------------------------------------------------
+    private int[] histogram(int lo, int hi) {
+        int[] h = free.isEmpty() ? new int[p * BinnedColumns.MAX_BINS * 2] : free.pop();
+        Arrays.fill(h, 0);
+        for (int j = 0; j < p; j++) {
+            byte[] code = binned.code[j];
+            int base = j * BinnedColumns.MAX_BINS;
+            for (int i = lo; i < hi; i++) {
+                int row = idx[i];
+                int at = (base + (code[row] & 0xFF)) << 1;
+                int w = weight[row];
+                h[at] += w;
+                h[at + 1] += status[row] == 1 ? w : 0;
+            }
+        }
+        return h;
+    }
+
+    private void release(int[] hist) {
+        if (hist != null) {
+            free.push(hist);
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Best split from the node histogram over mtry random predictors
+    //----------------------------------------------------------------------------------------------------------
+    private Pending evaluate(int node, int lo, int hi, int[] hist, SplittableRandom rnd) {
+        long w = 0;
+        long pos = 0;
+        for (int b = 0; b < binned.bins[0]; b++) {
+            w += hist[b << 1];
+            pos += hist[(b << 1) + 1];
+        }
+        value[node] = w == 0 ? 0f : (float) pos / w;
+        cover[node] = w;
+
+        Pending best = new Pending(node, lo, hi, hist);
+        int minLeaf = params.minLeafPopulation();
+        if (w < 2L * minLeaf || pos == 0 || pos == w) {
+            return best;
+        }
+        double parent = impurity(w, pos);
+        for (int k = 0; k < mtry; k++) {
+            int swap = k + rnd.nextInt(p - k);
+            int f = features[swap];
+            features[swap] = features[k];
+            features[k] = f;
+
+            int base = f * BinnedColumns.MAX_BINS;
+            long wl = 0;
+            long pl = 0;
+            for (int b = 0; b < binned.bins[f] - 1; b++) {
+                int at = (base + b) << 1;
+                if (hist[at] == 0) {
+                    continue;
+                }
+                wl += hist[at];
+                pl += hist[at + 1];
+                if (wl < minLeaf || w - wl < minLeaf) {
+                    continue;
+                }
+                double gain = parent - impurity(wl, pl) - impurity(w - wl, pos - pl);
+                if (gain > best.gain) {
+                    best.gain = gain;
+                    best.feature = f;
+                    best.splitBin = b;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static double impurity(long w, long pos) {
+        return w == 0 ? 0 : 2.0 * pos * (w - pos) / w;
+    }
+
+    private int partition(Pending s) {
+        byte[] code = binned.code[s.feature];
+        int i = s.lo;
+        int j = s.hi - 1;
+        while (i <= j) {
+            if ((code[idx[i]] & 0xFF) <= s.splitBin) {
+                i++;
+            } else {
+                int t = idx[i];
+                idx[i] = idx[j];
+                idx[j--] = t;
+            }
+        }
+        return i;
+    }
+
+    private int newNode() {
+        if (nodes == feature.length) {
+            int n = nodes * 2;
+            feature = Arrays.copyOf(feature, n);
+            threshold = Arrays.copyOf(threshold, n);
+            left = Arrays.copyOf(left, n);
+            right = Arrays.copyOf(right, n);
+            value = Arrays.copyOf(value, n);
+            cover = Arrays.copyOf(cover, n);
+        }
+        feature[nodes] = DecisionTree.LEAF;
+        left[nodes] = -1;
+        right[nodes] = -1;
+        return nodes++;
+    }
+
+    private static final class Pending {
+        final int node;
+        final int lo;
+        final int hi;
+        int[] hist;
+        double gain;
+        int feature = -1;
+        int splitBin;
+
+        Pending(int node, int lo, int hi, int[] hist) {
+            this.node = node;
+            this.lo = lo;
+            this.hi = hi;
+            this.hist = hist;
+        }
+
+        boolean splittable() {
+            return feature >= 0 && gain > 0;
+        }
+    }
+}
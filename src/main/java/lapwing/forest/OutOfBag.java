@@ -0,0 +1,241 @@
+package lapwing.forest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import lapwing.data.ModelFrame;
+import lapwing.eval.RocEvaluator;
+
+/**
+ * Out-of-bag evaluation of a forest from {@link RandomForestTrainer#fitOutOfBag}: a near-free validation signal
+ * on every retrain, and the importance block ({@code classifier_df.explain()}) the workflow leaves commented out.
+ *
+ * <p>Each training row is scored only by the trees whose bag left it out; the mean of those trees is its OOB
+ * probability (NaN if every tree drew the row). Permutation importance follows Breiman: for predictor {@code j}
+ * and tree {@code t}, the values of {@code j} are shuffled among the rows out of {@code t}'s bag and the tree is
+ * re-scored, and the importance is the OOB AUC lost once every tree's shuffled scores are averaged. Permutation
+ * work runs as (predictor, block of trees) tasks, each summing into its own buffer; blocks are merged in tree
+ * order, so results do not depend on the number of threads.
+ */
+public final class OutOfBag {
+
+    /** Trees per permutation task. */
+    static final int TREES_PER_TASK = 8;
+
+    private final RandomForest forest;
+    private final int[] rows;
+    private final long[][] inBag;
+    private final long seed;
+    private final ForkJoinPool pool;
+    private final float[][] columns;
+    private final int[] map;
+    private final byte[] status;
+    private final int[] votes;
+    private final float[] probability;
+    private final double auc;
+
+    OutOfBag(RandomForest forest, ModelFrame frame, int[] rows, long[][] inBag, long seed, ForkJoinPool pool) {
+        this.forest = forest;
+        this.rows = rows;
+        this.inBag = inBag;
+        this.seed = seed;
+        this.pool = pool;
+        this.map = forest.columnMap(frame);
+        this.columns = new float[frame.predictorCount()][];
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = frame.column(j);
+        }
+        this.status = new byte[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            status[i] = frame.status()[rows[i]];
+        }
+
+        this.votes = new int[rows.length];
+        double[] sum = new double[rows.length];
+        int blocks = (forest.treeCount() + TREES_PER_TASK - 1) / TREES_PER_TASK;
+        List<Callable<double[]>> tasks = new ArrayList<>(blocks);
+        for (int b = 0; b < blocks; b++) {
+            int t0 = b * TREES_PER_TASK;
+            int t1 = Math.min(forest.treeCount(), t0 + TREES_PER_TASK);
+            tasks.add(() -> {
+                double[] s = new double[rows.length];
+                for (int t = t0; t < t1; t++) {
+                    DecisionTree tree = forest.tree(t);
+                    for (int i = 0; i < rows.length; i++) {
+                        if (!inBag(t, i)) {
+                            s[i] += tree.predict(columns, map, rows[i]);
+                        }
+                    }
+                }
+                return s;
+            });
+        }
+        for (double[] s : invokeAll(tasks)) {
+            for (int i = 0; i < rows.length; i++) {
+                sum[i] += s[i];
+            }
+        }
+        for (int t = 0; t < forest.treeCount(); t++) {
+            for (int i = 0; i < rows.length; i++) {
+                if (!inBag(t, i)) {
+                    votes[i]++;
+                }
+            }
+        }
+        this.probability = mean(sum, votes);
+        this.auc = auc(probability);
+    }
+
+    private boolean inBag(int t, int i) {
+        return (inBag[t][i >>> 6] & (1L << i)) != 0;
+    }
+
+    //==========================================================================================================
+    // Accessors
+    //==========================================================================================================
+    public RandomForest forest() {
+        return forest;
+    }
+
+    /** Training rows of the frame, in the order of {@link #probability()}; callers must not modify it. */
+    public int[] rows() {
+        return rows;
+    }
+
+    /** OOB probability per training row, NaN for rows that no tree left out; callers must not modify it. */
+    public float[] probability() {
+        return probability;
+    }
+
+    /** Number of trees that left each training row out of their bag. */
+    public int[] votes() {
+        return votes.clone();
+    }
+
+    /** Response per training row, in the order of {@link #probability()}; callers must not modify it. */
+    public byte[] status() {
+        return status;
+    }
+
+    /** AUC over the rows with at least one OOB vote. */
+    public double auc() {
+        return auc;
+    }
+
+    //==========================================================================================================
+    // Permutation importance
+    //==========================================================================================================
+    /** OOB AUC decrease per predictor (in {@link RandomForest#predictorNames()} order) when it is shuffled. */
+    public double[] permutationImportance() {
+        int p = map.length;
+        int blocks = (forest.treeCount() + TREES_PER_TASK - 1) / TREES_PER_TASK;
+        List<Callable<double[]>> tasks = new ArrayList<>(p * blocks);
+        for (int j = 0; j < p; j++) {
+            for (int b = 0; b < blocks; b++) {
+                int feature = j;
+                int t0 = b * TREES_PER_TASK;
+                int t1 = Math.min(forest.treeCount(), t0 + TREES_PER_TASK);
+                tasks.add(() -> permuted(feature, t0, t1));
+            }
+        }
+        List<double[]> sums = invokeAll(tasks);
+        double[] importance = new double[p];
+        for (int j = 0; j < p; j++) {
+            double[] sum = new double[rows.length];
+            for (int b = 0; b < blocks; b++) {
+                double[] s = sums.get(j * blocks + b);
+                for (int i = 0; i < rows.length; i++) {
+                    sum[i] += s[i];
+                }
+            }
+            importance[j] = auc - auc(mean(sum, votes));
+        }
+        return importance;
+    }
+
+    // Sum over trees [t0, t1) of each OOB row's score with feature j shuffled among that tree's OOB rows
+    private double[] permuted(int j, int t0, int t1) {
+        double[] sum = new double[rows.length];
+        int[] oob = new int[rows.length];
+        float[] x = new float[map.length];
+        for (int t = t0; t < t1; t++) {
+            int n = 0;
+            for (int i = 0; i < rows.length; i++) {
+                if (!inBag(t, i)) {
+                    oob[n++] = i;
+                }
+            }
+            // Donor of the shuffled value for each OOB row: a Fisher-Yates permutation of the same rows
+            int[] donor = new int[n];
+            System.arraycopy(oob, 0, donor, 0, n);
+            SplittableRandom rnd = new SplittableRandom((seed * 0x9E3779B97F4A7C15L + t) * 31 + j);
+            for (int a = n - 1; a > 0; a--) {
+                int c = rnd.nextInt(a + 1);
+                int tmp = donor[a];
+                donor[a] = donor[c];
+                donor[c] = tmp;
+            }
+            DecisionTree tree = forest.tree(t);
+            float[] shuffled = columns[map[j]];
+            for (int a = 0; a < n; a++) {
+                int row = rows[oob[a]];
+                for (int f = 0; f < x.length; f++) {
+                    x[f] = columns[map[f]][row];
+                }
+                x[j] = shuffled[rows[donor[a]]];
+                sum[oob[a]] += tree.predict(x);
+            }
+        }
+        return sum;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Helpers
+    //----------------------------------------------------------------------------------------------------------
+    private static float[] mean(double[] sum, int[] votes) {
+        float[] out = new float[sum.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = votes[i] == 0 ? Float.NaN : (float) (sum[i] / votes[i]);
+        }
+        return out;
+    }
+
+    private double auc(float[] prob) {
+        int n = 0;
+        for (float v : prob) {
+            if (!Float.isNaN(v)) {
+                n++;
+            }
+        }
+        float[] p = new float[n];
+        byte[] s = new byte[n];
+        n = 0;
+        for (int i = 0; i < prob.length; i++) {
+            if (!Float.isNaN(prob[i])) {
+                p[n] = prob[i];
+                s[n++] = status[i];
+            }
+        }
+        return new RocEvaluator(p, s).auc();
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> out = new ArrayList<>(tasks.size());
+        for (Future<T> f : pool.invokeAll(tasks)) {
+            try {
+                out.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted during out-of-bag scoring", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Out-of-bag scoring failed", e.getCause());
+            }
+        }
+        return out;
+    }
+}
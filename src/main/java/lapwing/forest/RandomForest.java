@@ -0,0 +1,79 @@
+package lapwing.forest;
+
+import lapwing.data.ModelFrame;
+
+/**
+ * A trained forest in PROBABILITY output mode: the prediction is the mean over trees of the leaf presence
+ * fraction.
+ */
+public final class RandomForest {
+
+    private final String[] predictors;
+    private final DecisionTree[] trees;
+    private final double[] importance;
+
+    RandomForest(String[] predictors, DecisionTree[] trees, double[] importance) {
+        this.predictors = predictors;
+        this.trees = trees;
+        this.importance = importance;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Probability of presence for one feature vector ordered like predictorNames()
+    //----------------------------------------------------------------------------------------------------------
+    public double predict(float[] x) {
+        double sum = 0;
+        for (DecisionTree t : trees) {
+            sum += t.predict(x);
+        }
+        return sum / trees.length;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Probabilities for selected rows of a frame; columns are matched by name
+    //----------------------------------------------------------------------------------------------------------
+    public float[] predict(ModelFrame frame, int[] rows) {
+        int[] map = columnMap(frame);
+        float[][] columns = new float[frame.predictorCount()][];
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = frame.column(j);
+        }
+        float[] out = new float[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            double sum = 0;
+            for (DecisionTree t : trees) {
+                sum += t.predict(columns, map, rows[i]);
+            }
+            out[i] = (float) (sum / trees.length);
+        }
+        return out;
+    }
+
+    int[] columnMap(ModelFrame frame) {
+        int[] map = new int[predictors.length];
+        for (int j = 0; j < predictors.length; j++) {
+            map[j] = frame.indexOf(predictors[j]);
+            if (map[j] < 0) {
+                throw new IllegalArgumentException("Frame lacks predictor '" + predictors[j] + "'");
+            }
+        }
+        return map;
+    }
+
+    public String[] predictorNames() {
+        return predictors.clone();
+    }
+
+    public int treeCount() {
+        return trees.length;
+    }
+
+    public DecisionTree tree(int t) {
+        return trees[t];
+    }
+
+    /** Summed Gini impurity decrease per predictor, the quantity {@code explain().importance} reports. */
+    public double[] importance() {
+        return importance.clone();
+    }
+}
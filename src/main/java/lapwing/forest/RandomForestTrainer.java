@@ -0,0 +1,230 @@
+package lapwing.forest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import lapwing.data.ModelFrame;
+
+/**
+ * Local replacement for {@code ee.Classifier.smileRandomForest(...).train(...)}.
+ *
+ * <p>Trees are independent tasks on a {@link ForkJoinPool}. Each tree draws its bag and its per-node predictor
+ * subsets from its own {@link SplittableRandom} seeded by {@code (seed, treeIndex)}, so a forest is identical
+ * whatever the number of threads.
+ */
+public final class RandomForestTrainer {
+
+    private final ForestParams params;
+    private final ForkJoinPool pool;
+
+    public RandomForestTrainer(ForestParams params) {
+        this(params, ForkJoinPool.commonPool());
+    }
+
+    public RandomForestTrainer(ForestParams params, ForkJoinPool pool) {
+        this.params = params;
+        this.pool = pool;
+    }
+
+    public ForestParams params() {
+        return params;
+    }
+
+    //==========================================================================================================
+    // Training
+    //==========================================================================================================
+    public RandomForest fit(ModelFrame frame, int[] rows) {
+        return fit(frame, encode(frame), rows);
+    }
+
+    /** Split-search encoding of the frame for the configured split mode; compute once and reuse across fits. */
+    public ColumnEncoding encode(ModelFrame frame) {
+        return params.splitMode() == ForestParams.SplitMode.HISTOGRAM ? BinnedColumns.of(frame) : RankedColumns.of(frame);
+    }
+
+    /** Trains on {@code rows}, reusing an encoding computed once for the frame (e.g. across folds). */
+    public RandomForest fit(ModelFrame frame, ColumnEncoding encoding, int[] rows) {
+        return forest(frame, grow(frame, encoding, new int[][]{rows}, 0, params.numberOfTrees(), false));
+    }
+
+    /**
+     * Trains one forest per row set (e.g. the all-season model and one per season) in a single parallel pass:
+     * the trees of every model are tasks on the same pool and share the frame's encoding and the recycled bag
+     * and grower buffers. Forest {@code m} is identical to {@code fit(frame, encoding, rows[m])}.
+     */
+    public RandomForest[] fitAll(ModelFrame frame, ColumnEncoding encoding, int[]... rows) {
+        int trees = params.numberOfTrees();
+        List<Grown> grown = grow(frame, encoding, rows, 0, trees, false);
+        RandomForest[] out = new RandomForest[rows.length];
+        for (int m = 0; m < rows.length; m++) {
+            out[m] = forest(frame, grown.subList(m * trees, (m + 1) * trees));
+        }
+        return out;
+    }
+
+    /**
+     * Trains like {@link #fit(ModelFrame, ColumnEncoding, int[])} and keeps each tree's bag membership, so the
+     * out-of-bag probabilities, AUC and permutation importance come from this single training run. The forest
+     * is identical to the one {@code fit} returns.
+     */
+    public OutOfBag fitOutOfBag(ModelFrame frame, ColumnEncoding encoding, int[] rows) {
+        List<Grown> grown = grow(frame, encoding, new int[][]{rows}, 0, params.numberOfTrees(), true);
+        long[][] inBag = new long[grown.size()][];
+        for (int t = 0; t < inBag.length; t++) {
+            inBag[t] = grown.get(t).inBag;
+        }
+        return new OutOfBag(forest(frame, grown), frame, rows, inBag, params.seed(), pool);
+    }
+
+    private static RandomForest forest(ModelFrame frame, List<Grown> grown) {
+        DecisionTree[] trees = new DecisionTree[grown.size()];
+        double[] importance = new double[frame.predictorCount()];
+        for (int t = 0; t < trees.length; t++) {
+            Grown g = grown.get(t);
+            trees[t] = g.tree;
+            for (int j = 0; j < importance.length; j++) {
+                importance[j] += g.importance[j];
+            }
+        }
+        return new RandomForest(frame.predictorNames(), trees, importance);
+    }
+
+    /**
+     * Grows trees {@code from .. to - 1} of the forest {@link #fit} would build. Each tree depends only on its
+     * index, so a forest can be grown incrementally in chunks (used to score tree-count prefixes).
+     */
+    public DecisionTree[] growTrees(ModelFrame frame, ColumnEncoding encoding, int[] rows, int from, int to) {
+        List<Grown> grown = grow(frame, encoding, new int[][]{rows}, from, to, false);
+        DecisionTree[] trees = new DecisionTree[grown.size()];
+        for (int t = 0; t < trees.length; t++) {
+            trees[t] = grown.get(t).tree;
+        }
+        return trees;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Trees from .. to - 1 of each model, model-major. Every task takes a recycled (bag weights, grower) pair;
+    // with recordBags, each tree also returns a bitset over positions in its rows marking the rows it was grown on
+    //----------------------------------------------------------------------------------------------------------
+    private List<Grown> grow(ModelFrame frame, ColumnEncoding encoding, int[][] models, int from, int to,
+                             boolean recordBags) {
+        for (int[] rows : models) {
+            if (rows.length == 0) {
+                throw new IllegalArgumentException("No training rows");
+            }
+        }
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Bad tree range " + from + ".." + to);
+        }
+        byte[] status = frame.status();
+        ConcurrentLinkedQueue<Scratch> scratch = new ConcurrentLinkedQueue<>();
+        List<Callable<Grown>> tasks = new ArrayList<>(models.length * (to - from));
+        for (int[] rows : models) {
+            for (int t = from; t < to; t++) {
+                final int tree = t;
+                tasks.add(() -> {
+                    Scratch s = scratch.poll();
+                    if (s == null) {
+                        s = new Scratch(new int[frame.rows()], encoding.newGrower(status, params));
+                    }
+                    SplittableRandom rnd = treeRandom(params.seed(), tree);
+                    int[] sample = bag(rows, s.weight, rnd);
+                    long[] inBag = null;
+                    if (recordBags) {
+                        inBag = new long[(rows.length + 63) >>> 6];
+                        for (int i = 0; i < rows.length; i++) {
+                            if (s.weight[rows[i]] > 0) {
+                                inBag[i >>> 6] |= 1L << i;
+                            }
+                        }
+                    }
+                    DecisionTree grown = s.grower.grow(sample, s.weight, rnd);
+                    Grown result = new Grown(grown, s.grower.importance().clone(), inBag);
+                    // Only a cleanly finished task returns its scratch, with the weights zeroed again
+                    for (int row : sample) {
+                        s.weight[row] = 0;
+                    }
+                    scratch.add(s);
+                    return result;
+                });
+            }
+        }
+        List<Grown> out = new ArrayList<>(tasks.size());
+        for (Future<Grown> f : pool.invokeAll(tasks)) {
+            out.add(join(f));
+        }
+        return out;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Draw the bag: bagFraction of the rows, with or without replacement; returns rows with weight > 0
+    //----------------------------------------------------------------------------------------------------------
+    int[] bag(int[] rows, int[] weight, SplittableRandom rnd) {
+        int m = Math.max(1, (int) Math.round(rows.length * params.bagFraction()));
+        if (params.withReplacement()) {
+            int[] picked = new int[m];
+            int distinct = 0;
+            for (int i = 0; i < m; i++) {
+                int row = rows[rnd.nextInt(rows.length)];
+                if (weight[row]++ == 0) {
+                    picked[distinct++] = row;
+                }
+            }
+            return Arrays.copyOf(picked, distinct);
+        }
+        int[] shuffled = rows.clone();
+        for (int i = 0; i < m; i++) {
+            int j = i + rnd.nextInt(shuffled.length - i);
+            int t = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = t;
+            weight[shuffled[i]] = 1;
+        }
+        return Arrays.copyOf(shuffled, m);
+    }
+
+    static SplittableRandom treeRandom(long seed, int tree) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + tree);
+    }
+
+    private static Grown join(Future<Grown> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tree training failed", e.getCause());
+        }
+    }
+
+    /** Bag weights (all zero between trees) and a grower, reused by consecutive tree tasks. */
+    private static final class Scratch {
+        final int[] weight;
+        final Grower grower;
+
+        Scratch(int[] weight, Grower grower) {
+            this.weight = weight;
+            this.grower = grower;
+        }
+    }
+
+    private static final class Grown {
+        final DecisionTree tree;
+        final float[] importance;
+        final long[] inBag;
+
+        Grown(DecisionTree tree, float[] importance, long[] inBag) {
+            this.tree = tree;
+            this.importance = importance;
+            this.inBag = inBag;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package lapwing.forest;
+
+import java.util.Arrays;
+
+import lapwing.data.ModelFrame;
+
+/**
+ * Predictor columns re-encoded as dense ranks, computed once per frame.
+ *
+ * <p>Rank {@code r} of column {@code j} stands for {@code distinct[j][r]}; ranks are stored as unsigned 16-bit
+ * values in a {@code short[]} so a split search only has to order small integers. Splitting on ranks is exactly
+ * equivalent to splitting on the float values. Missing values get the reserved rank {@code 0xFFFF}.
+ */
+public final class RankedColumns implements ColumnEncoding {
+
+    static final int MISSING = 0xFFFF;
+
+    final short[][] rank;
+    final float[][] distinct;
+
+    private RankedColumns(short[][] rank, float[][] distinct) {
+        this.rank = rank;
+        this.distinct = distinct;
+    }
+
+    public static RankedColumns of(ModelFrame frame) {
+        int p = frame.predictorCount();
+        short[][] rank = new short[p][];
+        float[][] distinct = new float[p][];
+        for (int j = 0; j < p; j++) {
+            float[] col = frame.column(j);
+            float[] sorted = new float[col.length];
+            for (int i = 0; i < col.length; i++) {
+                sorted[i] = col[i] + 0.0f; // folds -0.0 into 0.0 so binarySearch finds it
+            }
+            Arrays.sort(sorted);
+            int d = 0;
+            for (int i = 0; i < sorted.length && !Float.isNaN(sorted[i]); i++) {
+                if (d == 0 || sorted[i] != sorted[d - 1]) {
+                    sorted[d++] = sorted[i];
+                }
+            }
+            if (d > MISSING) {
+                throw new IllegalStateException("Column " + frame.predictorNames()[j] + " has " + d
+                        + " distinct values; exact splitting supports at most " + MISSING + ", use binned mode");
+            }
+            float[] values = Arrays.copyOf(sorted, d);
+            short[] r = new short[col.length];
+            for (int i = 0; i < col.length; i++) {
+                r[i] = (short) (Float.isNaN(col[i]) ? MISSING : Arrays.binarySearch(values, col[i] + 0.0f));
+            }
+            rank[j] = r;
+            distinct[j] = values;
+        }
+        return new RankedColumns(rank, distinct);
+    }
+
+    @Override
+    public int predictorCount() {
+        return rank.length;
+    }
+
+    @Override
+    public Grower newGrower(byte[] status, ForestParams params) {
+        return new TreeGrower(this, status, params);
+    }
+}
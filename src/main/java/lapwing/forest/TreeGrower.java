@@ -0,0 +1,264 @@
+package lapwing.forest;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Grows one CART classification tree (Gini impurity) on a weighted bootstrap sample.
+ *
+ * <p>Growth is best-first, as in Smile: each pending node carries its best split and the node with the largest
+ * impurity decrease is split next until no split is left or {@code maxNodes} leaves exist. A split is only valid
+ * when both children keep at least {@code minLeafPopulation} (weighted) samples. One grower is used by one thread
+ * for one tree; its scratch arrays are kept from tree to tree and only grow.
+ *
+ * <p>The sample is sorted by (rank, row) once per predictor when a tree starts. Every node owns the same range of
+ * each sorted list, and a split partitions all of them stably, so the ranges stay sorted and a candidate feature
+ * is scanned without sorting anything.
+ */
+final class TreeGrower implements Grower {
+
+    private final RankedColumns ranked;
+    private final byte[] status;
+    private final ForestParams params;
+    private final int mtry;
+
+    // Scratch state for the tree being grown; order[f] holds the sample sorted by rank of predictor f
+    private int[] weight;
+    private int[][] order;
+    private int[] scratch;
+    private long[] keys = new long[0];
+    private final boolean[] goesLeft;
+    private int[] features;
+    private final float[] importance;
+
+    // Growable node arrays
+    private short[] feature = new short[64];
+    private float[] threshold = new float[64];
+    private int[] left = new int[64];
+    private int[] right = new int[64];
+    private float[] value = new float[64];
+    private float[] cover = new float[64];
+    private int nodes;
+
+    TreeGrower(RankedColumns ranked, byte[] status, ForestParams params) {
+        this.ranked = ranked;
+        this.status = status;
+        this.params = params;
+        this.mtry = params.variablesPerSplitFor(ranked.predictorCount());
+        this.importance = new float[ranked.predictorCount()];
+        this.order = new int[ranked.predictorCount()][0];
+        this.scratch = new int[0];
+        this.goesLeft = new boolean[status.length];
+        this.features = new int[ranked.predictorCount()];
+        for (int j = 0; j < features.length; j++) {
+            features[j] = j;
+        }
+    }
+
+    //==========================================================================================================
+    // Grow a tree; weight[row] is the bootstrap multiplicity, sample lists the rows with weight > 0
+    //==========================================================================================================
+    @Override
+    public DecisionTree grow(int[] sample, int[] weight, SplittableRandom rnd) {
+        this.weight = weight;
+        presort(sample);
+        this.nodes = 0;
+        // Growers are recycled across trees, so every tree starts from the same feature order and importance
+        Arrays.fill(importance, 0);
+        for (int j = 0; j < features.length; j++) {
+            features[j] = j;
+        }
+
+        PriorityQueue<Pending> queue = new PriorityQueue<>((a, b) -> Double.compare(b.gain, a.gain));
+        Pending root = evaluate(newNode(), 0, sample.length, rnd);
+        if (root.splittable()) {
+            queue.add(root);
+        }
+        int leaves = 1;
+        while (!queue.isEmpty() && leaves < params.maxNodes()) {
+            Pending p = queue.poll();
+            int mid = partition(p);
+            int l = newNode();
+            int r = newNode();
+            feature[p.node] = (short) p.feature;
+            threshold[p.node] = p.threshold;
+            left[p.node] = l;
+            right[p.node] = r;
+            importance[p.feature] += (float) p.gain;
+            leaves++;
+
+            Pending lp = evaluate(l, p.lo, mid, rnd);
+            Pending rp = evaluate(r, mid, p.hi, rnd);
+            if (lp.splittable()) {
+                queue.add(lp);
+            }
+            if (rp.splittable()) {
+                queue.add(rp);
+            }
+        }
+        return new DecisionTree(Arrays.copyOf(feature, nodes), Arrays.copyOf(threshold, nodes),
+                Arrays.copyOf(left, nodes), Arrays.copyOf(right, nodes), Arrays.copyOf(value, nodes),
+                Arrays.copyOf(cover, nodes));
+    }
+
+    @Override
+    public float[] importance() {
+        return importance;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Sort the sample by (rank, row) for every predictor, the same order the split search used to sort per node
+    //----------------------------------------------------------------------------------------------------------
+    private void presort(int[] sample) {
+        int n = sample.length;
+        if (keys.length < n) {
+            keys = new long[n];
+            scratch = new int[n];
+            for (int f = 0; f < order.length; f++) {
+                order[f] = new int[n];
+            }
+        }
+        for (int f = 0; f < order.length; f++) {
+            short[] rank = ranked.rank[f];
+            for (int i = 0; i < n; i++) {
+                keys[i] = ((long) (rank[sample[i]] & 0xFFFF) << 32) | sample[i];
+            }
+            Arrays.sort(keys, 0, n);
+            int[] o = order[f];
+            for (int i = 0; i < n; i++) {
+                o[i] = (int) keys[i];
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Best split of the rows in [lo, hi) over mtry randomly chosen predictors
+    //----------------------------------------------------------------------------------------------------------
+    private Pending evaluate(int node, int lo, int hi, SplittableRandom rnd) {
+        int[] rows = order[0];
+        long w = 0;
+        long pos = 0;
+        for (int i = lo; i < hi; i++) {
+            int row = rows[i];
+            w += weight[row];
+            pos += status[row] == 1 ? weight[row] : 0;
+        }
+        value[node] = w == 0 ? 0f : (float) pos / w;
+        cover[node] = w;
+
+        Pending best = new Pending(node, lo, hi);
+        int minLeaf = params.minLeafPopulation();
+        if (w < 2L * minLeaf || pos == 0 || pos == w) {
+            return best;
+        }
+        double parent = impurity(w, pos);
+        for (int k = 0; k < mtry; k++) {
+            int swap = k + rnd.nextInt(features.length - k);
+            int f = features[swap];
+            features[swap] = features[k];
+            features[k] = f;
+
+            short[] rank = ranked.rank[f];
+            int[] sorted = order[f];
+            long wl = 0;
+            long pl = 0;
+            for (int i = lo; i < hi - 1; i++) {
+                int row = sorted[i];
+                wl += weight[row];
+                pl += status[row] == 1 ? weight[row] : 0;
+                int r0 = rank[row] & 0xFFFF;
+                int r1 = rank[sorted[i + 1]] & 0xFFFF;
+                if (r0 == r1 || r1 == RankedColumns.MISSING) {
+                    continue;
+                }
+                if (wl < minLeaf || w - wl < minLeaf) {
+                    continue;
+                }
+                double gain = parent - impurity(wl, pl) - impurity(w - wl, pos - pl);
+                if (gain > best.gain) {
+                    best.gain = gain;
+                    best.feature = f;
+                    best.splitRank = r0;
+                    best.threshold = (ranked.distinct[f][r0] + ranked.distinct[f][r1]) * 0.5f;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Weighted Gini impurity of a node: w * 2p(1-p)
+    private static double impurity(long w, long pos) {
+        return w == 0 ? 0 : 2.0 * pos * (w - pos) / w;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Move rows going left to the front of [lo, hi) in every sorted list, keeping their order; returns the first
+    // right index. The split feature's own list is already in place: its left rows are the prefix up to splitRank.
+    //----------------------------------------------------------------------------------------------------------
+    private int partition(Pending p) {
+        short[] rank = ranked.rank[p.feature];
+        int[] split = order[p.feature];
+        int mid = p.lo;
+        while (mid < p.hi && (rank[split[mid]] & 0xFFFF) <= p.splitRank) {
+            goesLeft[split[mid++]] = true;
+        }
+        for (int i = mid; i < p.hi; i++) {
+            goesLeft[split[i]] = false;
+        }
+        for (int f = 0; f < order.length; f++) {
+            if (f == p.feature) {
+                continue;
+            }
+            int[] o = order[f];
+            int l = p.lo;
+            int r = 0;
+            for (int i = p.lo; i < p.hi; i++) {
+                int row = o[i];
+                if (goesLeft[row]) {
+                    o[l++] = row;
+                } else {
+                    scratch[r++] = row;
+                }
+            }
+            System.arraycopy(scratch, 0, o, l, r);
+        }
+        return mid;
+    }
+
+    private int newNode() {
+        if (nodes == feature.length) {
+            int n = nodes * 2;
+            feature = Arrays.copyOf(feature, n);
+            threshold = Arrays.copyOf(threshold, n);
+            left = Arrays.copyOf(left, n);
+            right = Arrays.copyOf(right, n);
+            value = Arrays.copyOf(value, n);
+            cover = Arrays.copyOf(cover, n);
+        }
+        feature[nodes] = DecisionTree.LEAF;
+        left[nodes] = -1;
+        right[nodes] = -1;
+        return nodes++;
+    }
+
+    private static final class Pending {
+        final int node;
+        final int lo;
+        final int hi;
+        double gain;
+        int feature = -1;
+        int splitRank;
+        float threshold;
+
+        Pending(int node, int lo, int hi) {
+            this.node = node;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        boolean splittable() {
+            return feature >= 0 && gain > 0;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package lapwing.forest;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Exact SHAP values of a {@link RandomForest} by path-dependent TreeSHAP (Lundberg et al., Algorithm 2), the
+ * per-pixel counterpart of the global {@code explain().importance} dictionary.
+ *
+ * <p>For each tree the recursion carries the unique path of features split on so far, with the fraction of
+ * training cover ({@link DecisionTree#cover}) that flows down it ("zero") and whether the explained sample follows
+ * it ("one"); each leaf adds its value to the features on its path, weighted by the Shapley permutation weights.
+ * Forest values are the mean over trees, so for every sample {@code expectedValue() + sum(phi)} equals
+ * {@link RandomForest#predict(float[])}.
+ *
+ * <p>The path lives in one preallocated {@link Workspace} per thread, sliced by recursion depth as in the
+ * reference implementation, so explaining a sample allocates nothing. Cost is O(trees x leaves x depth^2) per
+ * sample, far more than prediction.
+ */
+public final class TreeShap {
+
+    private final RandomForest forest;
+    private final int maxDepth;
+    private final double expected;
+
+    private TreeShap(RandomForest forest, int maxDepth, double expected) {
+        this.forest = forest;
+        this.maxDepth = maxDepth;
+        this.expected = expected;
+    }
+
+    public static TreeShap of(RandomForest forest) {
+        int depth = 0;
+        double expected = 0;
+        ArrayDeque<int[]> stack = new ArrayDeque<>();
+        for (int t = 0; t < forest.treeCount(); t++) {
+            DecisionTree tree = forest.tree(t);
+            double sum = 0;
+            stack.push(new int[]{0, 0});
+            while (!stack.isEmpty()) {
+                int[] e = stack.pop();
+                depth = Math.max(depth, e[1]);
+                if (tree.isLeaf(e[0])) {
+                    sum += (double) tree.cover[e[0]] * tree.value[e[0]];
+                } else {
+                    stack.push(new int[]{tree.left[e[0]], e[1] + 1});
+                    stack.push(new int[]{tree.right[e[0]], e[1] + 1});
+                }
+            }
+            expected += sum / tree.cover[0];
+        }
+        return new TreeShap(forest, depth, expected / forest.treeCount());
+    }
+
+    /** Mean prediction over the training cover: the base value the SHAP values of a sample add to. */
+    public double expectedValue() {
+        return expected;
+    }
+
+    public int predictorCount() {
+        return forest.predictorNames().length;
+    }
+
+    public String[] predictorNames() {
+        return forest.predictorNames();
+    }
+
+    /** Path buffers for one thread; reuse across samples, never share between threads. */
+    public Workspace newWorkspace() {
+        return new Workspace((maxDepth + 3) * (maxDepth + 4) / 2);
+    }
+
+    public static final class Workspace {
+        final int[] feature;
+        final double[] zero;
+        final double[] one;
+        final double[] weight;
+
+        Workspace(int size) {
+            feature = new int[size];
+            zero = new double[size];
+            one = new double[size];
+            weight = new double[size];
+        }
+    }
+
+    //==========================================================================================================
+    // Explain one sample: x ordered like predictorNames(), phi receives one value per predictor
+    //==========================================================================================================
+    public void explain(float[] x, Workspace w, double[] phi) {
+        Arrays.fill(phi, 0, predictorCount(), 0);
+        for (int t = 0; t < forest.treeCount(); t++) {
+            recurse(forest.tree(t), x, phi, w, 0, 0, 0, 1, 1, -1);
+        }
+        double scale = 1.0 / forest.treeCount();
+        for (int j = 0; j < predictorCount(); j++) {
+            phi[j] *= scale;
+        }
+    }
+
+    // The path of this call occupies [at, at + depth]; the parent's path starts at parent
+    private static void recurse(DecisionTree tree, float[] x, double[] phi, Workspace w, int node, int depth,
+                                int parent, double parentZero, double parentOne, int parentFeature) {
+        int at = parent + depth + 1;
+        System.arraycopy(w.feature, parent, w.feature, at, depth + 1);
+        System.arraycopy(w.zero, parent, w.zero, at, depth + 1);
+        System.arraycopy(w.one, parent, w.one, at, depth + 1);
+        System.arraycopy(w.weight, parent, w.weight, at, depth + 1);
+        extend(w, at, depth, parentZero, parentOne, parentFeature);
+
+        int split = tree.feature[node];
+        if (split == DecisionTree.LEAF) {
+            for (int i = 1; i <= depth; i++) {
+                double s = unwoundSum(w, at, depth, i);
+                phi[w.feature[at + i]] += s * (w.one[at + i] - w.zero[at + i]) * tree.value[node];
+            }
+            return;
+        }
+        // NaN compares false and goes right, as in DecisionTree.predict
+        int hot = x[split] <= tree.threshold[node] ? tree.left[node] : tree.right[node];
+        int cold = hot == tree.left[node] ? tree.right[node] : tree.left[node];
+        double cover = tree.cover[node];
+        double incomingZero = 1;
+        double incomingOne = 1;
+        // A feature already on the path is unwound and re-added at this split
+        int k = 0;
+        while (k <= depth && w.feature[at + k] != split) {
+            k++;
+        }
+        if (k <= depth) {
+            incomingZero = w.zero[at + k];
+            incomingOne = w.one[at + k];
+            unwind(w, at, depth, k);
+            depth--;
+        }
+        recurse(tree, x, phi, w, hot, depth + 1, at, tree.cover[hot] / cover * incomingZero, incomingOne, split);
+        recurse(tree, x, phi, w, cold, depth + 1, at, tree.cover[cold] / cover * incomingZero, 0, split);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Permutation weights of the path (EXTEND, UNWIND and the sum of an unwound path's weights)
+    //----------------------------------------------------------------------------------------------------------
+    private static void extend(Workspace w, int at, int depth, double zero, double one, int feature) {
+        w.feature[at + depth] = feature;
+        w.zero[at + depth] = zero;
+        w.one[at + depth] = one;
+        w.weight[at + depth] = depth == 0 ? 1 : 0;
+        for (int i = depth - 1; i >= 0; i--) {
+            w.weight[at + i + 1] += one * w.weight[at + i] * (i + 1) / (depth + 1);
+            w.weight[at + i] = zero * w.weight[at + i] * (depth - i) / (depth + 1);
+        }
+    }
+
+    private static void unwind(Workspace w, int at, int depth, int index) {
+        double one = w.one[at + index];
+        double zero = w.zero[at + index];
+        double next = w.weight[at + depth];
+        for (int i = depth - 1; i >= 0; i--) {
+            if (one != 0) {
+                double tmp = w.weight[at + i];
+                w.weight[at + i] = next * (depth + 1) / ((i + 1) * one);
+                next = tmp - w.weight[at + i] * zero * (depth - i) / (depth + 1);
+            } else {
+                w.weight[at + i] = w.weight[at + i] * (depth + 1) / (zero * (depth - i));
+            }
+        }
+        for (int i = index; i < depth; i++) {
+            w.feature[at + i] = w.feature[at + i + 1];
+            w.zero[at + i] = w.zero[at + i + 1];
+            w.one[at + i] = w.one[at + i + 1];
+        }
+    }
+
+    private static double unwoundSum(Workspace w, int at, int depth, int index) {
+        double one = w.one[at + index];
+        double zero = w.zero[at + index];
+        double next = w.weight[at + depth];
+        double total = 0;
+        if (one != 0) {
+            for (int i = depth - 1; i >= 0; i--) {
+                double tmp = next / ((i + 1) * one);
+                total += tmp;
+                next = w.weight[at + i] - tmp * zero * (depth - i);
+            }
+        } else {
+            for (int i = depth - 1; i >= 0; i--) {
+                total += w.weight[at + i] / (zero * (depth - i));
+            }
+        }
+        return total * (depth + 1);
+    }
+}
@@ -0,0 +1,122 @@
+package lapwing.pipeline;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * SHA-256 content hashes of the external inputs of a pipeline (tables, rasters, scene directories).
+ *
+ * <p>Hashing gigabytes of scenes on every run would cost more than many stages, so each file's hash is memoised
+ * in a tab-separated file with its size and modification time, and the file is read again only when either
+ * changes. A directory hashes the sorted list of its files' relative names and hashes.
+ */
+final class Fingerprints {
+
+    private final Path memoFile;
+    private final Map<String, String[]> memo = new HashMap<>();
+    private boolean dirty;
+
+    Fingerprints(Path memoFile) throws IOException {
+        this.memoFile = memoFile;
+        if (Files.exists(memoFile)) {
+            for (String line : Files.readAllLines(memoFile, StandardCharsets.UTF_8)) {
+                String[] f = line.split("\t");
+                if (f.length == 4) {
+                    memo.put(f[0], new String[]{f[1], f[2], f[3]});
+                }
+            }
+        }
+    }
+
+    /** Hash of a file, or of every file under a directory when {@code glob} is null, else of those matching. */
+    String of(Path path, String glob) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return file(path);
+        }
+        List<Path> files = new ArrayList<>();
+        if (glob == null) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.filter(Files::isRegularFile).forEach(files::add);
+            }
+        } else {
+            try (DirectoryStream<Path> dir = Files.newDirectoryStream(path, glob)) {
+                for (Path f : dir) {
+                    if (Files.isRegularFile(f)) {
+                        files.add(f);
+                    }
+                }
+            }
+        }
+        files.sort(null);
+        MessageDigest digest = sha256();
+        for (Path f : files) {
+            String line = path.relativize(f).toString().replace('\\', '/') + "\t" + file(f) + "\n";
+            digest.update(line.getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private String file(Path f) throws IOException {
+        if (!Files.exists(f)) {
+            throw new IllegalArgumentException("Pipeline input " + f + " does not exist");
+        }
+        String key = f.toAbsolutePath().normalize().toString();
+        BasicFileAttributes attrs = Files.readAttributes(f, BasicFileAttributes.class);
+        String size = Long.toString(attrs.size());
+        String modified = Long.toString(attrs.lastModifiedTime().toMillis());
+        String[] known = memo.get(key);
+        if (known != null && known[0].equals(size) && known[1].equals(modified)) {
+            return known[2];
+        }
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(f)) {
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        memo.put(key, new String[]{size, modified, hash});
+        dirty = true;
+        return hash;
+    }
+
+    /** Writes the memo back if any file was hashed. */
+    void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        Path tmp = memoFile.resolveSibling(memoFile.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String[]> e : memo.entrySet()) {
+                String[] v = e.getValue();
+                w.write(e.getKey() + "\t" + v[0] + "\t" + v[1] + "\t" + v[2] + "\n");
+            }
+        }
+        Files.move(tmp, memoFile, StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
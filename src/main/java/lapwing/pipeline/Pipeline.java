@@ -0,0 +1,191 @@
+package lapwing.pipeline;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A DAG of {@link Stage}s run against a {@link StageCache}, recomputing only what its inputs invalidate.
+ *
+ * <p>A stage's key is the SHA-256 of its name, its parameters, the content hashes of its external inputs (see
+ * {@link Fingerprints}) and the keys of the stages it reads from, so a key names one output exactly and a
+ * change anywhere upstream changes every key below it. Stages are added in dependency order, which is also the
+ * order they run in; a stage whose key is in the cache is a hit and is not run at all.
+ *
+ * <p>Hits and misses per stage are kept across runs in {@code stats.tsv} in the cache directory.
+ */
+public final class Pipeline {
+
+    // Part of every key: bump when the key recipe changes
+    private static final String KEY_VERSION = "lapwing-pipeline 1";
+    private static final String STATS = "stats.tsv";
+
+    private final StageCache cache;
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+    public Pipeline(StageCache cache) {
+        this.cache = cache;
+    }
+
+    public Pipeline add(Stage stage) {
+        if (stages.containsKey(stage.name())) {
+            throw new IllegalArgumentException("Stage '" + stage.name() + "' is defined twice");
+        }
+        for (String up : stage.upstream()) {
+            if (!stages.containsKey(up)) {
+                throw new IllegalArgumentException("Stage '" + stage.name() + "' reads '" + up
+                        + "', which must be added before it");
+            }
+        }
+        stages.put(stage.name(), stage);
+        return this;
+    }
+
+    public List<String> stageNames() {
+        return new ArrayList<>(stages.keySet());
+    }
+
+    /** What happened to one stage in a run. */
+    public static final class Outcome {
+        public final String stage;
+        public final String key;
+        public final boolean hit;
+        public final Path output;
+        public final long bytes;
+        public final double seconds;
+
+        Outcome(String stage, String key, boolean hit, Path output, long bytes, double seconds) {
+            this.stage = stage;
+            this.key = key;
+            this.hit = hit;
+            this.output = output;
+            this.bytes = bytes;
+            this.seconds = seconds;
+        }
+    }
+
+    //==========================================================================================================
+    // Keys
+    //==========================================================================================================
+    /** The key of every stage and whether it is already cached ({@code hit}), without running anything. */
+    public List<Outcome> plan() throws IOException {
+        Fingerprints fingerprints = new Fingerprints(cache.directory().resolve("inputs.tsv"));
+        Map<String, String> keys = new LinkedHashMap<>();
+        List<Outcome> plan = new ArrayList<>();
+        for (Stage s : stages.values()) {
+            String key = key(s, fingerprints, keys);
+            keys.put(s.name(), key);
+            long bytes = cache.bytes(key);
+            plan.add(new Outcome(s.name(), key, bytes >= 0, null, bytes, 0));
+        }
+        fingerprints.save();
+        return plan;
+    }
+
+    private static String key(Stage s, Fingerprints fingerprints, Map<String, String> keys) throws IOException {
+        StringBuilder recipe = new StringBuilder(KEY_VERSION).append('\n');
+        recipe.append("stage\t").append(s.name()).append('\n');
+        for (Map.Entry<String, String> p : s.params().entrySet()) {
+            recipe.append("param\t").append(p.getKey()).append('\t').append(p.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Path> in : s.inputs().entrySet()) {
+            recipe.append("input\t").append(in.getKey()).append('\t')
+                    .append(fingerprints.of(in.getValue(), s.glob(in.getKey()))).append('\n');
+        }
+        for (String up : s.upstream()) {
+            recipe.append("after\t").append(up).append('\t').append(keys.get(up)).append('\n');
+        }
+        MessageDigest digest = Fingerprints.sha256();
+        return HexFormat.of().formatHex(digest.digest(recipe.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    //==========================================================================================================
+    // Run
+    //==========================================================================================================
+    /** Runs every stage not already cached, in order; returns one outcome per stage. */
+    public List<Outcome> run() throws IOException {
+        Fingerprints fingerprints = new Fingerprints(cache.directory().resolve("inputs.tsv"));
+        Map<String, long[]> stats = readStats();
+        Map<String, String> keys = new LinkedHashMap<>();
+        Map<String, Path> outputs = new LinkedHashMap<>();
+        Set<String> pinned = new HashSet<>();
+        List<Outcome> outcomes = new ArrayList<>();
+        try {
+            for (Stage s : stages.values()) {
+                long start = System.nanoTime();
+                String key = key(s, fingerprints, keys);
+                keys.put(s.name(), key);
+                pinned.add(key);
+                Path out = cache.find(key);
+                boolean hit = out != null;
+                stats.computeIfAbsent(s.name(), k -> new long[2])[hit ? 0 : 1]++;
+                if (!hit) {
+                    Map<String, Path> inputs = new LinkedHashMap<>(s.inputs());
+                    for (String up : s.upstream()) {
+                        inputs.put(up, outputs.get(up));
+                    }
+                    Path staged = cache.stage(key);
+                    try {
+                        s.action().run(staged, inputs, s.params());
+                    } catch (Exception e) {
+                        cache.discard(staged);
+                        throw new IllegalStateException("Stage '" + s.name() + "' failed: " + e.getMessage(), e);
+                    }
+                    out = cache.commit(key, s.name(), staged);
+                    cache.evict(pinned);
+                }
+                outputs.put(s.name(), out);
+                outcomes.add(new Outcome(s.name(), key, hit, out, cache.bytes(key),
+                        (System.nanoTime() - start) / 1e9));
+            }
+            // A run of hits adds nothing but may follow a smaller budget
+            cache.evict(pinned);
+        } finally {
+            fingerprints.save();
+            writeStats(stats);
+        }
+        return outcomes;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Hit and miss counts across runs
+    //----------------------------------------------------------------------------------------------------------
+    /** Hits and misses of every stage ever run against the cache: {hits, misses}. */
+    public Map<String, long[]> counts() throws IOException {
+        return readStats();
+    }
+
+    private Map<String, long[]> readStats() throws IOException {
+        Map<String, long[]> stats = new TreeMap<>();
+        Path file = cache.directory().resolve(STATS);
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] f = line.split("\t");
+                if (f.length == 3 && !f[0].equals("stage")) {
+                    stats.put(f[0], new long[]{Long.parseLong(f[1]), Long.parseLong(f[2])});
+                }
+            }
+        }
+        return stats;
+    }
+
+    private void writeStats(Map<String, long[]> stats) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(cache.directory().resolve(STATS), StandardCharsets.UTF_8)) {
+            w.write("stage\thits\tmisses\n");
+            for (Map.Entry<String, long[]> e : stats.entrySet()) {
+                w.write(e.getKey() + "\t" + e.getValue()[0] + "\t" + e.getValue()[1] + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package lapwing.pipeline;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One step of a {@link Pipeline}: the stages it reads from, the parameters and external files it depends on,
+ * and the work itself. Its cache key is a hash of exactly these, so any other setting (thread count, paths of the
+ * cache) must not change what the stage writes.
+ */
+public final class Stage {
+
+    /** Writes the stage's outputs into {@code out}, an empty directory. */
+    public interface Action {
+        /**
+         * @param inputs output directory of every upstream stage by stage name, and every external input by key
+         * @param params the stage's parameters, sorted by name
+         */
+        void run(Path out, Map<String, Path> inputs, Map<String, String> params) throws Exception;
+    }
+
+    private final String name;
+    private final Action action;
+    private final List<String> after = new ArrayList<>();
+    private final Map<String, String> params = new TreeMap<>();
+    private final Map<String, Path> inputs = new TreeMap<>();
+    private final Map<String, String> globs = new TreeMap<>();
+
+    public Stage(String name, Action action) {
+        if (name.isEmpty() || !name.matches("[A-Za-z0-9_.-]+")) {
+            throw new IllegalArgumentException("Stage names are letters, digits, '_', '.' and '-': '" + name + "'");
+        }
+        this.name = name;
+        this.action = action;
+    }
+
+    /** Stages whose outputs this one reads; they must already be in the pipeline. */
+    public Stage after(String... stages) {
+        Collections.addAll(after, stages);
+        return this;
+    }
+
+    public Stage param(String key, Object value) {
+        params.put(key, String.valueOf(value));
+        return this;
+    }
+
+    public Stage params(Map<String, String> values) {
+        params.putAll(values);
+        return this;
+    }
+
+    /** An external file, or a directory with every file under it, identified by its content. */
+    public Stage input(String key, Path path) {
+        return input(key, path, null);
+    }
+
+    /**
+     * An external directory, identified by the content of the files directly in it that match {@code glob}, so
+     * that other files written there (a scene catalog, say) do not invalidate the stage.
+     */
+    public Stage input(String key, Path dir, String glob) {
+        inputs.put(key, dir);
+        globs.put(key, glob);
+        return this;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    Action action() {
+        return action;
+    }
+
+    List<String> upstream() {
+        return after;
+    }
+
+    Map<String, String> params() {
+        return Collections.unmodifiableMap(params);
+    }
+
+    Map<String, Path> inputs() {
+        return inputs;
+    }
+
+    /** Glob of input {@code key}, null for a file or a whole directory tree. */
+    String glob(String key) {
+        return globs.get(key);
+    }
+}
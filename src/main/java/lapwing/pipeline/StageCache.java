@@ -0,0 +1,164 @@
+package lapwing.pipeline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * On-disk store of stage outputs, one directory per cache key under {@code objects/}, bounded in size.
+ *
+ * <p>A stage writes into a fresh directory under {@code staging/} that is moved into place only once it has
+ * finished, so a key that exists is always complete. Each entry holds a marker {@value #MARKER} with the stage
+ * name and the entry's size; the marker's modification time is the entry's last use, and {@link #evict}
+ * removes least recently used entries until the store fits its budget. One pipeline runs against a cache at a
+ * time.
+ */
+public final class StageCache {
+
+    static final String MARKER = ".entry";
+
+    private final Path dir;
+    private final Path objects;
+    private final Path staging;
+    private final long maxBytes;
+
+    public StageCache(Path dir, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.dir = dir;
+        this.objects = Files.createDirectories(dir.resolve("objects"));
+        this.staging = dir.resolve("staging");
+        // Left over from a run that failed or was killed
+        delete(staging);
+        Files.createDirectories(staging);
+        this.maxBytes = maxBytes;
+    }
+
+    public Path directory() {
+        return dir;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /** The output directory stored under {@code key}, marked as just used, or null. */
+    Path find(String key) throws IOException {
+        Path entry = objects.resolve(key);
+        Path marker = entry.resolve(MARKER);
+        if (!Files.exists(marker)) {
+            return null;
+        }
+        Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+        return entry;
+    }
+
+    /** A new empty directory for a stage to write into before {@link #commit}. */
+    Path stage(String key) throws IOException {
+        return Files.createTempDirectory(staging, key.substring(0, 12) + "-");
+    }
+
+    /** Moves a finished staging directory into place under {@code key}; returns the entry and its size. */
+    Path commit(String key, String stageName, Path staged) throws IOException {
+        long bytes = sizeOf(staged);
+        Files.writeString(staged.resolve(MARKER), stageName + "\t" + bytes + "\n", StandardCharsets.UTF_8);
+        Path entry = objects.resolve(key);
+        if (Files.exists(entry)) {
+            // An incomplete entry (no marker) from an older version of the store
+            delete(entry);
+        }
+        Files.move(staged, entry, StandardCopyOption.ATOMIC_MOVE);
+        return entry;
+    }
+
+    void discard(Path staged) throws IOException {
+        delete(staged);
+    }
+
+    /** Bytes of the entry under {@code key} as recorded when it was stored, or -1. */
+    long bytes(String key) throws IOException {
+        Path marker = objects.resolve(key).resolve(MARKER);
+        if (!Files.exists(marker)) {
+            return -1;
+        }
+        String[] f = Files.readString(marker, StandardCharsets.UTF_8).trim().split("\t");
+        return f.length == 2 ? Long.parseLong(f[1]) : sizeOf(objects.resolve(key));
+    }
+
+    /** Total bytes of all entries. */
+    public long size() throws IOException {
+        long total = 0;
+        for (Path entry : entries()) {
+            total += Math.max(0, bytes(entry.getFileName().toString()));
+        }
+        return total;
+    }
+
+    /**
+     * Removes least recently used entries, never those in {@code keep}, until the store fits its budget;
+     * returns the keys removed.
+     */
+    List<String> evict(Set<String> keep) throws IOException {
+        List<Path> entries = entries();
+        long[] used = new long[entries.size()];
+        long total = 0;
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            Path entry = entries.get(i);
+            used[i] = Files.getLastModifiedTime(entry.resolve(MARKER)).toMillis();
+            total += Math.max(0, bytes(entry.getFileName().toString()));
+            order.add(i);
+        }
+        order.sort(Comparator.comparingLong(i -> used[i]));
+        List<String> removed = new ArrayList<>();
+        for (int i : order) {
+            if (total <= maxBytes) {
+                break;
+            }
+            String key = entries.get(i).getFileName().toString();
+            if (keep.contains(key)) {
+                continue;
+            }
+            total -= Math.max(0, bytes(key));
+            delete(entries.get(i));
+            removed.add(key);
+        }
+        return removed;
+    }
+
+    private List<Path> entries() throws IOException {
+        try (Stream<Path> list = Files.list(objects)) {
+            return list.filter(p -> Files.exists(p.resolve(MARKER))).sorted().toList();
+        }
+    }
+
+    private static long sizeOf(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            long total = 0;
+            for (Path p : walk.filter(Files::isRegularFile).toList()) {
+                total += Files.size(p);
+            }
+            return total;
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
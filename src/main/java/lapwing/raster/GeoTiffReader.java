@@ -0,0 +1,278 @@
+package lapwing.raster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Window reader for tiled float GeoTIFFs such as those of {@link GeoTiffWriter}: parses the IFDs once, then reads
+ * and decodes only the tiles that intersect a requested window, at full resolution or at any overview level.
+ *
+ * <p>Supports single-band float32 tiles, uncompressed or Deflate, with or without the floating-point predictor,
+ * in classic TIFF or BigTIFF (little-endian). Reads are positioned, so one reader can serve several threads.
+ */
+public final class GeoTiffReader implements Closeable {
+
+    /** One IFD: image size, tile size and the location of every tile. */
+    private static final class Level {
+        int width;
+        int height;
+        int tileWidth;
+        int tileHeight;
+        int compression = Tiff.COMPRESSION_NONE;
+        int predictor = Tiff.PREDICTOR_NONE;
+        long[] offsets;
+        long[] counts;
+    }
+
+    private final Path file;
+    private final FileChannel ch;
+    private final List<Level> levels;
+    private final GridSpec grid;
+    private final LongAdder tilesDecoded = new LongAdder();
+
+    private GeoTiffReader(Path file, FileChannel ch, List<Level> levels, GridSpec grid) {
+        this.file = file;
+        this.ch = ch;
+        this.levels = levels;
+        this.grid = grid;
+    }
+
+    //==========================================================================================================
+    // Open: header and IFD chain
+    //==========================================================================================================
+    public static GeoTiffReader open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer head = read(ch, 0, 16);
+            if (head.get(0) != 'I' || head.get(1) != 'I') {
+                throw new IOException(file + " is not a little-endian TIFF");
+            }
+            int magic = head.getShort(2);
+            boolean big = magic == 43;
+            if (!big && magic != 42) {
+                throw new IOException(file + " is not a TIFF");
+            }
+            long next = big ? head.getLong(8) : Integer.toUnsignedLong(head.getInt(4));
+            List<Level> levels = new ArrayList<>();
+            double[] scale = null;
+            double[] tie = null;
+            String crs = "";
+            while (next != 0) {
+                Map<Integer, long[]> ints = new HashMap<>();
+                Map<Integer, double[]> doubles = new HashMap<>();
+                next = readIfd(ch, next, big, ints, doubles);
+                Level l = new Level();
+                l.width = (int) first(ints, Tiff.IMAGE_WIDTH, file);
+                l.height = (int) first(ints, Tiff.IMAGE_LENGTH, file);
+                if (!ints.containsKey(Tiff.TILE_WIDTH)) {
+                    throw new IOException(file + " is not tiled");
+                }
+                l.tileWidth = (int) first(ints, Tiff.TILE_WIDTH, file);
+                l.tileHeight = (int) first(ints, Tiff.TILE_LENGTH, file);
+                l.offsets = ints.get(Tiff.TILE_OFFSETS);
+                l.counts = ints.get(Tiff.TILE_BYTE_COUNTS);
+                l.compression = (int) ints.getOrDefault(Tiff.COMPRESSION, new long[]{1})[0];
+                l.predictor = (int) ints.getOrDefault(Tiff.PREDICTOR, new long[]{1})[0];
+                if (ints.getOrDefault(Tiff.BITS_PER_SAMPLE, new long[]{0})[0] != 32
+                        || ints.getOrDefault(Tiff.SAMPLE_FORMAT, new long[]{1})[0] != Tiff.SAMPLE_FORMAT_FLOAT
+                        || ints.getOrDefault(Tiff.SAMPLES_PER_PIXEL, new long[]{1})[0] != 1) {
+                    throw new IOException(file + ": only single-band float32 images are supported");
+                }
+                if (l.compression != Tiff.COMPRESSION_NONE && l.compression != Tiff.COMPRESSION_DEFLATE) {
+                    throw new IOException(file + ": unsupported compression " + l.compression);
+                }
+                if (levels.isEmpty()) {
+                    scale = doubles.get(Tiff.MODEL_PIXEL_SCALE);
+                    tie = doubles.get(Tiff.MODEL_TIEPOINT);
+                    long[] keys = ints.get(Tiff.GEO_KEY_DIRECTORY);
+                    for (int k = 4; keys != null && k + 3 < keys.length; k += 4) {
+                        if ((keys[k] == Tiff.GEOGRAPHIC_TYPE || keys[k] == Tiff.PROJECTED_CS_TYPE) && keys[k + 1] == 0) {
+                            crs = "EPSG:" + keys[k + 3];
+                        }
+                    }
+                }
+                levels.add(l);
+            }
+            if (levels.isEmpty()) {
+                throw new IOException(file + " has no image");
+            }
+            Level full = levels.get(0);
+            double px = scale == null ? 1 : scale[0];
+            double x0 = tie == null ? 0 : tie[3] - tie[0] * px;
+            double y0 = tie == null ? 0 : tie[4] + tie[1] * px;
+            return new GeoTiffReader(file, ch, levels, new GridSpec(full.width, full.height, x0, y0, px, crs));
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private static long first(Map<Integer, long[]> ints, int tag, Path file) throws IOException {
+        long[] v = ints.get(tag);
+        if (v == null || v.length == 0) {
+            throw new IOException(file + " lacks TIFF tag " + tag);
+        }
+        return v[0];
+    }
+
+    private static long readIfd(FileChannel ch, long at, boolean big, Map<Integer, long[]> ints,
+                                Map<Integer, double[]> doubles) throws IOException {
+        ByteBuffer n = read(ch, at, 8);
+        long count = big ? n.getLong(0) : Short.toUnsignedInt(n.getShort(0));
+        int entry = big ? 20 : 12;
+        int inline = big ? 8 : 4;
+        long start = at + (big ? 8 : 2);
+        ByteBuffer e = read(ch, start, (int) (count * entry + inline));
+        for (int i = 0; i < count; i++) {
+            int p = i * entry;
+            int tag = Short.toUnsignedInt(e.getShort(p));
+            int type = e.getShort(p + 2);
+            long c = big ? e.getLong(p + 4) : Integer.toUnsignedLong(e.getInt(p + 4));
+            int size = switch (type) {
+                case Tiff.SHORT -> 2;
+                case Tiff.LONG -> 4;
+                case Tiff.DOUBLE, Tiff.LONG8 -> 8;
+                default -> 0;
+            };
+            if (size == 0) {
+                continue;
+            }
+            int valueAt = p + (big ? 12 : 8);
+            ByteBuffer v = c * size <= inline ? e.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(valueAt).slice()
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    : read(ch, big ? e.getLong(valueAt) : Integer.toUnsignedLong(e.getInt(valueAt)), (int) (c * size));
+            if (type == Tiff.DOUBLE) {
+                double[] d = new double[(int) c];
+                for (int k = 0; k < c; k++) {
+                    d[k] = v.getDouble(8 * k);
+                }
+                doubles.put(tag, d);
+            } else {
+                long[] l = new long[(int) c];
+                for (int k = 0; k < c; k++) {
+                    l[k] = switch (type) {
+                        case Tiff.SHORT -> Short.toUnsignedInt(v.getShort(2 * k));
+                        case Tiff.LONG -> Integer.toUnsignedLong(v.getInt(4 * k));
+                        default -> v.getLong(8 * k);
+                    };
+                }
+                ints.put(tag, l);
+            }
+        }
+        ByteBuffer link = read(ch, start + count * entry, inline);
+        return big ? link.getLong(0) : Integer.toUnsignedLong(link.getInt(0));
+    }
+
+    private static ByteBuffer read(FileChannel ch, long at, int bytes) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        while (b.hasRemaining()) {
+            if (ch.read(b, at + b.position()) < 0) {
+                break;
+            }
+        }
+        return b.flip();
+    }
+
+    /** Full-resolution grid. */
+    public GridSpec grid() {
+        return grid;
+    }
+
+    /** Number of resolution levels: 1 + overviews. */
+    public int levels() {
+        return levels.size();
+    }
+
+    /** Grid of {@code level}; overview pixels are larger by the ratio of the image widths. */
+    public GridSpec grid(int level) {
+        Level l = levels.get(level);
+        double px = grid.pixelSize() * grid.width() / l.width;
+        return new GridSpec(l.width, l.height, grid.x0(), grid.y0(), px, grid.crs());
+    }
+
+    /** Tiles decoded since opening, to check that a window read touched only what it needed. */
+    public long tilesDecoded() {
+        return tilesDecoded.sum();
+    }
+
+    //==========================================================================================================
+    // Window reads; pixels outside the image are NaN
+    //==========================================================================================================
+    public void readWindow(int level, int col0, int row0, int w, int h, float[] dst) throws IOException {
+        Level l = levels.get(level);
+        Arrays.fill(dst, 0, w * h, Float.NaN);
+        int across = (l.width + l.tileWidth - 1) / l.tileWidth;
+        int tx0 = Math.max(0, Math.floorDiv(col0, l.tileWidth));
+        int ty0 = Math.max(0, Math.floorDiv(row0, l.tileHeight));
+        int tx1 = Math.min(across - 1, Math.floorDiv(col0 + w - 1, l.tileWidth));
+        int ty1 = Math.min((l.height + l.tileHeight - 1) / l.tileHeight - 1, Math.floorDiv(row0 + h - 1, l.tileHeight));
+        float[] tile = new float[l.tileWidth * l.tileHeight];
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                decodeTile(l, ty * across + tx, tile);
+                int c0 = Math.max(col0, tx * l.tileWidth);
+                int c1 = Math.min(Math.min(col0 + w, (tx + 1) * l.tileWidth), l.width);
+                int r0 = Math.max(row0, ty * l.tileHeight);
+                int r1 = Math.min(Math.min(row0 + h, (ty + 1) * l.tileHeight), l.height);
+                for (int r = r0; r < r1; r++) {
+                    System.arraycopy(tile, (r - ty * l.tileHeight) * l.tileWidth + (c0 - tx * l.tileWidth), dst,
+                            (r - row0) * w + (c0 - col0), c1 - c0);
+                }
+            }
+        }
+    }
+
+    private void decodeTile(Level l, int t, float[] out) throws IOException {
+        byte[] raw = new byte[4 * l.tileWidth * l.tileHeight];
+        ByteBuffer stored = read(ch, l.offsets[t], (int) l.counts[t]);
+        if (l.compression == Tiff.COMPRESSION_NONE) {
+            stored.get(raw, 0, Math.min(raw.length, stored.remaining()));
+        } else {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                int n = 0;
+                while (n < raw.length && !inflater.finished()) {
+                    int got = inflater.inflate(raw, n, raw.length - n);
+                    if (got == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += got;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(file + ": corrupt tile " + t, e);
+            } finally {
+                inflater.end();
+            }
+        }
+        if (l.predictor == Tiff.PREDICTOR_FLOAT) {
+            for (int r = 0; r < l.tileHeight; r++) {
+                Tiff.decodeFloatRow(raw, 4 * r * l.tileWidth, l.tileWidth, out, r * l.tileWidth);
+            }
+        } else {
+            ByteBuffer b = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < out.length; i++) {
+                out[i] = b.getFloat(4 * i);
+            }
+        }
+        tilesDecoded.increment();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ch.close();
+    }
+}
@@ -0,0 +1,320 @@
+package lapwing.raster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one float band as a tiled, Deflate-compressed GeoTIFF with overviews in the Cloud-Optimized GeoTIFF
+ * layout: all IFDs (full resolution first, then each overview) at the start of the file, followed by the tile data
+ * from the coarsest overview down to full resolution.
+ *
+ * <p>This replaces the single-image {@code Export.image.toDrive} outputs ({@code HSI_1995} ... {@code HSI_2024}).
+ * A reader can fetch a window by decoding only the tiles that intersect it, and a map view can read a small
+ * overview without touching the full-resolution data. Tiles use the floating-point predictor, and masked pixels
+ * stay NaN ({@code GDAL_NODATA} "nan"). Each overview halves the previous level with the mean of its valid
+ * pixels. Levels are added until one tile covers the image.
+ *
+ * <p>Tiles are compressed in parallel in batches. Each batch then gets consecutive file offsets and is written
+ * with positioned {@link FileChannel} writes, so memory stays bounded by the batch and the overviews. BigTIFF is
+ * used when the uncompressed data would not fit below the 4 GiB limit of classic TIFF.
+ */
+public final class GeoTiffWriter {
+
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    // Tiles compressed before their offsets are assigned and they are written
+    static final int BATCH_TILES = 64;
+
+    private final ForkJoinPool pool;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private int deflateLevel = 6;
+    private int overviews = -1;
+
+    public GeoTiffWriter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Tile edge in pixels; TIFF requires a multiple of 16. */
+    public GeoTiffWriter tileSize(int size) {
+        if (size < 16 || size % 16 != 0) {
+            throw new IllegalArgumentException("tileSize must be a positive multiple of 16");
+        }
+        this.tileSize = size;
+        return this;
+    }
+
+    public GeoTiffWriter deflateLevel(int level) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Deflate level must be 0-9");
+        }
+        this.deflateLevel = level;
+        return this;
+    }
+
+    /** Number of overview levels; negative (the default) adds levels until one tile covers the image. */
+    public GeoTiffWriter overviews(int count) {
+        this.overviews = count;
+        return this;
+    }
+
+    /** A resolution level: full resolution reads the raster, overviews are held as arrays. */
+    private static final class Level {
+        final int width;
+        final int height;
+        final RasterFile raster;
+        final int band;
+        final float[] pixels;
+
+        Level(int width, int height, RasterFile raster, int band, float[] pixels) {
+            this.width = width;
+            this.height = height;
+            this.raster = raster;
+            this.band = band;
+            this.pixels = pixels;
+        }
+
+        void read(int col0, int row0, int w, int h, float[] dst) {
+            if (raster != null) {
+                raster.readFloats(band, col0, row0, w, h, dst);
+                return;
+            }
+            for (int r = 0; r < h; r++) {
+                System.arraycopy(pixels, (row0 + r) * width + col0, dst, r * w, w);
+            }
+        }
+
+        int tilesAcross(int size) {
+            return (width + size - 1) / size;
+        }
+
+        int tiles(int size) {
+            return tilesAcross(size) * ((height + size - 1) / size);
+        }
+    }
+
+    //==========================================================================================================
+    // Write; returns the file size in bytes
+    //==========================================================================================================
+    public long write(RasterFile raster, int band, Path out) throws IOException {
+        GridSpec grid = raster.grid();
+        List<Level> levels = new ArrayList<>();
+        levels.add(new Level(grid.width(), grid.height(), raster, band, null));
+        while (overviews < 0 ? Math.max(last(levels).width, last(levels).height) > tileSize
+                : levels.size() <= overviews) {
+            levels.add(halve(last(levels)));
+        }
+        long rawBytes = 0;
+        for (Level l : levels) {
+            rawBytes += 4L * l.tiles(tileSize) * tileSize * tileSize;
+        }
+        boolean big = rawBytes > 0xF0000000L;
+
+        //------------------------------------------------------------------------------------------------------
+        // IFDs go right after the header; their size does not depend on the offsets they will hold
+        //------------------------------------------------------------------------------------------------------
+        long[][] offsets = new long[levels.size()][];
+        long[][] counts = new long[levels.size()][];
+        for (int l = 0; l < levels.size(); l++) {
+            offsets[l] = new long[levels.get(l).tiles(tileSize)];
+            counts[l] = new long[offsets[l].length];
+        }
+        long headerSize = big ? 16 : 8;
+        long[] ifdAt = new long[levels.size()];
+        long at = headerSize;
+        for (int l = 0; l < levels.size(); l++) {
+            ifdAt[l] = at;
+            at += Tiff.ifdSize(entries(levels, l, grid, offsets[l], counts[l], big), big);
+        }
+        long dataStart = (at + 15) & ~15L;
+
+        try (FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long next = dataStart;
+            for (int l = levels.size() - 1; l >= 0; l--) {
+                next = writeLevel(ch, levels.get(l), next, offsets[l], counts[l]);
+            }
+            if (!big && next > 0xFFFFFFFFL) {
+                throw new IOException(out + ": compressed data exceeds 4 GiB in a classic TIFF");
+            }
+            ByteBuffer header = Tiff.le((int) headerSize).put((byte) 'I').put((byte) 'I');
+            if (big) {
+                header.putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(ifdAt[0]);
+            } else {
+                header.putShort((short) 42).putInt((int) ifdAt[0]);
+            }
+            writeFully(ch, header.flip(), 0);
+            for (int l = 0; l < levels.size(); l++) {
+                byte[] ifd = Tiff.encodeIfd(entries(levels, l, grid, offsets[l], counts[l], big), big, ifdAt[l],
+                        l + 1 < levels.size() ? ifdAt[l + 1] : 0);
+                writeFully(ch, ByteBuffer.wrap(ifd), ifdAt[l]);
+            }
+            return next;
+        }
+    }
+
+    private static Level last(List<Level> levels) {
+        return levels.get(levels.size() - 1);
+    }
+
+    /** Mean of the valid pixels of each 2 x 2 block; NaN where all four are masked. */
+    private static Level halve(Level src) {
+        int w = (src.width + 1) / 2;
+        int h = (src.height + 1) / 2;
+        float[] dst = new float[w * h];
+        float[] rows = new float[2 * src.width];
+        for (int r = 0; r < h; r++) {
+            int n = Math.min(2, src.height - 2 * r);
+            src.read(0, 2 * r, src.width, n, rows);
+            for (int c = 0; c < w; c++) {
+                double sum = 0;
+                int valid = 0;
+                for (int dr = 0; dr < n; dr++) {
+                    for (int dc = 0; dc < 2 && 2 * c + dc < src.width; dc++) {
+                        float v = rows[dr * src.width + 2 * c + dc];
+                        if (!Float.isNaN(v)) {
+                            sum += v;
+                            valid++;
+                        }
+                    }
+                }
+                dst[r * w + c] = valid == 0 ? Float.NaN : (float) (sum / valid);
+            }
+        }
+        return new Level(w, h, null, 0, dst);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Tags of level l; geo-referencing on the full-resolution level only, no-data on every level
+    //----------------------------------------------------------------------------------------------------------
+    private List<Tiff.Entry> entries(List<Level> levels, int l, GridSpec grid, long[] offsets, long[] counts,
+                                     boolean big) {
+        Level level = levels.get(l);
+        List<Tiff.Entry> e = new ArrayList<>();
+        e.add(Tiff.longs(Tiff.NEW_SUBFILE_TYPE, l == 0 ? 0 : 1));
+        e.add(Tiff.longs(Tiff.IMAGE_WIDTH, level.width));
+        e.add(Tiff.longs(Tiff.IMAGE_LENGTH, level.height));
+        e.add(Tiff.shorts(Tiff.BITS_PER_SAMPLE, 32));
+        e.add(Tiff.shorts(Tiff.COMPRESSION, Tiff.COMPRESSION_DEFLATE));
+        e.add(Tiff.shorts(Tiff.PHOTOMETRIC, 1));
+        e.add(Tiff.shorts(Tiff.SAMPLES_PER_PIXEL, 1));
+        e.add(Tiff.shorts(Tiff.PLANAR_CONFIG, 1));
+        e.add(Tiff.shorts(Tiff.PREDICTOR, Tiff.PREDICTOR_FLOAT));
+        e.add(Tiff.shorts(Tiff.TILE_WIDTH, tileSize));
+        e.add(Tiff.shorts(Tiff.TILE_LENGTH, tileSize));
+        e.add(big ? Tiff.long8s(Tiff.TILE_OFFSETS, offsets) : Tiff.longs(Tiff.TILE_OFFSETS, offsets));
+        e.add(big ? Tiff.long8s(Tiff.TILE_BYTE_COUNTS, counts) : Tiff.longs(Tiff.TILE_BYTE_COUNTS, counts));
+        e.add(Tiff.shorts(Tiff.SAMPLE_FORMAT, Tiff.SAMPLE_FORMAT_FLOAT));
+        if (l == 0) {
+            e.add(Tiff.doubles(Tiff.MODEL_PIXEL_SCALE, grid.pixelSize(), grid.pixelSize(), 0));
+            e.add(Tiff.doubles(Tiff.MODEL_TIEPOINT, 0, 0, 0, grid.x0(), grid.y0(), 0));
+            int epsg = epsg(grid.crs());
+            if (epsg > 0) {
+                boolean geographic = epsg >= 4000 && epsg < 5000;
+                e.add(Tiff.shorts(Tiff.GEO_KEY_DIRECTORY, 1, 1, 0, 3,
+                        Tiff.GT_MODEL_TYPE, 0, 1, geographic ? 2 : 1,
+                        Tiff.GT_RASTER_TYPE, 0, 1, 1,
+                        geographic ? Tiff.GEOGRAPHIC_TYPE : Tiff.PROJECTED_CS_TYPE, 0, 1, epsg));
+            }
+        }
+        e.add(Tiff.ascii(Tiff.GDAL_NODATA, "nan"));
+        return e;
+    }
+
+    static int epsg(String crs) {
+        if (crs.startsWith("EPSG:")) {
+            try {
+                return Integer.parseInt(crs.substring(5));
+            } catch (NumberFormatException notNumeric) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    //==========================================================================================================
+    // Tile data: compress a batch in parallel, lay it out contiguously, write it with positioned writes
+    //==========================================================================================================
+    private long writeLevel(FileChannel ch, Level level, long start, long[] offsets, long[] counts) {
+        int across = level.tilesAcross(tileSize);
+        int tiles = offsets.length;
+        byte[][] compressed = new byte[BATCH_TILES][];
+        long next = start;
+        for (int from = 0; from < tiles; from += BATCH_TILES) {
+            int n = Math.min(BATCH_TILES, tiles - from);
+            List<Callable<Void>> compress = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                int slot = i;
+                int t = from + i;
+                compress.add(() -> {
+                    compressed[slot] = compressTile(level, (t % across) * tileSize, (t / across) * tileSize);
+                    return null;
+                });
+            }
+            SurfaceBuilder.invokeAll(pool, compress);
+            List<Callable<Void>> write = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                offsets[from + i] = next;
+                counts[from + i] = compressed[i].length;
+                long pos = next;
+                byte[] bytes = compressed[i];
+                write.add(() -> {
+                    try {
+                        writeFully(ch, ByteBuffer.wrap(bytes), pos);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                });
+                next += bytes.length;
+            }
+            SurfaceBuilder.invokeAll(pool, write);
+        }
+        return next;
+    }
+
+    private byte[] compressTile(Level level, int col0, int row0) {
+        int w = Math.min(tileSize, level.width - col0);
+        int h = Math.min(tileSize, level.height - row0);
+        float[] window = new float[w * h];
+        level.read(col0, row0, w, h, window);
+        float[] tile = new float[tileSize * tileSize];
+        Arrays.fill(tile, Float.NaN);
+        for (int r = 0; r < h; r++) {
+            System.arraycopy(window, r * w, tile, r * tileSize, w);
+        }
+        byte[] raw = new byte[4 * tile.length];
+        for (int r = 0; r < tileSize; r++) {
+            Tiff.encodeFloatRow(tile, r * tileSize, tileSize, raw, 4 * r * tileSize);
+        }
+        Deflater deflater = new Deflater(deflateLevel);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4);
+            byte[] chunk = new byte[1 << 16];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static void writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) {
+            pos += ch.write(b, pos);
+        }
+    }
+}
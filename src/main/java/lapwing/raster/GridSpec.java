@@ -0,0 +1,126 @@
+package lapwing.raster;
+
+import java.util.Objects;
+
+/**
+ * North-up pixel grid: size, top-left corner and square pixel size in the units of {@code crs}.
+ *
+ * <p>Rasters processed together (scenes, Roughness, predictor surfaces) must share the pixel size and have
+ * origins a whole number of pixels apart, which is what Earth Engine produces when every export uses the same
+ * {@code crs} and {@code crsTransform}. {@link #offsetOf} gives the pixel offset between two such grids.
+ */
+public final class GridSpec {
+
+    private final int width;
+    private final int height;
+    private final double x0;
+    private final double y0;
+    private final double pixelSize;
+    private final String crs;
+
+    public GridSpec(int width, int height, double x0, double y0, double pixelSize, String crs) {
+        if (width <= 0 || height <= 0 || !(pixelSize > 0)) {
+            throw new IllegalArgumentException("Grid needs a positive size and pixel size");
+        }
+        this.width = width;
+        this.height = height;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.pixelSize = pixelSize;
+        this.crs = crs == null ? "" : crs;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public long pixels() {
+        return (long) width * height;
+    }
+
+    /** X of the left edge of the grid. */
+    public double x0() {
+        return x0;
+    }
+
+    /** Y of the top edge of the grid. */
+    public double y0() {
+        return y0;
+    }
+
+    public double pixelSize() {
+        return pixelSize;
+    }
+
+    public String crs() {
+        return crs;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Map <-> pixel coordinates (pixel centres)
+    //----------------------------------------------------------------------------------------------------------
+    public int col(double x) {
+        return (int) Math.floor((x - x0) / pixelSize);
+    }
+
+    public int row(double y) {
+        return (int) Math.floor((y0 - y) / pixelSize);
+    }
+
+    public double x(int col) {
+        return x0 + (col + 0.5) * pixelSize;
+    }
+
+    public double y(int row) {
+        return y0 - (row + 0.5) * pixelSize;
+    }
+
+    public boolean contains(int col, int row) {
+        return col >= 0 && row >= 0 && col < width && row < height;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Alignment between grids
+    //----------------------------------------------------------------------------------------------------------
+    /**
+     * Pixel offset {col, row} of {@code other}'s origin within this grid. Fails unless both grids share the
+     * pixel size and CRS and their origins differ by whole pixels.
+     */
+    public int[] offsetOf(GridSpec other) {
+        if (Math.abs(other.pixelSize - pixelSize) > 1e-9 * pixelSize || !crs.equals(other.crs)) {
+            throw new IllegalArgumentException("Grids differ in pixel size or CRS: " + this + " vs " + other);
+        }
+        double dc = (other.x0 - x0) / pixelSize;
+        double dr = (y0 - other.y0) / pixelSize;
+        long c = Math.round(dc);
+        long r = Math.round(dr);
+        if (Math.abs(dc - c) > 1e-6 || Math.abs(dr - r) > 1e-6) {
+            throw new IllegalArgumentException("Grid origins are not pixel-aligned: " + this + " vs " + other);
+        }
+        return new int[]{(int) c, (int) r};
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof GridSpec)) {
+            return false;
+        }
+        GridSpec g = (GridSpec) o;
+        return width == g.width && height == g.height && x0 == g.x0 && y0 == g.y0 && pixelSize == g.pixelSize
+                && crs.equals(g.crs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(width, height, x0, y0, pixelSize, crs);
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + " @ (" + x0 + ", " + y0 + ") " + pixelSize + " " + crs;
+    }
+}
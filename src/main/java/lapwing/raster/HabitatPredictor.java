@@ -0,0 +1,147 @@
+package lapwing.raster;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import lapwing.forest.CompiledForest;
+
+/**
+ * Local {@code classifiedCollection_df}: scores every monthly predictor surface with a {@link CompiledForest}
+ * and writes one single-band probability raster per month.
+ *
+ * <p>Work is split into (month, tile) tasks so that all months and all tiles run in parallel. A task reads the
+ * predictor bands the forest needs, scores the tile in blocks, and leaves pixels masked (NaN) wherever a
+ * predictor is masked, as {@code image.classify} does.
+ *
+ * <p>Several forests (the all-season and seasonal classifiers) can score in the same pass, one band per model:
+ * each task reads the union of their predictors once and every model scores from the same tile buffers, so
+ * extra models cost their tree traversals but no extra reads. A pixel is masked in a model's band when one of
+ * that model's predictors is masked.
+ */
+public final class HabitatPredictor {
+
+    public static final String BAND = "probability";
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private final String[] bands;
+    private final CompiledForest[] forests;
+    private final String[] predictors;
+    // columnsOf[m][j]: index into predictors of model m's j-th predictor
+    private final int[][] columnsOf;
+    private final ForkJoinPool pool;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private final ConcurrentLinkedQueue<float[][]> buffers = new ConcurrentLinkedQueue<>();
+
+    public HabitatPredictor(CompiledForest forest, ForkJoinPool pool) {
+        this(Map.of(BAND, forest), pool);
+    }
+
+    /** One output band per entry, named by its key, in the map's iteration order. */
+    public HabitatPredictor(Map<String, CompiledForest> models, ForkJoinPool pool) {
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("No models to score");
+        }
+        this.bands = models.keySet().toArray(new String[0]);
+        this.forests = models.values().toArray(new CompiledForest[0]);
+        Set<String> union = new LinkedHashSet<>();
+        for (CompiledForest f : forests) {
+            union.addAll(List.of(f.predictorNames()));
+        }
+        this.predictors = union.toArray(new String[0]);
+        List<String> order = List.of(predictors);
+        this.columnsOf = new int[forests.length][];
+        for (int m = 0; m < forests.length; m++) {
+            String[] names = forests[m].predictorNames();
+            columnsOf[m] = new int[names.length];
+            for (int j = 0; j < names.length; j++) {
+                columnsOf[m][j] = order.indexOf(names[j]);
+            }
+        }
+        this.pool = pool;
+    }
+
+    public List<String> bands() {
+        return List.of(bands);
+    }
+
+    public HabitatPredictor tileSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        this.tileSize = size;
+        return this;
+    }
+
+    /** Scores each surface into the raster named by {@code out}; returns surface -> probability raster. */
+    public Map<RasterFile, RasterFile> predict(List<RasterFile> surfaces, Function<RasterFile, Path> out)
+            throws IOException {
+        String[] names = predictors;
+        Map<RasterFile, RasterFile> result = new LinkedHashMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (RasterFile surface : surfaces) {
+            int[] bandOf = new int[names.length];
+            for (int j = 0; j < names.length; j++) {
+                bandOf[j] = surface.bandIndex(names[j]);
+                if (bandOf[j] < 0) {
+                    throw new IllegalArgumentException(surface.file() + " has no band " + names[j]);
+                }
+            }
+            RasterFile hsi = RasterFile.create(out.apply(surface), surface.grid(), PixelType.FLOAT32, List.of(bands),
+                    surface.metadata());
+            result.put(surface, hsi);
+            for (Tile tile : Tile.cover(surface.grid(), tileSize)) {
+                tasks.add(() -> {
+                    scoreTile(surface, bandOf, tile, hsi);
+                    return null;
+                });
+            }
+        }
+        SurfaceBuilder.invokeAll(pool, tasks);
+        for (RasterFile hsi : result.values()) {
+            hsi.close();
+        }
+        return result;
+    }
+
+    private void scoreTile(RasterFile surface, int[] bandOf, Tile tile, RasterFile hsi) {
+        int n = tile.pixels();
+        float[][] buf = buffers.poll();
+        if (buf == null || buf[0].length < n) {
+            buf = new float[bandOf.length + 1][Math.max(n, tileSize * tileSize)];
+        }
+        try {
+            for (int j = 0; j < bandOf.length; j++) {
+                surface.readFloats(bandOf[j], tile.col0, tile.row0, tile.width, tile.height, buf[j]);
+            }
+            float[] prob = buf[bandOf.length];
+            for (int m = 0; m < forests.length; m++) {
+                float[][] columns = new float[columnsOf[m].length][];
+                for (int j = 0; j < columns.length; j++) {
+                    columns[j] = buf[columnsOf[m][j]];
+                }
+                forests[m].score(columns, 0, n, prob);
+                for (int p = 0; p < n; p++) {
+                    for (float[] c : columns) {
+                        if (Float.isNaN(c[p])) {
+                            prob[p] = Float.NaN;
+                            break;
+                        }
+                    }
+                }
+                hsi.writeFloats(m, tile.col0, tile.row0, tile.width, tile.height, prob);
+            }
+        } finally {
+            buffers.add(buf);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package lapwing.raster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * The monthly habitat suitability rasters as one quantised, time-major stack: every pixel's whole series is one
+ * contiguous run, so per-pixel queries over 30 years (yearly medians, trends, region plots) read it at once
+ * instead of touching 360 rasters.
+ *
+ * <p>Probabilities are stored as UINT8 or UINT16 codes: code 0 is masked (NaN) and code {@code q > 0} is
+ * {@code min + (q - 1) * scale}, with {@code scale = (max - min) / (codes - 2)}. Values are rounded to the nearest
+ * code and clamped to {@code [min, max]}, so the error is at most {@code scale / 2} (0.002 for UINT8 and 7.6e-6
+ * for UINT16 over {@code [0, 1]}).
+ *
+ * <p>Layout (little-endian): magic {@code LAPWHSI1}, int version, int width, int height, double x0, y0 and pixel
+ * size, CRS (short length + UTF-8), pixel type byte, double min, double scale, int block size, int first month
+ * (year * 12 + month - 1), int capacity (months), long offset of the data, then one byte per month of capacity,
+ * 1 where the month has been written. The grid is cut into {@code block x block} chunks in row-major order (edge
+ * chunks are padded to full size); a chunk holds its pixels in row-major order and each pixel the
+ * {@code capacity} codes of its series. Chunks are mapped in groups of at most 1 GiB.
+ *
+ * <p>{@link #append} adds a month, growing the capacity by rewriting the file when the series are full. Reads
+ * may run on several threads at once, but not while a month is being appended.
+ */
+public final class HsiStack implements Closeable {
+
+    static final byte[] MAGIC = "LAPWHSI1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    /** File extension used for stacks. */
+    public static final String EXTENSION = ".lws";
+    public static final int DEFAULT_BLOCK = 16;
+    private static final long MAX_MAPPING = 1L << 30;
+
+    private final Path file;
+    private final GridSpec grid;
+    private final PixelType type;
+    private final double min;
+    private final double scale;
+    private final int block;
+    private final YearMonth first;
+    private final boolean writable;
+    private final int blocksAcross;
+    private final int blockCount;
+
+    // Replaced when the capacity grows
+    private int capacity;
+    private boolean[] present;
+    private long presentOffset;
+    private ByteBuffer header;
+    private ByteBuffer[] chunks;
+    private int chunksPerMapping;
+
+    private HsiStack(Path file, GridSpec grid, PixelType type, double min, double scale, int block, YearMonth first,
+                     boolean writable) {
+        this.file = file;
+        this.grid = grid;
+        this.type = type;
+        this.min = min;
+        this.scale = scale;
+        this.block = block;
+        this.first = first;
+        this.writable = writable;
+        this.blocksAcross = (grid.width() + block - 1) / block;
+        this.blockCount = blocksAcross * ((grid.height() + block - 1) / block);
+    }
+
+    //==========================================================================================================
+    // Create / open
+    //==========================================================================================================
+    /**
+     * Creates (or truncates) a stack with every month masked, for values in {@code [min, max]} starting at
+     * {@code first} with room for {@code capacity} months.
+     */
+    public static HsiStack create(Path file, GridSpec grid, PixelType type, double min, double max, YearMonth first,
+                                  int capacity, int block) throws IOException {
+        if (type != PixelType.UINT8 && type != PixelType.UINT16) {
+            throw new IllegalArgumentException("Stacks store UINT8 or UINT16 codes, not " + type);
+        }
+        if (!(max > min) || capacity < 1 || block < 1) {
+            throw new IllegalArgumentException("Stack needs max > min and a positive capacity and block size");
+        }
+        int codes = type == PixelType.UINT8 ? 256 : 65536;
+        HsiStack s = new HsiStack(file, grid, type, min, (max - min) / (codes - 2), block, first, true);
+        s.layout(file, capacity, new boolean[capacity]);
+        return s;
+    }
+
+    public static HsiStack open(Path file) throws IOException {
+        return open(file, false);
+    }
+
+    /** Opens a stack for {@link #append}. */
+    public static HsiStack openForAppend(Path file) throws IOException {
+        return open(file, true);
+    }
+
+    private static HsiStack open(Path file, boolean writable) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(ch.size(), 1 << 16)).order(ByteOrder.LITTLE_ENDIAN);
+            ch.read(head, 0);
+            head.flip();
+            byte[] magic = new byte[MAGIC.length];
+            head.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException(file + " is not an HSI stack");
+            }
+            int version = head.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported version " + version);
+            }
+            int width = head.getInt();
+            int height = head.getInt();
+            double x0 = head.getDouble();
+            double y0 = head.getDouble();
+            double pixel = head.getDouble();
+            byte[] crs = new byte[head.getShort()];
+            head.get(crs);
+            GridSpec grid = new GridSpec(width, height, x0, y0, pixel, new String(crs, StandardCharsets.UTF_8));
+            PixelType type = PixelType.values()[head.get()];
+            double min = head.getDouble();
+            double scale = head.getDouble();
+            int block = head.getInt();
+            int firstMonth = head.getInt();
+            YearMonth first = YearMonth.of(Math.floorDiv(firstMonth, 12), Math.floorMod(firstMonth, 12) + 1);
+            HsiStack s = new HsiStack(file, grid, type, min, scale, block, first, writable);
+            s.capacity = head.getInt();
+            head.getLong();
+            s.presentOffset = head.position();
+            s.map(ch.size());
+            s.present = new boolean[s.capacity];
+            for (int t = 0; t < s.capacity; t++) {
+                s.present[t] = s.header.get((int) s.presentOffset + t) != 0;
+            }
+            return s;
+        }
+    }
+
+    /** Writes the header of a file with {@code capacity} months and maps it. */
+    private void layout(Path target, int capacity, boolean[] present) throws IOException {
+        byte[] crs = grid.crs().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer head = ByteBuffer.allocate(128 + crs.length + capacity).order(ByteOrder.LITTLE_ENDIAN);
+        head.put(MAGIC).putInt(VERSION).putInt(grid.width()).putInt(grid.height())
+                .putDouble(grid.x0()).putDouble(grid.y0()).putDouble(grid.pixelSize())
+                .putShort((short) crs.length).put(crs)
+                .put((byte) type.ordinal()).putDouble(min).putDouble(scale).putInt(block)
+                .putInt(first.getYear() * 12 + first.getMonthValue() - 1).putInt(capacity);
+        long offset = align(head.position() + Long.BYTES + capacity);
+        head.putLong(offset);
+        long presence = head.position();
+        for (boolean p : present) {
+            head.put((byte) (p ? 1 : 0));
+        }
+        head.flip();
+        long chunkBytes = chunkBytes(capacity);
+        try (FileChannel ch = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(head, 0);
+            ch.truncate(offset);
+            // Extends the file with zero (masked) codes for the whole capacity
+            ch.write(ByteBuffer.allocate(1), offset + chunkBytes * blockCount - 1);
+        }
+        this.capacity = capacity;
+        this.present = present;
+        this.presentOffset = presence;
+        try (FileChannel ch = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            map(ch.size(), ch);
+        }
+    }
+
+    private void map(long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, writable
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ})) {
+            map(size, ch);
+        }
+    }
+
+    private void map(long size, FileChannel ch) throws IOException {
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        long chunkBytes = chunkBytes(capacity);
+        if (chunkBytes > MAX_MAPPING) {
+            throw new IOException("Chunks of " + chunkBytes + " bytes are too large; use a smaller block size");
+        }
+        long offset = align(presentOffset + capacity);
+        if (size < offset + chunkBytes * blockCount) {
+            throw new IOException(file + " is truncated");
+        }
+        header = ch.map(mode, 0, offset).order(ByteOrder.LITTLE_ENDIAN);
+        chunksPerMapping = (int) Math.max(1, MAX_MAPPING / chunkBytes);
+        chunks = new ByteBuffer[(blockCount + chunksPerMapping - 1) / chunksPerMapping];
+        for (int m = 0; m < chunks.length; m++) {
+            int count = Math.min(chunksPerMapping, blockCount - m * chunksPerMapping);
+            MappedByteBuffer b = ch.map(mode, offset + m * chunksPerMapping * chunkBytes, count * chunkBytes);
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            chunks[m] = b;
+        }
+    }
+
+    private long chunkBytes(int months) {
+        return (long) block * block * months * type.bytes;
+    }
+
+    private static long align(long n) {
+        return (n + 7) & ~7L;
+    }
+
+    //==========================================================================================================
+    // Accessors
+    //==========================================================================================================
+    public Path file() {
+        return file;
+    }
+
+    public GridSpec grid() {
+        return grid;
+    }
+
+    public PixelType type() {
+        return type;
+    }
+
+    /** Value step between codes. */
+    public double scale() {
+        return scale;
+    }
+
+    public YearMonth first() {
+        return first;
+    }
+
+    /** Months from {@link #first} up to the last one written. */
+    public int months() {
+        for (int t = capacity - 1; t >= 0; t--) {
+            if (present[t]) {
+                return t + 1;
+            }
+        }
+        return 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public YearMonth month(int t) {
+        return first.plusMonths(t);
+    }
+
+    /** Index of {@code month} in the series, negative before {@link #first}. */
+    public int indexOf(YearMonth month) {
+        return (int) first.until(month, ChronoUnit.MONTHS);
+    }
+
+    /** True if month {@code t} has been written; unwritten months read as masked. */
+    public boolean present(int t) {
+        return t >= 0 && t < capacity && present[t];
+    }
+
+    //==========================================================================================================
+    // Codes
+    //==========================================================================================================
+    int encode(float v) {
+        if (Float.isNaN(v)) {
+            return 0;
+        }
+        int top = type == PixelType.UINT8 ? 254 : 65534;
+        long q = Math.round((v - min) / scale);
+        return 1 + (int) Math.max(0, Math.min(top, q));
+    }
+
+    float decode(int q) {
+        return q == 0 ? Float.NaN : (float) (min + (q - 1) * scale);
+    }
+
+    /** Byte position of pixel (col, row) month {@code t} within its mapping; the mapping is {@code >> 32}. */
+    private long locate(int col, int row, int t) {
+        int chunk = (row / block) * blocksAcross + col / block;
+        int inChunk = (row % block) * block + col % block;
+        long within = ((long) (chunk % chunksPerMapping) * block * block + inChunk) * capacity + t;
+        return ((long) (chunk / chunksPerMapping) << 32) | (within * type.bytes);
+    }
+
+    //==========================================================================================================
+    // Reads
+    //==========================================================================================================
+    /** Months {@code [from, to)} of pixel (col, row) into {@code dst[0 .. to - from)}: one contiguous read. */
+    public void series(int col, int row, int from, int to, float[] dst) {
+        if (!grid.contains(col, row) || from < 0 || to > capacity || from > to) {
+            throw new IllegalArgumentException("Series " + from + ".." + to + " of (" + col + "," + row
+                    + ") is outside " + file);
+        }
+        long at = locate(col, row, from);
+        ByteBuffer b = chunks[(int) (at >>> 32)];
+        int pos = (int) at;
+        int n = to - from;
+        if (type == PixelType.UINT8) {
+            for (int i = 0; i < n; i++) {
+                dst[i] = decode(b.get(pos + i) & 0xFF);
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                dst[i] = decode(b.getShort(pos + 2 * i) & 0xFFFF);
+            }
+        }
+    }
+
+    /** The whole written series of pixel (col, row); {@code dst} needs {@link #months()} slots. */
+    public void series(int col, int row, float[] dst) {
+        series(col, row, 0, months(), dst);
+    }
+
+    /** Month {@code t} over a window of the grid, like {@link RasterFile#readFloats}. */
+    public void readMonth(int t, int col0, int row0, int w, int h, float[] dst) {
+        for (int r = 0; r < h; r++) {
+            for (int c = 0; c < w; c++) {
+                int col = col0 + c;
+                int row = row0 + r;
+                if (!grid.contains(col, row) || !present(t)) {
+                    dst[r * w + c] = Float.NaN;
+                    continue;
+                }
+                long at = locate(col, row, t);
+                ByteBuffer b = chunks[(int) (at >>> 32)];
+                dst[r * w + c] = decode(type == PixelType.UINT8 ? b.get((int) at) & 0xFF
+                        : b.getShort((int) at) & 0xFFFF);
+            }
+        }
+    }
+
+    //==========================================================================================================
+    // Streaming appender
+    //==========================================================================================================
+    /**
+     * Writes band {@code band} of {@code raster} as {@code month}, which may be any month from {@link #first}
+     * on, growing the capacity when it is past the end. Writing a month again replaces it.
+     */
+    public synchronized void append(YearMonth month, RasterFile raster, int band) throws IOException {
+        if (!writable) {
+            throw new IllegalStateException(file + " is open read-only");
+        }
+        if (!raster.grid().equals(grid)) {
+            throw new IllegalArgumentException(raster.file() + " is not on " + grid);
+        }
+        int t = indexOf(month);
+        if (t < 0) {
+            throw new IllegalArgumentException(month + " is before the first month " + first + " of " + file);
+        }
+        if (t >= capacity) {
+            grow(Math.max(t + 1, capacity + Math.max(12, capacity / 2)));
+        }
+        float[] line = new float[grid.width()];
+        for (int row = 0; row < grid.height(); row++) {
+            raster.readFloats(band, 0, row, grid.width(), 1, line);
+            for (int col = 0; col < line.length; col++) {
+                long at = locate(col, row, t);
+                ByteBuffer b = chunks[(int) (at >>> 32)];
+                int q = encode(line[col]);
+                if (type == PixelType.UINT8) {
+                    b.put((int) at, (byte) q);
+                } else {
+                    b.putShort((int) at, (short) q);
+                }
+            }
+        }
+        present[t] = true;
+        header.put((int) presentOffset + t, (byte) 1);
+    }
+
+    /** Rewrites the file with room for {@code months} months, copying every series. */
+    private void grow(int months) throws IOException {
+        ByteBuffer[] old = chunks;
+        int oldCapacity = capacity;
+        int oldPerMapping = chunksPerMapping;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean[] grown = Arrays.copyOf(present, months);
+        HsiStack target = new HsiStack(tmp, grid, type, min, scale, block, first, true);
+        target.layout(tmp, months, grown);
+        int pixels = block * block;
+        byte[] series = new byte[oldCapacity * type.bytes];
+        for (int chunk = 0; chunk < blockCount; chunk++) {
+            ByteBuffer from = old[chunk / oldPerMapping];
+            ByteBuffer to = target.chunks[chunk / target.chunksPerMapping];
+            long fromBase = (long) (chunk % oldPerMapping) * pixels * oldCapacity * type.bytes;
+            long toBase = (long) (chunk % target.chunksPerMapping) * pixels * months * type.bytes;
+            for (int p = 0; p < pixels; p++) {
+                from.get((int) (fromBase + (long) p * series.length), series);
+                to.put((int) (toBase + (long) p * months * type.bytes), series);
+            }
+        }
+        target.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.capacity = months;
+        this.present = grown;
+        this.presentOffset = target.presentOffset;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            map(ch.size(), ch);
+        }
+    }
+
+    /** Flushes written months to disk; the mapping stays usable. */
+    @Override
+    public void close() {
+        if (writable) {
+            ((MappedByteBuffer) header).force();
+            for (ByteBuffer b : chunks) {
+                ((MappedByteBuffer) b).force();
+            }
+        }
+    }
+}
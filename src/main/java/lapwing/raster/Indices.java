@@ -0,0 +1,81 @@
+package lapwing.raster;
+
+/**
+ * {@code tc_ndvi} from the GEE script: Tasseled Cap brightness, greenness and wetness with the Crist (1985)
+ * reflectance-factor coefficients, and NDVI scaled by 10000, all on unscaled surface-reflectance numbers.
+ */
+public final class Indices {
+
+    // Crist, E.P. (1985). A TM Tasseled Cap equivalent transformation for reflectance factor data.
+    // Order: B, G, R, NIR, SWIR1, SWIR2
+    static final double[] BRIGHTNESS = {0.2043, 0.4158, 0.5524, 0.5741, 0.3124, 0.2303};
+    static final double[] GREENNESS = {-0.1603, 0.2819, -0.4934, 0.7940, -0.0002, -0.1446};
+    static final double[] WETNESS = {0.0315, 0.2021, 0.3102, 0.1594, -0.6806, -0.6109};
+
+    public static final int TCB = 0;
+    public static final int TCG = 1;
+    public static final int TCW = 2;
+    public static final int NDVI = 3;
+    public static final int COUNT = 4;
+
+    private Indices() {
+    }
+
+    public static float brightness(int b, int g, int r, int nir, int swir1, int swir2) {
+        return combine(BRIGHTNESS, b, g, r, nir, swir1, swir2);
+    }
+
+    public static float greenness(int b, int g, int r, int nir, int swir1, int swir2) {
+        return combine(GREENNESS, b, g, r, nir, swir1, swir2);
+    }
+
+    public static float wetness(int b, int g, int r, int nir, int swir1, int swir2) {
+        return combine(WETNESS, b, g, r, nir, swir1, swir2);
+    }
+
+    private static float combine(double[] c, int b, int g, int r, int nir, int swir1, int swir2) {
+        return (float) (c[0] * b + c[1] * g + c[2] * r + c[3] * nir + c[4] * swir1 + c[5] * swir2);
+    }
+
+    /** {@code normalizedDifference(['NIR', 'R']).multiply(10000)}; 0 when both bands are 0. */
+    public static float ndvi(int r, int nir) {
+        int sum = nir + r;
+        return sum == 0 ? 0f : (float) ((double) (nir - r) / sum * 10000);
+    }
+
+    /**
+     * Computes all four indices for {@code n} pixels of a tile from its band arrays (indexed as in
+     * {@link Sensor#BANDS}) into {@code out[index][pixel]}.
+     */
+    public static void compute(int[][] band, int n, float[][] out) {
+        int[] b = band[Sensor.B];
+        int[] g = band[Sensor.G];
+        int[] r = band[Sensor.R];
+        int[] nir = band[Sensor.NIR];
+        int[] s1 = band[Sensor.SWIR1];
+        int[] s2 = band[Sensor.SWIR2];
+        for (int i = 0; i < n; i++) {
+            out[TCB][i] = brightness(b[i], g[i], r[i], nir[i], s1[i], s2[i]);
+            out[TCG][i] = greenness(b[i], g[i], r[i], nir[i], s1[i], s2[i]);
+            out[TCW][i] = wetness(b[i], g[i], r[i], nir[i], s1[i], s2[i]);
+            out[NDVI][i] = ndvi(r[i], nir[i]);
+        }
+    }
+
+    /** As {@link #compute(int[][], int, float[][])}, for the {@code m} pixels listed in {@code pixels} only. */
+    public static void compute(int[][] band, int[] pixels, int m, float[][] out) {
+        int[] b = band[Sensor.B];
+        int[] g = band[Sensor.G];
+        int[] r = band[Sensor.R];
+        int[] nir = band[Sensor.NIR];
+        int[] s1 = band[Sensor.SWIR1];
+        int[] s2 = band[Sensor.SWIR2];
+        for (int j = 0; j < m; j++) {
+            int i = pixels[j];
+            out[TCB][i] = brightness(b[i], g[i], r[i], nir[i], s1[i], s2[i]);
+            out[TCG][i] = greenness(b[i], g[i], r[i], nir[i], s1[i], s2[i]);
+            out[TCW][i] = wetness(b[i], g[i], r[i], nir[i], s1[i], s2[i]);
+            out[NDVI][i] = ndvi(r[i], nir[i]);
+        }
+    }
+}
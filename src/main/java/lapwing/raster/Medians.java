@@ -0,0 +1,23 @@
+package lapwing.raster;
+
+import java.util.Arrays;
+
+/**
+ * Per-pixel medians as {@code ee.Reducer.median()} is used in the scripts: NaN (masked) when there is no value,
+ * otherwise the middle value or the mean of the two middle values.
+ */
+public final class Medians {
+
+    private Medians() {
+    }
+
+    /** Median of {@code a[from, from + n)}; sorts that range in place and allocates nothing. */
+    public static float ofRange(float[] a, int from, int n) {
+        if (n == 0) {
+            return Float.NaN;
+        }
+        Arrays.sort(a, from, from + n);
+        int mid = from + (n >> 1);
+        return (n & 1) == 1 ? a[mid] : (float) (((double) a[mid - 1] + a[mid]) / 2);
+    }
+}
@@ -0,0 +1,70 @@
+package lapwing.raster;
+
+/**
+ * Bit-packed pixel masks for one tile: bit {@code p & 63} of word {@code p >> 6} is set when pixel {@code p} is
+ * valid (clear in QA_PIXEL, or not NaN). Bits past the last pixel are always zero.
+ *
+ * <p>Masks are combined word-wise, 64 pixels per operation, and consumed as skip lists: {@link #positions}
+ * lists the valid pixels by walking set bits, so an all-zero word (a cloud, water or fill region) costs one test
+ * and its pixels are never visited downstream.
+ */
+public final class PixelMask {
+
+    private PixelMask() {
+    }
+
+    /** Words needed for {@code pixels} bits. */
+    public static int words(int pixels) {
+        return (pixels + 63) >>> 6;
+    }
+
+    /** Validity of {@code v[from, to)} as a word, bit 0 for {@code from}; at most 64 pixels. */
+    public static long valid(float[] v, int from, int to) {
+        long word = 0;
+        int count = to - from;
+        for (int i = 0; i < count; i++) {
+            float x = v[from + i];
+            // x == x is false only for NaN
+            word |= (x == x ? 1L : 0L) << i;
+        }
+        return word;
+    }
+
+    /** Writes the indices of the set bits among the first {@code n} pixels to {@code out}; returns how many. */
+    public static int positions(long[] mask, int n, int[] out) {
+        int m = 0;
+        int words = words(n);
+        for (int w = 0; w < words; w++) {
+            long word = mask[w];
+            int base = w << 6;
+            while (word != 0) {
+                out[m++] = base + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return m;
+    }
+
+    //==========================================================================================================
+    // RemoveNA: AND the per-band validity word by word, then mask the zero bits in every band
+    //==========================================================================================================
+    /** Sets every band to NaN at each of the first {@code n} pixels that is NaN in any band. */
+    public static void removeNa(float[][] bands, int n) {
+        for (int from = 0; from < n; from += 64) {
+            int to = Math.min(n, from + 64);
+            long all = -1L >>> (64 - (to - from));
+            long valid = all;
+            for (int b = 0; b < bands.length && valid != 0; b++) {
+                valid &= valid(bands[b], from, to);
+            }
+            long masked = all & ~valid;
+            while (masked != 0) {
+                int p = from + Long.numberOfTrailingZeros(masked);
+                for (float[] b : bands) {
+                    b[p] = Float.NaN;
+                }
+                masked &= masked - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package lapwing.raster;
+
+import java.util.Arrays;
+
+/**
+ * Per-pixel sorted multisets of the four index values for one tile, for compositing a sliding date window.
+ *
+ * <p>Each pixel owns a fixed run of {@code capacity} slots per index, kept in ascending {@link Float#compare}
+ * order (the order {@link Arrays#sort(float[])} produces). A scene entering the window inserts its clear values
+ * and a scene leaving removes the same values, so the median is read straight from the middle of the run and
+ * equals what {@link Medians#ofRange} returns for the same values.
+ */
+final class PixelMultiset {
+
+    private final int capacity;
+    private final int pixels;
+    private final float[][] values;
+    private final int[] count;
+
+    PixelMultiset(int pixels, int capacity) {
+        this.pixels = pixels;
+        this.capacity = Math.max(1, capacity);
+        this.values = new float[Indices.COUNT][pixels * this.capacity];
+        this.count = new int[pixels];
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int pixels() {
+        return pixels;
+    }
+
+    void clear() {
+        Arrays.fill(count, 0);
+    }
+
+    /** Adds the values of one scene at its {@code m} clear pixels, listed in {@code clear}. */
+    void add(float[][] index, int[] clear, int m) {
+        for (int j = 0; j < m; j++) {
+            int p = clear[j];
+            int base = p * capacity;
+            int c = count[p]++;
+            for (int k = 0; k < Indices.COUNT; k++) {
+                float[] v = values[k];
+                float x = index[k][p];
+                int i = base + c;
+                while (i > base && Float.compare(v[i - 1], x) > 0) {
+                    v[i] = v[i - 1];
+                    i--;
+                }
+                v[i] = x;
+            }
+        }
+    }
+
+    /** Removes the values previously added for the same scene. */
+    void remove(float[][] index, int[] clear, int m) {
+        for (int j = 0; j < m; j++) {
+            int p = clear[j];
+            int base = p * capacity;
+            int c = count[p]--;
+            for (int k = 0; k < Indices.COUNT; k++) {
+                float[] v = values[k];
+                int at = Arrays.binarySearch(v, base, base + c, index[k][p]);
+                if (at < 0) {
+                    throw new IllegalStateException("Removing a value that was never added");
+                }
+                System.arraycopy(v, at + 1, v, at, base + c - at - 1);
+            }
+        }
+    }
+
+    /** Median of index {@code k} at pixel {@code p}, NaN when no scene is clear there. */
+    float median(int k, int p) {
+        int n = count[p];
+        if (n == 0) {
+            return Float.NaN;
+        }
+        float[] v = values[k];
+        int mid = p * capacity + (n >> 1);
+        return (n & 1) == 1 ? v[mid] : (float) (((double) v[mid - 1] + v[mid]) / 2);
+    }
+}
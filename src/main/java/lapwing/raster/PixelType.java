@@ -0,0 +1,15 @@
+package lapwing.raster;
+
+/** Storage type of a {@link RasterFile} band. */
+public enum PixelType {
+    UINT8(1),
+    UINT16(2),
+    INT16(2),
+    FLOAT32(4);
+
+    public final int bytes;
+
+    PixelType(int bytes) {
+        this.bytes = bytes;
+    }
+}
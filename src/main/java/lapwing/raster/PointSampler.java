@@ -0,0 +1,187 @@
+package lapwing.raster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Bulk replacement for {@code addValues}, which runs one {@code reduceRegion(first)} per training point: samples
+ * every layer of a {@link StaticTileCache} at a whole set of points in one pass.
+ *
+ * <p>Points are sorted by the Z-order (Morton code) of the cache tile they fall in, so each tile is fetched once
+ * and neighbouring tiles are visited together. Runs of points sharing a tile are handed to parallel workers.
+ * Points outside the grid or on masked pixels come back as NaN and are counted as nulls, the rows that
+ * {@code ee.Filter.notNull(['Roughness'])} drops.
+ */
+public final class PointSampler {
+
+    // Minimum number of points per worker task; whole tiles are never split between tasks
+    static final int BATCH_POINTS = 4096;
+
+    private final ForkJoinPool pool;
+
+    public PointSampler(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Values of every layer at every point, plus per-layer and any-layer null counts. */
+    public static final class Result {
+
+        private final List<String> names;
+        private final float[][] values;
+        private final int[] nulls;
+        private final int rowsWithNull;
+        private final long tilesRead;
+
+        Result(List<String> names, float[][] values, int[] nulls, int rowsWithNull, long tilesRead) {
+            this.names = names;
+            this.values = values;
+            this.nulls = nulls;
+            this.rowsWithNull = rowsWithNull;
+            this.tilesRead = tilesRead;
+        }
+
+        public List<String> names() {
+            return names;
+        }
+
+        /** Sampled values of layer {@code l}, in point order. */
+        public float[] values(int l) {
+            return values[l];
+        }
+
+        public int nulls(int l) {
+            return nulls[l];
+        }
+
+        /** Points that are null in at least one layer. */
+        public int rowsWithNull() {
+            return rowsWithNull;
+        }
+
+        /** Distinct cache tiles the points fell in. */
+        public long tilesRead() {
+            return tilesRead;
+        }
+    }
+
+    //==========================================================================================================
+    // Sample at map coordinates in the cache grid's CRS
+    //==========================================================================================================
+    public Result sample(StaticTileCache cache, double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("Expected as many x as y coordinates");
+        }
+        GridSpec grid = cache.grid();
+        int n = x.length;
+        int layers = cache.layerCount();
+        float[][] values = new float[layers][n];
+        for (float[] v : values) {
+            Arrays.fill(v, Float.NaN);
+        }
+        int[] col = new int[n];
+        int[] row = new int[n];
+
+        // Morton code of each point's tile; points outside the grid are left out
+        long[] codes = new long[n];
+        int[] index = new int[n];
+        int inside = 0;
+        for (int i = 0; i < n; i++) {
+            col[i] = grid.col(x[i]);
+            row[i] = grid.row(y[i]);
+            if (Double.isNaN(x[i]) || Double.isNaN(y[i]) || !grid.contains(col[i], row[i])) {
+                continue;
+            }
+            codes[inside] = morton(col[i] / cache.tileSize(), row[i] / cache.tileSize());
+            index[inside++] = i;
+        }
+        // Sort keys: rank of the tile's code among the distinct codes in the high bits, point index in the low
+        // 31 bits. Ranks are below n, so the key cannot overflow however large the tile indices are.
+        long[] distinct = Arrays.copyOf(codes, inside);
+        Arrays.sort(distinct);
+        int unique = 0;
+        for (int k = 0; k < inside; k++) {
+            if (unique == 0 || distinct[k] != distinct[unique - 1]) {
+                distinct[unique++] = distinct[k];
+            }
+        }
+        long[] keys = new long[inside];
+        for (int k = 0; k < inside; k++) {
+            keys[k] = ((long) Arrays.binarySearch(distinct, 0, unique, codes[k]) << 31) | index[k];
+        }
+        Arrays.sort(keys);
+
+        // Cut into tasks at tile boundaries
+        List<Callable<Void>> tasks = new ArrayList<>();
+        long tiles = 0;
+        int from = 0;
+        while (from < inside) {
+            int to = from;
+            while (to < inside && (to - from < BATCH_POINTS || (keys[to] >>> 31) == (keys[to - 1] >>> 31))) {
+                if (to == from || (keys[to] >>> 31) != (keys[to - 1] >>> 31)) {
+                    tiles++;
+                }
+                to++;
+            }
+            int lo = from;
+            int hi = to;
+            tasks.add(() -> {
+                float[][] tile = null;
+                long current = -1;
+                for (int k = lo; k < hi; k++) {
+                    int i = (int) (keys[k] & 0x7FFFFFFFL);
+                    if ((keys[k] >>> 31) != current) {
+                        current = keys[k] >>> 31;
+                        tile = cache.tileAt(col[i], row[i]);
+                    }
+                    int c0 = col[i] / cache.tileSize() * cache.tileSize();
+                    int r0 = row[i] / cache.tileSize() * cache.tileSize();
+                    int w = Math.min(cache.tileSize(), grid.width() - c0);
+                    int at = (row[i] - r0) * w + (col[i] - c0);
+                    for (int l = 0; l < layers; l++) {
+                        values[l][i] = tile[l][at];
+                    }
+                }
+                return null;
+            });
+            from = to;
+        }
+        SurfaceBuilder.invokeAll(pool, tasks);
+
+        int[] nulls = new int[layers];
+        int rowsWithNull = 0;
+        for (int i = 0; i < n; i++) {
+            boolean any = false;
+            for (int l = 0; l < layers; l++) {
+                if (Float.isNaN(values[l][i])) {
+                    nulls[l]++;
+                    any = true;
+                }
+            }
+            if (any) {
+                rowsWithNull++;
+            }
+        }
+        return new Result(cache.names(), values, nulls, rowsWithNull, tiles);
+    }
+
+    /**
+     * Interleaves all 32 bits of {@code x} and {@code y} (x in the even bits); for non-negative arguments the
+     * result is non-negative and orders as an unsigned 64-bit code.
+     */
+    static long morton(int x, int y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    private static long spread(int v) {
+        long x = v & 0xFFFFFFFFL;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        x = (x | (x << 1)) & 0x5555555555555555L;
+        return x;
+    }
+}
@@ -0,0 +1,319 @@
+package lapwing.raster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Band-sequential, memory-mapped raster used for Landsat scenes, static layers and predictor surfaces on disk.
+ *
+ * <p>Layout (little-endian): magic {@code LAPWRAS1}, int version, int width, int height, double x0, double y0,
+ * double pixel size, CRS (short length + UTF-8), pixel type byte, int band count and the band names, int
+ * metadata count and key/value strings, then the long offset of the pixel data. Each band is a row-major block
+ * starting at an 8-byte aligned offset. Float bands mark masked pixels with NaN; integer bands have no mask of
+ * their own (Landsat marks fill in QA_PIXEL).
+ *
+ * <p>Every band is a separate mapping and all access is absolute, so tiles can be read and written from several
+ * threads at once as long as the written windows do not overlap.
+ */
+public final class RasterFile implements Closeable {
+
+    static final byte[] MAGIC = "LAPWRAS1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    /** File extension used for rasters. */
+    public static final String EXTENSION = ".lwr";
+
+    private final Path file;
+    private final GridSpec grid;
+    private final PixelType type;
+    private final List<String> bands;
+    private final Map<String, String> metadata;
+    private final ByteBuffer[] data;
+    private final boolean writable;
+
+    private RasterFile(Path file, GridSpec grid, PixelType type, List<String> bands, Map<String, String> metadata,
+                       ByteBuffer[] data, boolean writable) {
+        this.file = file;
+        this.grid = grid;
+        this.type = type;
+        this.bands = bands;
+        this.metadata = metadata;
+        this.data = data;
+        this.writable = writable;
+    }
+
+    //==========================================================================================================
+    // Open / create
+    //==========================================================================================================
+    public static RasterFile open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(ch.size(), 1 << 16)).order(ByteOrder.LITTLE_ENDIAN);
+            ch.read(head, 0);
+            head.flip();
+            byte[] magic = new byte[MAGIC.length];
+            head.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException(file + " is not a raster file");
+            }
+            int version = head.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported version " + version);
+            }
+            int width = head.getInt();
+            int height = head.getInt();
+            double x0 = head.getDouble();
+            double y0 = head.getDouble();
+            double pixel = head.getDouble();
+            GridSpec grid = new GridSpec(width, height, x0, y0, pixel, getString(head));
+            PixelType type = PixelType.values()[head.get()];
+            int count = head.getInt();
+            List<String> bands = new ArrayList<>(count);
+            for (int b = 0; b < count; b++) {
+                bands.add(getString(head));
+            }
+            int metaCount = head.getInt();
+            Map<String, String> meta = new LinkedHashMap<>();
+            for (int m = 0; m < metaCount; m++) {
+                meta.put(getString(head), getString(head));
+            }
+            long offset = head.getLong();
+            return new RasterFile(file, grid, type, List.copyOf(bands), Collections.unmodifiableMap(meta),
+                    map(ch, FileChannel.MapMode.READ_ONLY, offset, grid, type, count), false);
+        }
+    }
+
+    /** Creates (or truncates) {@code file} with every pixel zero, mapped for writing. */
+    public static RasterFile create(Path file, GridSpec grid, PixelType type, List<String> bands,
+                                    Map<String, String> metadata) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        head.put(MAGIC).putInt(VERSION).putInt(grid.width()).putInt(grid.height())
+                .putDouble(grid.x0()).putDouble(grid.y0()).putDouble(grid.pixelSize());
+        putString(head, grid.crs());
+        head.put((byte) type.ordinal()).putInt(bands.size());
+        for (String b : bands) {
+            putString(head, b);
+        }
+        // Keys are written sorted so the same raster always has the same header
+        Map<String, String> meta = new TreeMap<>(metadata);
+        head.putInt(meta.size());
+        for (Map.Entry<String, String> e : meta.entrySet()) {
+            putString(head, e.getKey());
+            putString(head, e.getValue());
+        }
+        long offset = align(head.position() + Long.BYTES);
+        head.putLong(offset);
+        head.flip();
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(head, 0);
+            ByteBuffer[] maps = map(ch, FileChannel.MapMode.READ_WRITE, offset, grid, type, bands.size());
+            return new RasterFile(file, grid, type, List.copyOf(bands),
+                    Collections.unmodifiableMap(new LinkedHashMap<>(meta)), maps, true);
+        }
+    }
+
+    private static ByteBuffer[] map(FileChannel ch, FileChannel.MapMode mode, long offset, GridSpec grid,
+                                    PixelType type, int count) throws IOException {
+        long bandBytes = grid.pixels() * type.bytes;
+        if (bandBytes > Integer.MAX_VALUE) {
+            throw new IOException("Band larger than 2 GiB is not supported by a single mapping");
+        }
+        long stride = align(bandBytes);
+        ByteBuffer[] maps = new ByteBuffer[count];
+        for (int b = 0; b < count; b++) {
+            MappedByteBuffer m = ch.map(mode, offset + b * stride, bandBytes);
+            m.order(ByteOrder.LITTLE_ENDIAN);
+            maps[b] = m;
+        }
+        return maps;
+    }
+
+    private static long align(long n) {
+        return (n + 7) & ~7L;
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] s = new byte[b.getShort()];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer b, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        b.putShort((short) bytes.length).put(bytes);
+    }
+
+    //==========================================================================================================
+    // Accessors
+    //==========================================================================================================
+    public Path file() {
+        return file;
+    }
+
+    public GridSpec grid() {
+        return grid;
+    }
+
+    public PixelType type() {
+        return type;
+    }
+
+    public List<String> bands() {
+        return bands;
+    }
+
+    public int bandIndex(String name) {
+        return bands.indexOf(name);
+    }
+
+    public Map<String, String> metadata() {
+        return metadata;
+    }
+
+    public String metadata(String key) {
+        return metadata.get(key);
+    }
+
+    //==========================================================================================================
+    // Pixel access
+    //==========================================================================================================
+    public int getInt(int band, int col, int row) {
+        return getInt(data[band], (row * grid.width() + col));
+    }
+
+    public float getFloat(int band, int col, int row) {
+        return getFloat(data[band], (row * grid.width() + col));
+    }
+
+    public void setInt(int band, int col, int row, int value) {
+        setInt(data[band], row * grid.width() + col, value);
+    }
+
+    public void setFloat(int band, int col, int row, float value) {
+        setFloat(data[band], row * grid.width() + col, value);
+    }
+
+    private int getInt(ByteBuffer d, int i) {
+        switch (type) {
+            case UINT8:
+                return d.get(i) & 0xFF;
+            case UINT16:
+                return d.getShort(i << 1) & 0xFFFF;
+            case INT16:
+                return d.getShort(i << 1);
+            default:
+                return (int) d.getFloat(i << 2);
+        }
+    }
+
+    private float getFloat(ByteBuffer d, int i) {
+        return type == PixelType.FLOAT32 ? d.getFloat(i << 2) : getInt(d, i);
+    }
+
+    private void setInt(ByteBuffer d, int i, int v) {
+        switch (type) {
+            case UINT8:
+                d.put(i, (byte) v);
+                break;
+            case UINT16:
+            case INT16:
+                d.putShort(i << 1, (short) v);
+                break;
+            default:
+                d.putFloat(i << 2, v);
+        }
+    }
+
+    private void setFloat(ByteBuffer d, int i, float v) {
+        if (type == PixelType.FLOAT32) {
+            d.putFloat(i << 2, v);
+        } else {
+            setInt(d, i, Math.round(v));
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Windows in this raster's pixel coordinates; parts outside the raster read as `outside` / NaN
+    //----------------------------------------------------------------------------------------------------------
+    public void readInts(int band, int col0, int row0, int w, int h, int[] dst, int outside) {
+        ByteBuffer d = data[band];
+        for (int r = 0; r < h; r++) {
+            int row = row0 + r;
+            for (int c = 0; c < w; c++) {
+                int col = col0 + c;
+                dst[r * w + c] = grid.contains(col, row) ? getInt(d, row * grid.width() + col) : outside;
+            }
+        }
+    }
+
+    public void readFloats(int band, int col0, int row0, int w, int h, float[] dst) {
+        ByteBuffer d = data[band];
+        for (int r = 0; r < h; r++) {
+            int row = row0 + r;
+            for (int c = 0; c < w; c++) {
+                int col = col0 + c;
+                dst[r * w + c] = grid.contains(col, row) ? getFloat(d, row * grid.width() + col) : Float.NaN;
+            }
+        }
+    }
+
+    /** Writes a window that lies inside the raster. */
+    public void writeFloats(int band, int col0, int row0, int w, int h, float[] src) {
+        requireWritable();
+        if (col0 < 0 || row0 < 0 || col0 + w > grid.width() || row0 + h > grid.height()) {
+            throw new IllegalArgumentException("Window outside raster " + file);
+        }
+        ByteBuffer d = data[band];
+        for (int r = 0; r < h; r++) {
+            int base = (row0 + r) * grid.width() + col0;
+            for (int c = 0; c < w; c++) {
+                setFloat(d, base + c, src[r * w + c]);
+            }
+        }
+    }
+
+    public void writeInts(int band, int col0, int row0, int w, int h, int[] src) {
+        requireWritable();
+        if (col0 < 0 || row0 < 0 || col0 + w > grid.width() || row0 + h > grid.height()) {
+            throw new IllegalArgumentException("Window outside raster " + file);
+        }
+        ByteBuffer d = data[band];
+        for (int r = 0; r < h; r++) {
+            int base = (row0 + r) * grid.width() + col0;
+            for (int c = 0; c < w; c++) {
+                setInt(d, base + c, src[r * w + c]);
+            }
+        }
+    }
+
+    private void requireWritable() {
+        if (!writable) {
+            throw new IllegalStateException(file + " is open read-only");
+        }
+    }
+
+    /** Flushes written pixels to disk; the mapping stays usable. */
+    @Override
+    public void close() {
+        if (writable) {
+            for (ByteBuffer d : data) {
+                ((MappedByteBuffer) d).force();
+            }
+        }
+    }
+}
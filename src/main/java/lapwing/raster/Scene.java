@@ -0,0 +1,114 @@
+package lapwing.raster;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * One Landsat Collection 2 Level 2 scene stored as a {@link RasterFile}: the six reflectance bands and QA_PIXEL
+ * as UINT16 digital numbers (unscaled, as the GEE script uses them), with metadata {@code date} (ISO) and
+ * {@code sensor} (e.g. {@code LC08}).
+ *
+ * <p>Bands may be named either by source (SR_B4) or by common name (R); {@link Sensor} resolves the mapping.
+ * Pixels outside the scene's footprint read as fill.
+ */
+public final class Scene {
+
+    private final RasterFile raster;
+    private final int epochDay;
+    private final Sensor sensor;
+    private final int[] bandAt;
+
+    private Scene(RasterFile raster, int epochDay, Sensor sensor, int[] bandAt) {
+        this.raster = raster;
+        this.epochDay = epochDay;
+        this.sensor = sensor;
+        this.bandAt = bandAt;
+    }
+
+    public static Scene open(Path file) throws IOException {
+        return of(RasterFile.open(file));
+    }
+
+    public static Scene of(RasterFile raster) {
+        String date = raster.metadata("date");
+        String sensorId = raster.metadata("sensor");
+        if (date == null || sensorId == null) {
+            throw new IllegalArgumentException(raster.file() + " lacks 'date' or 'sensor' metadata");
+        }
+        Sensor sensor = Sensor.parse(sensorId);
+        int[] bandAt = new int[Sensor.BANDS.size()];
+        for (int b = 0; b < bandAt.length; b++) {
+            int at = raster.bandIndex(sensor.sourceBand(b));
+            if (at < 0) {
+                at = raster.bandIndex(Sensor.BANDS.get(b));
+            }
+            if (at < 0) {
+                throw new IllegalArgumentException(raster.file() + " has no band " + sensor.sourceBand(b) + " / "
+                        + Sensor.BANDS.get(b));
+            }
+            bandAt[b] = at;
+        }
+        return new Scene(raster, (int) LocalDate.parse(date).toEpochDay(), sensor, bandAt);
+    }
+
+    /** A scene whose date, sensor and band mapping are already known (see {@link SceneCatalog}). */
+    static Scene of(RasterFile raster, int epochDay, Sensor sensor, int[] bandAt) {
+        for (int at : bandAt) {
+            if (at < 0 || at >= raster.bands().size()) {
+                throw new IllegalArgumentException(raster.file() + " does not match its catalog entry");
+            }
+        }
+        return new Scene(raster, epochDay, sensor, bandAt.clone());
+    }
+
+    public int epochDay() {
+        return epochDay;
+    }
+
+    public Sensor sensor() {
+        return sensor;
+    }
+
+    public GridSpec grid() {
+        return raster.grid();
+    }
+
+    public RasterFile raster() {
+        return raster;
+    }
+
+    /** Band of the raster holding common band {@code band}. */
+    int rasterBand(int band) {
+        return bandAt[band];
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Tile reads in the pixel coordinates of a target grid
+    //----------------------------------------------------------------------------------------------------------
+    /** Offset of this scene's origin in {@code target}, for {@link #read} and {@link #overlaps}. */
+    public int[] offsetIn(GridSpec target) {
+        return target.offsetOf(raster.grid());
+    }
+
+    /** True if the scene footprint overlaps {@code tile} of the target grid. */
+    public boolean overlaps(int[] offset, Tile tile) {
+        GridSpec g = raster.grid();
+        return tile.col0 < offset[0] + g.width() && tile.col0 + tile.width > offset[0]
+                && tile.row0 < offset[1] + g.height() && tile.row0 + tile.height > offset[1];
+    }
+
+    /**
+     * Reads common band {@code band} ({@link Sensor#B} ... {@link Sensor#QA}) over {@code tile}. Outside the
+     * footprint reflectance reads 0 and QA_PIXEL reads the fill bit.
+     */
+    public void read(int band, int[] offset, Tile tile, int[] dst) {
+        raster.readInts(bandAt[band], tile.col0 - offset[0], tile.row0 - offset[1], tile.width, tile.height, dst,
+                band == Sensor.QA ? QaMask.FILL : 0);
+    }
+
+    @Override
+    public String toString() {
+        return sensor + " " + LocalDate.ofEpochDay(epochDay) + " (" + raster.file() + ")";
+    }
+}
@@ -0,0 +1,549 @@
+package lapwing.raster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Local {@code LandsatCollection} lookup: every scene of a directory with its sensor, acquisition date,
+ * footprint and harmonised band mapping ({@code l8_9_bands} or {@code bands} onto B ... QA_PIXEL), indexed to
+ * answer "scenes of any sensor intersecting this box and dated in {@code [start, end)}" without opening a raster.
+ *
+ * <p>The index is a packed R-tree over footprint and date together. Scenes are ordered by sort-tile-recursive
+ * packing on (date, x, y), {@value #NODE_SIZE} to a leaf, and every node keeps the bounding box and the date
+ * interval of its children, so a query descends only into nodes it overlaps in both. Date-only queries
+ * ({@link #between}) use a date-sorted permutation and a binary search.
+ *
+ * <p>The catalog persists as {@value #FILE_NAME} in the scene directory. Layout (little-endian): magic
+ * {@code LAPWCAT1}, int version, the CRS table (int count, strings), int file count and one record per
+ * {@code .lwr} file (name, long size, long modification time, sensor byte or -1 for a raster that is not a scene;
+ * for scenes int epoch day, int width, int height, double x0, y0 and pixel size, short CRS and the seven band
+ * positions), then the tree (int node count; per node four doubles, two ints for the date interval and the child
+ * range) and the date permutation. {@link #load} reuses the records of files whose size and modification time
+ * are unchanged, opens only new or changed ones and rewrites the file when anything differs.
+ */
+public final class SceneCatalog {
+
+    /** Extension of catalog files, distinct from the columnar stores' {@code .lwc}. */
+    public static final String EXTENSION = ".lwx";
+    /** Catalog file kept in the scene directory. */
+    public static final String FILE_NAME = "catalog" + EXTENSION;
+    static final byte[] MAGIC = "LAPWCAT1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int NODE_SIZE = 16;
+
+    private static final Comparator<Entry> BY_DATE = Comparator.comparingInt(Entry::epochDay)
+            .thenComparing(Entry::name);
+
+    private final Path dir;
+    private final Entry[] entries;
+    private final Map<String, long[]> others;
+
+    // Boxes of the entries (0 .. n-1) and then of the nodes, level by level; the root is last
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+    private final int[] minDay;
+    private final int[] maxDay;
+    private final int[] firstChild;
+    private final int[] endChild;
+    private final int[] byDate;
+
+    private SceneCatalog(Path dir, Entry[] entries, Map<String, long[]> others, int nodes) {
+        this.dir = dir;
+        this.entries = entries;
+        this.others = others;
+        int total = entries.length + nodes;
+        this.minX = new double[total];
+        this.minY = new double[total];
+        this.maxX = new double[total];
+        this.maxY = new double[total];
+        this.minDay = new int[total];
+        this.maxDay = new int[total];
+        this.firstChild = new int[nodes];
+        this.endChild = new int[nodes];
+        this.byDate = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            GridSpec g = entries[i].grid;
+            minX[i] = g.x0();
+            maxX[i] = g.x0() + g.width() * g.pixelSize();
+            maxY[i] = g.y0();
+            minY[i] = g.y0() - g.height() * g.pixelSize();
+            minDay[i] = entries[i].epochDay;
+            maxDay[i] = entries[i].epochDay;
+        }
+    }
+
+    //==========================================================================================================
+    // Entries
+    //==========================================================================================================
+    /** One scene: where it is, what it is and where its bands are, as read from its header. */
+    public static final class Entry {
+
+        private final String name;
+        private final long size;
+        private final long modified;
+        private final Sensor sensor;
+        private final int epochDay;
+        private final GridSpec grid;
+        private final int[] bandAt;
+
+        Entry(String name, long size, long modified, Sensor sensor, int epochDay, GridSpec grid, int[] bandAt) {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+            this.sensor = sensor;
+            this.epochDay = epochDay;
+            this.grid = grid;
+            this.bandAt = bandAt;
+        }
+
+        /** File name within the catalog directory. */
+        public String name() {
+            return name;
+        }
+
+        public Sensor sensor() {
+            return sensor;
+        }
+
+        public int epochDay() {
+            return epochDay;
+        }
+
+        public LocalDate date() {
+            return LocalDate.ofEpochDay(epochDay);
+        }
+
+        /** The scene's grid; its extent is the footprint the index uses. */
+        public GridSpec grid() {
+            return grid;
+        }
+
+        /** Band of the raster holding common band {@code band} ({@link Sensor#B} ... {@link Sensor#QA}). */
+        public int rasterBand(int band) {
+            return bandAt[band];
+        }
+
+        @Override
+        public String toString() {
+            return sensor + " " + date() + " (" + name + ")";
+        }
+    }
+
+    public Path directory() {
+        return dir;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /** Every scene, by date and then file name. */
+    public List<Entry> entries() {
+        List<Entry> out = new ArrayList<>(entries.length);
+        for (int i : byDate) {
+            out.add(entries[i]);
+        }
+        return out;
+    }
+
+    /** Opens the rasters of {@code selected}, in the same order. */
+    public List<Scene> open(List<Entry> selected) throws IOException {
+        List<Scene> scenes = new ArrayList<>(selected.size());
+        for (Entry e : selected) {
+            scenes.add(Scene.of(RasterFile.open(dir.resolve(e.name)), e.epochDay, e.sensor, e.bandAt));
+        }
+        return scenes;
+    }
+
+    //==========================================================================================================
+    // Queries
+    //==========================================================================================================
+    /** Scenes dated in {@code [start, end)} (epoch days), by date and then file name. */
+    public List<Entry> between(int start, int end) {
+        int lo = 0;
+        int hi = byDate.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (entries[byDate[mid]].epochDay < start) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        List<Entry> out = new ArrayList<>();
+        for (int i = lo; i < byDate.length && entries[byDate[i]].epochDay < end; i++) {
+            out.add(entries[byDate[i]]);
+        }
+        return out;
+    }
+
+    /**
+     * Scenes in CRS {@code crs} whose footprint overlaps the box with positive area and that are dated in
+     * {@code [start, end)}, by date and then file name.
+     */
+    public List<Entry> query(String crs, double x0, double y0, double x1, double y1, int start, int end) {
+        List<Entry> out = new ArrayList<>();
+        if (entries.length == 0) {
+            return out;
+        }
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = minX.length - 1;
+        while (top > 0) {
+            int i = stack[--top];
+            if (!(maxX[i] > x0 && minX[i] < x1 && maxY[i] > y0 && minY[i] < y1 && maxDay[i] >= start
+                    && minDay[i] < end)) {
+                continue;
+            }
+            if (i < entries.length) {
+                if (entries[i].grid.crs().equals(crs)) {
+                    out.add(entries[i]);
+                }
+                continue;
+            }
+            int node = i - entries.length;
+            for (int c = firstChild[node]; c < endChild[node]; c++) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                }
+                stack[top++] = c;
+            }
+        }
+        out.sort(BY_DATE);
+        return out;
+    }
+
+    /** Scenes overlapping {@code tile} of {@code grid} and dated in {@code [start, end)}. */
+    public List<Entry> query(GridSpec grid, Tile tile, int start, int end) {
+        double ps = grid.pixelSize();
+        return query(grid.crs(), grid.x0() + tile.col0 * ps, grid.y0() - (tile.row0 + tile.height) * ps,
+                grid.x0() + (tile.col0 + tile.width) * ps, grid.y0() - tile.row0 * ps, start, end);
+    }
+
+    /** Scenes overlapping any part of {@code grid} and dated in {@code [start, end)}. */
+    public List<Entry> query(GridSpec grid, int start, int end) {
+        return query(grid, new Tile(0, 0, 0, grid.width(), grid.height()), start, end);
+    }
+
+    //==========================================================================================================
+    // Building the index
+    //==========================================================================================================
+    /** Catalog of {@code entries} in {@code dir}; {@code others} are the rasters that are not scenes. */
+    static SceneCatalog of(Path dir, List<Entry> entries, Map<String, long[]> others) {
+        Entry[] packed = entries.toArray(new Entry[0]);
+        Integer[] order = new Integer[packed.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // Sort-tile-recursive: slabs by date, slices of each slab by x, runs of each slice by y
+        int leaves = (packed.length + NODE_SIZE - 1) / NODE_SIZE;
+        int s = (int) Math.ceil(Math.cbrt(leaves));
+        Arrays.sort(order, Comparator.comparingInt(i -> packed[i].epochDay));
+        int slab = s * s * NODE_SIZE;
+        int slice = s * NODE_SIZE;
+        for (int a = 0; a < order.length; a += slab) {
+            int aEnd = Math.min(order.length, a + slab);
+            Arrays.sort(order, a, aEnd, Comparator.comparingDouble(i -> centreX(packed[i])));
+            for (int b = a; b < aEnd; b += slice) {
+                Arrays.sort(order, b, Math.min(aEnd, b + slice), Comparator.comparingDouble(i -> centreY(packed[i])));
+            }
+        }
+        Entry[] sorted = new Entry[packed.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = packed[order[i]];
+        }
+
+        int nodes = 0;
+        for (int level = sorted.length; ; level = (level + NODE_SIZE - 1) / NODE_SIZE) {
+            int up = (level + NODE_SIZE - 1) / NODE_SIZE;
+            nodes += Math.max(1, up);
+            if (up <= 1) {
+                break;
+            }
+        }
+        SceneCatalog c = new SceneCatalog(dir, sorted, others, nodes);
+        int from = 0;
+        int to = sorted.length;
+        int at = sorted.length;
+        do {
+            // Each level groups runs of the level below; an empty catalog still gets a (childless) root
+            int first = from;
+            do {
+                int end = Math.min(to, first + NODE_SIZE);
+                c.firstChild[at - sorted.length] = first;
+                c.endChild[at - sorted.length] = end;
+                c.enclose(at++, first, end);
+                first = end;
+            } while (first < to);
+            from = to;
+            to = at;
+        } while (to - from > 1);
+        c.sortByDate();
+        return c;
+    }
+
+    private static double centreX(Entry e) {
+        return e.grid.x0() + e.grid.width() * e.grid.pixelSize() / 2;
+    }
+
+    private static double centreY(Entry e) {
+        return e.grid.y0() - e.grid.height() * e.grid.pixelSize() / 2;
+    }
+
+    private void enclose(int node, int from, int to) {
+        minX[node] = Double.POSITIVE_INFINITY;
+        minY[node] = Double.POSITIVE_INFINITY;
+        maxX[node] = Double.NEGATIVE_INFINITY;
+        maxY[node] = Double.NEGATIVE_INFINITY;
+        minDay[node] = Integer.MAX_VALUE;
+        maxDay[node] = Integer.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            minX[node] = Math.min(minX[node], minX[i]);
+            minY[node] = Math.min(minY[node], minY[i]);
+            maxX[node] = Math.max(maxX[node], maxX[i]);
+            maxY[node] = Math.max(maxY[node], maxY[i]);
+            minDay[node] = Math.min(minDay[node], minDay[i]);
+            maxDay[node] = Math.max(maxDay[node], maxDay[i]);
+        }
+    }
+
+    private void sortByDate() {
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> BY_DATE.compare(entries[a], entries[b]));
+        for (int i = 0; i < order.length; i++) {
+            byDate[i] = order[i];
+        }
+    }
+
+    //==========================================================================================================
+    // Scanning a directory
+    //==========================================================================================================
+    /**
+     * The catalog of {@code dir}, from {@value #FILE_NAME} where it is current. Files added, removed or changed
+     * since it was written are rescanned and the file is rewritten; a directory that cannot be written to is
+     * rescanned the same way each time.
+     */
+    public static SceneCatalog load(Path dir) throws IOException {
+        Path file = dir.resolve(FILE_NAME);
+        SceneCatalog stored = null;
+        if (Files.exists(file)) {
+            try {
+                stored = read(file);
+            } catch (IOException | RuntimeException e) {
+                // An unreadable or older catalog is rebuilt from the rasters
+                stored = null;
+            }
+        }
+        SceneCatalog current = scan(dir, stored);
+        if (current != stored) {
+            try {
+                current.write(file);
+            } catch (IOException e) {
+                // Read-only scene directory: keep the catalog in memory only
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Scans every {@code .lwr} file in {@code dir}, reusing the records of {@code previous} (may be null) for
+     * files of unchanged size and modification time. Returns {@code previous} itself when nothing changed.
+     */
+    public static SceneCatalog scan(Path dir, SceneCatalog previous) throws IOException {
+        Map<String, Entry> known = new HashMap<>();
+        if (previous != null) {
+            for (Entry e : previous.entries) {
+                known.put(e.name, e);
+            }
+        }
+        List<Entry> entries = new ArrayList<>();
+        Map<String, long[]> others = new LinkedHashMap<>();
+        boolean changed = previous == null;
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.toString().endsWith(RasterFile.EXTENSION)).sorted().toList();
+        }
+        for (Path f : files) {
+            String name = f.getFileName().toString();
+            BasicFileAttributes attrs = Files.readAttributes(f, BasicFileAttributes.class);
+            long size = attrs.size();
+            long modified = attrs.lastModifiedTime().toMillis();
+            Entry e = known.get(name);
+            long[] other = previous == null ? null : previous.others.get(name);
+            if (e != null && e.size == size && e.modified == modified) {
+                entries.add(e);
+                continue;
+            }
+            if (other != null && other[0] == size && other[1] == modified) {
+                others.put(name, other);
+                continue;
+            }
+            changed = true;
+            RasterFile r = RasterFile.open(f);
+            if (r.metadata("date") == null || r.metadata("sensor") == null) {
+                others.put(name, new long[]{size, modified});
+                continue;
+            }
+            Scene scene = Scene.of(r);
+            int[] bandAt = new int[Sensor.BANDS.size()];
+            for (int b = 0; b < bandAt.length; b++) {
+                bandAt[b] = scene.rasterBand(b);
+            }
+            entries.add(new Entry(name, size, modified, scene.sensor(), scene.epochDay(), r.grid(), bandAt));
+        }
+        if (!changed && entries.size() + others.size() == previous.entries.length + previous.others.size()) {
+            return previous;
+        }
+        return of(dir, entries, others);
+    }
+
+    //==========================================================================================================
+    // Persistence
+    //==========================================================================================================
+    /** Writes the catalog to {@code file}, through a temporary file so a reader never sees half of it. */
+    public void write(Path file) throws IOException {
+        List<String> crs = new ArrayList<>();
+        Map<String, Integer> crsIndex = new HashMap<>();
+        for (Entry e : entries) {
+            if (crsIndex.putIfAbsent(e.grid.crs(), crs.size()) == null) {
+                crs.add(e.grid.crs());
+            }
+        }
+        int nodes = firstChild.length;
+        long bytes = MAGIC.length + 4 + 4 + 4 + 4 + (long) nodes * (4 * 8 + 4 * 4) + 4L * entries.length;
+        for (String c : crs) {
+            bytes += 2 + c.getBytes(StandardCharsets.UTF_8).length;
+        }
+        for (Entry e : entries) {
+            bytes += 2 + e.name.getBytes(StandardCharsets.UTF_8).length + 8 + 8 + 1 + 4 + 4 + 4 + 3 * 8 + 2
+                    + Sensor.BANDS.size();
+        }
+        for (String name : others.keySet()) {
+            bytes += 2 + name.getBytes(StandardCharsets.UTF_8).length + 8 + 8 + 1;
+        }
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Catalog of " + entries.length + " scenes is too large");
+        }
+        ByteBuffer b = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(MAGIC).putInt(VERSION).putInt(crs.size());
+        for (String c : crs) {
+            putString(b, c);
+        }
+        b.putInt(entries.length + others.size());
+        for (Entry e : entries) {
+            putString(b, e.name);
+            b.putLong(e.size).putLong(e.modified).put((byte) e.sensor.ordinal()).putInt(e.epochDay)
+                    .putInt(e.grid.width()).putInt(e.grid.height()).putDouble(e.grid.x0()).putDouble(e.grid.y0())
+                    .putDouble(e.grid.pixelSize()).putShort((short) (int) crsIndex.get(e.grid.crs()));
+            for (int at : e.bandAt) {
+                b.put((byte) at);
+            }
+        }
+        for (Map.Entry<String, long[]> o : others.entrySet()) {
+            putString(b, o.getKey());
+            b.putLong(o.getValue()[0]).putLong(o.getValue()[1]).put((byte) -1);
+        }
+        b.putInt(nodes);
+        for (int k = 0; k < nodes; k++) {
+            int i = entries.length + k;
+            b.putDouble(minX[i]).putDouble(minY[i]).putDouble(maxX[i]).putDouble(maxY[i]).putInt(minDay[i])
+                    .putInt(maxDay[i]).putInt(firstChild[k]).putInt(endChild[k]);
+        }
+        for (int i : byDate) {
+            b.putInt(i);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, b.array());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Reads a catalog written by {@link #write}; scene names resolve against the file's directory. */
+    public static SceneCatalog read(Path file) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        b.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException(file + " is not a scene catalog");
+        }
+        int version = b.getInt();
+        if (version != VERSION) {
+            throw new IOException(file + " has unsupported version " + version);
+        }
+        String[] crs = new String[b.getInt()];
+        for (int i = 0; i < crs.length; i++) {
+            crs[i] = getString(b);
+        }
+        int files = b.getInt();
+        List<Entry> entries = new ArrayList<>(files);
+        Map<String, long[]> others = new LinkedHashMap<>();
+        Sensor[] sensors = Sensor.values();
+        for (int f = 0; f < files; f++) {
+            String name = getString(b);
+            long size = b.getLong();
+            long modified = b.getLong();
+            int sensor = b.get();
+            if (sensor < 0) {
+                others.put(name, new long[]{size, modified});
+                continue;
+            }
+            int day = b.getInt();
+            int width = b.getInt();
+            int height = b.getInt();
+            GridSpec grid = new GridSpec(width, height, b.getDouble(), b.getDouble(), b.getDouble(),
+                    crs[b.getShort()]);
+            int[] bandAt = new int[Sensor.BANDS.size()];
+            for (int k = 0; k < bandAt.length; k++) {
+                bandAt[k] = b.get();
+            }
+            entries.add(new Entry(name, size, modified, sensors[sensor], day, grid, bandAt));
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        SceneCatalog c = new SceneCatalog(parent, entries.toArray(new Entry[0]), others, b.getInt());
+        for (int k = 0; k < c.firstChild.length; k++) {
+            int i = c.entries.length + k;
+            c.minX[i] = b.getDouble();
+            c.minY[i] = b.getDouble();
+            c.maxX[i] = b.getDouble();
+            c.maxY[i] = b.getDouble();
+            c.minDay[i] = b.getInt();
+            c.maxDay[i] = b.getInt();
+            c.firstChild[k] = b.getInt();
+            c.endChild[k] = b.getInt();
+        }
+        for (int i = 0; i < c.byDate.length; i++) {
+            c.byDate[i] = b.getInt();
+        }
+        return c;
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] s = new byte[b.getShort()];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer b, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        b.putShort((short) bytes.length).put(bytes);
+    }
+}
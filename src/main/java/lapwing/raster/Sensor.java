@@ -0,0 +1,63 @@
+package lapwing.raster;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Landsat Collection 2 Level 2 sensors merged by {@code LandsatCollection}, with the surface-reflectance bands
+ * each one maps onto the common names B, G, R, NIR, SWIR1, SWIR2 (TM/ETM+ use SR_B1-5,7; OLI uses SR_B2-7).
+ */
+public enum Sensor {
+    LT04("LANDSAT/LT04/C02/T1_L2", tmBands()),
+    LT05("LANDSAT/LT05/C02/T1_L2", tmBands()),
+    LE07("LANDSAT/LE07/C02/T1_L2", tmBands()),
+    LC08("LANDSAT/LC08/C02/T1_L2", oliBands()),
+    LC09("LANDSAT/LC09/C02/T1_L2", oliBands());
+
+    /** Common band names, in the order of {@code band_names} in the GEE script. */
+    public static final List<String> BANDS = List.of("B", "G", "R", "NIR", "SWIR1", "SWIR2", "QA_PIXEL");
+    public static final int B = 0;
+    public static final int G = 1;
+    public static final int R = 2;
+    public static final int NIR = 3;
+    public static final int SWIR1 = 4;
+    public static final int SWIR2 = 5;
+    public static final int QA = 6;
+
+    private final String collection;
+    private final List<String> sourceBands;
+
+    Sensor(String collection, List<String> sourceBands) {
+        this.collection = collection;
+        this.sourceBands = sourceBands;
+    }
+
+    private static List<String> tmBands() {
+        return List.of("SR_B1", "SR_B2", "SR_B3", "SR_B4", "SR_B5", "SR_B7", "QA_PIXEL");
+    }
+
+    private static List<String> oliBands() {
+        return List.of("SR_B2", "SR_B3", "SR_B4", "SR_B5", "SR_B6", "SR_B7", "QA_PIXEL");
+    }
+
+    /** Earth Engine collection id. */
+    public String collection() {
+        return collection;
+    }
+
+    /** Source band for common band {@code band} (an index into {@link #BANDS}). */
+    public String sourceBand(int band) {
+        return sourceBands.get(band);
+    }
+
+    /** Parses "LC08", "lc08" or a collection id / scene id starting with one of them. */
+    public static Sensor parse(String text) {
+        String s = text.trim().toUpperCase(Locale.ROOT);
+        for (Sensor sensor : values()) {
+            if (s.startsWith(sensor.name()) || s.equals(sensor.collection) || s.contains("/" + sensor.name() + "/")) {
+                return sensor;
+            }
+        }
+        throw new IllegalArgumentException("Unknown Landsat sensor '" + text + "'");
+    }
+}
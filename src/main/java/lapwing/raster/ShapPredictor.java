@@ -0,0 +1,162 @@
+package lapwing.raster;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import lapwing.forest.TreeShap;
+
+/**
+ * Per-pixel SHAP attribution maps for the monthly predictor surfaces: one raster per month with one band per
+ * predictor, holding that predictor's contribution to the pixel's suitability. For every valid pixel the bands
+ * sum to the {@link HabitatPredictor} probability minus {@link TreeShap#expectedValue()}, which is stored in the
+ * {@code expected_value} metadata.
+ *
+ * <p>Work is split into (month, tile) tasks like {@link HabitatPredictor}. Each task takes a recycled set of
+ * tile buffers together with a {@link TreeShap.Workspace}, so explaining a pixel allocates nothing. TreeSHAP
+ * costs orders of magnitude more per pixel than scoring, so {@code step} can explain one pixel (the block
+ * centre) per {@code step x step} block onto a grid coarsened by that factor.
+ */
+public final class ShapPredictor {
+
+    public static final String EXPECTED_VALUE = "expected_value";
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private final TreeShap shap;
+    private final ForkJoinPool pool;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private int step = 1;
+    private final ConcurrentLinkedQueue<Buffers> buffers = new ConcurrentLinkedQueue<>();
+
+    public ShapPredictor(TreeShap shap, ForkJoinPool pool) {
+        this.shap = shap;
+        this.pool = pool;
+    }
+
+    public ShapPredictor tileSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        this.tileSize = size;
+        return this;
+    }
+
+    /** Explain one pixel per {@code step x step} block of the surface grid (1 explains every pixel). */
+    public ShapPredictor step(int step) {
+        if (step < 1) {
+            throw new IllegalArgumentException("step must be positive");
+        }
+        this.step = step;
+        return this;
+    }
+
+    /** The output grid for a surface grid: the same origin, pixels {@code step} times larger. */
+    public GridSpec outputGrid(GridSpec surface) {
+        if (step == 1) {
+            return surface;
+        }
+        return new GridSpec((surface.width() + step - 1) / step, (surface.height() + step - 1) / step, surface.x0(),
+                surface.y0(), surface.pixelSize() * step, surface.crs());
+    }
+
+    //==========================================================================================================
+    // Explain every surface into the raster named by out; returns surface -> SHAP raster
+    //==========================================================================================================
+    public Map<RasterFile, RasterFile> explain(List<RasterFile> surfaces, Function<RasterFile, Path> out)
+            throws IOException {
+        String[] names = shap.predictorNames();
+        Map<RasterFile, RasterFile> result = new LinkedHashMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (RasterFile surface : surfaces) {
+            int[] bandOf = new int[names.length];
+            for (int j = 0; j < names.length; j++) {
+                bandOf[j] = surface.bandIndex(names[j]);
+                if (bandOf[j] < 0) {
+                    throw new IllegalArgumentException(surface.file() + " has no band " + names[j]);
+                }
+            }
+            Map<String, String> metadata = new LinkedHashMap<>(surface.metadata());
+            metadata.put(EXPECTED_VALUE, Double.toString(shap.expectedValue()));
+            GridSpec grid = outputGrid(surface.grid());
+            RasterFile maps = RasterFile.create(out.apply(surface), grid, PixelType.FLOAT32, List.of(names), metadata);
+            result.put(surface, maps);
+            for (Tile tile : Tile.cover(grid, tileSize)) {
+                tasks.add(() -> {
+                    explainTile(surface, bandOf, tile, maps);
+                    return null;
+                });
+            }
+        }
+        SurfaceBuilder.invokeAll(pool, tasks);
+        for (RasterFile maps : result.values()) {
+            maps.close();
+        }
+        return result;
+    }
+
+    /** Source predictor window, output bands, the sample vector and the TreeSHAP path buffers of one task. */
+    private static final class Buffers {
+        final float[][] source;
+        final float[][] out;
+        final float[] x;
+        final double[] phi;
+        final TreeShap.Workspace workspace;
+
+        Buffers(int predictors, int sourcePixels, int outPixels, TreeShap shap) {
+            source = new float[predictors][sourcePixels];
+            out = new float[predictors][outPixels];
+            x = new float[predictors];
+            phi = new double[predictors];
+            workspace = shap.newWorkspace();
+        }
+    }
+
+    private void explainTile(RasterFile surface, int[] bandOf, Tile tile, RasterFile maps) {
+        GridSpec src = surface.grid();
+        int c0 = tile.col0 * step;
+        int r0 = tile.row0 * step;
+        int w = Math.min(tile.width * step, src.width() - c0);
+        int h = Math.min(tile.height * step, src.height() - r0);
+        int sourcePixels = tileSize * tileSize * step * step;
+        Buffers b = buffers.poll();
+        if (b == null) {
+            b = new Buffers(bandOf.length, sourcePixels, tileSize * tileSize, shap);
+        }
+        try {
+            for (int j = 0; j < bandOf.length; j++) {
+                surface.readFloats(bandOf[j], c0, r0, w, h, b.source[j]);
+            }
+            for (int r = 0; r < tile.height; r++) {
+                // Block centre, clamped to the partial blocks at the right and bottom edges
+                int sr = Math.min(r * step + step / 2, h - 1);
+                for (int c = 0; c < tile.width; c++) {
+                    int sc = Math.min(c * step + step / 2, w - 1);
+                    int p = r * tile.width + c;
+                    boolean valid = true;
+                    for (int j = 0; j < bandOf.length; j++) {
+                        b.x[j] = b.source[j][sr * w + sc];
+                        valid &= !Float.isNaN(b.x[j]);
+                    }
+                    if (valid) {
+                        shap.explain(b.x, b.workspace, b.phi);
+                    }
+                    for (int j = 0; j < bandOf.length; j++) {
+                        b.out[j][p] = valid ? (float) b.phi[j] : Float.NaN;
+                    }
+                }
+            }
+            for (int j = 0; j < bandOf.length; j++) {
+                maps.writeFloats(j, tile.col0, tile.row0, tile.width, tile.height, b.out[j]);
+            }
+        } finally {
+            buffers.add(b);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package lapwing.raster;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A time-invariant predictor (Roughness, and any later covariate) read from one band of a {@link RasterFile}.
+ *
+ * <p>The layer may have its own pixel size (Geomorpho90m is coarser than Landsat). It is sampled at the centre of
+ * each target pixel with nearest-neighbour lookup, which is what Earth Engine does when a layer is used at
+ * {@code scale: 30} without an explicit resampling. The layer must be in the target CRS.
+ */
+public final class StaticLayer {
+
+    private final String name;
+    private final RasterFile raster;
+    private final int band;
+
+    public StaticLayer(String name, RasterFile raster, int band) {
+        if (band < 0 || band >= raster.bands().size()) {
+            throw new IllegalArgumentException("No band " + band + " in " + raster.file());
+        }
+        this.name = name;
+        this.raster = raster;
+        this.band = band;
+    }
+
+    /** Layer {@code name} from the band of that name, or from the first band if there is none. */
+    public static StaticLayer open(String name, Path file) throws IOException {
+        RasterFile r = RasterFile.open(file);
+        return new StaticLayer(name, r, Math.max(0, r.bandIndex(name)));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public RasterFile raster() {
+        return raster;
+    }
+
+    public int band() {
+        return band;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Values on a target grid
+    //----------------------------------------------------------------------------------------------------------
+    /** Reads the layer over {@code tile} of {@code target} into {@code dst}; NaN outside the layer. */
+    public void read(GridSpec target, Tile tile, float[] dst) {
+        GridSpec g = raster.grid();
+        if (!g.crs().equals(target.crs())) {
+            throw new IllegalArgumentException(name + " is in " + g.crs() + ", target grid in " + target.crs());
+        }
+        if (Math.abs(g.pixelSize() - target.pixelSize()) <= 1e-9 * target.pixelSize()) {
+            try {
+                int[] off = target.offsetOf(g);
+                raster.readFloats(band, tile.col0 - off[0], tile.row0 - off[1], tile.width, tile.height, dst);
+                return;
+            } catch (IllegalArgumentException notAligned) {
+                // Same pixel size but shifted origin: fall through to point lookup
+            }
+        }
+        for (int r = 0; r < tile.height; r++) {
+            int row = g.row(target.y(tile.row0 + r));
+            for (int c = 0; c < tile.width; c++) {
+                int col = g.col(target.x(tile.col0 + c));
+                dst[r * tile.width + c] = g.contains(col, row) ? raster.getFloat(band, col, row) : Float.NaN;
+            }
+        }
+    }
+
+    /** Value at map coordinates {@code (x, y)}, NaN outside the layer. */
+    public float valueAt(double x, double y) {
+        GridSpec g = raster.grid();
+        int col = g.col(x);
+        int row = g.row(y);
+        return g.contains(col, row) ? raster.getFloat(band, col, row) : Float.NaN;
+    }
+}
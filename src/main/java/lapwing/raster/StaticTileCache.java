@@ -0,0 +1,180 @@
+package lapwing.raster;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Static layers resampled onto a target grid once per tile and shared read-only by every consumer: the monthly
+ * compositor joins them after the temporal reduction, and the training sampler looks points up in the same
+ * tiles.
+ *
+ * <p>In the GEE script Roughness is re-mosaicked for every Landsat image, carried through the per-scene median
+ * and sampled again per training point with {@code reduceRegion}. Here each tile of each layer is produced at
+ * most once while it stays cached. The cache holds up to {@code maxTiles} tiles and evicts the least recently
+ * used. Two threads missing the same tile may both compute it; the result is identical, so the second one is
+ * simply dropped.
+ *
+ * <p>{@link #shared} hands out one cache per (grid, tile size, layers) for the whole process, so commands run in
+ * one JVM (the pipeline runner) resample each layer once between them: {@code BuildSurfaces} and
+ * {@code SamplePoints} pick the same target grid and tile size for the same layers and so get the same instance.
+ */
+public final class StaticTileCache {
+
+    public static final int DEFAULT_MAX_TILES = 1024;
+
+    static final int MAX_SHARED = 4;
+
+    private static final Map<String, StaticTileCache> SHARED = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StaticTileCache> eldest) {
+            return size() > MAX_SHARED;
+        }
+    };
+
+    private final GridSpec grid;
+    private final int tileSize;
+    private final List<StaticLayer> layers;
+    private final Map<Long, float[][]> tiles;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    // Sizes and modification times of the layer files, for shared caches
+    private String stamp = "";
+
+    public StaticTileCache(GridSpec grid, int tileSize, List<StaticLayer> layers, int maxTiles) {
+        if (tileSize < 1 || maxTiles < 1) {
+            throw new IllegalArgumentException("tileSize and maxTiles must be positive");
+        }
+        this.grid = grid;
+        this.tileSize = tileSize;
+        this.layers = List.copyOf(layers);
+        this.tiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, float[][]> eldest) {
+                return size() > maxTiles;
+            }
+        };
+    }
+
+    public StaticTileCache(GridSpec grid, int tileSize, List<StaticLayer> layers) {
+        this(grid, tileSize, layers, DEFAULT_MAX_TILES);
+    }
+
+    /**
+     * The process-wide cache of {@code layers} on {@code grid}, created on first use. Layers are matched by name,
+     * band and file; a file changed on disk since replaces the cache, and at most {@value #MAX_SHARED} caches are
+     * kept, least recently used dropped first.
+     */
+    public static StaticTileCache shared(GridSpec grid, int tileSize, List<StaticLayer> layers) throws IOException {
+        StringBuilder key = new StringBuilder(grid.toString()).append('|').append(tileSize);
+        StringBuilder stamp = new StringBuilder();
+        for (StaticLayer l : layers) {
+            Path file = l.raster().file().toAbsolutePath().normalize();
+            key.append('|').append(l.name()).append('|').append(l.band()).append('|').append(file);
+            stamp.append(Files.size(file)).append('|').append(Files.getLastModifiedTime(file)).append('|');
+        }
+        synchronized (SHARED) {
+            StaticTileCache c = SHARED.get(key.toString());
+            if (c == null || !c.stamp.equals(stamp.toString())) {
+                c = new StaticTileCache(grid, tileSize, layers);
+                c.stamp = stamp.toString();
+                SHARED.put(key.toString(), c);
+            }
+            return c;
+        }
+    }
+
+    /** Drops every shared cache; callers holding one may keep using it. */
+    public static void releaseShared() {
+        synchronized (SHARED) {
+            SHARED.clear();
+        }
+    }
+
+    public GridSpec grid() {
+        return grid;
+    }
+
+    public int tileSize() {
+        return tileSize;
+    }
+
+    public List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (StaticLayer l : layers) {
+            names.add(l.name());
+        }
+        return names;
+    }
+
+    public int layerCount() {
+        return layers.size();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long loads() {
+        return loads.sum();
+    }
+
+    //==========================================================================================================
+    // Tile access
+    //==========================================================================================================
+    /**
+     * Values of every layer over the tile of this cache's tiling that contains pixel {@code (col, row)}, as
+     * {@code [layer][pixel within tile]}. The arrays are shared and must not be modified.
+     */
+    public float[][] tileAt(int col, int row) {
+        int tc = col / tileSize;
+        int tr = row / tileSize;
+        long key = ((long) tr << 32) | tc;
+        float[][] t;
+        synchronized (tiles) {
+            t = tiles.get(key);
+        }
+        if (t != null) {
+            hits.increment();
+            return t;
+        }
+        int c0 = tc * tileSize;
+        int r0 = tr * tileSize;
+        Tile tile = new Tile(-1, c0, r0, Math.min(tileSize, grid.width() - c0), Math.min(tileSize, grid.height() - r0));
+        t = new float[layers.size()][tile.pixels()];
+        for (int l = 0; l < t.length; l++) {
+            layers.get(l).read(grid, tile, t[l]);
+        }
+        loads.increment();
+        synchronized (tiles) {
+            tiles.put(key, t);
+        }
+        return t;
+    }
+
+    /** Cached values over {@code tile}, which must be a tile of {@link Tile#cover} with this cache's tile size. */
+    public float[][] tile(Tile tile) {
+        if (tile.col0 % tileSize != 0 || tile.row0 % tileSize != 0 || tile.width > tileSize
+                || tile.height > tileSize) {
+            throw new IllegalArgumentException(tile + " is not a tile of this cache (size " + tileSize + ")");
+        }
+        return tileAt(tile.col0, tile.row0);
+    }
+
+    /** Value of layer {@code layer} at target pixel {@code (col, row)}, NaN outside the grid or the layer. */
+    public float value(int layer, int col, int row) {
+        if (!grid.contains(col, row)) {
+            return Float.NaN;
+        }
+        float[][] t = tileAt(col, row);
+        int c0 = col / tileSize * tileSize;
+        int r0 = row / tileSize * tileSize;
+        int w = Math.min(tileSize, grid.width() - c0);
+        return t[layer][(row - r0) * w + (col - c0)];
+    }
+}
@@ -0,0 +1,393 @@
+package lapwing.raster;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Local {@code calculate_metrics}: the per-pixel median of TCB, TCG, TCW and NDVI over every clear Landsat
+ * observation in a date window, joined with the static layers (Roughness) after the temporal reduction, with
+ * pixels masked in any band masked in all (the script's {@code RemoveNA}). Static layers come from a shared
+ * {@link StaticTileCache}, so they are never carried through the per-scene work.
+ *
+ * <p>The output grid is cut into fixed-size tiles processed in parallel. A tile reads only the scenes that
+ * overlap it and keeps each pixel's clear values in a pixel-major stack, so working memory per tile is
+ * {@code tile pixels x scenes in window x 4} floats however large the grid is. Workspaces are recycled between
+ * tiles.
+ *
+ * <p>{@link #build} composites one window. {@link #buildMonthly} produces the whole {@code monthly_list}: the
+ * 30-day buffers make consecutive windows overlap by about two thirds, so it slides one window along the
+ * timeline instead and reads each scene once rather than about three times.
+ */
+public final class SurfaceBuilder {
+
+    /** Temporal bands; static layers follow them in the output. */
+    public static final List<String> INDEX_BANDS = List.of("TCB", "TCG", "TCW", "NDVI");
+    public static final int DEFAULT_TILE_SIZE = 128;
+
+    // Months are buffered by 30 days before their first and after their last day (see monthly_list)
+    public static final int MONTH_BUFFER_DAYS = 30;
+
+    private final GridSpec grid;
+    private final ForkJoinPool pool;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private int qaBits = QaMask.DEFAULT;
+    private StaticTileCache statics;
+    private final ConcurrentLinkedQueue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+    private final LongAdder sceneReads = new LongAdder();
+
+    public SurfaceBuilder(GridSpec grid, ForkJoinPool pool) {
+        this.grid = grid;
+        this.pool = pool;
+    }
+
+    public SurfaceBuilder tileSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        this.tileSize = size;
+        return this;
+    }
+
+    public SurfaceBuilder qaBits(int bits) {
+        this.qaBits = bits;
+        return this;
+    }
+
+    /**
+     * Static layers appended after the four index bands. The cache must be on this builder's grid; its tile size
+     * becomes the builder's tile size.
+     */
+    public SurfaceBuilder staticLayers(StaticTileCache cache) {
+        if (cache != null && !cache.grid().equals(grid)) {
+            throw new IllegalArgumentException("Static layer cache is on " + cache.grid() + ", not " + grid);
+        }
+        this.statics = cache;
+        if (cache != null) {
+            this.tileSize = cache.tileSize();
+        }
+        return this;
+    }
+
+    public GridSpec grid() {
+        return grid;
+    }
+
+    /** Scene tiles read so far (one read covers all seven bands of a scene over one tile). */
+    public long sceneTileReads() {
+        return sceneReads.sum();
+    }
+
+    public List<String> bands() {
+        List<String> bands = new ArrayList<>(INDEX_BANDS);
+        if (statics != null) {
+            bands.addAll(statics.names());
+        }
+        return bands;
+    }
+
+    //==========================================================================================================
+    // Date windows
+    //==========================================================================================================
+    /** {@code [start - 30 days, first day of next month + 30 days)} as epoch days, end exclusive like filterDate. */
+    public static int[] monthWindow(YearMonth month) {
+        LocalDate start = month.atDay(1);
+        return new int[]{(int) start.minusDays(MONTH_BUFFER_DAYS).toEpochDay(),
+                (int) start.plusMonths(1).plusDays(MONTH_BUFFER_DAYS).toEpochDay()};
+    }
+
+    /** Scenes dated in {@code [start, end)}, in input order. */
+    public static List<Scene> inWindow(List<Scene> scenes, int start, int end) {
+        List<Scene> out = new ArrayList<>();
+        for (Scene s : scenes) {
+            if (s.epochDay() >= start && s.epochDay() < end) {
+                out.add(s);
+            }
+        }
+        return out;
+    }
+
+    //==========================================================================================================
+    // Build one surface
+    //==========================================================================================================
+    /** Composites the scenes dated in {@code [start, end)} into a FLOAT32 raster at {@code out}. */
+    public RasterFile build(List<Scene> scenes, int start, int end, Path out, Map<String, String> metadata)
+            throws IOException {
+        List<Scene> window = inWindow(scenes, start, end);
+        int[][] offsets = new int[window.size()][];
+        for (int s = 0; s < offsets.length; s++) {
+            offsets[s] = window.get(s).offsetIn(grid);
+        }
+        RasterFile surface = RasterFile.create(out, grid, PixelType.FLOAT32, bands(), metadata);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Tile tile : Tile.cover(grid, tileSize)) {
+            tasks.add(() -> {
+                Workspace ws = acquire(window.size(), tile.pixels());
+                try {
+                    composite(tile, window, offsets, ws);
+                    for (int k = 0; k < ws.out.length; k++) {
+                        surface.writeFloats(k, tile.col0, tile.row0, tile.width, tile.height, ws.out[k]);
+                    }
+                } finally {
+                    workspaces.add(ws);
+                }
+                return null;
+            });
+        }
+        invokeAll(pool, tasks);
+        surface.close();
+        return surface;
+    }
+
+    //==========================================================================================================
+    // Build a monthly series in one pass over the timeline
+    //==========================================================================================================
+    /**
+     * Builds the surface of every month in {@code months} (ascending), each identical to {@link #build} over
+     * {@link #monthWindow}, but reading every scene once. Each tile walks the timeline with a
+     * {@link PixelMultiset}: scenes are transformed when they enter a window and their values removed when they
+     * leave it. Months whose window holds no scene are skipped.
+     */
+    public Map<YearMonth, RasterFile> buildMonthly(List<Scene> scenes, List<YearMonth> months,
+                                                  Function<YearMonth, Path> out) throws IOException {
+        List<Scene> sorted = new ArrayList<>(scenes);
+        sorted.sort(Comparator.comparingInt(Scene::epochDay));
+        List<YearMonth> kept = new ArrayList<>();
+        List<int[]> windows = new ArrayList<>();
+        int capacity = 0;
+        for (YearMonth m : months) {
+            if (!kept.isEmpty() && !m.isAfter(kept.get(kept.size() - 1))) {
+                throw new IllegalArgumentException("Months must be in ascending order");
+            }
+            int[] w = monthWindow(m);
+            int depth = inWindow(sorted, w[0], w[1]).size();
+            if (depth > 0) {
+                kept.add(m);
+                windows.add(w);
+                capacity = Math.max(capacity, depth);
+            }
+        }
+        int[][] offsets = new int[sorted.size()][];
+        for (int s = 0; s < offsets.length; s++) {
+            offsets[s] = sorted.get(s).offsetIn(grid);
+        }
+        Map<YearMonth, RasterFile> surfaces = new LinkedHashMap<>();
+        RasterFile[] rasters = new RasterFile[kept.size()];
+        for (int m = 0; m < rasters.length; m++) {
+            YearMonth month = kept.get(m);
+            rasters[m] = RasterFile.create(out.apply(month), grid, PixelType.FLOAT32, bands(),
+                    Map.of("month", month.toString(), "year", Integer.toString(month.getYear())));
+            surfaces.put(month, rasters[m]);
+        }
+        int[][] w = windows.toArray(new int[0][]);
+        int depth = capacity;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Tile tile : Tile.cover(grid, tileSize)) {
+            tasks.add(() -> {
+                slide(tile, sorted, w, offsets, rasters, depth);
+                return null;
+            });
+        }
+        invokeAll(pool, tasks);
+        for (RasterFile r : rasters) {
+            r.close();
+        }
+        return surfaces;
+    }
+
+    static void invokeAll(ForkJoinPool pool, List<? extends Callable<Void>> tasks) {
+        for (Future<Void> f : pool.invokeAll(tasks)) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while building surface", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException r) {
+                    throw r;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // One tile over the whole timeline: scenes enter and leave the window in date order
+    //----------------------------------------------------------------------------------------------------------
+    private void slide(Tile tile, List<Scene> scenes, int[][] windows, int[][] offsets, RasterFile[] out,
+                       int capacity) {
+        int n = tile.pixels();
+        PixelMultiset set = new PixelMultiset(n, capacity);
+        int[][] band = new int[Sensor.BANDS.size()][n];
+        float[][] result = new float[bands().size()][n];
+        ArrayDeque<Entered> open = new ArrayDeque<>();
+        ArrayDeque<Entered> free = new ArrayDeque<>();
+        int next = 0;
+        for (int m = 0; m < windows.length; m++) {
+            int start = windows[m][0];
+            int end = windows[m][1];
+            while (!open.isEmpty() && open.peek().day < start) {
+                Entered e = open.poll();
+                set.remove(e.index, e.clear, e.count);
+                free.push(e);
+            }
+            for (; next < scenes.size() && scenes.get(next).epochDay() < end; next++) {
+                Scene scene = scenes.get(next);
+                if (scene.epochDay() < start || !scene.overlaps(offsets[next], tile)) {
+                    continue;
+                }
+                Entered e = free.isEmpty() ? new Entered(n) : free.pop();
+                e.day = scene.epochDay();
+                scene.read(Sensor.QA, offsets[next], tile, band[Sensor.QA]);
+                sceneReads.increment();
+                if (QaMask.decode(band[Sensor.QA], n, qaBits, e.mask) == 0) {
+                    // Nothing clear: the scene adds nothing while in the window
+                    free.push(e);
+                    continue;
+                }
+                for (int b = 0; b < band.length; b++) {
+                    if (b != Sensor.QA) {
+                        scene.read(b, offsets[next], tile, band[b]);
+                    }
+                }
+                e.count = PixelMask.positions(e.mask, n, e.clear);
+                Indices.compute(band, e.clear, e.count, e.index);
+                set.add(e.index, e.clear, e.count);
+                open.add(e);
+            }
+            for (int k = 0; k < Indices.COUNT; k++) {
+                for (int p = 0; p < n; p++) {
+                    result[k][p] = set.median(k, p);
+                }
+            }
+            finish(tile, result);
+            for (int k = 0; k < result.length; k++) {
+                out[m].writeFloats(k, tile.col0, tile.row0, tile.width, tile.height, result[k]);
+            }
+        }
+    }
+
+    /** Index values of one scene at its clear pixels of one tile, kept until the scene leaves the window. */
+    private static final class Entered {
+        int day;
+        final float[][] index;
+        final long[] mask;
+        final int[] clear;
+        int count;
+
+        Entered(int pixels) {
+            this.index = new float[Indices.COUNT][pixels];
+            this.mask = new long[PixelMask.words(pixels)];
+            this.clear = new int[pixels];
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // One tile: QA bitset, indices and stacking at the clear pixels only, per-pixel median, static layers, RemoveNA
+    //----------------------------------------------------------------------------------------------------------
+    private void composite(Tile tile, List<Scene> window, int[][] offsets, Workspace ws) {
+        int n = tile.pixels();
+        int depth = window.size();
+        Arrays.fill(ws.count, 0, n, 0);
+        for (int s = 0; s < depth; s++) {
+            Scene scene = window.get(s);
+            if (!scene.overlaps(offsets[s], tile)) {
+                continue;
+            }
+            scene.read(Sensor.QA, offsets[s], tile, ws.band[Sensor.QA]);
+            sceneReads.increment();
+            if (QaMask.decode(ws.band[Sensor.QA], n, qaBits, ws.mask) == 0) {
+                continue;
+            }
+            for (int b = 0; b < ws.band.length; b++) {
+                if (b != Sensor.QA) {
+                    scene.read(b, offsets[s], tile, ws.band[b]);
+                }
+            }
+            int m = PixelMask.positions(ws.mask, n, ws.clear);
+            Indices.compute(ws.band, ws.clear, m, ws.index);
+            for (int j = 0; j < m; j++) {
+                int p = ws.clear[j];
+                int at = p * depth + ws.count[p]++;
+                for (int k = 0; k < Indices.COUNT; k++) {
+                    ws.stack[k][at] = ws.index[k][p];
+                }
+            }
+        }
+        for (int k = 0; k < Indices.COUNT; k++) {
+            float[] stack = ws.stack[k];
+            float[] out = ws.out[k];
+            for (int p = 0; p < n; p++) {
+                out[p] = Medians.ofRange(stack, p * depth, ws.count[p]);
+            }
+        }
+        finish(tile, ws.out);
+    }
+
+    /** Joins the static layers after the temporal reduction and applies RemoveNA. */
+    private void finish(Tile tile, float[][] out) {
+        if (statics != null) {
+            float[][] layers = statics.tile(tile);
+            for (int l = 0; l < layers.length; l++) {
+                System.arraycopy(layers[l], 0, out[Indices.COUNT + l], 0, tile.pixels());
+            }
+        }
+        removeNa(out, tile.pixels());
+    }
+
+    /** Masks a pixel in every band when it is masked in any band (see {@link PixelMask#removeNa}). */
+    public static void removeNa(float[][] bands, int n) {
+        PixelMask.removeNa(bands, n);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Recycled per-tile buffers
+    //----------------------------------------------------------------------------------------------------------
+    private Workspace acquire(int depth, int pixels) {
+        Workspace ws = workspaces.poll();
+        if (ws == null || ws.depth < depth || ws.pixels < pixels) {
+            ws = new Workspace(Math.max(depth, ws == null ? 0 : ws.depth), Math.max(pixels, ws == null ? 0 : ws.pixels),
+                    bands().size());
+        }
+        return ws;
+    }
+
+    private static final class Workspace {
+        final int depth;
+        final int pixels;
+        final int[][] band;
+        final float[][] index;
+        final long[] mask;
+        final int[] clear;
+        final float[][] stack;
+        final int[] count;
+        final float[][] out;
+
+        Workspace(int depth, int pixels, int outBands) {
+            this.depth = depth;
+            this.pixels = pixels;
+            this.band = new int[Sensor.BANDS.size()][pixels];
+            this.index = new float[Indices.COUNT][pixels];
+            this.mask = new long[PixelMask.words(pixels)];
+            this.clear = new int[pixels];
+            this.stack = new float[Indices.COUNT][Math.max(1, depth) * pixels];
+            this.count = new int[pixels];
+            this.out = new float[outBands][pixels];
+        }
+    }
+}
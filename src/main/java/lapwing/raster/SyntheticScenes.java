@@ -0,0 +1,138 @@
+package lapwing.raster;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic Landsat scenes and Roughness layer for running the raster pipeline without Earth Engine.
+ *
+ * <p>Reflectance is a smooth spatial pattern with a seasonal cycle plus noise, in the Collection 2 digital-number
+ * range. Each scene covers a random part of the grid (pixels outside read as fill). QA_PIXEL marks cloud blobs
+ * (bit 3), cirrus patches (bit 2) and a fill border. Output is deterministic for a given seed.
+ */
+public final class SyntheticScenes {
+
+    // Typical Collection 2 QA_PIXEL values: clear land, and cloud (bit 3) with dilated cloud (bit 1)
+    static final int QA_CLEAR = 21824;
+    static final int QA_CLOUD = 22280;
+    static final int QA_CIRRUS = QA_CLEAR | 4;
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private SyntheticScenes() {
+    }
+
+    /** A UTM-like 30 m grid. */
+    public static GridSpec grid(int width, int height) {
+        return new GridSpec(width, height, 500_000, 5_600_000, 30, "EPSG:32642");
+    }
+
+    /** Writes {@code count} scenes, one every {@code everyDays} days from {@code first}, into {@code dir}. */
+    public static List<Path> write(Path dir, GridSpec grid, LocalDate first, int count, int everyDays, long seed)
+            throws IOException {
+        Files.createDirectories(dir);
+        List<Path> out = new ArrayList<>();
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int s = 0; s < count; s++) {
+            LocalDate date = first.plusDays((long) s * everyDays);
+            Sensor sensor = sensorFor(date, rnd);
+            // Footprint: 70-100% of the grid, shifted by whole pixels
+            int w = (int) (grid.width() * (0.7 + 0.3 * rnd.nextDouble()));
+            int h = (int) (grid.height() * (0.7 + 0.3 * rnd.nextDouble()));
+            int c0 = rnd.nextInt(grid.width() - w + 1);
+            int r0 = rnd.nextInt(grid.height() - h + 1);
+            GridSpec g = new GridSpec(w, h, grid.x0() + c0 * grid.pixelSize(), grid.y0() - r0 * grid.pixelSize(),
+                    grid.pixelSize(), grid.crs());
+            List<String> bands = new ArrayList<>();
+            for (int b = 0; b < Sensor.BANDS.size(); b++) {
+                bands.add(sensor.sourceBand(b));
+            }
+            Path file = dir.resolve(sensor + "_" + date.format(DAY) + RasterFile.EXTENSION);
+            try (RasterFile r = RasterFile.create(file, g, PixelType.UINT16, bands,
+                    Map.of("date", date.toString(), "sensor", sensor.name()))) {
+                fill(r, c0, r0, date, rnd.split());
+            }
+            out.add(file);
+        }
+        return out;
+    }
+
+    private static Sensor sensorFor(LocalDate date, SplittableRandom rnd) {
+        int y = date.getYear();
+        if (y < 1993) {
+            return rnd.nextBoolean() ? Sensor.LT04 : Sensor.LT05;
+        }
+        if (y < 2013) {
+            return y >= 1999 && rnd.nextBoolean() ? Sensor.LE07 : Sensor.LT05;
+        }
+        if (y < 2022) {
+            return Sensor.LC08;
+        }
+        return rnd.nextBoolean() ? Sensor.LC08 : Sensor.LC09;
+    }
+
+    private static void fill(RasterFile r, int c0, int r0, LocalDate date, SplittableRandom rnd) {
+        GridSpec g = r.grid();
+        double season = Math.sin(2 * Math.PI * (date.getDayOfYear() - 80) / 365.0);
+        // Band means in DN for B, G, R, NIR, SWIR1, SWIR2
+        double[] base = {8600, 9400, 9800, 15500, 14800, 12400};
+        double[] green = {-200, 300, -600, 3500, -800, -900};
+        int clouds = rnd.nextInt(4);
+        double[][] blob = new double[clouds][3];
+        for (double[] b : blob) {
+            b[0] = rnd.nextDouble() * g.width();
+            b[1] = rnd.nextDouble() * g.height();
+            b[2] = (0.05 + 0.15 * rnd.nextDouble()) * Math.min(g.width(), g.height());
+        }
+        int cirrusRow = rnd.nextInt(g.height());
+        for (int row = 0; row < g.height(); row++) {
+            for (int col = 0; col < g.width(); col++) {
+                // Pattern in target-grid coordinates so overlapping scenes agree
+                double x = (col + c0) / 40.0;
+                double y = (row + r0) / 40.0;
+                double vegetation = 0.5 + 0.5 * Math.sin(x) * Math.cos(y * 0.7);
+                for (int b = 0; b < 6; b++) {
+                    double v = base[b] + green[b] * vegetation * (0.6 + 0.4 * season) + 150 * rnd.nextGaussian();
+                    r.setInt(b, col, row, (int) Math.max(1, Math.min(65535, v)));
+                }
+                int qa = QA_CLEAR;
+                for (double[] b : blob) {
+                    if (Math.hypot(col - b[0], row - b[1]) < b[2]) {
+                        qa = QA_CLOUD;
+                    }
+                }
+                if (Math.abs(row - cirrusRow) < 3) {
+                    qa |= QA_CIRRUS;
+                }
+                if (col == 0 || row == 0 || col == g.width() - 1 || row == g.height() - 1) {
+                    qa = QaMask.FILL;
+                    for (int b = 0; b < 6; b++) {
+                        r.setInt(b, col, row, 0);
+                    }
+                }
+                r.setInt(Sensor.QA, col, row, qa);
+            }
+        }
+    }
+
+    /** Roughness on {@code grid}, masked (NaN) in the top-left corner to exercise RemoveNA. */
+    public static Path writeRoughness(Path file, GridSpec grid, long seed) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        try (RasterFile r = RasterFile.create(file, grid, PixelType.FLOAT32, List.of("Roughness"), Map.of())) {
+            for (int row = 0; row < grid.height(); row++) {
+                for (int col = 0; col < grid.width(); col++) {
+                    boolean masked = col < grid.width() / 10 && row < grid.height() / 10;
+                    r.setFloat(0, col, row, masked ? Float.NaN : (float) (2 + 3 * rnd.nextDouble()));
+                }
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,242 @@
+package lapwing.raster;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Yearly, decadal and custom-window medians of the monthly probability rasters in a single pass.
+ *
+ * <p>The script builds {@code yearlyMedianCollection} with one {@code calendarRange} filter and median per year,
+ * then filters and medians the same monthly stack again for each {@code caf_*_median}. Here every tile walks the
+ * months once in time order and reads each monthly tile exactly once. Each value goes into the buffer of every
+ * window containing that month. A window's buffer is allocated when its first month arrives, and its median is
+ * written as soon as its last month has passed. Buffers hold one slot per input month in the window (12 for a
+ * year), so working memory per tile is bounded by {@code tile pixels x months in the open windows}.
+ *
+ * <p>Masked (NaN) months are skipped per pixel, and a pixel with no value in a window stays masked, as
+ * {@code ImageCollection.median()} does.
+ */
+public final class TemporalAggregator {
+
+    public static final int DEFAULT_TILE_SIZE = 128;
+
+    private final ForkJoinPool pool;
+    private int tileSize = DEFAULT_TILE_SIZE;
+
+    public TemporalAggregator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public TemporalAggregator tileSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        this.tileSize = size;
+        return this;
+    }
+
+    /** Reads the {@code month} metadata of a monthly raster. */
+    public static YearMonth monthOf(RasterFile r) {
+        String m = r.metadata("month");
+        if (m == null) {
+            throw new IllegalArgumentException(r.file() + " has no month metadata");
+        }
+        return YearMonth.parse(m);
+    }
+
+    //==========================================================================================================
+    // Aggregate band 0 of every monthly raster into each window with at least one month
+    //==========================================================================================================
+    public Map<TemporalWindow, RasterFile> aggregate(List<RasterFile> monthly, List<TemporalWindow> windows,
+                                                     Function<TemporalWindow, Path> out) throws IOException {
+        List<RasterFile> stack = new ArrayList<>(monthly);
+        stack.sort(Comparator.comparing(TemporalAggregator::monthOf));
+        int t = stack.size();
+        if (t == 0) {
+            throw new IllegalArgumentException("No monthly rasters");
+        }
+        GridSpec grid = stack.get(0).grid();
+        YearMonth[] month = new YearMonth[t];
+        for (int i = 0; i < t; i++) {
+            month[i] = monthOf(stack.get(i));
+            if (!stack.get(i).grid().equals(grid)) {
+                throw new IllegalArgumentException(stack.get(i).file() + " is not on " + grid);
+            }
+            if (i > 0 && month[i].equals(month[i - 1])) {
+                throw new IllegalArgumentException("Two rasters for " + month[i]);
+            }
+        }
+
+        //------------------------------------------------------------------------------------------------------
+        // Per window: capacity (input months it contains) and the index of its last input month
+        //------------------------------------------------------------------------------------------------------
+        List<TemporalWindow> used = new ArrayList<>();
+        List<int[]> span = new ArrayList<>();
+        for (TemporalWindow w : windows) {
+            int count = 0;
+            int last = -1;
+            for (int i = 0; i < t; i++) {
+                if (w.contains(month[i])) {
+                    count++;
+                    last = i;
+                }
+            }
+            if (count > 0) {
+                used.add(w);
+                span.add(new int[]{count, last});
+            }
+        }
+        Map<TemporalWindow, RasterFile> result = new LinkedHashMap<>();
+        RasterFile[] rasters = create(grid, used, out, result);
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Tile tile : Tile.cover(grid, tileSize)) {
+            tasks.add(() -> {
+                walk(tile, stack, month, used, span, rasters);
+                return null;
+            });
+        }
+        SurfaceBuilder.invokeAll(pool, tasks);
+        for (RasterFile r : rasters) {
+            r.close();
+        }
+        return result;
+    }
+
+    /** One FLOAT32 output raster per window, tagged with the window's span. */
+    private static RasterFile[] create(GridSpec grid, List<TemporalWindow> used, Function<TemporalWindow, Path> out,
+                                       Map<TemporalWindow, RasterFile> result) throws IOException {
+        RasterFile[] rasters = new RasterFile[used.size()];
+        for (int k = 0; k < rasters.length; k++) {
+            TemporalWindow w = used.get(k);
+            Map<String, String> meta = new LinkedHashMap<>();
+            meta.put("window", w.toString());
+            meta.put("first", w.first().toString());
+            meta.put("last", w.last().toString());
+            if (w.first().getYear() == w.last().getYear()) {
+                meta.put("year", Integer.toString(w.first().getYear()));
+            }
+            rasters[k] = RasterFile.create(out.apply(w), grid, PixelType.FLOAT32, List.of(w.name()), meta);
+            result.put(w, rasters[k]);
+        }
+        return rasters;
+    }
+
+    //==========================================================================================================
+    // Aggregate a time-major stack: one contiguous series read per pixel
+    //==========================================================================================================
+    /**
+     * The same medians from an {@link HsiStack}. Each pixel's series is read once and every window takes the
+     * months it contains from it, so no per-window buffers are kept across months. Months missing from the stack
+     * count as absent, like a missing monthly raster.
+     */
+    public Map<TemporalWindow, RasterFile> aggregate(HsiStack stack, List<TemporalWindow> windows,
+                                                     Function<TemporalWindow, Path> out) throws IOException {
+        int t = stack.months();
+        if (t == 0) {
+            throw new IllegalArgumentException(stack.file() + " holds no months");
+        }
+        // Per window: the indices of the stack months it contains
+        List<TemporalWindow> used = new ArrayList<>();
+        List<int[]> members = new ArrayList<>();
+        for (TemporalWindow w : windows) {
+            int[] in = new int[t];
+            int count = 0;
+            for (int i = 0; i < t; i++) {
+                if (stack.present(i) && w.contains(stack.month(i))) {
+                    in[count++] = i;
+                }
+            }
+            if (count > 0) {
+                used.add(w);
+                members.add(Arrays.copyOf(in, count));
+            }
+        }
+        Map<TemporalWindow, RasterFile> result = new LinkedHashMap<>();
+        RasterFile[] rasters = create(stack.grid(), used, out, result);
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Tile tile : Tile.cover(stack.grid(), tileSize)) {
+            tasks.add(() -> {
+                int n = tile.pixels();
+                float[] series = new float[t];
+                float[] values = new float[t];
+                float[][] median = new float[used.size()][n];
+                for (int r = 0; r < tile.height; r++) {
+                    for (int c = 0; c < tile.width; c++) {
+                        stack.series(tile.col0 + c, tile.row0 + r, 0, t, series);
+                        for (int k = 0; k < used.size(); k++) {
+                            int count = 0;
+                            for (int i : members.get(k)) {
+                                if (!Float.isNaN(series[i])) {
+                                    values[count++] = series[i];
+                                }
+                            }
+                            median[k][r * tile.width + c] = Medians.ofRange(values, 0, count);
+                        }
+                    }
+                }
+                for (int k = 0; k < rasters.length; k++) {
+                    rasters[k].writeFloats(0, tile.col0, tile.row0, tile.width, tile.height, median[k]);
+                }
+                return null;
+            });
+        }
+        SurfaceBuilder.invokeAll(pool, tasks);
+        for (RasterFile r : rasters) {
+            r.close();
+        }
+        return result;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // One tile through the whole stack
+    //----------------------------------------------------------------------------------------------------------
+    private static void walk(Tile tile, List<RasterFile> stack, YearMonth[] month, List<TemporalWindow> windows,
+                             List<int[]> span, RasterFile[] out) {
+        int n = tile.pixels();
+        float[] values = new float[n];
+        float[] median = new float[n];
+        // Pixel-major buffers of open windows: buffer[k][p * capacity + slot], counts[k][p]
+        float[][] buffer = new float[windows.size()][];
+        int[][] counts = new int[windows.size()][];
+        for (int i = 0; i < month.length; i++) {
+            stack.get(i).readFloats(0, tile.col0, tile.row0, tile.width, tile.height, values);
+            for (int k = 0; k < windows.size(); k++) {
+                if (!windows.get(k).contains(month[i])) {
+                    continue;
+                }
+                int capacity = span.get(k)[0];
+                if (buffer[k] == null) {
+                    buffer[k] = new float[n * capacity];
+                    counts[k] = new int[n];
+                }
+                float[] b = buffer[k];
+                int[] c = counts[k];
+                for (int p = 0; p < n; p++) {
+                    if (!Float.isNaN(values[p])) {
+                        b[p * capacity + c[p]++] = values[p];
+                    }
+                }
+                if (span.get(k)[1] == i) {
+                    for (int p = 0; p < n; p++) {
+                        median[p] = Medians.ofRange(b, p * capacity, c[p]);
+                    }
+                    out[k].writeFloats(0, tile.col0, tile.row0, tile.width, tile.height, median);
+                    buffer[k] = null;
+                    counts[k] = null;
+                }
+            }
+        }
+    }
+}
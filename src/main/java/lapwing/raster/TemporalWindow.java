@@ -0,0 +1,87 @@
+package lapwing.raster;
+
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A named, inclusive span of months reduced to one median image, optionally restricted to some calendar months
+ * (e.g. the breeding season). Yearly medians, the decadal {@code caf_*_median} images and custom seasonal
+ * windows are all windows over the same monthly stack.
+ */
+public final class TemporalWindow {
+
+    private final String name;
+    private final YearMonth first;
+    private final YearMonth last;
+    private final Set<Month> months;
+
+    public TemporalWindow(String name, YearMonth first, YearMonth last, Set<Month> months) {
+        if (last.isBefore(first)) {
+            throw new IllegalArgumentException(name + ": window ends before it starts");
+        }
+        if (months.isEmpty()) {
+            throw new IllegalArgumentException(name + ": no calendar months selected");
+        }
+        this.name = name;
+        this.first = first;
+        this.last = last;
+        this.months = EnumSet.copyOf(months);
+    }
+
+    public static TemporalWindow of(String name, YearMonth first, YearMonth last) {
+        return new TemporalWindow(name, first, last, EnumSet.allOf(Month.class));
+    }
+
+    /** {@code filter(calendarRange(year, year, 'year'))}, named {@code <prefix><year>}. */
+    public static TemporalWindow year(String prefix, int year) {
+        return of(prefix + year, YearMonth.of(year, 1), YearMonth.of(year, 12));
+    }
+
+    /** The six decade-end medians exported as {@code HSI_1995} ... {@code HSI_2024}. */
+    public static List<TemporalWindow> decadal() {
+        List<TemporalWindow> w = new ArrayList<>();
+        w.add(of("HSI_median_1995", YearMonth.of(1994, 1), YearMonth.of(1996, 12)));
+        for (int year : new int[]{2004, 2005, 2014, 2015, 2024}) {
+            w.add(year("HSI_median_", year));
+        }
+        return w;
+    }
+
+    /** One window per year in {@code [from, to]} covering only {@code months} of that year. */
+    public static List<TemporalWindow> seasonal(String prefix, int from, int to, Set<Month> months) {
+        List<TemporalWindow> w = new ArrayList<>();
+        for (int year = from; year <= to; year++) {
+            w.add(new TemporalWindow(prefix + year, YearMonth.of(year, 1), YearMonth.of(year, 12), months));
+        }
+        return w;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public YearMonth first() {
+        return first;
+    }
+
+    public YearMonth last() {
+        return last;
+    }
+
+    public Set<Month> months() {
+        return EnumSet.copyOf(months);
+    }
+
+    public boolean contains(YearMonth m) {
+        return !m.isBefore(first) && !m.isAfter(last) && months.contains(m.getMonth());
+    }
+
+    @Override
+    public String toString() {
+        return name + " [" + first + ", " + last + "]" + (months.size() < 12 ? " " + months : "");
+    }
+}
@@ -0,0 +1,200 @@
+package lapwing.raster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * TIFF constants and the IFD encoder shared by {@link GeoTiffWriter} and {@link GeoTiffReader}; classic TIFF and
+ * BigTIFF, little-endian only.
+ */
+final class Tiff {
+
+    // Field types
+    static final short ASCII = 2;
+    static final short SHORT = 3;
+    static final short LONG = 4;
+    static final short DOUBLE = 12;
+    static final short LONG8 = 16;
+
+    // Tags
+    static final int NEW_SUBFILE_TYPE = 254;
+    static final int IMAGE_WIDTH = 256;
+    static final int IMAGE_LENGTH = 257;
+    static final int BITS_PER_SAMPLE = 258;
+    static final int COMPRESSION = 259;
+    static final int PHOTOMETRIC = 262;
+    static final int SAMPLES_PER_PIXEL = 277;
+    static final int PLANAR_CONFIG = 284;
+    static final int PREDICTOR = 317;
+    static final int TILE_WIDTH = 322;
+    static final int TILE_LENGTH = 323;
+    static final int TILE_OFFSETS = 324;
+    static final int TILE_BYTE_COUNTS = 325;
+    static final int SAMPLE_FORMAT = 339;
+    static final int MODEL_PIXEL_SCALE = 33550;
+    static final int MODEL_TIEPOINT = 33922;
+    static final int GEO_KEY_DIRECTORY = 34735;
+    static final int GDAL_NODATA = 42113;
+
+    // Values
+    static final int COMPRESSION_NONE = 1;
+    static final int COMPRESSION_DEFLATE = 8;
+    static final int PREDICTOR_NONE = 1;
+    static final int PREDICTOR_FLOAT = 3;
+    static final int SAMPLE_FORMAT_FLOAT = 3;
+
+    // GeoKeys
+    static final int GT_MODEL_TYPE = 1024;
+    static final int GT_RASTER_TYPE = 1025;
+    static final int GEOGRAPHIC_TYPE = 2048;
+    static final int PROJECTED_CS_TYPE = 3072;
+
+    private Tiff() {
+    }
+
+    /** One IFD entry with its value already encoded little-endian. */
+    static final class Entry {
+        final int tag;
+        final short type;
+        final long count;
+        final byte[] value;
+
+        Entry(int tag, short type, long count, byte[] value) {
+            this.tag = tag;
+            this.type = type;
+            this.count = count;
+            this.value = value;
+        }
+    }
+
+    static Entry shorts(int tag, int... v) {
+        ByteBuffer b = le(2 * v.length);
+        for (int x : v) {
+            b.putShort((short) x);
+        }
+        return new Entry(tag, SHORT, v.length, b.array());
+    }
+
+    static Entry longs(int tag, long... v) {
+        ByteBuffer b = le(4 * v.length);
+        for (long x : v) {
+            b.putInt((int) x);
+        }
+        return new Entry(tag, LONG, v.length, b.array());
+    }
+
+    static Entry long8s(int tag, long... v) {
+        ByteBuffer b = le(8 * v.length);
+        for (long x : v) {
+            b.putLong(x);
+        }
+        return new Entry(tag, LONG8, v.length, b.array());
+    }
+
+    static Entry doubles(int tag, double... v) {
+        ByteBuffer b = le(8 * v.length);
+        for (double x : v) {
+            b.putDouble(x);
+        }
+        return new Entry(tag, DOUBLE, v.length, b.array());
+    }
+
+    static Entry ascii(int tag, String s) {
+        byte[] v = (s + "\0").getBytes(StandardCharsets.US_ASCII);
+        return new Entry(tag, ASCII, v.length, v);
+    }
+
+    static ByteBuffer le(int bytes) {
+        return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // IFD layout: entries sorted by tag, out-of-line values right after the IFD, word aligned
+    //----------------------------------------------------------------------------------------------------------
+    static int ifdSize(List<Entry> entries, boolean big) {
+        int inline = big ? 8 : 4;
+        int size = (big ? 8 : 2) + entries.size() * (big ? 20 : 12) + (big ? 8 : 4);
+        for (Entry e : entries) {
+            if (e.value.length > inline) {
+                size += (e.value.length + 1) & ~1;
+            }
+        }
+        return size;
+    }
+
+    /** Encodes the IFD as if it were written at file offset {@code at}, linking to {@code next} (0 for none). */
+    static byte[] encodeIfd(List<Entry> entries, boolean big, long at, long next) {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingInt(e -> e.tag));
+        int inline = big ? 8 : 4;
+        ByteBuffer b = le(ifdSize(sorted, big));
+        int extra = (big ? 8 : 2) + sorted.size() * (big ? 20 : 12) + (big ? 8 : 4);
+        if (big) {
+            b.putLong(sorted.size());
+        } else {
+            b.putShort((short) sorted.size());
+        }
+        for (Entry e : sorted) {
+            b.putShort((short) e.tag).putShort(e.type);
+            if (big) {
+                b.putLong(e.count);
+            } else {
+                b.putInt((int) e.count);
+            }
+            if (e.value.length <= inline) {
+                byte[] v = new byte[inline];
+                System.arraycopy(e.value, 0, v, 0, e.value.length);
+                b.put(v);
+            } else {
+                if (big) {
+                    b.putLong(at + extra);
+                } else {
+                    b.putInt((int) (at + extra));
+                }
+                int save = b.position();
+                b.position(extra);
+                b.put(e.value);
+                extra += (e.value.length + 1) & ~1;
+                b.position(save);
+            }
+        }
+        if (big) {
+            b.putLong(next);
+        } else {
+            b.putInt((int) next);
+        }
+        return b.array();
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Floating-point predictor (Adobe TIFF Technote 3): byte planes most significant first, then differences
+    //----------------------------------------------------------------------------------------------------------
+    static void encodeFloatRow(float[] src, int from, int width, byte[] dst, int at) {
+        for (int i = 0; i < width; i++) {
+            int bits = Float.floatToRawIntBits(src[from + i]);
+            for (int k = 0; k < 4; k++) {
+                dst[at + k * width + i] = (byte) (bits >>> (8 * (3 - k)));
+            }
+        }
+        for (int j = 4 * width - 1; j > 0; j--) {
+            dst[at + j] -= dst[at + j - 1];
+        }
+    }
+
+    static void decodeFloatRow(byte[] src, int at, int width, float[] dst, int from) {
+        for (int j = 1; j < 4 * width; j++) {
+            src[at + j] += src[at + j - 1];
+        }
+        for (int i = 0; i < width; i++) {
+            int bits = 0;
+            for (int k = 0; k < 4; k++) {
+                bits |= (src[at + k * width + i] & 0xFF) << (8 * (3 - k));
+            }
+            dst[from + i] = Float.intBitsToFloat(bits);
+        }
+    }
+}
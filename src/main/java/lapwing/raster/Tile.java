@@ -0,0 +1,49 @@
+package lapwing.raster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rectangular window of a grid, in pixel coordinates. Tiles are the unit of parallel work: each is read,
+ * processed and written independently with memory bounded by its size.
+ */
+public final class Tile {
+
+    public final int index;
+    public final int col0;
+    public final int row0;
+    public final int width;
+    public final int height;
+
+    public Tile(int index, int col0, int row0, int width, int height) {
+        this.index = index;
+        this.col0 = col0;
+        this.row0 = row0;
+        this.width = width;
+        this.height = height;
+    }
+
+    public int pixels() {
+        return width * height;
+    }
+
+    /** Row-major tiles of at most {@code size} x {@code size} pixels covering {@code grid}. */
+    public static List<Tile> cover(GridSpec grid, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Tile size must be positive");
+        }
+        List<Tile> tiles = new ArrayList<>();
+        for (int r = 0; r < grid.height(); r += size) {
+            for (int c = 0; c < grid.width(); c += size) {
+                tiles.add(new Tile(tiles.size(), c, r, Math.min(size, grid.width() - c),
+                        Math.min(size, grid.height() - r)));
+            }
+        }
+        return tiles;
+    }
+
+    @Override
+    public String toString() {
+        return "tile " + index + " [" + col0 + "," + row0 + " " + width + "x" + height + "]";
+    }
+}
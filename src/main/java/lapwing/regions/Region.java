@@ -0,0 +1,55 @@
+package lapwing.regions;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One polygon feature of {@code regional_changes}: its position in the file, its attributes (country, season,
+ * id, region) and its rings as interleaved {@code x, y} coordinates. Rings are combined with the even-odd rule,
+ * so holes need no special orientation.
+ */
+public final class Region {
+
+    private final int index;
+    private final Map<String, String> attributes;
+    private final List<double[]> rings;
+
+    public Region(int index, Map<String, String> attributes, List<double[]> rings) {
+        this.index = index;
+        this.attributes = Map.copyOf(attributes);
+        this.rings = List.copyOf(rings);
+    }
+
+    /** Record number in the source file, starting at 0. */
+    public int index() {
+        return index;
+    }
+
+    /** Attribute value, or {@code ""} when the field is absent. */
+    public String attribute(String name) {
+        return attributes.getOrDefault(name, "");
+    }
+
+    public List<double[]> rings() {
+        return rings;
+    }
+
+    /** The rings as a GeoJSON Polygon, the form Earth Engine writes into {@code .geo}. */
+    public String geoJson() {
+        StringBuilder b = new StringBuilder("{\"type\":\"Polygon\",\"coordinates\":[");
+        for (int r = 0; r < rings.size(); r++) {
+            double[] ring = rings.get(r);
+            b.append(r == 0 ? "[" : ",[");
+            for (int i = 0; i < ring.length; i += 2) {
+                b.append(i == 0 ? "[" : ",[").append(ring[i]).append(',').append(ring[i + 1]).append(']');
+            }
+            b.append(']');
+        }
+        return b.append("]}").toString();
+    }
+
+    @Override
+    public String toString() {
+        return index + ":" + attribute("region");
+    }
+}
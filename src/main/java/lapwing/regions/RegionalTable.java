@@ -0,0 +1,315 @@
+package lapwing.regions;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import lapwing.data.ColumnSpec;
+import lapwing.data.ColumnStore;
+import lapwing.data.ColumnStoreWriter;
+
+/**
+ * Regional time series stored once per fact: a region dictionary holding each polygon's attributes and geometry
+ * a single time, and per-(region, year) statistics in typed columnar parts partitioned by region.
+ *
+ * <pre>
+ * table/
+ *   regions.tsv                 key, country, id, region, season, geometry (GeoJSON), one line per region
+ *   region=&lt;key&gt;/part-00000.lwc  year (int16), statistics (float32; count as int32)
+ * </pre>
+ *
+ * <p>The exported {@code regional_changes_stats_*.csv} files repeat the region's GeoJSON on every row; here it is
+ * kept once. Parts are immutable {@link ColumnStore} files. {@link #append} writes only rows whose
+ * (region, year) is not stored yet, each partition as a new part moved into place atomically, so an interrupted
+ * run leaves whole parts behind and a re-run adds only the missing years. {@link #writeCsv} gives the
+ * geometry-free view that {@code Plotting_regional_trends.R} reads.
+ */
+public final class RegionalTable {
+
+    public static final String DICTIONARY = "regions.tsv";
+    public static final String YEAR = "year";
+    public static final String COUNT = "count";
+    public static final List<String> FIELDS = List.of("country", "id", "region", "season");
+
+    private static final String PARTITION = "region=";
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_.-]+");
+
+    /** Statistics of one region in one year, ordered like {@link #statistics()}. */
+    public static final class Row {
+
+        private final String key;
+        private final int year;
+        private final double[] values;
+
+        public Row(String key, int year, double[] values) {
+            this.key = key;
+            this.year = year;
+            this.values = values;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public int year() {
+            return year;
+        }
+
+        public double value(int i) {
+            return values[i];
+        }
+    }
+
+    private final Path dir;
+    private final List<String> statistics;
+    private final Map<String, String[]> regions = new LinkedHashMap<>();
+    private final Map<String, Set<Integer>> years = new LinkedHashMap<>();
+    private final Map<String, Integer> nextPart = new LinkedHashMap<>();
+
+    private RegionalTable(Path dir, List<String> statistics) {
+        this.dir = dir;
+        this.statistics = List.copyOf(statistics);
+    }
+
+    //==========================================================================================================
+    // Open (or create) a table; the statistics must match the columns of any stored part
+    //==========================================================================================================
+    public static RegionalTable open(Path dir, List<String> statistics) throws IOException {
+        Files.createDirectories(dir);
+        RegionalTable t = new RegionalTable(dir, statistics);
+        Path dictionary = dir.resolve(DICTIONARY);
+        if (Files.exists(dictionary)) {
+            List<String> lines = Files.readAllLines(dictionary, StandardCharsets.UTF_8);
+            for (String line : lines.subList(1, lines.size())) {
+                String[] f = line.split("\t", -1);
+                t.regions.put(f[0], Arrays.copyOfRange(f, 1, FIELDS.size() + 2));
+            }
+        }
+        for (Path part : t.parts()) {
+            ColumnStore store = ColumnStore.open(part);
+            List<String> expected = new ArrayList<>();
+            expected.add(YEAR);
+            expected.addAll(t.statistics);
+            if (!store.columnNames().equals(expected)) {
+                throw new IllegalArgumentException(part + " has columns " + store.columnNames() + ", not " + expected);
+            }
+            String key = part.getParent().getFileName().toString().substring(PARTITION.length());
+            Set<Integer> y = t.years.computeIfAbsent(key, k -> new TreeSet<>());
+            ColumnStore.Column year = store.column(YEAR);
+            for (int i = 0; i < store.rows(); i++) {
+                y.add(year.getInt(i));
+            }
+            int n = Integer.parseInt(part.getFileName().toString().replaceAll("\\D", ""));
+            t.nextPart.merge(key, n + 1, Math::max);
+        }
+        return t;
+    }
+
+    public List<String> statistics() {
+        return statistics;
+    }
+
+    public List<String> regionKeys() {
+        return List.copyOf(regions.keySet());
+    }
+
+    /** Dictionary field ({@link #FIELDS}) or {@code "geometry"} of region {@code key}. */
+    public String attribute(String key, String field) {
+        String[] r = regions.get(key);
+        if (r == null) {
+            throw new IllegalArgumentException("No region " + key);
+        }
+        int i = field.equals("geometry") ? FIELDS.size() : FIELDS.indexOf(field);
+        if (i < 0) {
+            throw new IllegalArgumentException("No dictionary field " + field);
+        }
+        return r[i];
+    }
+
+    public boolean contains(String key, int year) {
+        Set<Integer> y = years.get(key);
+        return y != null && y.contains(year);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Dictionary: a region is stored once; later copies keep the first non-empty geometry
+    //----------------------------------------------------------------------------------------------------------
+    public void putRegion(String key, Map<String, String> attributes, String geometry) {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Region key '" + key + "' is not a valid partition name");
+        }
+        String[] r = regions.get(key);
+        if (r == null) {
+            r = new String[FIELDS.size() + 1];
+            for (int i = 0; i < FIELDS.size(); i++) {
+                r[i] = clean(attributes.getOrDefault(FIELDS.get(i), ""));
+            }
+            r[FIELDS.size()] = "";
+            regions.put(key, r);
+        }
+        if (r[FIELDS.size()].isEmpty() && geometry != null) {
+            r[FIELDS.size()] = clean(geometry);
+        }
+    }
+
+    private static String clean(String s) {
+        return s.replace('\t', ' ').replace('\n', ' ');
+    }
+
+    //==========================================================================================================
+    // Append rows whose (region, year) is missing; returns the number of rows written
+    //==========================================================================================================
+    public int append(List<Row> rows) throws IOException {
+        Map<String, List<Row>> byRegion = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (Row r : rows) {
+            if (!regions.containsKey(r.key)) {
+                throw new IllegalArgumentException("Row for unknown region " + r.key);
+            }
+            if (!contains(r.key, r.year) && seen.add(r.key + "@" + r.year)) {
+                byRegion.computeIfAbsent(r.key, k -> new ArrayList<>()).add(r);
+            }
+        }
+        writeDictionary();
+        List<ColumnSpec> specs = new ArrayList<>();
+        specs.add(ColumnSpec.of(YEAR, ColumnSpec.Type.INT16));
+        for (String s : statistics) {
+            specs.add(ColumnSpec.of(s, s.equals(COUNT) ? ColumnSpec.Type.INT32 : ColumnSpec.Type.FLOAT32));
+        }
+        ColumnStoreWriter writer = new ColumnStoreWriter(specs);
+        int written = 0;
+        for (Map.Entry<String, List<Row>> e : byRegion.entrySet()) {
+            List<Row> part = e.getValue();
+            part.sort(Comparator.comparingInt(Row::year));
+            double[][] columns = new double[specs.size()][part.size()];
+            for (int i = 0; i < part.size(); i++) {
+                columns[0][i] = part.get(i).year;
+                for (int s = 0; s < statistics.size(); s++) {
+                    columns[s + 1][i] = part.get(i).values[s];
+                }
+            }
+            Path partition = dir.resolve(PARTITION + e.getKey());
+            Files.createDirectories(partition);
+            int n = nextPart.getOrDefault(e.getKey(), 0);
+            Path tmp = partition.resolve(".part-" + n + ".tmp");
+            writer.write(columns, part.size(), tmp);
+            Files.move(tmp, partition.resolve(String.format("part-%05d%s", n, ColumnStore.EXTENSION)),
+                    StandardCopyOption.ATOMIC_MOVE);
+            nextPart.put(e.getKey(), n + 1);
+            Set<Integer> y = years.computeIfAbsent(e.getKey(), k -> new TreeSet<>());
+            for (Row r : part) {
+                y.add(r.year);
+            }
+            written += part.size();
+        }
+        return written;
+    }
+
+    private void writeDictionary() throws IOException {
+        Path tmp = dir.resolve("." + DICTIONARY + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            w.write("key\t" + String.join("\t", FIELDS) + "\tgeometry\n");
+            for (Map.Entry<String, String[]> e : regions.entrySet()) {
+                w.write(e.getKey() + "\t" + String.join("\t", e.getValue()) + "\n");
+            }
+        }
+        Files.move(tmp, dir.resolve(DICTIONARY), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    //==========================================================================================================
+    // Read back: every row, ordered by year and then by dictionary order
+    //==========================================================================================================
+    public List<Row> rows() throws IOException {
+        List<Row> out = new ArrayList<>();
+        for (Path part : parts()) {
+            String key = part.getParent().getFileName().toString().substring(PARTITION.length());
+            ColumnStore store = ColumnStore.open(part);
+            ColumnStore.Column year = store.column(YEAR);
+            ColumnStore.Column[] cols = new ColumnStore.Column[statistics.size()];
+            for (int s = 0; s < cols.length; s++) {
+                cols[s] = store.column(statistics.get(s));
+            }
+            for (int i = 0; i < store.rows(); i++) {
+                double[] v = new double[cols.length];
+                for (int s = 0; s < cols.length; s++) {
+                    v[s] = statistics.get(s).equals(COUNT) ? cols[s].getInt(i) : cols[s].getFloat(i);
+                }
+                out.add(new Row(key, year.getInt(i), v));
+            }
+        }
+        List<String> order = regionKeys();
+        out.sort(Comparator.comparingInt(Row::year).thenComparingInt(r -> order.indexOf(r.key)));
+        return out;
+    }
+
+    /**
+     * Geometry-free CSV with the exported columns first ({@code system:index,country,id,median,region,season,
+     * year}), then the other statistics. {@code system:index} is {@code <year index>_<key>} as in the exports.
+     */
+    public void writeCsv(Path csv) throws IOException {
+        List<Row> rows = rows();
+        List<Integer> yearList = new ArrayList<>(new TreeSet<>(rows.stream().map(Row::year).toList()));
+        int median = statistics.indexOf("median");
+        try (BufferedWriter w = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            StringBuilder header = new StringBuilder("system:index,country,id,median,region,season,year");
+            for (int s = 0; s < statistics.size(); s++) {
+                if (s != median) {
+                    header.append(',').append(statistics.get(s));
+                }
+            }
+            w.write(header.append('\n').toString());
+            for (Row r : rows) {
+                StringBuilder line = new StringBuilder();
+                line.append(yearList.indexOf(r.year)).append('_').append(r.key).append(',')
+                        .append(attribute(r.key, "country")).append(',')
+                        .append(attribute(r.key, "id")).append(',')
+                        .append(median < 0 ? "" : number(r.values[median], false)).append(',')
+                        .append(attribute(r.key, "region")).append(',')
+                        .append(attribute(r.key, "season")).append(',')
+                        .append(r.year);
+                for (int s = 0; s < statistics.size(); s++) {
+                    if (s != median) {
+                        line.append(',').append(number(r.values[s], statistics.get(s).equals(COUNT)));
+                    }
+                }
+                w.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    private static String number(double v, boolean integer) {
+        if (Double.isNaN(v)) {
+            return "";
+        }
+        return integer ? Long.toString((long) v) : Float.toString((float) v);
+    }
+
+    private List<Path> parts() throws IOException {
+        List<Path> parts = new ArrayList<>();
+        try (Stream<Path> partitions = Files.list(dir)) {
+            for (Path p : partitions.filter(p -> p.getFileName().toString().startsWith(PARTITION)).sorted()
+                    .toList()) {
+                try (Stream<Path> files = Files.list(p)) {
+                    parts.addAll(files.filter(f -> f.getFileName().toString().startsWith("part-")
+                            && f.toString().endsWith(ColumnStore.EXTENSION)).sorted().toList());
+                }
+            }
+        }
+        return parts;
+    }
+}
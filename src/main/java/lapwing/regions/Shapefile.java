@@ -0,0 +1,115 @@
+package lapwing.regions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader for the polygon shapefiles the workflow ships ({@code regional_changes.shp} with its {@code .dbf}).
+ *
+ * <p>Only Polygon (5) and PolygonZ (15) records are supported; Z and M values are ignored. Attributes come from
+ * the dBASE table, trimmed, in the encoding named by the {@code .cpg} file (UTF-8 when there is none).
+ * Coordinates are returned as stored; {@code regional_changes} is in EPSG:4326.
+ */
+public final class Shapefile {
+
+    private static final int FILE_CODE = 9994;
+    private static final int POLYGON = 5;
+    private static final int POLYGON_Z = 15;
+
+    private Shapefile() {
+    }
+
+    public static List<Region> read(Path shp) throws IOException {
+        String base = shp.getFileName().toString().replaceFirst("\\.shp$", "");
+        List<Map<String, String>> attributes = readDbf(shp.resolveSibling(base + ".dbf"),
+                charset(shp.resolveSibling(base + ".cpg")));
+
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(shp));
+        if (b.order(ByteOrder.BIG_ENDIAN).getInt(0) != FILE_CODE) {
+            throw new IOException(shp + " is not a shapefile");
+        }
+        long length = 2L * b.getInt(24);
+        List<Region> regions = new ArrayList<>();
+        int at = 100;
+        while (at < length) {
+            b.order(ByteOrder.BIG_ENDIAN);
+            int contentBytes = 2 * b.getInt(at + 4);
+            int rec = at + 8;
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            int type = b.getInt(rec);
+            List<double[]> rings = new ArrayList<>();
+            if (type == POLYGON || type == POLYGON_Z) {
+                int parts = b.getInt(rec + 36);
+                int points = b.getInt(rec + 40);
+                int xy = rec + 44 + 4 * parts;
+                for (int p = 0; p < parts; p++) {
+                    int from = b.getInt(rec + 44 + 4 * p);
+                    int to = p + 1 < parts ? b.getInt(rec + 44 + 4 * (p + 1)) : points;
+                    double[] ring = new double[2 * (to - from)];
+                    for (int i = 0; i < ring.length; i++) {
+                        ring[i] = b.getDouble(xy + 8 * (2 * from + i));
+                    }
+                    rings.add(ring);
+                }
+            } else if (type != 0) {
+                throw new IOException(shp + ": shape type " + type + " is not a polygon");
+            }
+            int index = regions.size();
+            regions.add(new Region(index, index < attributes.size() ? attributes.get(index) : Map.of(), rings));
+            at = rec + contentBytes;
+        }
+        return regions;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // dBASE III table: 32-byte header, 32-byte field descriptors up to 0x0D, then fixed-width records
+    //----------------------------------------------------------------------------------------------------------
+    private static List<Map<String, String>> readDbf(Path dbf, Charset cs) throws IOException {
+        List<Map<String, String>> rows = new ArrayList<>();
+        if (!Files.exists(dbf)) {
+            return rows;
+        }
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(dbf)).order(ByteOrder.LITTLE_ENDIAN);
+        int records = b.getInt(4);
+        int headerBytes = Short.toUnsignedInt(b.getShort(8));
+        int recordBytes = Short.toUnsignedInt(b.getShort(10));
+        List<String> names = new ArrayList<>();
+        List<Integer> widths = new ArrayList<>();
+        for (int f = 32; b.get(f) != 0x0D; f += 32) {
+            int len = 0;
+            while (len < 11 && b.get(f + len) != 0) {
+                len++;
+            }
+            names.add(new String(b.array(), f, len, StandardCharsets.US_ASCII));
+            widths.add(Byte.toUnsignedInt(b.get(f + 16)));
+        }
+        for (int r = 0; r < records; r++) {
+            int at = headerBytes + r * recordBytes;
+            Map<String, String> row = new LinkedHashMap<>();
+            // First byte is the deletion flag
+            at++;
+            for (int f = 0; f < names.size(); f++) {
+                row.put(names.get(f), new String(b.array(), at, widths.get(f), cs).trim());
+                at += widths.get(f);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static Charset charset(Path cpg) throws IOException {
+        if (!Files.exists(cpg)) {
+            return StandardCharsets.UTF_8;
+        }
+        return Charset.forName(Files.readString(cpg, StandardCharsets.US_ASCII).trim());
+    }
+}
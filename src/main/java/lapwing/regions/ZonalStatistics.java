@@ -0,0 +1,268 @@
+package lapwing.regions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import lapwing.raster.RasterFile;
+import lapwing.raster.StaticLayer;
+import lapwing.raster.Tile;
+
+/**
+ * Local {@code reduceRegions}: exact per-region statistics of band 0 of many images over a {@link ZoneIndex},
+ * computed for every (image, region) pair in one parallel pass, and per-band sums for multi-band images.
+ *
+ * <p>An image on the index grid is read span by span. Any other image in the same CRS is sampled at the index
+ * grid's pixel centres with nearest-neighbour lookup, which is how a coarser {@code scale} is applied. Masked
+ * (NaN) pixels are skipped. The median and quantiles are exact, from a sort of the region's values; quantiles
+ * interpolate between order statistics like R's default {@code quantile(type = 7)}.
+ */
+public final class ZonalStatistics {
+
+    /** Statistics of one region in one image; NaN when the region has no valid pixel. */
+    public static final class Stats {
+
+        private final int count;
+        private final double mean;
+        private final double median;
+        private final double[] quantiles;
+
+        Stats(int count, double mean, double median, double[] quantiles) {
+            this.count = count;
+            this.mean = mean;
+            this.median = median;
+            this.quantiles = quantiles;
+        }
+
+        /** Valid (unmasked) pixels. */
+        public int count() {
+            return count;
+        }
+
+        public double mean() {
+            return mean;
+        }
+
+        public double median() {
+            return median;
+        }
+
+        public int quantileCount() {
+            return quantiles.length;
+        }
+
+        /** Value of the {@code i}-th requested quantile. */
+        public double quantile(int i) {
+            return quantiles[i];
+        }
+    }
+
+    /** Per-band sum and count of valid pixels of one region in one image; merge to pool several images. */
+    public static final class BandSums {
+
+        private final double[] sum;
+        private final long[] count;
+
+        BandSums(double[] sum, long[] count) {
+            this.sum = sum;
+            this.count = count;
+        }
+
+        public int bands() {
+            return sum.length;
+        }
+
+        public long count(int band) {
+            return count[band];
+        }
+
+        public double sum(int band) {
+            return sum[band];
+        }
+
+        /** Mean of the band's valid pixels, NaN if there are none. */
+        public double mean(int band) {
+            return count[band] == 0 ? Double.NaN : sum[band] / count[band];
+        }
+
+        /** Sums over the pixels of both, e.g. all months of a year. */
+        public BandSums merge(BandSums other) {
+            if (other.bands() != bands()) {
+                throw new IllegalArgumentException("Band counts differ: " + bands() + " and " + other.bands());
+            }
+            double[] s = sum.clone();
+            long[] n = count.clone();
+            for (int b = 0; b < s.length; b++) {
+                s[b] += other.sum[b];
+                n[b] += other.count[b];
+            }
+            return new BandSums(s, n);
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private double[] quantiles = {0.25, 0.75};
+    private final ConcurrentLinkedQueue<float[]> buffers = new ConcurrentLinkedQueue<>();
+
+    public ZonalStatistics(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ZonalStatistics quantiles(double... q) {
+        for (double v : q) {
+            if (!(v >= 0 && v <= 1)) {
+                throw new IllegalArgumentException("Quantiles must be in [0, 1], got " + v);
+            }
+        }
+        this.quantiles = q.clone();
+        return this;
+    }
+
+    public double[] quantiles() {
+        return quantiles.clone();
+    }
+
+    //==========================================================================================================
+    // All images x all zones; result is [image][zone]
+    //==========================================================================================================
+    public Stats[][] compute(ZoneIndex zones, List<RasterFile> images) {
+        Stats[][] out = new Stats[images.size()][zones.zoneCount()];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            RasterFile image = images.get(i);
+            boolean aligned = image.grid().equals(zones.grid());
+            StaticLayer layer = aligned ? null : new StaticLayer(image.file().getFileName().toString(), image, 0);
+            for (int z = 0; z < zones.zoneCount(); z++) {
+                int ii = i;
+                int zz = z;
+                tasks.add(() -> {
+                    out[ii][zz] = zone(zones, zz, image, layer);
+                    return null;
+                });
+            }
+        }
+        invokeAll(tasks);
+        return out;
+    }
+
+    //==========================================================================================================
+    // Sums of every band (e.g. one SHAP band per predictor) for all images x all zones; result is [image][zone]
+    //==========================================================================================================
+    public BandSums[][] sums(ZoneIndex zones, List<RasterFile> images) {
+        BandSums[][] out = new BandSums[images.size()][zones.zoneCount()];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            RasterFile image = images.get(i);
+            boolean aligned = image.grid().equals(zones.grid());
+            StaticLayer[] layers = new StaticLayer[image.bands().size()];
+            for (int b = 0; !aligned && b < layers.length; b++) {
+                layers[b] = new StaticLayer(image.bands().get(b), image, b);
+            }
+            for (int z = 0; z < zones.zoneCount(); z++) {
+                int ii = i;
+                int zz = z;
+                tasks.add(() -> {
+                    out[ii][zz] = zoneSums(zones, zz, image, aligned ? null : layers);
+                    return null;
+                });
+            }
+        }
+        invokeAll(tasks);
+        return out;
+    }
+
+    private static BandSums zoneSums(ZoneIndex zones, int z, RasterFile image, StaticLayer[] layers) {
+        int[] spans = zones.spans(z);
+        int bands = image.bands().size();
+        double[] sum = new double[bands];
+        long[] count = new long[bands];
+        float[] row = new float[zones.grid().width()];
+        for (int b = 0; b < bands; b++) {
+            for (int s = 0; s < spans.length; s += 3) {
+                int width = spans[s + 2] - spans[s + 1];
+                if (layers == null) {
+                    image.readFloats(b, spans[s + 1], spans[s], width, 1, row);
+                } else {
+                    layers[b].read(zones.grid(), new Tile(-1, spans[s + 1], spans[s], width, 1), row);
+                }
+                for (int c = 0; c < width; c++) {
+                    if (!Float.isNaN(row[c])) {
+                        sum[b] += row[c];
+                        count[b]++;
+                    }
+                }
+            }
+        }
+        return new BandSums(sum, count);
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        for (Future<Void> f : pool.invokeAll(tasks)) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while computing zonal statistics", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException r) {
+                    throw r;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private Stats zone(ZoneIndex zones, int z, RasterFile image, StaticLayer layer) {
+        int[] spans = zones.spans(z);
+        float[] buf = buffers.poll();
+        if (buf == null || buf.length < zones.pixels(z)) {
+            buf = new float[zones.pixels(z)];
+        }
+        float[] row = new float[zones.grid().width()];
+        try {
+            int n = 0;
+            for (int s = 0; s < spans.length; s += 3) {
+                int width = spans[s + 2] - spans[s + 1];
+                if (layer == null) {
+                    image.readFloats(0, spans[s + 1], spans[s], width, 1, row);
+                } else {
+                    layer.read(zones.grid(), new Tile(-1, spans[s + 1], spans[s], width, 1), row);
+                }
+                for (int c = 0; c < width; c++) {
+                    if (!Float.isNaN(row[c])) {
+                        buf[n++] = row[c];
+                    }
+                }
+            }
+            double[] q = new double[quantiles.length];
+            if (n == 0) {
+                Arrays.fill(q, Double.NaN);
+                return new Stats(0, Double.NaN, Double.NaN, q);
+            }
+            Arrays.sort(buf, 0, n);
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += buf[i];
+            }
+            for (int k = 0; k < q.length; k++) {
+                q[k] = quantile(buf, n, quantiles[k]);
+            }
+            return new Stats(n, sum / n, quantile(buf, n, 0.5), q);
+        } finally {
+            buffers.add(buf);
+        }
+    }
+
+    /** Type-7 quantile of sorted {@code a[0, n)}. */
+    static double quantile(float[] a, int n, double p) {
+        double h = (n - 1) * p;
+        int lo = (int) Math.floor(h);
+        int hi = Math.min(lo + 1, n - 1);
+        return a[lo] + (h - lo) * ((double) a[hi] - a[lo]);
+    }
+}
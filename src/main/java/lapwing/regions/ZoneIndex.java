@@ -0,0 +1,110 @@
+package lapwing.regions;
+
+import java.util.Arrays;
+import java.util.List;
+
+import lapwing.raster.GridSpec;
+
+/**
+ * Regions rasterized once onto a grid as runs of pixels: for every region, a list of {@code (row, firstCol,
+ * endCol)} spans covering the pixels whose centre lies inside it. The index is a few ints per polygon row
+ * rather than a full-grid label raster, and overlapping regions each keep their own pixels.
+ *
+ * <p>A pixel belongs to a region when its centre is inside the polygon (even-odd rule over all rings), which
+ * is how {@code reduceRegions} treats pixels without fractional weights.
+ */
+public final class ZoneIndex {
+
+    private final GridSpec grid;
+    private final List<Region> regions;
+    private final int[][] spans;
+    private final int[] pixels;
+
+    private ZoneIndex(GridSpec grid, List<Region> regions, int[][] spans, int[] pixels) {
+        this.grid = grid;
+        this.regions = regions;
+        this.spans = spans;
+        this.pixels = pixels;
+    }
+
+    //==========================================================================================================
+    // Scanline fill at pixel-centre rows
+    //==========================================================================================================
+    public static ZoneIndex rasterize(GridSpec grid, List<Region> regions) {
+        int[][] spans = new int[regions.size()][];
+        int[] pixels = new int[regions.size()];
+        for (int z = 0; z < spans.length; z++) {
+            List<double[]> rings = regions.get(z).rings();
+            double top = Double.NEGATIVE_INFINITY;
+            double bottom = Double.POSITIVE_INFINITY;
+            int edges = 0;
+            for (double[] ring : rings) {
+                for (int i = 1; i < ring.length; i += 2) {
+                    top = Math.max(top, ring[i]);
+                    bottom = Math.min(bottom, ring[i]);
+                }
+                edges += ring.length / 2;
+            }
+            int[] out = new int[48];
+            int n = 0;
+            double[] xs = new double[Math.max(edges, 2)];
+            int r0 = Math.max(0, grid.row(top));
+            int r1 = Math.min(grid.height() - 1, grid.row(bottom));
+            for (int row = r0; row <= r1; row++) {
+                double yc = grid.y(row);
+                int k = 0;
+                for (double[] ring : rings) {
+                    int m = ring.length / 2;
+                    for (int i = 0, j = m - 1; i < m; j = i++) {
+                        double yi = ring[2 * i + 1];
+                        double yj = ring[2 * j + 1];
+                        if ((yi > yc) != (yj > yc)) {
+                            double xi = ring[2 * i];
+                            double xj = ring[2 * j];
+                            xs[k++] = xi + (yc - yi) * (xj - xi) / (yj - yi);
+                        }
+                    }
+                }
+                Arrays.sort(xs, 0, k);
+                for (int i = 0; i + 1 < k; i += 2) {
+                    // Pixels whose centre x is in [xs[i], xs[i + 1])
+                    int c0 = Math.max(0, (int) Math.ceil((xs[i] - grid.x0()) / grid.pixelSize() - 0.5));
+                    int c1 = Math.min(grid.width(), (int) Math.ceil((xs[i + 1] - grid.x0()) / grid.pixelSize() - 0.5));
+                    if (c1 > c0) {
+                        if (n + 3 > out.length) {
+                            out = Arrays.copyOf(out, out.length * 2);
+                        }
+                        out[n++] = row;
+                        out[n++] = c0;
+                        out[n++] = c1;
+                        pixels[z] += c1 - c0;
+                    }
+                }
+            }
+            spans[z] = Arrays.copyOf(out, n);
+        }
+        return new ZoneIndex(grid, List.copyOf(regions), spans, pixels);
+    }
+
+    public GridSpec grid() {
+        return grid;
+    }
+
+    public List<Region> regions() {
+        return regions;
+    }
+
+    public int zoneCount() {
+        return spans.length;
+    }
+
+    /** Pixels of zone {@code z} on the grid. */
+    public int pixels(int z) {
+        return pixels[z];
+    }
+
+    /** Spans of zone {@code z} as consecutive {@code row, firstCol, endCol} triples (end exclusive). */
+    public int[] spans(int z) {
+        return spans[z];
+    }
+}
@@ -0,0 +1,97 @@
+package lapwing.tiles;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@code visParams} stretch of {@code Map.addLayer}: values from {@code min} to {@code max} are mapped
+ * linearly onto a colour ramp and clamped outside it; masked (NaN) pixels are transparent.
+ *
+ * <p>The ramp is sampled into 255 colours, so a rendered tile is one palette index per pixel, with index 0
+ * reserved for transparency. Colours are CSS names as in the Code Editor or {@code #rrggbb}.
+ */
+public final class Palette {
+
+    public static final int COLOURS = 255;
+
+    private static final Map<String, Integer> NAMES = Map.ofEntries(
+            Map.entry("black", 0x000000), Map.entry("white", 0xffffff), Map.entry("red", 0xff0000),
+            Map.entry("green", 0x008000), Map.entry("lime", 0x00ff00), Map.entry("blue", 0x0000ff),
+            Map.entry("yellow", 0xffff00), Map.entry("orange", 0xffa500), Map.entry("purple", 0x800080),
+            Map.entry("brown", 0xa52a2a), Map.entry("gray", 0x808080), Map.entry("grey", 0x808080),
+            Map.entry("darkgreen", 0x006400), Map.entry("cyan", 0x00ffff), Map.entry("magenta", 0xff00ff));
+
+    private final double min;
+    private final double max;
+    private final byte[] rgb;
+
+    private Palette(double min, double max, byte[] rgb) {
+        this.min = min;
+        this.max = max;
+        this.rgb = rgb;
+    }
+
+    /** {@code colours} is a comma-separated ramp such as {@code yellow,green}. */
+    public static Palette of(double min, double max, String colours) {
+        if (!(max > min)) {
+            throw new IllegalArgumentException("Palette max must exceed min");
+        }
+        String[] stops = colours.split(",");
+        int[] c = new int[stops.length];
+        for (int i = 0; i < stops.length; i++) {
+            c[i] = colour(stops[i].trim());
+        }
+        byte[] rgb = new byte[3 * (COLOURS + 1)];
+        for (int k = 0; k < COLOURS; k++) {
+            double t = c.length == 1 ? 0 : (double) k / (COLOURS - 1) * (c.length - 1);
+            int i = Math.max(0, Math.min((int) t, c.length - 2));
+            double f = t - i;
+            int a = c[i];
+            int b = c[Math.min(i + 1, c.length - 1)];
+            for (int ch = 0; ch < 3; ch++) {
+                int shift = 16 - 8 * ch;
+                double v = ((a >> shift) & 0xff) * (1 - f) + ((b >> shift) & 0xff) * f;
+                rgb[3 * (k + 1) + ch] = (byte) Math.round(v);
+            }
+        }
+        return new Palette(min, max, rgb);
+    }
+
+    private static int colour(String s) {
+        String name = s.toLowerCase(Locale.ROOT);
+        if (name.startsWith("#")) {
+            name = name.substring(1);
+        }
+        Integer named = NAMES.get(name);
+        if (named != null) {
+            return named;
+        }
+        if (name.matches("[0-9a-f]{6}")) {
+            return Integer.parseInt(name, 16);
+        }
+        throw new IllegalArgumentException("Unknown colour '" + s + "'");
+    }
+
+    /** Palette index of a value: 0 for NaN, 1..255 along the ramp. */
+    public int index(float v) {
+        if (Float.isNaN(v)) {
+            return 0;
+        }
+        double t = (v - min) / (max - min);
+        t = t < 0 ? 0 : t > 1 ? 1 : t;
+        return 1 + (int) Math.round(t * (COLOURS - 1));
+    }
+
+    /** 256 RGB triplets; entry 0 is the (transparent) mask colour. */
+    public byte[] rgb() {
+        return rgb.clone();
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+}
@@ -0,0 +1,83 @@
+package lapwing.tiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Minimal encoder for 8-bit indexed PNG tiles: IHDR, PLTE, tRNS (index 0 transparent), one IDAT and IEND.
+ *
+ * <p>Rows use the Sub filter, which turns the long runs of equal indices in a stretched probability map into
+ * zeros. Stateless; the Deflater is created per call.
+ */
+public final class PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int FILTER_SUB = 1;
+
+    private final byte[] plte;
+    private final byte[] trns;
+    private final int level;
+
+    /** {@code rgb} holds 256 RGB triplets; index 0 is written fully transparent. */
+    public PngEncoder(byte[] rgb, int level) {
+        if (rgb.length != 3 * 256) {
+            throw new IllegalArgumentException("Expected 256 palette entries");
+        }
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Deflate level must be 0..9");
+        }
+        this.plte = rgb.clone();
+        this.trns = new byte[]{0};
+        this.level = level;
+    }
+
+    public byte[] encode(byte[] indices, int width, int height) {
+        byte[] raw = new byte[height * (width + 1)];
+        for (int r = 0; r < height; r++) {
+            int o = r * (width + 1);
+            int s = r * width;
+            raw[o] = FILTER_SUB;
+            raw[o + 1] = indices[s];
+            for (int c = 1; c < width; c++) {
+                raw[o + 1 + c] = (byte) (indices[s + c] - indices[s + c - 1]);
+            }
+        }
+        Deflater deflater = new Deflater(level);
+        ByteArrayOutputStream idat = new ByteArrayOutputStream(raw.length / 8 + 64);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                idat.write(buf, 0, deflater.deflate(buf));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(idat.size() + 900);
+        out.writeBytes(SIGNATURE);
+        ByteBuffer ihdr = ByteBuffer.allocate(13).putInt(width).putInt(height);
+        ihdr.put((byte) 8).put((byte) 3).put((byte) 0).put((byte) 0).put((byte) 0);
+        chunk(out, "IHDR", ihdr.array());
+        chunk(out, "PLTE", plte);
+        chunk(out, "tRNS", trns);
+        chunk(out, "IDAT", idat.toByteArray());
+        chunk(out, "IEND", new byte[0]);
+        return out.toByteArray();
+    }
+
+    private static void chunk(ByteArrayOutputStream out, String type, byte[] data) {
+        byte[] t = type.getBytes(StandardCharsets.US_ASCII);
+        out.writeBytes(ByteBuffer.allocate(4).putInt(data.length).array());
+        out.writeBytes(t);
+        out.writeBytes(data);
+        CRC32 crc = new CRC32();
+        crc.update(t);
+        crc.update(data);
+        out.writeBytes(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+}
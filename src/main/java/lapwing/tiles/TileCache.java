@@ -0,0 +1,142 @@
+package lapwing.tiles;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Least-recently-used cache bounded by the total size of its values, with request coalescing: concurrent misses
+ * on the same key run the loader once and every caller receives its result.
+ *
+ * <p>A miss registers a future for its key before loading; a caller that finds the key in flight waits on that
+ * future instead of loading again. The value is published to the cache before the future is removed, so a key is
+ * always either cached, in flight or absent. A failed load is reported to every waiting caller and not cached.
+ */
+public final class TileCache<K, V> {
+
+    private final long maxBytes;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private long bytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** {@code weigher} gives the size of a value in bytes; a value larger than {@code maxBytes} is not kept. */
+    public TileCache(long maxBytes, ToLongFunction<V> weigher) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must be non-negative");
+        }
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        V v = cached(key);
+        if (v != null) {
+            hits.increment();
+            return v;
+        }
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+        try {
+            // Another caller may have finished loading between the lookup and the registration
+            v = cached(key);
+            if (v != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                v = loader.apply(key);
+                put(key, v);
+            }
+            mine.complete(v);
+            return v;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private synchronized V cached(K key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(K key, V value) {
+        long w = weigher.applyAsLong(value);
+        if (w > maxBytes) {
+            return;
+        }
+        V old = entries.put(key, value);
+        if (old != null) {
+            bytes -= weigher.applyAsLong(old);
+        }
+        bytes += w;
+        Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Map.Entry<K, V> eldest = it.next();
+            bytes -= weigher.applyAsLong(eldest.getValue());
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException r) {
+            throw r;
+        }
+        if (cause instanceof Error e) {
+            throw e;
+        }
+        throw new IllegalStateException(cause);
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Counters for the metrics endpoint
+    //----------------------------------------------------------------------------------------------------------
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** Requests that waited for another caller's load of the same key. */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+}
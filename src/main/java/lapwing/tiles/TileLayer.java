@@ -0,0 +1,101 @@
+package lapwing.tiles;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import lapwing.raster.GeoTiffReader;
+import lapwing.raster.GridSpec;
+import lapwing.raster.RasterFile;
+
+/**
+ * One servable map: a band of a local raster, either a {@code .lwr} (the monthly {@code hsi_YYYY-MM}, yearly
+ * {@code HSI_year_YYYY} and decadal {@code HSI_median_YYYY} outputs) or a tiled GeoTIFF from
+ * {@code ExportGeoTiff}, whose overviews are used as coarser levels at low zoom.
+ *
+ * <p>The layer id is the file name without extension, followed by {@code .band} for bands after the first. The
+ * grid must be in EPSG:4326 or EPSG:3857 so that web-mercator tiles can be sampled from it directly. Files stay
+ * open for the lifetime of the server.
+ */
+public final class TileLayer {
+
+    private final String id;
+    private final Path file;
+    private final String band;
+    private final RasterFile raster;
+    private final int bandIndex;
+    private final GeoTiffReader tiff;
+
+    private TileLayer(String id, Path file, String band, RasterFile raster, int bandIndex, GeoTiffReader tiff) {
+        this.id = id;
+        this.file = file;
+        this.band = band;
+        this.raster = raster;
+        this.bandIndex = bandIndex;
+        this.tiff = tiff;
+    }
+
+    /** One layer per band of a {@code .lwr}, or the single band of a {@code .tif}. */
+    public static List<TileLayer> open(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        String stem = name.substring(0, name.lastIndexOf('.'));
+        List<TileLayer> layers = new ArrayList<>();
+        if (name.endsWith(RasterFile.EXTENSION)) {
+            RasterFile raster = RasterFile.open(file);
+            checkCrs(file, raster.grid());
+            List<String> bands = raster.bands();
+            for (int b = 0; b < bands.size(); b++) {
+                layers.add(new TileLayer(b == 0 ? stem : stem + "." + bands.get(b), file, bands.get(b), raster, b,
+                        null));
+            }
+        } else if (name.endsWith(".tif") || name.endsWith(".tiff")) {
+            GeoTiffReader tiff = GeoTiffReader.open(file);
+            checkCrs(file, tiff.grid());
+            layers.add(new TileLayer(stem, file, "band_0", null, 0, tiff));
+        } else {
+            throw new IllegalArgumentException(file + " is neither a " + RasterFile.EXTENSION + " nor a GeoTIFF");
+        }
+        return layers;
+    }
+
+    private static void checkCrs(Path file, GridSpec grid) {
+        if (!isGeographic(grid) && !grid.crs().equals("EPSG:3857")) {
+            throw new IllegalArgumentException(file + " is in '" + grid.crs() + "'; tiles need EPSG:4326 or EPSG:3857");
+        }
+    }
+
+    static boolean isGeographic(GridSpec grid) {
+        return grid.crs().equals("EPSG:4326");
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public String band() {
+        return band;
+    }
+
+    /** Number of resolution levels: 1 for {@code .lwr}, 1 + overviews for GeoTIFF. */
+    public int levels() {
+        return tiff == null ? 1 : tiff.levels();
+    }
+
+    public GridSpec grid(int level) {
+        return tiff == null ? raster.grid() : tiff.grid(level);
+    }
+
+    /** Reads a window of {@code level}; pixels outside the raster are NaN. */
+    public void read(int level, int col0, int row0, int w, int h, float[] dst) throws IOException {
+        if (tiff == null) {
+            raster.readFloats(bandIndex, col0, row0, w, h, dst);
+        } else {
+            tiff.readWindow(level, col0, row0, w, h, dst);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package lapwing.tiles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import lapwing.raster.GridSpec;
+
+/**
+ * Renders XYZ (web-mercator, 256 x 256) PNG tiles of {@link TileLayer}s with the {@link Palette} stretch, like
+ * {@code Map.addLayer(image, visParams)} in the Code Editor.
+ *
+ * <p>Each output pixel takes the nearest source pixel. Both supported grids are north-up, so the source column
+ * depends only on the output column and the source row only on the output row; a tile is two index vectors and
+ * a lookup per pixel. At low zoom the coarsest GeoTIFF overview that is still at least as fine as the tile is
+ * sampled.
+ *
+ * <p>Two {@link TileCache}s sit in front of the work: decoded source blocks ({@value #BLOCK} x {@value #BLOCK}
+ * floats of one level) so that neighbouring tiles and zoom levels do not decode the same GeoTIFF tiles again, and
+ * the encoded PNGs. Both coalesce concurrent requests for the same key.
+ */
+public final class TileRenderer {
+
+    public static final int TILE = 256;
+    public static final int MAX_ZOOM = 21;
+    static final int BLOCK = 256;
+    private static final int BLOCK_SHIFT = 8;
+    private static final double EARTH_RADIUS = 6378137.0;
+
+    private final List<TileLayer> layers;
+    private final Map<String, Integer> byId = new LinkedHashMap<>();
+    private final Palette palette;
+    private final PngEncoder png;
+    private final TileCache<Long, float[]> sources;
+    private final TileCache<Long, byte[]> tiles;
+    private final LongAdder rendered = new LongAdder();
+
+    public TileRenderer(List<TileLayer> layers, Palette palette, long sourceCacheBytes, long tileCacheBytes) {
+        if (layers.size() >= 1 << 16) {
+            throw new IllegalArgumentException("Too many layers: " + layers.size());
+        }
+        this.layers = List.copyOf(layers);
+        for (int i = 0; i < this.layers.size(); i++) {
+            if (byId.put(this.layers.get(i).id(), i) != null) {
+                throw new IllegalArgumentException("Duplicate layer " + this.layers.get(i).id());
+            }
+        }
+        this.palette = palette;
+        this.png = new PngEncoder(palette.rgb(), 6);
+        this.sources = new TileCache<>(sourceCacheBytes, b -> 4L * b.length);
+        this.tiles = new TileCache<>(tileCacheBytes, b -> b.length);
+    }
+
+    public List<TileLayer> layers() {
+        return layers;
+    }
+
+    public TileLayer layer(String id) {
+        Integer i = byId.get(id);
+        return i == null ? null : layers.get(i);
+    }
+
+    public Palette palette() {
+        return palette;
+    }
+
+    public TileCache<Long, float[]> sourceCache() {
+        return sources;
+    }
+
+    public TileCache<Long, byte[]> tileCache() {
+        return tiles;
+    }
+
+    /** Tiles encoded (tile cache misses that completed). */
+    public long rendered() {
+        return rendered.sum();
+    }
+
+    //==========================================================================================================
+    // Tile (z, x, y) of a layer as PNG bytes
+    //==========================================================================================================
+    public byte[] tile(String id, int z, int x, int y) {
+        Integer layer = byId.get(id);
+        if (layer == null) {
+            throw new IllegalArgumentException("No layer " + id);
+        }
+        if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= 1 << z || y >= 1 << z) {
+            throw new IllegalArgumentException("No tile " + z + "/" + x + "/" + y);
+        }
+        long key = (long) layer << 47 | (long) z << 42 | (long) x << 21 | y;
+        return tiles.get(key, k -> render(layer, z, x, y));
+    }
+
+    private byte[] render(int layer, int z, int x, int y) {
+        TileLayer l = layers.get(layer);
+        boolean geographic = TileLayer.isGeographic(l.grid(0));
+        double n = 1 << z;
+        // Output pixel size in source units, along x (constant across the tile)
+        double outPixel = (geographic ? 360 : 2 * Math.PI * EARTH_RADIUS) / (n * TILE);
+        int level = 0;
+        while (level + 1 < l.levels() && l.grid(level + 1).pixelSize() <= outPixel) {
+            level++;
+        }
+        GridSpec g = l.grid(level);
+
+        int[] cols = new int[TILE];
+        int[] rows = new int[TILE];
+        for (int i = 0; i < TILE; i++) {
+            // Web-mercator position in [0, 1) of the pixel centre
+            double mx = (x + (i + 0.5) / TILE) / n;
+            double my = (y + (i + 0.5) / TILE) / n;
+            double sx = geographic ? mx * 360 - 180 : (mx - 0.5) * 2 * Math.PI * EARTH_RADIUS;
+            double sy = geographic ? Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * my))))
+                    : (0.5 - my) * 2 * Math.PI * EARTH_RADIUS;
+            int c = g.col(sx);
+            int r = g.row(sy);
+            cols[i] = c >= 0 && c < g.width() ? c : -1;
+            rows[i] = r >= 0 && r < g.height() ? r : -1;
+        }
+
+        // Distinct source block columns touched; cols is non-decreasing, so equal blocks are adjacent
+        List<Integer> blockCols = new ArrayList<>();
+        int[] slot = new int[TILE];
+        for (int i = 0; i < TILE; i++) {
+            if (cols[i] < 0) {
+                slot[i] = -1;
+                continue;
+            }
+            int bc = cols[i] >> BLOCK_SHIFT;
+            if (blockCols.isEmpty() || blockCols.get(blockCols.size() - 1) != bc) {
+                blockCols.add(bc);
+            }
+            slot[i] = blockCols.size() - 1;
+        }
+
+        byte[] indices = new byte[TILE * TILE];
+        float[][] blocks = new float[blockCols.size()][];
+        int loadedRow = -1;
+        for (int j = 0; j < TILE && !blockCols.isEmpty(); j++) {
+            int r = rows[j];
+            if (r < 0) {
+                continue;
+            }
+            int br = r >> BLOCK_SHIFT;
+            if (br != loadedRow) {
+                for (int k = 0; k < blocks.length; k++) {
+                    blocks[k] = block(layer, level, blockCols.get(k), br);
+                }
+                loadedRow = br;
+            }
+            int base = (r & (BLOCK - 1)) * BLOCK;
+            for (int i = 0; i < TILE; i++) {
+                if (slot[i] >= 0) {
+                    indices[j * TILE + i] = (byte) palette.index(blocks[slot[i]][base + (cols[i] & (BLOCK - 1))]);
+                }
+            }
+        }
+        byte[] out = png.encode(indices, TILE, TILE);
+        rendered.increment();
+        return out;
+    }
+
+    private float[] block(int layer, int level, int bc, int br) {
+        long key = (long) layer << 48 | (long) level << 40 | (long) bc << 20 | br;
+        return sources.get(key, k -> {
+            float[] b = new float[BLOCK * BLOCK];
+            try {
+                layers.get(layer).read(level, bc * BLOCK, br * BLOCK, BLOCK, BLOCK, b);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return b;
+        });
+    }
+}
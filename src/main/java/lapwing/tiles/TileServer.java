@@ -0,0 +1,264 @@
+package lapwing.tiles;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lapwing.raster.GridSpec;
+
+/**
+ * Embedded HTTP server for {@link TileRenderer}, using the JDK's {@code com.sun.net.httpserver}; nothing else
+ * needs to run.
+ *
+ * <pre>
+ * GET /                         minimal viewer (arrow keys pan, +/- zoom, PageUp/PageDown change layer)
+ * GET /layers                   JSON: id, file, band, CRS, bounds and levels of every layer
+ * GET /tiles/{id}/{z}/{x}/{y}.png
+ * GET /metrics                  JSON: request counts, tile latency percentiles, hit rates of both caches
+ * </pre>
+ *
+ * Tile latency is measured from request to response written, over the last {@value #WINDOW} tiles served.
+ */
+public final class TileServer {
+
+    static final int WINDOW = 8192;
+    private static final Pattern TILE_PATH = Pattern.compile("/tiles/([^/]+)/(\\d+)/(\\d+)/(\\d+)\\.png");
+
+    private final TileRenderer renderer;
+    private final HttpServer http;
+    private final long started = System.nanoTime();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final long[] latencies = new long[WINDOW];
+    private long tileRequests;
+    private long maxLatency;
+
+    public TileServer(TileRenderer renderer, InetSocketAddress address, Executor executor) throws IOException {
+        this.renderer = renderer;
+        this.http = HttpServer.create(address, 0);
+        http.createContext("/", this::handle);
+        http.setExecutor(executor);
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    public void stop() {
+        http.stop(0);
+    }
+
+    public InetSocketAddress address() {
+        return http.getAddress();
+    }
+
+    //==========================================================================================================
+    // Routing
+    //==========================================================================================================
+    private void handle(HttpExchange ex) throws IOException {
+        long start = System.nanoTime();
+        requests.increment();
+        try {
+            String path = ex.getRequestURI().getPath();
+            if (!ex.getRequestMethod().equals("GET")) {
+                send(ex, 405, "text/plain", "GET only");
+                return;
+            }
+            Matcher m = TILE_PATH.matcher(path);
+            if (m.matches()) {
+                if (serveTile(ex, m)) {
+                    recordLatency(System.nanoTime() - start);
+                }
+            } else if (path.equals("/layers")) {
+                send(ex, 200, "application/json", layersJson());
+            } else if (path.equals("/metrics")) {
+                send(ex, 200, "application/json", metricsJson());
+            } else if (path.equals("/")) {
+                send(ex, 200, "text/html", VIEWER);
+            } else {
+                notFound.increment();
+                send(ex, 404, "text/plain", "Not found: " + path);
+            }
+        } catch (RuntimeException e) {
+            failed.increment();
+            send(ex, 500, "text/plain", String.valueOf(e));
+        } finally {
+            ex.close();
+        }
+    }
+
+    /** True when a tile was sent; errors are not part of the tile latency. */
+    private boolean serveTile(HttpExchange ex, Matcher m) throws IOException {
+        String id = m.group(1);
+        if (renderer.layer(id) == null) {
+            notFound.increment();
+            send(ex, 404, "text/plain", "No layer " + id);
+            return false;
+        }
+        int z;
+        int x;
+        int y;
+        try {
+            z = Integer.parseInt(m.group(2));
+            x = Integer.parseInt(m.group(3));
+            y = Integer.parseInt(m.group(4));
+        } catch (NumberFormatException e) {
+            send(ex, 400, "text/plain", "Bad tile address");
+            return false;
+        }
+        if (z > TileRenderer.MAX_ZOOM || x >= 1 << z || y >= 1 << z) {
+            send(ex, 400, "text/plain", "No tile " + z + "/" + x + "/" + y);
+            return false;
+        }
+        byte[] png = renderer.tile(id, z, x, y);
+        ex.getResponseHeaders().set("Cache-Control", "max-age=60");
+        send(ex, 200, "image/png", png);
+        return true;
+    }
+
+    private static void send(HttpExchange ex, int status, String type, String body) throws IOException {
+        send(ex, status, type + "; charset=utf-8", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange ex, int status, String type, byte[] body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Latency window
+    //----------------------------------------------------------------------------------------------------------
+    private synchronized void recordLatency(long nanos) {
+        latencies[(int) (tileRequests++ % WINDOW)] = nanos;
+        maxLatency = Math.max(maxLatency, nanos);
+    }
+
+    /** {count, max, p50, p90, p99} in nanoseconds; percentiles over the window. */
+    private long[] latencySummary() {
+        long[] window;
+        long count;
+        long max;
+        synchronized (this) {
+            count = tileRequests;
+            max = maxLatency;
+            window = Arrays.copyOf(latencies, (int) Math.min(count, WINDOW));
+        }
+        Arrays.sort(window);
+        long[] out = {count, max, 0, 0, 0};
+        double[] q = {0.5, 0.9, 0.99};
+        for (int i = 0; i < q.length && window.length > 0; i++) {
+            out[2 + i] = window[(int) Math.min(window.length - 1, Math.floor(q[i] * window.length))];
+        }
+        return out;
+    }
+
+    //==========================================================================================================
+    // JSON bodies
+    //==========================================================================================================
+    private String layersJson() {
+        StringBuilder sb = new StringBuilder("[");
+        for (TileLayer l : renderer.layers()) {
+            GridSpec g = l.grid(0);
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append(String.format(Locale.ROOT, "%n {\"id\":\"%s\",\"file\":\"%s\",\"band\":\"%s\",\"crs\":\"%s\","
+                            + "\"bounds\":[%s,%s,%s,%s],\"levels\":%d}", escape(l.id()), escape(l.file().toString()),
+                    escape(l.band()), g.crs(), g.x0(), g.y0() - g.height() * g.pixelSize(),
+                    g.x0() + g.width() * g.pixelSize(), g.y0(), l.levels()));
+        }
+        return sb.append("\n]\n").toString();
+    }
+
+    private String metricsJson() {
+        long[] lat = latencySummary();
+        return String.format(Locale.ROOT, "{%n \"uptime_s\":%.1f,%n \"requests\":%d,%n \"not_found\":%d,%n"
+                        + " \"failed\":%d,%n \"tiles\":{\"requests\":%d,\"rendered\":%d,\"p50_ms\":%.3f,"
+                        + "\"p90_ms\":%.3f,\"p99_ms\":%.3f,\"max_ms\":%.3f,\"window\":%d},%n \"tile_cache\":%s,%n"
+                        + " \"source_cache\":%s%n}%n",
+                (System.nanoTime() - started) / 1e9, requests.sum(), notFound.sum(), failed.sum(), lat[0],
+                renderer.rendered(), lat[2] / 1e6, lat[3] / 1e6, lat[4] / 1e6, lat[1] / 1e6,
+                Math.min(lat[0], WINDOW), cacheJson(renderer.tileCache()), cacheJson(renderer.sourceCache()));
+    }
+
+    private static String cacheJson(TileCache<?, ?> c) {
+        long lookups = c.hits() + c.misses() + c.coalesced();
+        return String.format(Locale.ROOT, "{\"hits\":%d,\"misses\":%d,\"coalesced\":%d,\"hit_rate\":%.4f,"
+                        + "\"evictions\":%d,\"entries\":%d,\"bytes\":%d,\"max_bytes\":%d}", c.hits(), c.misses(),
+                c.coalesced(), lookups == 0 ? 0 : (double) (c.hits() + c.coalesced()) / lookups, c.evictions(),
+                c.size(), c.bytes(), c.maxBytes());
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Viewer: a 256-pixel tile grid over the window, no external scripts
+    //----------------------------------------------------------------------------------------------------------
+    private static final String VIEWER = """
+            <!DOCTYPE html>
+            <html><head><meta charset="utf-8"><title>lapwing tiles</title>
+            <style>body{margin:0;overflow:hidden;font:13px sans-serif}#map{position:absolute;inset:0;background:#ddd}
+            #map img{position:absolute;width:256px;height:256px}
+            #bar{position:absolute;top:8px;left:8px;z-index:1;background:#fff;padding:4px 8px}</style></head>
+            <body><div id="bar"><select id="layer"></select> <span id="pos"></span></div><div id="map"></div>
+            <script>
+            let z = 3, cx = 0.6, cy = 0.33, layers = [];
+            const map = document.getElementById('map'), sel = document.getElementById('layer');
+            function draw() {
+              map.innerHTML = '';
+              const n = 1 << z, W = innerWidth, H = innerHeight;
+              const px = cx * n * 256 - W / 2, py = cy * n * 256 - H / 2;
+              for (let ty = Math.floor(py / 256); ty * 256 < py + H; ty++)
+                for (let tx = Math.floor(px / 256); tx * 256 < px + W; tx++) {
+                  if (ty < 0 || ty >= n) continue;
+                  const img = new Image();
+                  img.src = `/tiles/${sel.value}/${z}/${((tx % n) + n) % n}/${ty}.png`;
+                  img.style.left = (tx * 256 - px) + 'px'; img.style.top = (ty * 256 - py) + 'px';
+                  map.appendChild(img);
+                }
+              document.getElementById('pos').textContent = `z${z}  lon ${(cx * 360 - 180).toFixed(2)}`;
+            }
+            addEventListener('keydown', e => {
+              const step = 0.5 / (1 << z);
+              if (e.key === 'ArrowLeft') cx -= step; else if (e.key === 'ArrowRight') cx += step;
+              else if (e.key === 'ArrowUp') cy -= step; else if (e.key === 'ArrowDown') cy += step;
+              else if (e.key === '+' || e.key === '=') z = Math.min(z + 1, 21);
+              else if (e.key === '-') z = Math.max(z - 1, 0);
+              else if (e.key === 'PageDown') sel.selectedIndex = Math.min(sel.selectedIndex + 1, layers.length - 1);
+              else if (e.key === 'PageUp') sel.selectedIndex = Math.max(sel.selectedIndex - 1, 0);
+              else return;
+              e.preventDefault(); draw();
+            });
+            sel.onchange = draw; onresize = draw;
+            fetch('/layers').then(r => r.json()).then(ls => {
+              layers = ls;
+              for (const l of ls) sel.add(new Option(l.id, l.id));
+              if (ls.length) {
+                const b = ls[0].bounds;
+                if (ls[0].crs === 'EPSG:4326') {
+                  cx = ((b[0] + b[2]) / 2 + 180) / 360;
+                  const lat = (b[1] + b[3]) / 2 * Math.PI / 180;
+                  cy = (1 - Math.log(Math.tan(lat) + 1 / Math.cos(lat)) / Math.PI) / 2;
+                }
+              }
+              draw();
+            });
+            </script></body></html>
+            """;
+}
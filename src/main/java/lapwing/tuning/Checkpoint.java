@@ -0,0 +1,123 @@
+package lapwing.tuning;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+import lapwing.data.FoldAssignment;
+import lapwing.data.ModelFrame;
+import lapwing.forest.ForestParams;
+
+/**
+ * Append-only CSV of scored (configuration, numberOfTrees) pairs, flushed after each trial step, so an interrupted
+ * search can resume and skip everything already scored. The file doubles as the search result table.
+ *
+ * <p>Scores only carry over under the same fixed setup (seed, bagFraction, sampling, split mode, the predictor
+ * names, a hash of the predictor and status columns and the exact fold rows), which is written as a {@code #} comment on the first line; a checkpoint written under another setup
+ * is rejected rather than resumed.
+ */
+final class Checkpoint {
+
+    static final String HEADER = "variablesPerSplit,minLeafPopulation,maxNodes,numberOfTrees,auc";
+
+    private final Path file;
+    private final Map<String, TreeMap<Integer, Double>> scores = new HashMap<>();
+
+    private Checkpoint(Path file) {
+        this.file = file;
+    }
+
+    static Checkpoint open(Path file, String setup) throws IOException {
+        Checkpoint c = new Checkpoint(file);
+        if (Files.exists(file)) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line = in.readLine();
+                if (line == null || !line.equals("# " + setup)) {
+                    throw new IllegalArgumentException(file + " was written under another setup ("
+                            + (line != null && line.startsWith("# ") ? line.substring(2) : "none recorded")
+                            + "); use a new checkpoint file for " + setup);
+                }
+                in.readLine();
+                while ((line = in.readLine()) != null) {
+                    String[] f = line.split(",");
+                    if (f.length < 5) {
+                        continue; // a line cut short by the interruption
+                    }
+                    String key = f[0] + "," + f[1] + "," + f[2];
+                    c.scores.computeIfAbsent(key, k -> new TreeMap<>())
+                            .put(Integer.parseInt(f[3]), Double.parseDouble(f[4]));
+                }
+            }
+        } else {
+            Files.writeString(file, "# " + setup + "\n" + HEADER + "\n", StandardCharsets.UTF_8);
+        }
+        return c;
+    }
+
+    /** The settings and data every score depends on besides the grid axes and the tree count. */
+    static String setup(ForestParams base, ModelFrame frame, FoldAssignment folds) {
+        int hash = Arrays.hashCode(folds.foldOf());
+        for (int f = 0; f < folds.folds(); f++) {
+            hash = 31 * hash + Arrays.hashCode(folds.trainingRows(f));
+        }
+        // Content of the predictor and status columns, so changed values or another table do not resume
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(4 * frame.rows()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int j = 0; j < frame.predictorCount(); j++) {
+            buffer.clear();
+            buffer.asFloatBuffer().put(frame.column(j));
+            digest.update(buffer.array(), 0, 4 * frame.rows());
+        }
+        digest.update(frame.status());
+        return "seed=" + base.seed() + " bagFraction=" + base.bagFraction()
+                + " withReplacement=" + base.withReplacement() + " splitMode=" + base.splitMode()
+                + " predictors=" + String.join(";", frame.predictorNames()) + " rows=" + frame.rows()
+                + " data=" + HexFormat.of().formatHex(digest.digest(), 0, 8)
+                + " folds=" + folds.folds() + " foldRows=" + Integer.toHexString(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static String key(ForestParams p) {
+        return p.variablesPerSplit() + "," + p.minLeafPopulation() + ","
+                + (p.maxNodes() == Integer.MAX_VALUE ? 0 : p.maxNodes());
+    }
+
+    /** Scores already known for a configuration, by tree count (empty map if none). */
+    synchronized TreeMap<Integer, Double> scores(ForestParams p) {
+        return new TreeMap<>(scores.getOrDefault(key(p), new TreeMap<>()));
+    }
+
+    synchronized void record(ForestParams p, int trees, double auc) {
+        TreeMap<Integer, Double> known = scores.computeIfAbsent(key(p), k -> new TreeMap<>());
+        if (known.containsKey(trees)) {
+            return;
+        }
+        known.put(trees, auc);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            out.write(key(p) + "," + trees + "," + auc + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
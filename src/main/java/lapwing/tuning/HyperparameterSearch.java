@@ -0,0 +1,283 @@
+package lapwing.tuning;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import lapwing.data.FoldAssignment;
+import lapwing.data.ModelFrame;
+import lapwing.eval.RocEvaluator;
+import lapwing.forest.ColumnEncoding;
+import lapwing.forest.DecisionTree;
+import lapwing.forest.ForestParams;
+import lapwing.forest.RandomForestTrainer;
+
+/**
+ * Joint search over numberOfTrees, variablesPerSplit, minLeafPopulation and maxNodes, scored by cross-validated
+ * AUC on the stratified folds (replaces the "Hyperparameter tuning" section).
+ *
+ * <p>Search proceeds by successive halving: all configurations are grown to the first tree budget, the best
+ * {@code 1 / eta} are kept and grown further, until {@code maxTrees}. A configuration is never retrained to go
+ * from one budget to the next: its trees are grown in chunks and only the per-row sum of tree probabilities on the
+ * validation folds is kept, from which the AUC of every tree-count prefix is read. A configuration whose AUC has
+ * not improved by {@code minDelta} over the last {@code patience} prefixes stops growing. Trials run concurrently
+ * on a bounded executor; their trees share one fork-join pool. Every score is appended to a checkpoint file, and
+ * scores found there on start-up are not recomputed, provided the file was written under the same seed, split
+ * mode, bagging, data and folds.
+ */
+public final class HyperparameterSearch {
+
+    private final ModelFrame frame;
+    private final FoldAssignment folds;
+    private final SearchSpace space;
+    private final ForestParams base;
+    private int concurrency = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int eta = 2;
+    private int patience = 3;
+    private double minDelta = 1e-4;
+    private Listener listener = (budget, configurations, bestAuc) -> { };
+
+    /** Told when every surviving configuration has been scored up to a tree budget. */
+    public interface Listener {
+        void rungFinished(int budget, int configurations, double bestAuc);
+    }
+
+    public HyperparameterSearch(ModelFrame frame, FoldAssignment folds, SearchSpace space, ForestParams base) {
+        this.frame = frame;
+        this.folds = folds;
+        this.space = space;
+        this.base = base;
+    }
+
+    public HyperparameterSearch concurrency(int trials) {
+        this.concurrency = Math.max(1, trials);
+        return this;
+    }
+
+    /** Halving factor; 1 disables halving and grows every configuration to maxTrees. */
+    public HyperparameterSearch eta(int eta) {
+        this.eta = Math.max(1, eta);
+        return this;
+    }
+
+    /** Early stopping on the tree axis; patience 0 disables it. */
+    public HyperparameterSearch earlyStopping(int patience, double minDelta) {
+        this.patience = patience;
+        this.minDelta = minDelta;
+        return this;
+    }
+
+    public HyperparameterSearch listener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    //==========================================================================================================
+    // Run
+    //==========================================================================================================
+    public List<TrialResult> run(Path checkpointFile, ForkJoinPool treePool) throws IOException {
+        Checkpoint checkpoint = Checkpoint.open(checkpointFile, Checkpoint.setup(base, frame, folds));
+        RandomForestTrainer encoder = new RandomForestTrainer(base, treePool);
+        ColumnEncoding encoding = encoder.encode(frame);
+        Shared shared = new Shared(frame, folds, encoding);
+
+        List<Trial> alive = new ArrayList<>();
+        for (ForestParams p : space.configurations(base, frame.predictorCount())) {
+            alive.add(new Trial(p, shared));
+        }
+        List<Trial> all = new ArrayList<>(alive);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(concurrency), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (int budget : budgets()) {
+                List<Future<?>> running = new ArrayList<>();
+                for (Trial trial : alive) {
+                    running.add(executor.submit(() -> trial.advance(budget, space.treeCounts(), checkpoint,
+                            new RandomForestTrainer(trial.params, treePool), patience, minDelta)));
+                }
+                for (Future<?> f : running) {
+                    join(f);
+                }
+                listener.rungFinished(budget, alive.size(),
+                        alive.stream().mapToDouble(Trial::bestAuc).max().orElse(Double.NaN));
+                if (budget < space.maxTrees()) {
+                    alive.sort(Comparator.comparingDouble(Trial::bestAuc).reversed());
+                    alive = new ArrayList<>(alive.subList(0, Math.max(1, (alive.size() + eta - 1) / eta)));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<TrialResult> results = new ArrayList<>();
+        for (Trial t : all) {
+            results.add(new TrialResult(t.params, t.scores, t.stopped));
+        }
+        results.sort(Comparator.comparingDouble(TrialResult::bestAuc).reversed());
+        return results;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Tree budgets per rung: minTrees * eta^r, capped at maxTrees and snapped to the scoring grid
+    //----------------------------------------------------------------------------------------------------------
+    int[] budgets() {
+        int[] counts = space.treeCounts();
+        List<Integer> out = new ArrayList<>();
+        if (eta > 1) {
+            for (long b = space.minTrees(); b < space.maxTrees(); b *= eta) {
+                int snapped = counts[0];
+                for (int c : counts) {
+                    if (c <= b) {
+                        snapped = c;
+                    }
+                }
+                if (out.isEmpty() || out.get(out.size() - 1) < snapped) {
+                    out.add(snapped);
+                }
+            }
+        }
+        out.add(space.maxTrees());
+        return out.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void join(Future<?> f) {
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during search", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Trial failed", e.getCause());
+        }
+    }
+
+    //==========================================================================================================
+    // Data shared by every trial: encoding, fold rows and the pooled validation status
+    //==========================================================================================================
+    private static final class Shared {
+        final ModelFrame frame;
+        final ColumnEncoding encoding;
+        final int[][] training;
+        final int[][] validation;
+        final byte[] status;
+        final float[][] columns;
+        final int[] identity;
+
+        Shared(ModelFrame frame, FoldAssignment folds, ColumnEncoding encoding) {
+            this.frame = frame;
+            this.encoding = encoding;
+            int k = folds.folds();
+            training = new int[k][];
+            validation = new int[k][];
+            int n = 0;
+            for (int f = 0; f < k; f++) {
+                training[f] = folds.trainingRows(f);
+                validation[f] = folds.validationRows(f);
+                n += validation[f].length;
+            }
+            status = new byte[n];
+            int at = 0;
+            for (int[] rows : validation) {
+                for (int r : rows) {
+                    status[at++] = frame.status()[r];
+                }
+            }
+            columns = new float[frame.predictorCount()][];
+            identity = new int[columns.length];
+            for (int j = 0; j < columns.length; j++) {
+                columns[j] = frame.column(j);
+                identity[j] = j;
+            }
+        }
+    }
+
+    //==========================================================================================================
+    // One configuration: running sums of tree probabilities over the pooled validation rows
+    //==========================================================================================================
+    private static final class Trial {
+        final ForestParams params;
+        final Shared shared;
+        final TreeMap<Integer, Double> scores = new TreeMap<>();
+        double[] sum;
+        int grown;
+        boolean stopped;
+
+        Trial(ForestParams params, Shared shared) {
+            this.params = params;
+            this.shared = shared;
+        }
+
+        double bestAuc() {
+            return scores.values().stream().mapToDouble(Double::doubleValue).max().orElse(Double.NEGATIVE_INFINITY);
+        }
+
+        void advance(int budget, int[] counts, Checkpoint checkpoint, RandomForestTrainer trainer, int patience,
+                     double minDelta) {
+            Map<Integer, Double> known = checkpoint.scores(params);
+            for (int c : counts) {
+                if (c > budget || stopped) {
+                    break;
+                }
+                if (scores.containsKey(c)) {
+                    continue;
+                }
+                Double cached = known.get(c);
+                double auc = cached != null ? cached : score(c, trainer);
+                scores.put(c, auc);
+                checkpoint.record(params, c, auc);
+                stopped = patience > 0 && plateaued(patience, minDelta);
+            }
+        }
+
+        // Grow trees [grown, c) on every fold and return the AUC of the c-tree prefix
+        private double score(int c, RandomForestTrainer trainer) {
+            if (sum == null) {
+                sum = new double[shared.status.length];
+            }
+            int at = 0;
+            for (int f = 0; f < shared.training.length; f++) {
+                int[] rows = shared.validation[f];
+                DecisionTree[] trees = trainer.growTrees(shared.frame, shared.encoding, shared.training[f], grown, c);
+                for (DecisionTree tree : trees) {
+                    for (int i = 0; i < rows.length; i++) {
+                        sum[at + i] += tree.predict(shared.columns, shared.identity, rows[i]);
+                    }
+                }
+                at += rows.length;
+            }
+            grown = c;
+            float[] prob = new float[sum.length];
+            for (int i = 0; i < prob.length; i++) {
+                prob[i] = (float) (sum[i] / c);
+            }
+            return new RocEvaluator(prob, shared.status).auc();
+        }
+
+        private boolean plateaued(int patience, double minDelta) {
+            if (scores.size() <= patience) {
+                return false;
+            }
+            Double[] values = scores.values().toArray(new Double[0]);
+            double before = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < values.length - patience; i++) {
+                before = Math.max(before, values[i]);
+            }
+            double recent = Double.NEGATIVE_INFINITY;
+            for (int i = values.length - patience; i < values.length; i++) {
+                recent = Math.max(recent, values[i]);
+            }
+            return recent < before + minDelta;
+        }
+    }
+}
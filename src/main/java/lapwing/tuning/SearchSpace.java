@@ -0,0 +1,101 @@
+package lapwing.tuning;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lapwing.forest.ForestParams;
+
+/**
+ * Grid over variablesPerSplit, minLeafPopulation and maxNodes, plus the tree-count axis.
+ *
+ * <p>The tree-count axis is not part of the grid: each configuration grows one forest up to {@code maxTrees} and
+ * is scored at every prefix {@code minTrees, minTrees + treeStep, ...}, the local form of
+ * {@code numTreesList = ee.List.sequence(50, 200, 10)}.
+ */
+public final class SearchSpace {
+
+    private final int[] variablesPerSplit;
+    private final int[] minLeafPopulation;
+    private final int[] maxNodes;
+    private final int minTrees;
+    private final int maxTrees;
+    private final int treeStep;
+
+    public SearchSpace(int[] variablesPerSplit, int[] minLeafPopulation, int[] maxNodes, int minTrees, int maxTrees,
+                       int treeStep) {
+        if (minTrees < 1 || maxTrees < minTrees || treeStep < 1) {
+            throw new IllegalArgumentException("Bad tree schedule " + minTrees + ".." + maxTrees + " by " + treeStep);
+        }
+        this.variablesPerSplit = variablesPerSplit.clone();
+        this.minLeafPopulation = minLeafPopulation.clone();
+        this.maxNodes = maxNodes.clone();
+        this.minTrees = minTrees;
+        this.maxTrees = maxTrees;
+        this.treeStep = treeStep;
+    }
+
+    /**
+     * Every distinct combination of the three grid axes, on top of {@code base} (seed, bagFraction, split mode).
+     * Values that train the same forest with {@code predictors} columns are searched once: a null
+     * variablesPerSplit equal to an explicit {@code floor(sqrt(predictors))}, or values clamped to
+     * {@code predictors}; the first of them is kept.
+     */
+    public List<ForestParams> configurations(ForestParams base, int predictors) {
+        Map<Integer, Integer> vars = new LinkedHashMap<>();
+        for (int v : variablesPerSplit) {
+            vars.putIfAbsent(base.variablesPerSplit(v).variablesPerSplitFor(predictors), v);
+        }
+        Set<Integer> leaves = new LinkedHashSet<>();
+        for (int m : minLeafPopulation) {
+            leaves.add(m);
+        }
+        Set<Integer> nodes = new LinkedHashSet<>();
+        for (int n : maxNodes) {
+            nodes.add(n);
+        }
+        List<ForestParams> out = new ArrayList<>();
+        for (int v : vars.values()) {
+            for (int m : leaves) {
+                for (int n : nodes) {
+                    out.add(base.variablesPerSplit(v).minLeafPopulation(m).maxNodes(n).numberOfTrees(maxTrees));
+                }
+            }
+        }
+        return out;
+    }
+
+    /** Tree counts at which a forest is scored, ascending and ending at maxTrees. */
+    public int[] treeCounts() {
+        List<Integer> counts = new ArrayList<>();
+        for (int t = minTrees; t < maxTrees; t += treeStep) {
+            counts.add(t);
+        }
+        counts.add(maxTrees);
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public int minTrees() {
+        return minTrees;
+    }
+
+    public int maxTrees() {
+        return maxTrees;
+    }
+
+    //----------------------------------------------------------------------------------------------------------
+    // Parse "a,b,c" lists from the command line; "null" stands for the GEE default of an axis
+    //----------------------------------------------------------------------------------------------------------
+    public static int[] parseAxis(String text, int nullValue) {
+        String[] parts = text.split(",");
+        int[] out = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String s = parts[i].trim();
+            out[i] = s.equals("null") ? nullValue : Integer.parseInt(s);
+        }
+        return out;
+    }
+}
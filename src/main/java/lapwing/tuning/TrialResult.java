@@ -0,0 +1,57 @@
+package lapwing.tuning;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import lapwing.forest.ForestParams;
+
+/**
+ * Cross-validated AUC of one configuration at every tree count it was scored at.
+ */
+public final class TrialResult {
+
+    private final ForestParams params;
+    private final SortedMap<Integer, Double> aucByTrees;
+    private final boolean stoppedEarly;
+
+    TrialResult(ForestParams params, SortedMap<Integer, Double> aucByTrees, boolean stoppedEarly) {
+        this.params = params;
+        this.aucByTrees = Collections.unmodifiableSortedMap(new TreeMap<>(aucByTrees));
+        this.stoppedEarly = stoppedEarly;
+    }
+
+    /** The configuration with numberOfTrees set to the best-scoring prefix. */
+    public ForestParams best() {
+        return params.numberOfTrees(bestTrees());
+    }
+
+    public int bestTrees() {
+        int best = aucByTrees.firstKey();
+        for (Map.Entry<Integer, Double> e : aucByTrees.entrySet()) {
+            if (e.getValue() > aucByTrees.get(best)) {
+                best = e.getKey();
+            }
+        }
+        return best;
+    }
+
+    public double bestAuc() {
+        return aucByTrees.isEmpty() ? Double.NaN : aucByTrees.get(bestTrees());
+    }
+
+    public SortedMap<Integer, Double> aucByTrees() {
+        return aucByTrees;
+    }
+
+    public boolean stoppedEarly() {
+        return stoppedEarly;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s -> AUC %.4f at %d trees%s", best(), bestAuc(), bestTrees(),
+                stoppedEarly ? " (stopped early)" : "");
+    }
+}